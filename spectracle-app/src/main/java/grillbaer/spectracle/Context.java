@@ -1,7 +1,10 @@
 package grillbaer.spectracle;
 
+import grillbaer.spectracle.camera.CameraManager;
+import grillbaer.spectracle.model.LineScanRecorder;
 import grillbaer.spectracle.model.Model;
 import grillbaer.spectracle.model.Settings;
+import grillbaer.spectracle.model.TimelapseScheduler;
 import lombok.Getter;
 import net.harawata.appdirs.AppDirsFactory;
 import org.slf4j.Logger;
@@ -12,6 +15,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 
 /**
  * Shared context information for the whole application.
@@ -22,6 +26,21 @@ public final class Context {
     @Getter
     private final Model model = new Model();
 
+    @Getter
+    private final CameraManager cameraManager = new CameraManager();
+
+    @Getter
+    private final TimelapseScheduler timelapseScheduler = new TimelapseScheduler(this.model, this.cameraManager);
+
+    @Getter
+    private final LineScanRecorder lineScanRecorder = new LineScanRecorder(this.model);
+
+    /**
+     * Camera to open on startup as it had been selected when the settings were stored.
+     */
+    @Getter
+    private Integer startupCameraId;
+
     public Context() {
         loadSettings();
 
@@ -29,6 +48,7 @@ public final class Context {
             @Override
             public void run() {
                 storeSettings();
+                cameraManager.close();
             }
         });
     }
@@ -38,6 +58,8 @@ public final class Context {
         try {
             final var settings = Settings.readJson(file);
             model.applySettings(settings);
+            applyTimelapseSettings(settings);
+            this.startupCameraId = settings.getSelectedCameraId();
             LOG.info("Loaded settings from {}", file);
         } catch (FileNotFoundException e) {
             LOG.warn("No settings file {}", file);
@@ -51,6 +73,13 @@ public final class Context {
         try {
             Files.createDirectories(file.getParent());
             final var settings = model.createSettings();
+            settings.setTimelapseIntervalSeconds(this.timelapseScheduler.getInterval().toMillis() / 1000.);
+            settings.setTimelapseFramesPerRun(this.timelapseScheduler.getFramesPerRun());
+            settings.setTimelapseCatchUpPolicy(this.timelapseScheduler.getCatchUpPolicy());
+            if (settings.getSelectedCameraId() == null) {
+                // camera may not have been opened in this session, keep previous selection
+                settings.setSelectedCameraId(this.startupCameraId);
+            }
             settings.writeJson(file);
             LOG.info("Stored settings to {}", file);
         } catch (IOException e) {
@@ -58,6 +87,19 @@ public final class Context {
         }
     }
 
+    private void applyTimelapseSettings(Settings settings) {
+        if (settings.getTimelapseIntervalSeconds() != null && settings.getTimelapseIntervalSeconds() > 0.) {
+            this.timelapseScheduler.setInterval(
+                    Duration.ofMillis((long) (settings.getTimelapseIntervalSeconds() * 1000.)));
+        }
+        if (settings.getTimelapseFramesPerRun() != null && settings.getTimelapseFramesPerRun() > 0) {
+            this.timelapseScheduler.setFramesPerRun(settings.getTimelapseFramesPerRun());
+        }
+        if (settings.getTimelapseCatchUpPolicy() != null) {
+            this.timelapseScheduler.setCatchUpPolicy(settings.getTimelapseCatchUpPolicy());
+        }
+    }
+
     private Path getSettingsFile() {
         final var configDir = Paths.get(AppDirsFactory.getInstance()
                 .getUserConfigDir("spectracle", "1", "grillbaer"));
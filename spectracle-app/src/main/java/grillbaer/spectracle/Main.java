@@ -2,7 +2,11 @@ package grillbaer.spectracle;
 
 import com.formdev.flatlaf.FlatDarkLaf;
 import grillbaer.spectracle.camera.Camera;
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.model.Model;
+import grillbaer.spectracle.model.Observer;
 import grillbaer.spectracle.ui.MainPanel;
+import lombok.NonNull;
 import nu.pattern.OpenCV;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,10 +15,13 @@ import org.slf4j.bridge.SLF4JBridgeHandler;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,20 +31,14 @@ import java.util.stream.Stream;
 public class Main {
     private final static Logger LOG = LoggerFactory.getLogger(Main.class);
 
-    public static void main(String[] args) throws InterruptedException, InvocationTargetException {
-        initLogging();
+    private static final long START_NANOS = System.nanoTime();
 
-        LOG.info("Initializing OpenCV ...");
-        OpenCV.loadLocally();
+    public static void main(String[] args) throws InterruptedException, InvocationTargetException {
+        timed("Logging initialization", Main::initLogging);
 
-        final var context = new Context();
-        if (context.getModel().getCameraId() == null) {
-            context.getModel().setCamera(new Camera(0));
-        }
-        context.getModel().grabSingleFrame();
-        context.getModel().setCameraPaused(false);
+        final var context = timed("Settings loading", Context::new);
 
-        SwingUtilities.invokeAndWait(() -> {
+        SwingUtilities.invokeAndWait(() -> timed("UI startup", () -> {
             LOG.info("UI starting up ...");
             FlatDarkLaf.install();
             final var mainPanel = new MainPanel(context);
@@ -46,9 +47,87 @@ public class Main {
             frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
             frame.getContentPane().add(mainPanel.getComponent(), BorderLayout.CENTER);
             setDefaultWindowBounds(frame);
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowIconified(WindowEvent e) {
+                    context.getModel().setDisplayHidden(true);
+                }
+
+                @Override
+                public void windowDeiconified(WindowEvent e) {
+                    context.getModel().setDisplayHidden(false);
+                }
+            });
             LOG.info("Setting main window visible");
             frame.setVisible(true);
+        }));
+
+        startCameraInBackground(context);
+    }
+
+    /**
+     * Loads the native OpenCV libs and opens the camera without blocking the already visible UI.
+     * A missing or slowly responding camera will only delay the camera picture, not the application.
+     * Afterwards, the other cameras are enumerated and kept in standby for fast switching.
+     */
+    private static void startCameraInBackground(@NonNull Context context) {
+        final var cameraManager = context.getCameraManager();
+        cameraManager.initialize(() -> timed("OpenCV initialization", OpenCV::loadLocally));
+
+        final int startupCameraId = context.getStartupCameraId() != null ? context.getStartupCameraId() : 0;
+        final var openingStartNanos = System.nanoTime();
+        cameraManager.acquire(startupCameraId)
+                .thenCompose(camera -> camera != null || startupCameraId == 0
+                        ? CompletableFuture.completedFuture(camera)
+                        : cameraManager.acquire(0))
+                .whenComplete((camera, e) -> {
+                    logPhaseDone("Camera opening", openingStartNanos);
+                    if (e != null) {
+                        LOG.error("Opening camera on startup failed", e);
+                    } else if (camera == null) {
+                        LOG.warn("No camera available on startup");
+                    } else {
+                        SwingUtilities.invokeLater(() -> useStartupCamera(context.getModel(), camera));
+                    }
+                    cameraManager.enumerate();
+                });
+    }
+
+    private static void useStartupCamera(@NonNull Model model, @NonNull Camera camera) {
+        model.getFrameGrabbedObservers().add(new Observer<>() {
+            @Override
+            public void changed(Frame frame) {
+                model.getFrameGrabbedObservers().remove(this);
+                logPhaseDone("First camera frame", null);
+            }
         });
+        model.setCamera(camera);
+        model.setCameraPaused(false);
+    }
+
+    private static void timed(@NonNull String phase, @NonNull Runnable runnable) {
+        timed(phase, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private static <T> T timed(@NonNull String phase, @NonNull Supplier<T> supplier) {
+        final var phaseStartNanos = System.nanoTime();
+        final var result = supplier.get();
+        logPhaseDone(phase, phaseStartNanos);
+
+        return result;
+    }
+
+    private static void logPhaseDone(@NonNull String phase, Long phaseStartNanos) {
+        final var now = System.nanoTime();
+        if (phaseStartNanos != null) {
+            LOG.info("Startup phase: {} took {} ms, done {} ms after start", phase,
+                    (now - phaseStartNanos) / 1_000_000, (now - START_NANOS) / 1_000_000);
+        } else {
+            LOG.info("Startup phase: {} done {} ms after start", phase, (now - START_NANOS) / 1_000_000);
+        }
     }
 
     private static void initLogging() {
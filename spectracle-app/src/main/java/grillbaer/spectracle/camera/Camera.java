@@ -20,6 +20,8 @@ public final class Camera implements Closeable {
     private final int id;
     private final VideoCapture videoCapture;
     private CameraProps cameraProps;
+    private volatile CameraProps requestedCameraProps;
+    private int framesSinceExposureChange;
 
     private static final Map<Integer, String> PROP_NAMES_BY_ID = new TreeMap<>();
 
@@ -66,7 +68,29 @@ public final class Camera implements Closeable {
     }
 
     public synchronized void grabNextFrame(@NonNull Frame targetFrame) {
-        targetFrame.grabFrom(this.videoCapture);
+        applyRequestedCameraProps();
+        targetFrame.grabFrom(this.videoCapture, this.cameraProps, this.framesSinceExposureChange);
+        if (this.framesSinceExposureChange < Integer.MAX_VALUE) {
+            this.framesSinceExposureChange++;
+        }
+    }
+
+    /**
+     * Request new camera properties without waiting for a running grab. They will be applied by the grabbing
+     * thread right before the next frame. Later requests replace earlier ones that have not yet been applied.
+     */
+    public void requestCameraProps(@NonNull CameraProps cameraProps) {
+        this.requestedCameraProps = cameraProps;
+    }
+
+    private void applyRequestedCameraProps() {
+        final var requested = this.requestedCameraProps;
+        if (requested != null) {
+            this.requestedCameraProps = null;
+            if (!requested.equals(this.cameraProps)) {
+                setCameraProps(requested);
+            }
+        }
     }
 
     private void disableAutomatics() {
@@ -83,21 +107,36 @@ public final class Camera implements Closeable {
 
 
     public synchronized void setCameraProps(@NonNull CameraProps cameraProps) {
+        this.requestedCameraProps = null;
+        if (this.cameraProps == null || this.cameraProps.getExposure() != cameraProps.getExposure()) {
+            this.framesSinceExposureChange = 0;
+        }
         this.cameraProps = cameraProps;
         setProp(Videoio.CAP_PROP_FRAME_WIDTH, cameraProps.getFrameWidth(), false);
         setProp(Videoio.CAP_PROP_FRAME_HEIGHT, cameraProps.getFrameHeight(), false);
         setProp(Videoio.CAP_PROP_EXPOSURE, cameraProps.getExposure(), true);
+        setProp(Videoio.CAP_PROP_CONVERT_RGB, cameraProps.isLumaOnly() ? 0. : 1., false);
     }
 
-    public synchronized CameraProps getCameraProps() {
-        return this.cameraProps;
+    /**
+     * Camera properties, including requested ones that will be applied with the next grab.
+     */
+    public CameraProps getCameraProps() {
+        final var requested = this.requestedCameraProps;
+        if (requested != null)
+            return requested;
+
+        synchronized (this) {
+            return this.cameraProps;
+        }
     }
 
     public synchronized CameraProps getBackendCameraProps() {
         return new CameraProps(
                 (int) getProp(Videoio.CAP_PROP_FRAME_WIDTH),
                 (int) getProp(Videoio.CAP_PROP_FRAME_HEIGHT),
-                getProp(Videoio.CAP_PROP_EXPOSURE));
+                getProp(Videoio.CAP_PROP_EXPOSURE),
+                getProp(Videoio.CAP_PROP_CONVERT_RGB) == 0.);
     }
 
     private void setProp(int propId, double value, boolean force) {
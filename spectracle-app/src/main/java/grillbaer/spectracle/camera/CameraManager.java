@@ -0,0 +1,237 @@
+package grillbaer.spectracle.camera;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the cameras attached to the system. Devices are enumerated in the background and recently used cameras
+ * are kept open and configured in a warm standby, idle without grabbing. Switching to a standby camera therefore
+ * needs no slow opening and configuration. Standby cameras are closed after an idle timeout.
+ * <p>
+ * All opening and closing runs on a single background thread of the manager.
+ */
+public final class CameraManager implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(CameraManager.class);
+
+    private static final int MAX_CAMERA_ID = 9;
+    private static final int MAX_STANDBY_CAMERAS = 3;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(2);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "camera-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration idleTimeout;
+    /**
+     * Completes after the initialization, all camera access is queued behind it.
+     */
+    private final CompletableFuture<Void> initialized = new CompletableFuture<>();
+    /**
+     * Standby cameras in least recently used order.
+     */
+    private final Map<Integer, Standby> standbyById = new LinkedHashMap<>();
+    private final Set<Integer> inUseIds = new TreeSet<>();
+    private final SortedSet<Integer> availableIds = new TreeSet<>();
+
+    public CameraManager() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public CameraManager(@NonNull Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        final var checkMillis = Math.max(1000L, idleTimeout.toMillis() / 4);
+        this.executor.scheduleWithFixedDelay(this::closeIdleCameras, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run initialization code on the manager's thread before any camera will be opened, e.g. to load native libs.
+     * Cameras requested before are opened only after it has finished, if it fails they are not opened at all.
+     */
+    public CompletableFuture<Void> initialize(@NonNull Runnable initialization) {
+        this.executor.execute(() -> {
+            try {
+                initialization.run();
+                this.initialized.complete(null);
+            } catch (RuntimeException | Error e) {
+                this.initialized.completeExceptionally(e);
+            }
+        });
+        return whenInitialized();
+    }
+
+    /**
+     * @return future completing when the initialization has finished and cameras can be opened
+     */
+    public CompletableFuture<Void> whenInitialized() {
+        return this.initialized.thenApply(ignored -> null);
+    }
+
+    /**
+     * Acquire a camera for use, either from standby or by opening it.
+     * Acquired cameras have to be {@link #release(Camera)}d when no longer used.
+     *
+     * @return future for the opened camera, completes with <code>null</code> if it could not be opened
+     */
+    public CompletableFuture<Camera> acquire(int id) {
+        return this.initialized.thenApplyAsync(ignored -> acquireNow(id), this.executor);
+    }
+
+    /**
+     * Acquire the next available camera after the passed one, cycling to the lowest id after the highest one.
+     *
+     * @param currentId the currently used camera to skip or <code>null</code>
+     * @return future for the opened camera, completes with <code>null</code> if there is no other camera
+     */
+    public CompletableFuture<Camera> acquireNext(Integer currentId) {
+        return this.initialized.thenApplyAsync(ignored -> {
+            if (this.availableIds.isEmpty()) {
+                enumerateNow();
+            }
+            final var candidates = new ArrayList<Integer>();
+            if (currentId != null) {
+                candidates.addAll(this.availableIds.tailSet(currentId + 1));
+                candidates.addAll(this.availableIds.headSet(currentId));
+            } else {
+                candidates.addAll(this.availableIds);
+            }
+            for (var id : candidates) {
+                final var camera = acquireNow(id);
+                if (camera != null)
+                    return camera;
+            }
+
+            return null;
+        }, this.executor);
+    }
+
+    /**
+     * Release a previously acquired camera into the warm standby. It must not be grabbed from any more.
+     */
+    public void release(@NonNull Camera camera) {
+        this.executor.execute(() -> {
+            this.inUseIds.remove(camera.getId());
+            if (!camera.isOpen()) {
+                camera.close();
+                return;
+            }
+            LOG.info("Camera id={}: entering standby", camera.getId());
+            final var replaced = this.standbyById.put(camera.getId(), new Standby(camera, System.nanoTime()));
+            if (replaced != null && replaced.camera != camera) {
+                replaced.camera.close();
+            }
+            limitStandbyCameras();
+        });
+    }
+
+    /**
+     * Probe the cameras in the background and keep newly found ones in standby.
+     *
+     * @return future for the ids of all available cameras
+     */
+    public CompletableFuture<SortedSet<Integer>> enumerate() {
+        return this.initialized.thenApplyAsync(ignored -> enumerateNow(), this.executor);
+    }
+
+    /**
+     * Close all standby cameras and stop managing. Cameras in use stay untouched.
+     */
+    @Override
+    public void close() {
+        this.executor.execute(() -> {
+            this.standbyById.values().forEach(standby -> standby.camera.close());
+            this.standbyById.clear();
+        });
+        this.executor.shutdown();
+    }
+
+    private Camera acquireNow(int id) {
+        final var standby = this.standbyById.remove(id);
+        if (standby != null) {
+            LOG.info("Camera id={}: taken from standby", id);
+            this.inUseIds.add(id);
+            return standby.camera;
+        }
+
+        if (this.inUseIds.contains(id)) {
+            LOG.warn("Camera id={}: already in use", id);
+            return null;
+        }
+
+        final var camera = new Camera(id);
+        if (!camera.isOpen()) {
+            camera.close();
+            this.availableIds.remove(id);
+            return null;
+        }
+
+        this.availableIds.add(id);
+        this.inUseIds.add(id);
+        return camera;
+    }
+
+    private SortedSet<Integer> enumerateNow() {
+        final var startNanos = System.nanoTime();
+        for (int id = 0; id <= MAX_CAMERA_ID; id++) {
+            if (this.inUseIds.contains(id) || this.standbyById.containsKey(id)) {
+                this.availableIds.add(id);
+                continue;
+            }
+
+            final var camera = new Camera(id);
+            if (camera.isOpen()) {
+                this.availableIds.add(id);
+                this.standbyById.put(id, new Standby(camera, System.nanoTime()));
+            } else {
+                camera.close();
+                this.availableIds.remove(id);
+                if (id > 0)
+                    break; // ids are assigned consecutively, stop at the first gap
+            }
+        }
+        limitStandbyCameras();
+        LOG.info("Enumerated cameras {} in {} ms", this.availableIds, (System.nanoTime() - startNanos) / 1_000_000);
+
+        return new TreeSet<>(this.availableIds);
+    }
+
+    private void limitStandbyCameras() {
+        final var iterator = this.standbyById.values().iterator();
+        while (this.standbyById.size() > MAX_STANDBY_CAMERAS && iterator.hasNext()) {
+            final var standby = iterator.next();
+            iterator.remove();
+            LOG.info("Camera id={}: closing, too many in standby", standby.camera.getId());
+            standby.camera.close();
+        }
+    }
+
+    private void closeIdleCameras() {
+        final var now = System.nanoTime();
+        final var iterator = this.standbyById.values().iterator();
+        while (iterator.hasNext()) {
+            final var standby = iterator.next();
+            if (now - standby.sinceNanos > this.idleTimeout.toNanos()) {
+                iterator.remove();
+                LOG.info("Camera id={}: closing after idle timeout", standby.camera.getId());
+                standby.camera.close();
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Standby {
+        private final Camera camera;
+        private final long sinceNanos;
+    }
+}
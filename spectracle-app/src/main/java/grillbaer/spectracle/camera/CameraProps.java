@@ -22,12 +22,23 @@ public final class CameraProps {
     private final int frameHeight;
     @JsonProperty("exposure")
     private final double exposure;
+    /**
+     * Skip the backend's color conversion and keep the raw YUYV frames to sample only their luma plane.
+     */
+    @JsonProperty("lumaOnly")
+    private final boolean lumaOnly;
+
+    public CameraProps(int frameWidth, int frameHeight, double exposure) {
+        this(frameWidth, frameHeight, exposure, false);
+    }
 
     public CameraProps(@JsonProperty("frameWidth") int frameWidth,
                        @JsonProperty("frameHeight") int frameHeight,
-                       @JsonProperty("exposure") double exposure) {
+                       @JsonProperty("exposure") double exposure,
+                       @JsonProperty("lumaOnly") boolean lumaOnly) {
         this.frameWidth = frameWidth;
         this.frameHeight = frameHeight;
         this.exposure = exposure;
+        this.lumaOnly = lumaOnly;
     }
 }
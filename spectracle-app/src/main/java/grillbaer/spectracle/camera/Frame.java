@@ -1,8 +1,12 @@
 package grillbaer.spectracle.camera;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 import org.opencv.videoio.VideoCapture;
 
 import java.awt.image.BufferedImage;
@@ -13,44 +17,216 @@ import java.awt.image.DataBufferByte;
  */
 @Getter
 public final class Frame {
+    /**
+     * Pixel layout of the frame's matrix.
+     */
+    public enum PixelFormat {
+        /**
+         * No valid frame data.
+         */
+        NONE,
+        /**
+         * One byte gray value per pixel.
+         */
+        GRAY,
+        /**
+         * Three bytes blue, green, red per pixel.
+         */
+        BGR,
+        /**
+         * Raw packed YUV 4:2:2 as delivered by most webcams: two bytes per pixel, the first one is the luma value,
+         * the second one alternates between the U and V chroma of the pixel pair.
+         */
+        YUYV
+    }
+
     private VideoCapture source;
     private Mat mat;
+    private PixelFormat pixelFormat = PixelFormat.NONE;
+    /**
+     * Exposure the camera was set to when grabbing the frame, <code>null</code> if unknown.
+     */
+    private Double exposure;
+    /**
+     * Number of frames grabbed before this one since the exposure was last changed. Cameras deliver a few frames
+     * still exposed with the previous setting after a change, so low numbers indicate a possibly unsettled exposure.
+     */
+    private int framesSinceExposureChange;
+
+    @Getter(AccessLevel.NONE)
+    private Mat readMat;
+    @Getter(AccessLevel.NONE)
+    private SharedPixels readPixels;
+    @Getter(AccessLevel.NONE)
+    private SharedPixels convertedPixels;
+    @Getter(AccessLevel.NONE)
     private BufferedImage image;
+    @Getter(AccessLevel.NONE)
+    private boolean imageValid;
 
 
-    public void grabFrom(@NonNull VideoCapture videoCapture) {
+    public synchronized void grabFrom(@NonNull VideoCapture videoCapture, CameraProps cameraProps,
+                                      int framesSinceExposureChange) {
         if (this.source != videoCapture) {
             // always use fresh mat for new source to avoid any concurrency issues
             this.source = videoCapture;
-            this.mat = new Mat();
+            this.readMat = new Mat();
+            this.readPixels = null;
+            this.convertedPixels = null;
             this.image = null;
         }
 
-        videoCapture.read(this.mat);
-        updateImage();
+        videoCapture.read(this.readMat);
+        shareReadPixels();
+        updatePixelFormat(cameraProps);
+        this.exposure = cameraProps != null ? cameraProps.getExposure() : null;
+        this.framesSinceExposureChange = framesSinceExposureChange;
+        this.imageValid = false;
+    }
+
+    /**
+     * Ensures the read matrix works on memory shared with an image. OpenCV only (re)allocates the matrix on the first
+     * read or when size or type change. In these cases the pixels are moved once to newly allocated shared memory
+     * and all following frames are captured directly into it.
+     */
+    private void shareReadPixels() {
+        if (this.readPixels != null && this.readPixels.isSharedBy(this.readMat))
+            return;
+
+        this.readPixels = SharedPixels.allocate(this.readMat.rows(), this.readMat.cols(), this.readMat.type());
+        if (this.readPixels != null) {
+            this.readMat.copyTo(this.readPixels.getMat());
+            this.readMat.release();
+            this.readMat = this.readPixels.getMat();
+        }
+    }
+
+    private void updatePixelFormat(CameraProps cameraProps) {
+        this.mat = this.readMat;
+        if (this.readMat.rows() == 0 || this.readMat.cols() == 0) {
+            this.pixelFormat = PixelFormat.NONE;
+        } else if (cameraProps != null && cameraProps.isLumaOnly() && isRawYuyv(cameraProps)) {
+            if (this.readMat.rows() == 1 && cameraProps.getFrameHeight() > 1) {
+                // some backends deliver unconverted frames as one flat row of bytes
+                this.mat = this.readMat.reshape(2, cameraProps.getFrameHeight());
+            }
+            this.pixelFormat = PixelFormat.YUYV;
+        } else if (this.readMat.channels() == 1) {
+            this.pixelFormat = PixelFormat.GRAY;
+        } else {
+            this.pixelFormat = PixelFormat.BGR;
+        }
+    }
+
+    private boolean isRawYuyv(@NonNull CameraProps cameraProps) {
+        if (this.readMat.type() == CvType.CV_8UC2)
+            return true;
+
+        final long rawBytes = this.readMat.total() * this.readMat.elemSize();
+        return this.readMat.depth() == CvType.CV_8U
+                && rawBytes == 2L * cameraProps.getFrameWidth() * cameraProps.getFrameHeight();
+    }
+
+    /**
+     * Image of the frame for display purposes. It is created lazily on first access after a grab, so no conversion
+     * costs arise as long as nobody displays the frame.
+     * <p>
+     * NOTE: The image shares its memory with the frame's matrix. It is only valid until the next grab into this frame.
+     */
+    public synchronized BufferedImage getImage() {
+        if (!this.imageValid) {
+            updateImage();
+            this.imageValid = true;
+        }
+
+        return this.image;
     }
 
     private void updateImage() {
-        if (mat == null || mat.rows() == 0 || mat.cols() == 0) {
+        if (this.pixelFormat == PixelFormat.NONE) {
             this.image = null;
             return;
         }
 
-        final int imageType = mat.channels() == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
-        if (this.image == null || this.image.getType() != imageType || this.image.getWidth() != mat.cols() || this.image
-                .getHeight() != mat.rows()) {
-            this.image = new BufferedImage(mat.cols(), mat.rows(), imageType);
+        if (this.pixelFormat == PixelFormat.YUYV) {
+            if (this.convertedPixels == null
+                    || this.convertedPixels.getMat().rows() != this.mat.rows()
+                    || this.convertedPixels.getMat().cols() != this.mat.cols()) {
+                this.convertedPixels = SharedPixels.allocate(this.mat.rows(), this.mat.cols(), CvType.CV_8UC3);
+            }
+            Imgproc.cvtColor(this.mat, this.convertedPixels.getMat(), Imgproc.COLOR_YUV2BGR_YUYV);
+            this.image = this.convertedPixels.getImage();
+        } else if (this.readPixels != null && this.readPixels.getImage() != null && this.mat == this.readMat) {
+            this.image = this.readPixels.getImage();
+        } else {
+            this.image = copyToImage(this.mat, this.image);
+        }
+    }
+
+    /**
+     * Creates a new image of the frame, scaled down to fit the passed width if it is wider.
+     * Raw YUYV frames are converted to color like {@link #getImage()}.
+     * May be called from another thread than the grabbing one. Only copying the pixels blocks grabbing, the
+     * conversion and scaling work on the copy.
+     *
+     * @return new image or <code>null</code> if the frame contains no data
+     */
+    public BufferedImage createPreviewImage(int maxWidth) {
+        if (maxWidth <= 0)
+            return null;
+
+        final var copiedMat = new Mat();
+        final var convertedMat = new Mat();
+        final var scaledMat = new Mat();
+        try {
+            final PixelFormat sourceFormat;
+            synchronized (this) {
+                sourceFormat = this.pixelFormat;
+                if (sourceFormat == PixelFormat.NONE)
+                    return null;
+                this.mat.copyTo(copiedMat);
+            }
+
+            final Mat sourceMat;
+            if (sourceFormat == PixelFormat.YUYV) {
+                Imgproc.cvtColor(copiedMat, convertedMat, Imgproc.COLOR_YUV2BGR_YUYV);
+                sourceMat = convertedMat;
+            } else {
+                sourceMat = copiedMat;
+            }
+            if (maxWidth >= sourceMat.cols())
+                return copyToImage(sourceMat, null);
+
+            final var previewHeight = Math.max(1, (int) ((long) sourceMat.rows() * maxWidth / sourceMat.cols()));
+            Imgproc.resize(sourceMat, scaledMat, new Size(maxWidth, previewHeight), 0., 0., Imgproc.INTER_AREA);
+
+            return copyToImage(scaledMat, null);
+        } finally {
+            copiedMat.release();
+            convertedMat.release();
+            scaledMat.release();
+        }
+    }
+
+    private static BufferedImage copyToImage(@NonNull Mat imageMat, BufferedImage reusableImage) {
+        final int imageType = imageMat.channels() == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+        var image = reusableImage;
+        if (image == null || image.getType() != imageType || image.getWidth() != imageMat.cols() || image
+                .getHeight() != imageMat.rows() || !(image.getRaster().getDataBuffer() instanceof DataBufferByte)) {
+            image = new BufferedImage(imageMat.cols(), imageMat.rows(), imageType);
         }
 
         final var imageBuffer = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        mat.get(0, 0, imageBuffer);
+        imageMat.get(0, 0, imageBuffer);
+
+        return image;
     }
 
     public int getWidth() {
-        return this.mat.cols();
+        return this.mat != null ? this.mat.cols() : 0;
     }
 
     public int getHeight() {
-        return this.mat.rows();
+        return this.mat != null ? this.mat.rows() : 0;
     }
 }
@@ -0,0 +1,147 @@
+package grillbaer.spectracle.camera;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pre-allocated off-heap buffer for a horizontal strip of rows, the region of interest, from a series of frames.
+ * All memory is allocated up front, adding a frame only copies the strip's bytes into the next free slot, without
+ * any allocation or conversion. Each slot is accessible as a matrix working directly on the buffer's memory.
+ * <p>
+ * Not thread-safe, frames must be added from one thread and slots may only be read after adding has finished.
+ */
+public final class RoiFrameBuffer {
+    @Getter
+    private final int capacity;
+    @Getter
+    private final int firstRow;
+    @Getter
+    private final int rows;
+    @Getter
+    private final int cols;
+    @Getter
+    private final int type;
+    @Getter
+    private final Frame.PixelFormat pixelFormat;
+
+    private final ByteBuffer buffer;
+    private final Mat[] slotMats;
+    private final long[] timestampNanos;
+    @Getter
+    private int size;
+
+    /**
+     * Allocates a buffer for the strip layout of the passed frame.
+     *
+     * @param capacity maximum number of frames to store
+     * @param firstRow first row of the strip, clipped to the frame
+     * @param rows     number of rows of the strip, clipped to the frame
+     */
+    public RoiFrameBuffer(int capacity, @NonNull Frame layoutFrame, int firstRow, int rows) {
+        final var mat = layoutFrame.getMat();
+        if (mat == null || layoutFrame.getPixelFormat() == Frame.PixelFormat.NONE)
+            throw new IllegalArgumentException("frame without data");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive but is " + capacity);
+
+        this.capacity = capacity;
+        this.firstRow = clipFirstRow(mat, firstRow);
+        this.rows = clipRows(mat, this.firstRow, rows);
+        this.cols = mat.cols();
+        this.type = mat.type();
+        this.pixelFormat = layoutFrame.getPixelFormat();
+
+        final var slotBytes = (int) (this.rows * this.cols * mat.elemSize());
+        final long totalBytes = (long) slotBytes * capacity;
+        if (totalBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("buffer of " + totalBytes + " bytes too large");
+
+        this.buffer = ByteBuffer.allocateDirect((int) totalBytes);
+        this.slotMats = new Mat[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.slotMats[i] = new Mat(this.rows, this.cols, this.type, this.buffer.slice(i * slotBytes, slotBytes));
+        }
+        this.timestampNanos = new long[capacity];
+    }
+
+    private static int clipFirstRow(@NonNull Mat mat, int firstRow) {
+        return Math.max(0, Math.min(mat.rows() - 1, firstRow));
+    }
+
+    private static int clipRows(@NonNull Mat mat, int clippedFirstRow, int rows) {
+        return Math.max(1, Math.min(mat.rows() - clippedFirstRow, rows));
+    }
+
+    /**
+     * Whether this buffer has been allocated for the passed capacity and the strip of the frame.
+     */
+    public boolean isAllocatedFor(int capacity, @NonNull Frame frame, int firstRow, int rows) {
+        if (capacity != this.capacity || !isCompatible(frame))
+            return false;
+
+        final var clippedFirstRow = clipFirstRow(frame.getMat(), firstRow);
+        return clippedFirstRow == this.firstRow && clipRows(frame.getMat(), clippedFirstRow, rows) == this.rows;
+    }
+
+    /**
+     * Whether frames of the passed layout fit into this buffer.
+     */
+    public boolean isCompatible(@NonNull Frame frame) {
+        final var mat = frame.getMat();
+        return mat != null && frame.getPixelFormat() == this.pixelFormat
+                && mat.type() == this.type && mat.cols() == this.cols && mat.rows() >= this.firstRow + this.rows;
+    }
+
+    public boolean isFull() {
+        return this.size >= this.capacity;
+    }
+
+    /**
+     * Copy the strip of the frame into the next free slot.
+     *
+     * @return <code>false</code> if the buffer is full or the frame is incompatible
+     */
+    public boolean add(@NonNull Frame frame, long timestampNanos) {
+        if (isFull() || !isCompatible(frame))
+            return false;
+
+        final var strip = frame.getMat().submat(this.firstRow, this.firstRow + this.rows, 0, this.cols);
+        try {
+            strip.copyTo(this.slotMats[this.size]);
+        } finally {
+            strip.release();
+        }
+        this.timestampNanos[this.size] = timestampNanos;
+        this.size++;
+
+        return true;
+    }
+
+    /**
+     * Start over, discarding all stored frames but keeping the memory.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Matrix of a stored strip, working on the buffer's memory. Only valid until the buffer is cleared.
+     */
+    public Mat getMat(int index) {
+        checkIndex(index);
+        return this.slotMats[index];
+    }
+
+    public long getTimestampNanos(int index) {
+        checkIndex(index);
+        return this.timestampNanos[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("index " + index + " out of 0.." + (this.size - 1));
+    }
+}
@@ -0,0 +1,98 @@
+package grillbaer.spectracle.camera;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Pixel memory allocated once and shared between an OpenCV matrix and a Java2D image without any copying.
+ * Pixels written into the matrix, e.g. by capturing or color conversion, are immediately visible in the image.
+ */
+@Getter
+final class SharedPixels {
+    private final ByteBuffer buffer;
+    private final Mat mat;
+    /**
+     * Image sharing the matrix' memory, <code>null</code> for matrix types that have no Java2D equivalent.
+     */
+    private final BufferedImage image;
+    private final long dataAddr;
+
+    private SharedPixels(int rows, int cols, int type) {
+        this.buffer = ByteBuffer.allocateDirect(rows * cols * CvType.channels(type));
+        this.mat = new Mat(rows, cols, type, this.buffer);
+        this.dataAddr = this.mat.dataAddr();
+        this.image = createImage(rows, cols, type, this.buffer);
+    }
+
+    /**
+     * Allocates shared memory for 8 bit matrices, <code>null</code> for other depths.
+     */
+    static SharedPixels allocate(int rows, int cols, int type) {
+        if (CvType.depth(type) != CvType.CV_8U || rows <= 0 || cols <= 0)
+            return null;
+
+        return new SharedPixels(rows, cols, type);
+    }
+
+    /**
+     * Whether the matrix still works on this shared memory, i.e. OpenCV did not need to reallocate it because of
+     * a changed size or type.
+     */
+    boolean isSharedBy(@NonNull Mat someMat) {
+        return someMat.dataAddr() == this.dataAddr
+                && someMat.rows() == this.mat.rows() && someMat.cols() == this.mat.cols()
+                && someMat.type() == this.mat.type();
+    }
+
+    private static BufferedImage createImage(int rows, int cols, int type, ByteBuffer buffer) {
+        final int channels = CvType.channels(type);
+        final int[] bandOffsets;
+        final ColorSpace colorSpace;
+        if (channels == 1) {
+            bandOffsets = new int[]{0};
+            colorSpace = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+        } else if (channels == 3) {
+            bandOffsets = new int[]{2, 1, 0}; // BGR
+            colorSpace = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        } else {
+            return null;
+        }
+
+        final var colorModel = new ComponentColorModel(colorSpace, false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        final var sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, cols, rows,
+                channels, cols * channels, bandOffsets);
+        final var raster = Raster.createWritableRaster(sampleModel, new DirectByteDataBuffer(buffer), null);
+
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Java2D data buffer on direct, off-heap memory.
+     */
+    private static final class DirectByteDataBuffer extends DataBuffer {
+        private final ByteBuffer buffer;
+
+        DirectByteDataBuffer(@NonNull ByteBuffer buffer) {
+            super(TYPE_BYTE, buffer.capacity());
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return this.buffer.get(i) & 0xff;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            this.buffer.put(i, (byte) val);
+        }
+    }
+}
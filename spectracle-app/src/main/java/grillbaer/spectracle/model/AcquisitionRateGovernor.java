@@ -0,0 +1,138 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.SampleLine;
+import lombok.Getter;
+import lombok.NonNull;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+/**
+ * Adapts the acquisition rate to whether anybody needs the full rate. Frames are grabbed at full rate by default,
+ * at a low rate while the display is hidden, e.g. iconified, and at a reduced rate after the spectrum stayed within
+ * noise for a number of frames. Any change beyond noise immediately restores the full rate.
+ */
+public final class AcquisitionRateGovernor {
+    public enum Mode {
+        FULL,
+        STABLE,
+        HIDDEN
+    }
+
+    public static final int DEFAULT_STABLE_FRAMES = 30;
+    public static final double DEFAULT_STABLE_FPS = 2.;
+    public static final double DEFAULT_HIDDEN_FPS = 1.;
+    public static final double DEFAULT_NOISE_LEVEL = 0.02;
+
+    @Getter
+    private boolean enabled = true;
+    @Getter
+    private int stableFrames = DEFAULT_STABLE_FRAMES;
+    @Getter
+    private double stableFps = DEFAULT_STABLE_FPS;
+    @Getter
+    private double hiddenFps = DEFAULT_HIDDEN_FPS;
+    @Getter
+    private double noiseLevel = DEFAULT_NOISE_LEVEL;
+    @Getter
+    private boolean hidden;
+
+    /**
+     * Sample values at the beginning of the current stable run. Comparing against them instead of the previous frame
+     * also detects slow drifts.
+     */
+    private double[] referenceValues;
+    private int unchangedFrames;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        reset();
+    }
+
+    /**
+     * Set how many frames the spectrum must stay within the noise level before the rate is reduced.
+     */
+    public void setStableFrames(int stableFrames) {
+        this.stableFrames = max(1, stableFrames);
+    }
+
+    public void setStableFps(double stableFps) {
+        if (stableFps <= 0.)
+            throw new IllegalArgumentException("stable fps must be positive but is " + stableFps);
+        this.stableFps = stableFps;
+    }
+
+    public void setHiddenFps(double hiddenFps) {
+        if (hiddenFps <= 0.)
+            throw new IllegalArgumentException("hidden fps must be positive but is " + hiddenFps);
+        this.hiddenFps = hiddenFps;
+    }
+
+    /**
+     * Set the maximum deviation of any sample value still regarded as noise.
+     */
+    public void setNoiseLevel(double noiseLevel) {
+        this.noiseLevel = max(0., noiseLevel);
+    }
+
+    public void setHidden(boolean hidden) {
+        this.hidden = hidden;
+    }
+
+    /**
+     * Forget the stable state, e.g. after the user changed any acquisition settings.
+     */
+    public void reset() {
+        this.referenceValues = null;
+        this.unchangedFrames = 0;
+    }
+
+    /**
+     * Feed the sample line of a newly grabbed frame into the stability detection.
+     */
+    public void offer(@NonNull SampleLine sampleLine) {
+        final var length = sampleLine.getLength();
+        if (this.referenceValues == null || this.referenceValues.length != length || isChanged(sampleLine)) {
+            if (this.referenceValues == null || this.referenceValues.length != length) {
+                this.referenceValues = new double[length];
+            }
+            for (int i = 0; i < length; i++) {
+                this.referenceValues[i] = sampleLine.getValue(i);
+            }
+            this.unchangedFrames = 0;
+        } else if (this.unchangedFrames < Integer.MAX_VALUE) {
+            this.unchangedFrames++;
+        }
+    }
+
+    private boolean isChanged(@NonNull SampleLine sampleLine) {
+        for (int i = 0; i < this.referenceValues.length; i++) {
+            if (abs(sampleLine.getValue(i) - this.referenceValues[i]) > this.noiseLevel)
+                return true;
+        }
+
+        return false;
+    }
+
+    public Mode getMode() {
+        if (!this.enabled)
+            return Mode.FULL;
+        if (this.hidden)
+            return Mode.HIDDEN;
+        if (this.unchangedFrames >= this.stableFrames)
+            return Mode.STABLE;
+
+        return Mode.FULL;
+    }
+
+    /**
+     * Delay to wait before grabbing the next frame, 0 for full rate.
+     */
+    public long getFrameDelayMillis() {
+        return switch (getMode()) {
+            case HIDDEN -> (long) (1000. / this.hiddenFps);
+            case STABLE -> (long) (1000. / this.stableFps);
+            case FULL -> 0L;
+        };
+    }
+}
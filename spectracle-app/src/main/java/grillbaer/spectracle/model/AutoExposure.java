@@ -0,0 +1,146 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.SampleLine;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+
+/**
+ * Closed-loop exposure control that drives the peak level of the raw sample strip towards a target level without
+ * any clipped bins.
+ * <p>
+ * Exposure values are expected to be log2 scaled like those of UVC cameras via DirectShow, i.e. increasing the
+ * exposure by one doubles the signal. This known relation lets the controller jump close to the target in one step
+ * instead of nudging. After each change some settling frames are skipped, because cameras deliver a few frames
+ * exposed with the previous setting.
+ */
+public final class AutoExposure {
+    public static final double DEFAULT_TARGET_PEAK_LEVEL = 0.85;
+    public static final double MIN_TARGET_PEAK_LEVEL = 0.05;
+    public static final double MAX_TARGET_PEAK_LEVEL = 0.95;
+
+    private static final int HISTOGRAM_BINS = 256;
+    /**
+     * Share of the highest bins to ignore when determining the peak level, makes it robust against single hot pixels.
+     */
+    private static final double PEAK_IGNORE_RATIO = 0.002;
+    /**
+     * Peak level above which exposure will be reduced even without clipping, to keep a safety margin.
+     */
+    private static final double MAX_PEAK_LEVEL = 0.97;
+
+    @Getter
+    private double targetPeakLevel = DEFAULT_TARGET_PEAK_LEVEL;
+    @Getter
+    private double exposureStep = 1.;
+    @Getter
+    private double minExposure = -15.;
+    @Getter
+    private double maxExposure = 10.;
+    @Getter
+    private int settleFrames = 2;
+
+    private final int[] histogram = new int[HISTOGRAM_BINS];
+    private int framesToSkip;
+
+    public void setTargetPeakLevel(double targetPeakLevel) {
+        if (!(targetPeakLevel >= MIN_TARGET_PEAK_LEVEL && targetPeakLevel <= MAX_TARGET_PEAK_LEVEL))
+            throw new IllegalArgumentException("target peak level must be between " + MIN_TARGET_PEAK_LEVEL
+                    + " and " + MAX_TARGET_PEAK_LEVEL + " but is " + targetPeakLevel);
+        this.targetPeakLevel = targetPeakLevel;
+    }
+
+    /**
+     * Set the range and resolution of exposure values the camera accepts.
+     */
+    public void setExposureRange(double minExposure, double maxExposure, double exposureStep) {
+        if (minExposure >= maxExposure || exposureStep <= 0.)
+            throw new IllegalArgumentException("invalid exposure range " + minExposure + " .. " + maxExposure
+                    + " with step " + exposureStep);
+        this.minExposure = minExposure;
+        this.maxExposure = maxExposure;
+        this.exposureStep = exposureStep;
+    }
+
+    public void setSettleFrames(int settleFrames) {
+        this.settleFrames = max(0, settleFrames);
+    }
+
+    /**
+     * Restart control, e.g. after the camera or its settings were changed from outside.
+     */
+    public void reset() {
+        this.framesToSkip = this.settleFrames;
+    }
+
+    /**
+     * Feed the raw sample line of the next frame into the control loop.
+     *
+     * @param rawSampleLine   sample line as sampled from the camera frame, without any processing
+     * @param currentExposure exposure with which the frame has been taken
+     * @return new exposure to set or <code>null</code> to keep the current one
+     */
+    public Double update(@NonNull SampleLine rawSampleLine, double currentExposure) {
+        if (this.framesToSkip > 0) {
+            this.framesToSkip--;
+            return null;
+        }
+
+        final var delta = calcExposureDelta(rawSampleLine);
+        final var newExposure = min(this.maxExposure, max(this.minExposure, currentExposure + delta));
+        if (abs(newExposure - currentExposure) < this.exposureStep / 2.)
+            return null;
+
+        this.framesToSkip = this.settleFrames;
+        return newExposure;
+    }
+
+    private double calcExposureDelta(SampleLine rawSampleLine) {
+        final var length = rawSampleLine.getLength();
+        if (length == 0)
+            return 0.;
+
+        final var overExposedCount = rawSampleLine.getStatistics().getOverExposedCount();
+        if (overExposedCount > 0) {
+            // true peak level is unknown when clipped, so reduce by steps depending on the clipped share
+            final var overExposedRatio = (double) overExposedCount / length;
+            final var steps = overExposedRatio < 0.01 ? 1 : overExposedRatio < 0.1 ? 2 : 3;
+            return -steps * this.exposureStep;
+        }
+
+        Arrays.fill(this.histogram, 0);
+        final var values = rawSampleLine.asReadOnlyBuffer();
+        while (values.hasRemaining()) {
+            this.histogram[min(HISTOGRAM_BINS - 1, max(0, (int) (values.get() * HISTOGRAM_BINS)))]++;
+        }
+        final var peakLevel = calcPeakLevel(length);
+        if (peakLevel <= 0.)
+            return 3 * this.exposureStep;
+
+        final var idealDelta = log(this.targetPeakLevel / peakLevel) / log(2.);
+        if (idealDelta >= this.exposureStep) {
+            // round down to not overshoot the target
+            return floor(idealDelta / this.exposureStep) * this.exposureStep;
+        }
+        if (peakLevel > MAX_PEAK_LEVEL) {
+            return -max(1., ceil(-idealDelta / this.exposureStep)) * this.exposureStep;
+        }
+
+        return 0.;
+    }
+
+    private double calcPeakLevel(int length) {
+        final var ignoreCount = max(1, (int) (length * PEAK_IGNORE_RATIO));
+        int count = 0;
+        for (int bin = HISTOGRAM_BINS - 1; bin >= 0; bin--) {
+            count += this.histogram[bin];
+            if (count >= ignoreCount)
+                return (bin + 1.) / HISTOGRAM_BINS;
+        }
+
+        return 0.;
+    }
+}
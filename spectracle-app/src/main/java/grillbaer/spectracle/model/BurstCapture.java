@@ -0,0 +1,254 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.camera.Camera;
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
+import grillbaer.spectracle.camera.RoiFrameBuffer;
+import grillbaer.spectracle.spectrum.CompactSampleLine;
+import grillbaer.spectracle.spectrum.CompactSampleLine.Storage;
+import grillbaer.spectracle.spectrum.HotPixelMap;
+import grillbaer.spectracle.spectrum.LinearizationLut;
+import grillbaer.spectracle.spectrum.SampleStrip;
+import grillbaer.spectracle.spectrum.Sampling;
+import grillbaer.spectracle.spectrum.Spectrum;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Burst capture of fast events: the camera is read at its maximum rate for a bounded duration and only the bytes of
+ * the sample strip are stored into a pre-allocated off-heap buffer, without any per-frame processing. After the burst
+ * all frames are run through the normal sampling and calculation stages in parallel on all cores.
+ * <p>
+ * The live pipeline of the model is paused during the burst, so capturing is not slowed down by it.
+ * Must be started from the AWT EventDispatchThread.
+ */
+public final class BurstCapture {
+    private static final Logger LOG = LoggerFactory.getLogger(BurstCapture.class);
+
+    public static final int DEFAULT_MAX_FRAMES = 500;
+    public static final Duration DEFAULT_MAX_DURATION = Duration.ofSeconds(5);
+
+    private final Model model;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "burst-capture");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Getter
+    private int maxFrames = DEFAULT_MAX_FRAMES;
+    @Getter
+    private Duration maxDuration = DEFAULT_MAX_DURATION;
+    @Getter
+    private boolean running;
+
+    /**
+     * Buffer kept for the next burst to avoid re-allocating it, only accessed from the burst thread.
+     */
+    private RoiFrameBuffer roiBuffer;
+    private final Frame burstFrame = new Frame();
+
+    public BurstCapture(@NonNull Model model) {
+        this.model = model;
+    }
+
+    public void setMaxFrames(int maxFrames) {
+        if (maxFrames < 1)
+            throw new IllegalArgumentException("max frames must be positive but is " + maxFrames);
+        this.maxFrames = maxFrames;
+    }
+
+    public void setMaxDuration(@NonNull Duration maxDuration) {
+        if (maxDuration.isNegative() || maxDuration.isZero())
+            throw new IllegalArgumentException("max duration must be positive but is " + maxDuration);
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Start a burst with the model's current camera and sampling settings.
+     *
+     * @return future for the processed result, completed on the AWT EventDispatchThread
+     */
+    public CompletableFuture<Result> start() {
+        final var camera = this.model.getCamera();
+        if (camera == null)
+            throw new IllegalStateException("no camera for burst capture");
+        if (this.running)
+            throw new IllegalStateException("burst capture already running");
+
+        final var settings = new ProcessingSettings(this.model.getSampleRowPosRatio(), this.model.getSampleRows(),
+                this.model.getWaveLengthCalibration(), this.model.getSensitivityCalibration(),
+                this.model.getSmoothIndexSteps(), this.model.getSavitzkyGolayWindow(),
+                this.model.getSavitzkyGolayOrder(), this.model.isNormalizeSampleValues(),
+                this.model.getLinearization(), this.model.getHotPixelMap());
+        final var frames = this.maxFrames;
+        final var durationNanos = this.maxDuration.toNanos();
+        final var wasPaused = this.model.isCameraPaused();
+
+        this.running = true;
+        this.model.setCameraPaused(true);
+
+        final var result = new CompletableFuture<Result>();
+        CompletableFuture.supplyAsync(() -> capture(camera, settings, frames, durationNanos), this.executor)
+                .thenApplyAsync(buffer -> process(buffer, settings), this.executor)
+                .whenComplete((processed, e) -> SwingUtilities.invokeLater(() -> {
+                    this.running = false;
+                    if (!wasPaused && this.model.getCamera() == camera) {
+                        this.model.setCameraPaused(false);
+                    }
+                    if (e != null) {
+                        LOG.error("Burst capture failed", e);
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(processed);
+                    }
+                }));
+
+        return result;
+    }
+
+    private CapturedBurst capture(@NonNull Camera camera, @NonNull ProcessingSettings settings,
+                                  int frames, long durationNanos) {
+        // the first frame determines the buffer layout and is not part of the burst
+        camera.grabNextFrame(this.burstFrame);
+        if (this.burstFrame.getPixelFormat() == PixelFormat.NONE)
+            throw new IllegalStateException("camera id=" + camera.getId() + " delivered no frame");
+
+        final var centerRow = (int) (this.burstFrame.getHeight() * settings.sampleRowPosRatio);
+        final var firstRow = centerRow - settings.sampleRows / 2;
+        if (this.roiBuffer == null
+                || !this.roiBuffer.isAllocatedFor(frames, this.burstFrame, firstRow, settings.sampleRows)) {
+            this.roiBuffer = null; // release old buffer before allocating the new one
+            this.roiBuffer = new RoiFrameBuffer(frames, this.burstFrame, firstRow, settings.sampleRows);
+        }
+        this.roiBuffer.clear();
+
+        final var startTime = Instant.now();
+        final var startNanos = System.nanoTime();
+        long nowNanos = startNanos;
+        int dropped = 0;
+        while (!this.roiBuffer.isFull() && nowNanos - startNanos < durationNanos) {
+            camera.grabNextFrame(this.burstFrame);
+            nowNanos = System.nanoTime();
+            if (!this.roiBuffer.add(this.burstFrame, nowNanos - startNanos)) {
+                dropped++;
+            }
+        }
+
+        final var captured = this.roiBuffer.getSize();
+        LOG.info("Burst captured {} frames in {} ms ({} fps), {} dropped", captured,
+                (nowNanos - startNanos) / 1_000_000, captured * 1e9 / Math.max(1L, nowNanos - startNanos), dropped);
+
+        final var hotPixelMap = settings.hotPixelMap != null
+                && settings.hotPixelMap.isFor(this.burstFrame.getWidth(), this.burstFrame.getHeight())
+                ? settings.hotPixelMap : null;
+        return new CapturedBurst(this.roiBuffer, startTime, centerRow - this.roiBuffer.getFirstRow(), hotPixelMap);
+    }
+
+    private static Result process(@NonNull CapturedBurst captured, @NonNull ProcessingSettings settings) {
+        final var startNanos = System.nanoTime();
+        final var buffer = captured.buffer;
+        final var samplingOptions = Sampling.Options.DEFAULT
+                .withYuyvLuma(buffer.getPixelFormat() == PixelFormat.YUYV)
+                .withLinearization(settings.linearization)
+                // the buffered strip is cropped from the frame the hot pixel map is for
+                .withHotPixelMap(captured.hotPixelMap)
+                .withHotPixelFirstRow(buffer.getFirstRow());
+        final var sampleLines = IntStream.range(0, buffer.getSize())
+                .parallel()
+                .mapToObj(i -> {
+                    final var mat = buffer.getMat(i);
+                    final var strips = List.of(new SampleStrip("", captured.centerRow, settings.sampleRows));
+                    final var raw = Sampling.sampleLinesFromMat(mat, strips, samplingOptions).get("");
+                    final var processed = Model.calcProcessedSpectrum(
+                            Spectrum.create(raw, settings.waveLengthCalibration),
+                            settings.sensitivityCalibration, settings.smoothIndexSteps,
+                            settings.savitzkyGolayWindow, settings.savitzkyGolayOrder,
+                            settings.normalizeSampleValues);
+                    return CompactSampleLine.of(processed.getSampleLine(), Storage.FIXED_16);
+                })
+                .collect(Collectors.toList());
+
+        final var offsets = new long[buffer.getSize()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = buffer.getTimestampNanos(i);
+        }
+        LOG.info("Burst processed {} frames in {} ms", sampleLines.size(), (System.nanoTime() - startNanos) / 1_000_000);
+
+        return new Result(captured.startTime, offsets, sampleLines, settings.waveLengthCalibration);
+    }
+
+    @AllArgsConstructor
+    private static final class ProcessingSettings {
+        private final double sampleRowPosRatio;
+        private final int sampleRows;
+        private final WaveLengthCalibration waveLengthCalibration;
+        private final Spectrum sensitivityCalibration;
+        private final double smoothIndexSteps;
+        private final int savitzkyGolayWindow;
+        private final int savitzkyGolayOrder;
+        private final boolean normalizeSampleValues;
+        private final LinearizationLut linearization;
+        private final HotPixelMap hotPixelMap;
+    }
+
+    @AllArgsConstructor
+    private static final class CapturedBurst {
+        private final RoiFrameBuffer buffer;
+        private final Instant startTime;
+        /**
+         * Center row of the sample strip relative to the buffered strip.
+         */
+        private final int centerRow;
+        /**
+         * Hot pixel map fitting the captured frames, <code>null</code> if none.
+         */
+        private final HotPixelMap hotPixelMap;
+    }
+
+    /**
+     * Processed spectra of a burst.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Result {
+        private final @NonNull Instant startTime;
+        /**
+         * Time of each frame in nanoseconds after the start.
+         */
+        private final @NonNull long[] frameOffsetNanos;
+        /**
+         * Processed sample lines, stored compactly because bursts can be long.
+         */
+        @Getter(AccessLevel.NONE)
+        private final @NonNull List<CompactSampleLine> sampleLines;
+        private final @NonNull WaveLengthCalibration calibration;
+
+        public int getFrameCount() {
+            return this.sampleLines.size();
+        }
+
+        public Spectrum getSpectrum(int index) {
+            return Spectrum.create(this.sampleLines.get(index), this.calibration);
+        }
+
+        public Instant getFrameTime(int index) {
+            return this.startTime.plusNanos(this.frameOffsetNanos[index]);
+        }
+    }
+}
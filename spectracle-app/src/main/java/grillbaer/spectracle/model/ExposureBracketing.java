@@ -0,0 +1,120 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.Calculations;
+import grillbaer.spectracle.spectrum.SampleLine;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Exposure bracketing for high dynamic range spectra. The exposure is cycled through a set of values around a base
+ * exposure and the raw sample lines of all exposures are fused per bin.
+ * <p>
+ * Switching is pipelined: the next exposure is requested as soon as a usable frame arrived, without waiting for the
+ * camera. Frames that were grabbed with an unexpected or not yet settled exposure are simply discarded. The fused
+ * line is updated with every usable frame from the latest sample of each exposure.
+ */
+public final class ExposureBracketing {
+    public static final double[] DEFAULT_EXPOSURE_OFFSETS = {-3., 0., 3.};
+
+    private static final double MIN_EXPOSURE = -15.;
+    private static final double MAX_EXPOSURE = 10.;
+
+    @Getter
+    private double[] exposureOffsets = DEFAULT_EXPOSURE_OFFSETS.clone();
+    @Getter
+    private int settleFrames = 2;
+
+    private double[] exposures;
+    private double[][] values;
+    private boolean[][] overExposed;
+    private boolean[] sampled;
+    private int index;
+
+    /**
+     * Set the exposure offsets relative to the base exposure, takes effect on next {@link #start(double)}.
+     */
+    public void setExposureOffsets(@NonNull double[] exposureOffsets) {
+        if (exposureOffsets.length < 2)
+            throw new IllegalArgumentException("at least two exposure offsets required but got "
+                    + exposureOffsets.length);
+        this.exposureOffsets = exposureOffsets.clone();
+    }
+
+    /**
+     * Set the number of frames to discard after each exposure change.
+     */
+    public void setSettleFrames(int settleFrames) {
+        this.settleFrames = max(0, settleFrames);
+    }
+
+    /**
+     * (Re-)start bracketing around the passed base exposure, discarding all samples collected so far.
+     */
+    public void start(double baseExposure) {
+        this.exposures = Arrays.stream(this.exposureOffsets)
+                .map(offset -> min(MAX_EXPOSURE, max(MIN_EXPOSURE, baseExposure + offset)))
+                .distinct()
+                .toArray();
+        this.values = null;
+        this.overExposed = null;
+        this.sampled = new boolean[this.exposures.length];
+        this.index = 0;
+    }
+
+    public boolean isStarted() {
+        return this.exposures != null;
+    }
+
+    /**
+     * Exposure the camera should be set to for the next usable frame.
+     */
+    public double getRequestedExposure() {
+        if (!isStarted())
+            throw new IllegalStateException("bracketing not started");
+
+        return this.exposures[this.index];
+    }
+
+    /**
+     * Offer the raw sample line of a newly grabbed frame.
+     *
+     * @param rawSampleLine             raw sample line of the frame
+     * @param frameExposure             exposure the frame has been grabbed with, <code>null</code> if unknown
+     * @param framesSinceExposureChange number of frames grabbed since the camera's exposure was changed
+     * @return the updated fused sample line, <code>null</code> if the frame was discarded or not all exposures have
+     * been sampled yet
+     */
+    public SampleLine offer(@NonNull SampleLine rawSampleLine, Double frameExposure, int framesSinceExposureChange) {
+        if (!isStarted() || frameExposure == null || frameExposure != getRequestedExposure()
+                || framesSinceExposureChange < this.settleFrames)
+            return null;
+
+        final var length = rawSampleLine.getLength();
+        if (this.values == null || this.values[0].length != length) {
+            this.values = new double[this.exposures.length][length];
+            this.overExposed = new boolean[this.exposures.length][length];
+            Arrays.fill(this.sampled, false);
+        }
+
+        final var targetValues = this.values[this.index];
+        final var targetOverExposed = this.overExposed[this.index];
+        for (int i = 0; i < length; i++) {
+            targetValues[i] = rawSampleLine.getValue(i);
+            targetOverExposed[i] = rawSampleLine.isOverExposed(i);
+        }
+        this.sampled[this.index] = true;
+        this.index = (this.index + 1) % this.exposures.length;
+
+        for (var isSampled : this.sampled) {
+            if (!isSampled)
+                return null;
+        }
+
+        return Calculations.fuseExposures(this.values, this.overExposed, this.exposures);
+    }
+}
@@ -0,0 +1,186 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
+import grillbaer.spectracle.spectrum.HotPixelMap;
+import lombok.Getter;
+import lombok.NonNull;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Detects hot and stuck pixels from a series of dark frames, taken with all light blocked.
+ * <p>
+ * Per pixel, the temporal mean and standard deviation over all frames are accumulated. Pixels whose mean stands out
+ * from the sensor's typical dark level are hot or stuck, pixels whose deviation stands out flicker. Typical level and
+ * spread are estimated robustly by median and median absolute deviation, so the defects themselves do not distort
+ * them. The brightest channel of each pixel counts, because a defect often affects only one color.
+ * <p>
+ * The native memory of the accumulated frames is released after detection, or by {@link #release()} when
+ * abandoning a detection.
+ */
+public final class HotPixelDetector {
+    public static final int DEFAULT_FRAMES = 30;
+
+    /**
+     * Robust standard deviations above the typical value to treat a pixel as defective.
+     */
+    private static final double DEFECT_SIGMAS = 8.;
+    /**
+     * Minimum excess of the mean over the typical value in 8 bit steps, avoids flagging plain noise on very clean
+     * sensors.
+     */
+    private static final double MIN_MEAN_EXCESS = 10.;
+    /**
+     * Minimum excess of the standard deviation over the typical value in 8 bit steps.
+     */
+    private static final double MIN_DEVIATION_EXCESS = 4.;
+    /**
+     * Maximum number of pixels to take the robust statistics from.
+     */
+    private static final int MAX_STATISTICS_SAMPLES = 100_000;
+
+    @Getter
+    private final int frames;
+    @Getter
+    private int offeredFrames;
+
+    private Mat channelMax;
+    private Mat floatMat;
+    private Mat sum;
+    private Mat sumOfSquares;
+
+    public HotPixelDetector() {
+        this(DEFAULT_FRAMES);
+    }
+
+    public HotPixelDetector(int frames) {
+        if (frames < 2)
+            throw new IllegalArgumentException("at least 2 frames needed but got " + frames);
+        this.frames = frames;
+    }
+
+    /**
+     * Offer the next dark frame.
+     *
+     * @return the detected map after the last frame, <code>null</code> before
+     */
+    public HotPixelMap offer(@NonNull Frame frame) {
+        if (frame.getPixelFormat() == PixelFormat.NONE || this.offeredFrames >= this.frames)
+            return null;
+
+        final var mat = frame.getMat();
+        if (this.sum != null && (this.sum.cols() != mat.cols() || this.sum.rows() != mat.rows())) {
+            // frame size changed, start over
+            release();
+            this.offeredFrames = 0;
+        }
+
+        if (this.channelMax == null) {
+            this.channelMax = new Mat();
+            this.floatMat = new Mat();
+        }
+        toChannelMax(mat, frame.getPixelFormat());
+        this.channelMax.convertTo(this.floatMat, CvType.CV_32F);
+        if (this.sum == null) {
+            this.sum = Mat.zeros(mat.rows(), mat.cols(), CvType.CV_32F);
+            this.sumOfSquares = Mat.zeros(mat.rows(), mat.cols(), CvType.CV_32F);
+        }
+        Imgproc.accumulate(this.floatMat, this.sum);
+        Imgproc.accumulateSquare(this.floatMat, this.sumOfSquares);
+        this.offeredFrames++;
+
+        return this.offeredFrames == this.frames ? detect() : null;
+    }
+
+    private void toChannelMax(@NonNull Mat mat, @NonNull PixelFormat pixelFormat) {
+        if (pixelFormat == PixelFormat.YUYV) {
+            Core.extractChannel(mat, this.channelMax, 0); // luma
+        } else if (mat.channels() == 1) {
+            mat.copyTo(this.channelMax);
+        } else {
+            final var channels = new ArrayList<Mat>(mat.channels());
+            try {
+                Core.split(mat, channels);
+                channels.get(0).copyTo(this.channelMax);
+                for (int c = 1; c < channels.size(); c++) {
+                    Core.max(this.channelMax, channels.get(c), this.channelMax);
+                }
+            } finally {
+                channels.forEach(Mat::release);
+            }
+        }
+    }
+
+    private HotPixelMap detect() {
+        final var width = this.sum.cols();
+        final var height = this.sum.rows();
+        final var sums = new float[width * height];
+        final var squares = new float[width * height];
+        try {
+            this.sum.get(0, 0, sums);
+            this.sumOfSquares.get(0, 0, squares);
+        } finally {
+            release();
+        }
+
+        final var means = new double[sums.length];
+        final var deviations = new double[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            means[i] = sums[i] / this.frames;
+            deviations[i] = sqrt(max(0., squares[i] / this.frames - means[i] * means[i]));
+        }
+
+        final var meanLimit = calcLimit(means, MIN_MEAN_EXCESS);
+        final var deviationLimit = calcLimit(deviations, MIN_DEVIATION_EXCESS);
+        final var defects = new BitSet(sums.length);
+        for (int i = 0; i < sums.length; i++) {
+            if (means[i] > meanLimit || deviations[i] > deviationLimit) {
+                defects.set(i);
+            }
+        }
+
+        return new HotPixelMap(width, height, defects);
+    }
+
+    /**
+     * Release the native memory of all intermediate mats, e.g. when abandoning a detection.
+     */
+    public void release() {
+        for (var mat : new Mat[]{this.channelMax, this.floatMat, this.sum, this.sumOfSquares}) {
+            if (mat != null) {
+                mat.release();
+            }
+        }
+        this.channelMax = null;
+        this.floatMat = null;
+        this.sum = null;
+        this.sumOfSquares = null;
+    }
+
+    private static double calcLimit(@NonNull double[] values, double minExcess) {
+        final var step = max(1, values.length / MAX_STATISTICS_SAMPLES);
+        final var samples = new double[(values.length + step - 1) / step];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = values[i * step];
+        }
+        Arrays.sort(samples);
+        final var median = samples[samples.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Math.abs(samples[i] - median);
+        }
+        Arrays.sort(samples);
+        final var sigma = 1.4826 * samples[samples.length / 2];
+
+        return median + max(DEFECT_SIGMAS * sigma, minExcess);
+    }
+}
@@ -0,0 +1,447 @@
+package grillbaer.spectracle.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration;
+import javafx.stage.FileChooser;
+import lombok.Getter;
+import lombok.NonNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Push-broom line scan: every row of a frame is the spectrum of another point along the slit, so each frame is
+ * one line of a hyperspectral image while the scene moves across the slit.
+ * <p>
+ * Each group of binned rows of a frame becomes one spectrum. The row groups are processed in parallel with
+ * fork/join and written directly into a memory-mapped cube file of 32 bit little-endian floats in the order
+ * line (frame) × row group × wavelength (column). A JSON sidecar file describes the cube's dimensions, wavelengths
+ * and frame times.
+ * <p>
+ * Must be started, fed and stopped from the AWT EventDispatchThread. Each frame is copied and processed in the
+ * recorder's own pool off the EventDispatchThread, so a few lines may be in progress at the same time. The pool leaves
+ * a core for grabbing. The model grabs at full rate
+ * while recording, because the adaptive rate would lose lines.
+ */
+public final class LineScanRecorder {
+    private static final Logger LOG = LoggerFactory.getLogger(LineScanRecorder.class);
+
+    public static final FileChooser.ExtensionFilter EXTENSION_FILTER_CUBE =
+            new FileChooser.ExtensionFilter("Raw 32 Bit Float Spectral Cube", "*.f32");
+    public static final String SIDECAR_EXTENSION = ".json";
+    /**
+     * Maximum bytes per mapped region of the cube file, the file grows region by region.
+     */
+    private static final long MAX_REGION_BYTES = 256L * 1024L * 1024L;
+    /**
+     * Minimum pixel rows per fork/join task, smaller tasks would cost more than they gain.
+     */
+    private static final int MIN_ROWS_PER_TASK = 16;
+    /**
+     * Maximum lines in progress, further frames are dropped to limit the memory of the frame copies.
+     */
+    private static final int MAX_PENDING_LINES = 4;
+
+    private final Model model;
+    private final ForkJoinPool pool;
+    private final Observer<Frame> frameObserver = this::offer;
+
+    @Getter
+    private int rowBinning = 1;
+    @Getter
+    private int maxLines = 10_000;
+
+    private Path cubeFile;
+    private int scanRowBinning;
+    private int scanMaxLines;
+    private FileChannel channel;
+    private FloatBuffer region;
+    private long regionFirstLine;
+    private int regionLines;
+    private WaveLengthCalibration calibration;
+    private PixelFormat pixelFormat;
+    private int width;
+    private int height;
+    private int groups;
+    private Instant startTime;
+    private long startNanos;
+    private final List<Double> lineTimesMillis = new ArrayList<>();
+    private final List<LineTask> pendingLines = new ArrayList<>();
+    @Getter
+    private int lines;
+    private int droppedFrames;
+
+    @Getter
+    private final Observers<Boolean> runningObservers = new Observers<>();
+
+    public LineScanRecorder(@NonNull Model model) {
+        this(model, new ForkJoinPool(max(1, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    public LineScanRecorder(@NonNull Model model, @NonNull ForkJoinPool pool) {
+        this.model = model;
+        this.pool = pool;
+    }
+
+    /**
+     * Set the number of adjacent pixel rows to average into one spectrum, takes effect on next start.
+     */
+    public void setRowBinning(int rowBinning) {
+        this.rowBinning = max(1, rowBinning);
+    }
+
+    /**
+     * Set the number of lines after which recording stops automatically, takes effect on next start.
+     */
+    public void setMaxLines(int maxLines) {
+        this.maxLines = max(1, maxLines);
+    }
+
+    public boolean isRunning() {
+        return this.channel != null;
+    }
+
+    /**
+     * Start recording the frames grabbed by the model into the cube file. The dimensions are taken from the first
+     * frame.
+     */
+    public void start(@NonNull Path cubeFile) throws IOException {
+        if (isRunning())
+            throw new IllegalStateException("line scan already running");
+
+        this.channel = FileChannel.open(cubeFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cubeFile = cubeFile;
+        this.scanRowBinning = this.rowBinning;
+        this.scanMaxLines = this.maxLines;
+        this.calibration = this.model.getWaveLengthCalibration();
+        this.pixelFormat = null;
+        this.region = null;
+        this.lines = 0;
+        this.droppedFrames = 0;
+        this.lineTimesMillis.clear();
+        this.startTime = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.model.getFrameGrabbedObservers().add(this.frameObserver);
+        this.model.setFullRateRequired(true);
+        LOG.info("Line scan started to {} with row binning {}", cubeFile, this.scanRowBinning);
+        this.runningObservers.fire(true);
+    }
+
+    /**
+     * Stop recording, trim the cube file and write its sidecar file.
+     */
+    public void stop() {
+        if (!isRunning())
+            return;
+
+        this.model.getFrameGrabbedObservers().remove(this.frameObserver);
+        this.model.setFullRateRequired(false);
+        awaitPendingLines();
+        try {
+            this.region = null;
+            try {
+                this.channel.truncate((long) this.lines * getLineBytes());
+            } catch (IOException e) {
+                // fails on some platforms while regions are still mapped, the sidecar tells the valid size anyway
+                LOG.debug("Trimming line scan cube {} failed", this.cubeFile, e);
+            }
+            this.channel.close();
+            if (this.pixelFormat != null) {
+                writeSidecar();
+            }
+            LOG.info("Line scan stopped after {} lines of {} x {} to {}, {} frames dropped", this.lines, this.groups,
+                    this.width, this.cubeFile, this.droppedFrames);
+        } catch (IOException e) {
+            LOG.error("Finishing line scan cube {} failed", this.cubeFile, e);
+        } finally {
+            this.channel = null;
+            this.runningObservers.fire(false);
+        }
+    }
+
+    private void offer(Frame frame) {
+        if (frame != null && frame.getPixelFormat() != PixelFormat.NONE) {
+            offer(frame.getMat(), frame.getPixelFormat());
+        }
+    }
+
+    /**
+     * Record a frame's pixel matrix as the next line.
+     */
+    void offer(@NonNull Mat mat, @NonNull PixelFormat framePixelFormat) {
+        if (!isRunning())
+            return;
+
+        if (this.pixelFormat == null) {
+            if (CvType.depth(mat.type()) != CvType.CV_8U) {
+                LOG.error("Line scan needs 8 bit frames but got type {}", CvType.typeToString(mat.type()));
+                stop();
+                return;
+            }
+            this.pixelFormat = framePixelFormat;
+            this.width = mat.cols();
+            this.height = mat.rows();
+            this.groups = this.height / this.scanRowBinning;
+            if (this.groups == 0) {
+                LOG.error("Line scan row binning {} exceeds frame height {}", this.scanRowBinning, this.height);
+                this.pixelFormat = null;
+                stop();
+                return;
+            }
+        } else if (framePixelFormat != this.pixelFormat || mat.cols() != this.width
+                || mat.rows() != this.height) {
+            LOG.warn("Line scan stopped on frame layout change");
+            stop();
+            return;
+        }
+
+        if (this.pendingLines.size() >= MAX_PENDING_LINES) {
+            this.droppedFrames++;
+            return;
+        }
+
+        final FloatBuffer target;
+        try {
+            target = regionForLine(this.lines);
+        } catch (IOException e) {
+            LOG.error("Writing line scan cube {} failed", this.cubeFile, e);
+            stop();
+            return;
+        }
+
+        // the frame's mat is overwritten by a later grab
+        final var line = new LineTask(new RowGroupTask(mat.clone(), this.pixelFormat == PixelFormat.YUYV,
+                this.width, this.scanRowBinning, target,
+                (int) ((this.lines - this.regionFirstLine) * this.groups * this.width),
+                0, this.groups, max(1, MIN_ROWS_PER_TASK / this.scanRowBinning)));
+        this.pendingLines.add(line);
+        this.pool.submit(line);
+
+        this.lineTimesMillis.add((System.nanoTime() - this.startNanos) / 1e6);
+        this.lines++;
+        if (this.lines >= this.scanMaxLines) {
+            stop();
+        }
+    }
+
+    private void lineWritten(@NonNull LineTask line, Throwable failure) {
+        if (!this.pendingLines.remove(line))
+            return; // already awaited by stop
+
+        if (failure != null) {
+            LOG.error("Writing line scan cube {} failed", this.cubeFile, failure);
+            stop();
+        }
+    }
+
+    /**
+     * Wait for the lines in progress, so the cube is complete before it is closed.
+     */
+    private void awaitPendingLines() {
+        for (LineTask line : this.pendingLines) {
+            line.join();
+            if (line.failure != null) {
+                LOG.error("Writing line scan cube {} failed", this.cubeFile, line.failure);
+            }
+        }
+        this.pendingLines.clear();
+    }
+
+    private long getLineBytes() {
+        return (long) this.groups * this.width * Float.BYTES;
+    }
+
+    private FloatBuffer regionForLine(int line) throws IOException {
+        if (this.region == null || line >= this.regionFirstLine + this.regionLines) {
+            final var lineBytes = getLineBytes();
+            if (lineBytes > MAX_REGION_BYTES)
+                throw new IOException("line of " + lineBytes + " bytes too large");
+
+            this.regionLines = (int) min(this.scanMaxLines - line, MAX_REGION_BYTES / lineBytes);
+            this.regionFirstLine = line;
+            final MappedByteBuffer mapped = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                    line * lineBytes, this.regionLines * lineBytes);
+            this.region = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
+        return this.region;
+    }
+
+    private void writeSidecar() throws IOException {
+        final var header = new CubeHeader();
+        header.dataFile = this.cubeFile.getFileName().toString();
+        header.lines = this.lines;
+        header.rows = this.groups;
+        header.bands = this.width;
+        header.rowBinning = this.scanRowBinning;
+        header.pixelFormat = this.pixelFormat.name();
+        header.startTime = this.startTime.toString();
+        header.lineTimesMillis = this.lineTimesMillis;
+        header.nanoMeters = new double[this.width];
+        for (int i = 0; i < this.width; i++) {
+            header.nanoMeters[i] = this.calibration.indexToNanoMeters(this.width, i);
+        }
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(sidecarFile(this.cubeFile).toFile(), header);
+    }
+
+    public static Path sidecarFile(@NonNull Path cubeFile) {
+        return cubeFile.resolveSibling(cubeFile.getFileName() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Writes one line into the cube, then releases the frame copy and reports back on the EventDispatchThread.
+     */
+    private final class LineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowGroupTask rowGroups;
+        private volatile Throwable failure;
+
+        private LineTask(@NonNull RowGroupTask rowGroups) {
+            this.rowGroups = rowGroups;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                this.rowGroups.invoke();
+            } catch (RuntimeException e) {
+                this.failure = e;
+            } finally {
+                this.rowGroups.mat.release();
+            }
+            SwingUtilities.invokeLater(() -> lineWritten(this, this.failure));
+        }
+    }
+
+    /**
+     * Averages the rows of a range of row groups into spectra and writes them into the cube.
+     * All dimensions are copied in, so changed settings do not affect a running scan.
+     */
+    private static final class RowGroupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Mat mat;
+        private final boolean lumaOnly;
+        private final int cols;
+        private final int rowBinning;
+        private final FloatBuffer target;
+        private final int targetOffset;
+        private final int fromGroup;
+        private final int toGroup;
+        private final int groupsPerTask;
+
+        private RowGroupTask(Mat mat, boolean lumaOnly, int cols, int rowBinning, FloatBuffer target,
+                             int targetOffset, int fromGroup, int toGroup, int groupsPerTask) {
+            this.mat = mat;
+            this.lumaOnly = lumaOnly;
+            this.cols = cols;
+            this.rowBinning = rowBinning;
+            this.target = target;
+            this.targetOffset = targetOffset;
+            this.fromGroup = fromGroup;
+            this.toGroup = toGroup;
+            this.groupsPerTask = groupsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toGroup - this.fromGroup <= this.groupsPerTask) {
+                computeDirectly();
+            } else {
+                final var middle = (this.fromGroup + this.toGroup) >>> 1;
+                invokeAll(new RowGroupTask(this.mat, this.lumaOnly, this.cols, this.rowBinning, this.target,
+                                this.targetOffset, this.fromGroup, middle, this.groupsPerTask),
+                        new RowGroupTask(this.mat, this.lumaOnly, this.cols, this.rowBinning, this.target,
+                                this.targetOffset, middle, this.toGroup, this.groupsPerTask));
+            }
+        }
+
+        private void computeDirectly() {
+            final var cols = this.cols;
+            final var channels = this.mat.channels();
+            // YUYV: only the first byte of each pixel, the luma, counts
+            final var valueChannels = this.lumaOnly ? 1 : channels;
+            final var rowBytes = new byte[cols * channels];
+            final var sums = new int[cols];
+            final var scale = 1f / (255f * valueChannels * this.rowBinning);
+
+            for (int group = this.fromGroup; group < this.toGroup; group++) {
+                Arrays.fill(sums, 0);
+                for (int row = group * this.rowBinning; row < (group + 1) * this.rowBinning; row++) {
+                    this.mat.get(row, 0, rowBytes);
+                    for (int col = 0; col < cols; col++) {
+                        final var pixel = col * channels;
+                        var sum = 0;
+                        for (int c = 0; c < valueChannels; c++) {
+                            sum += rowBytes[pixel + c] & 0xff;
+                        }
+                        sums[col] += sum;
+                    }
+                }
+
+                // absolute puts on disjoint positions, safe for parallel tasks
+                final var base = this.targetOffset + group * cols;
+                for (int col = 0; col < cols; col++) {
+                    this.target.put(base + col, sums[col] * scale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Content of the sidecar file describing a cube file.
+     */
+    private static final class CubeHeader {
+        @JsonProperty("dataFile")
+        private String dataFile;
+        @JsonProperty("dataType")
+        private final String dataType = "float32";
+        @JsonProperty("byteOrder")
+        private final String byteOrder = "little-endian";
+        @JsonProperty("axes")
+        private final List<String> axes = List.of("line", "row", "band");
+        @JsonProperty("lines")
+        private int lines;
+        @JsonProperty("rows")
+        private int rows;
+        @JsonProperty("bands")
+        private int bands;
+        @JsonProperty("rowBinning")
+        private int rowBinning;
+        @JsonProperty("pixelFormat")
+        private String pixelFormat;
+        @JsonProperty("startTime")
+        private String startTime;
+        @JsonProperty("nanoMeters")
+        private double[] nanoMeters;
+        @JsonProperty("lineTimesMillis")
+        private List<Double> lineTimesMillis;
+    }
+}
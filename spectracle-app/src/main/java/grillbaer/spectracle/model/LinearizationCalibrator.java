@@ -0,0 +1,90 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.LinearizationLut;
+import grillbaer.spectracle.spectrum.SampleLine;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Derives a {@link LinearizationLut} for a camera from an exposure series of a steady scene. The exposure is stepped
+ * through a set of values around a base exposure, one unlinearized sample line is collected per exposure.
+ * <p>
+ * Like with {@link ExposureBracketing}, frames grabbed with an unexpected or not yet settled exposure are discarded.
+ * The scene should cover a wide range of intensities, e.g. a continuous spectrum with its dim edges.
+ */
+public final class LinearizationCalibrator {
+    public static final double[] DEFAULT_EXPOSURE_OFFSETS = {-2., -1., 0., 1., 2.};
+
+    private static final double MIN_EXPOSURE = -15.;
+    private static final double MAX_EXPOSURE = 10.;
+
+    @Getter
+    private final double baseExposure;
+    @Getter
+    private final int settleFrames;
+    private final double[] exposures;
+    private final double[][] values;
+    private int index;
+
+    public LinearizationCalibrator(double baseExposure) {
+        this(baseExposure, DEFAULT_EXPOSURE_OFFSETS, 2);
+    }
+
+    public LinearizationCalibrator(double baseExposure, @NonNull double[] exposureOffsets, int settleFrames) {
+        this.baseExposure = baseExposure;
+        this.settleFrames = max(0, settleFrames);
+        this.exposures = Arrays.stream(exposureOffsets)
+                .map(offset -> min(MAX_EXPOSURE, max(MIN_EXPOSURE, baseExposure + offset)))
+                .distinct()
+                .toArray();
+        if (this.exposures.length < 2)
+            throw new IllegalArgumentException("at least two distinct exposures required but got "
+                    + this.exposures.length);
+        this.values = new double[this.exposures.length][];
+    }
+
+    /**
+     * Exposure the camera should be set to for the next usable frame.
+     */
+    public double getRequestedExposure() {
+        return this.exposures[min(this.index, this.exposures.length - 1)];
+    }
+
+    public boolean isFinished() {
+        return this.index >= this.exposures.length;
+    }
+
+    /**
+     * Offer the unlinearized sample line of a newly grabbed frame.
+     *
+     * @param rawSampleLine             sample line of the frame, taken without linearization
+     * @param frameExposure             exposure the frame has been grabbed with, <code>null</code> if unknown
+     * @param framesSinceExposureChange number of frames grabbed since the camera's exposure was changed
+     * @return the fitted lookup table after the last exposure, <code>null</code> before
+     * @throws IllegalArgumentException if the collected lines do not allow a fit
+     */
+    public LinearizationLut offer(@NonNull SampleLine rawSampleLine, Double frameExposure,
+                                  int framesSinceExposureChange) {
+        if (isFinished() || frameExposure == null || frameExposure != getRequestedExposure()
+                || framesSinceExposureChange < this.settleFrames)
+            return null;
+
+        final var lineValues = new double[rawSampleLine.getLength()];
+        for (int i = 0; i < lineValues.length; i++) {
+            // clipped values must not be fitted
+            lineValues[i] = rawSampleLine.isOverExposed(i) ? 1. : rawSampleLine.getValue(i);
+        }
+        if (this.index > 0 && this.values[0].length != lineValues.length) {
+            // frame size changed, start over
+            this.index = 0;
+        }
+        this.values[this.index++] = lineValues;
+
+        return isFinished() ? LinearizationLut.fitExposureSeries(this.values, this.exposures) : null;
+    }
+}
@@ -3,6 +3,7 @@ package grillbaer.spectracle.model;
 import grillbaer.spectracle.camera.Camera;
 import grillbaer.spectracle.camera.CameraProps;
 import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
 import grillbaer.spectracle.model.Settings.SensitivityCalibration;
 import grillbaer.spectracle.spectrum.*;
 import grillbaer.spectracle.spectrum.Calculations.Extrema;
@@ -14,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
@@ -26,6 +28,38 @@ import java.util.concurrent.CompletableFuture;
 public final class Model {
     private final static Logger LOG = LoggerFactory.getLogger(Model.class);
 
+    public static final String SAMPLE_STRIP = "sample";
+    public static final String REFERENCE_STRIP = "reference";
+
+    /**
+     * What the spectrum shows.
+     */
+    public enum MeasurementMode {
+        /**
+         * Light intensity of the sample strip.
+         */
+        INTENSITY("Intensity"),
+        /**
+         * Dark corrected ratio between sample and reference strip.
+         */
+        TRANSMITTANCE("Transmittance"),
+        /**
+         * Negative decadic logarithm of the transmittance.
+         */
+        ABSORBANCE("Absorbance");
+
+        private final String displayName;
+
+        MeasurementMode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return this.displayName;
+        }
+    }
+
     private Camera camera;
     private final Observers<Camera> cameraObservers = new Observers<>();
 
@@ -36,11 +70,33 @@ public final class Model {
     private Frame grabbingFrame = new Frame();
     private Frame currentFrame = new Frame();
     private final Observers<Frame> frameGrabbedObservers = new Observers<>();
+    private final PreviewGenerator previewGenerator = new PreviewGenerator();
+    private final AcquisitionRateGovernor rateGovernor = new AcquisitionRateGovernor();
+    private boolean fullRateRequired;
+    @Getter(AccessLevel.NONE)
+    private boolean grabbing;
+    @Getter(AccessLevel.NONE)
+    private Timer delayedFrameTimer;
 
     @Getter(AccessLevel.NONE)
     private final Map<Integer, CameraProps> cameraPropsByCameraId = new TreeMap<>();
     private final Observers<CameraProps> cameraPropsObservers = new Observers<>();
 
+    private final AutoExposure autoExposure = new AutoExposure();
+    private boolean autoExposureEnabled;
+    private final Observers<Boolean> autoExposureEnabledObservers = new Observers<>();
+
+    private final ExposureBracketing exposureBracketing = new ExposureBracketing();
+    private boolean hdrBracketingEnabled;
+    private final Observers<Boolean> hdrBracketingEnabledObservers = new Observers<>();
+
+    private final TransientTrigger transientTrigger = new TransientTrigger();
+
+    @Getter(AccessLevel.NONE)
+    private final DriftAlignedStacker stacker = new DriftAlignedStacker();
+    private boolean stacking;
+    private final Observers<Boolean> stackingObservers = new Observers<>();
+
     @Getter(AccessLevel.NONE)
     private final Map<Integer, WaveLengthCalibration> waveLengthCalibrationByCameraId = new TreeMap<>();
     private final Observers<WaveLengthCalibration> waveLengthCalibrationObservers = new Observers<>();
@@ -48,15 +104,99 @@ public final class Model {
     @Getter(AccessLevel.NONE)
     private final Map<Integer, Spectrum> sensitivityCalibrationByCameraId = new TreeMap<>();
 
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, HotPixelMap> hotPixelMapByCameraId = new TreeMap<>();
+    private final Observers<HotPixelMap> hotPixelMapObservers = new Observers<>();
+    /**
+     * Detector collecting dark frames, <code>null</code> unless detecting.
+     */
+    @Getter(AccessLevel.NONE)
+    private HotPixelDetector hotPixelDetector;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, LinearizationLut> linearizationByCameraId = new TreeMap<>();
+    private final Observers<LinearizationLut> linearizationObservers = new Observers<>();
+    /**
+     * Calibrator stepping through an exposure series, <code>null</code> unless calibrating.
+     */
+    @Getter(AccessLevel.NONE)
+    private LinearizationCalibrator linearizationCalibrator;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, LineSpreadFunction> lineSpreadFunctionByCameraId = new TreeMap<>();
+    private final Observers<LineSpreadFunction> lineSpreadFunctionObservers = new Observers<>();
+
     private double sampleRowPosRatio = 0.5;
+    private final Observers<Double> sampleRowPosRatioObservers = new Observers<>();
     private int sampleRows = 10;
+    private final Observers<Integer> sampleRowsObservers = new Observers<>();
+    private final SampleStripTracker sampleStripTracker = new SampleStripTracker();
+    private boolean sampleStripTracking;
+    private final Observers<Boolean> sampleStripTrackingObservers = new Observers<>();
+
+    /**
+     * Center row of the reference strip as ratio of the frame height, <code>null</code> if there is none.
+     */
+    private Double referenceRowPosRatio;
+    private final Observers<Double> referenceRowPosRatioObservers = new Observers<>();
+    private MeasurementMode measurementMode = MeasurementMode.INTENSITY;
+    private final Observers<MeasurementMode> measurementModeObservers = new Observers<>();
+    /**
+     * Sample lines by strip name taken without light, <code>null</code> if none have been captured.
+     */
+    @Getter(AccessLevel.NONE)
+    private Map<String, SampleLine> darkLines;
+    @Getter(AccessLevel.NONE)
+    private boolean darkCapturePending;
+    private final Observers<Boolean> darkCorrectedObservers = new Observers<>();
     private double timeAveragingFactor = 0.;
     private boolean peakHold;
+    /**
+     * Time averaging by an adaptive per-bin filter, following real changes immediately.
+     */
+    private boolean adaptiveTimeAveraging;
+    private final Observers<Boolean> adaptiveTimeAveragingObservers = new Observers<>();
+    @Getter(AccessLevel.NONE)
+    private final AdaptiveTemporalFilter adaptiveTemporalFilter = new AdaptiveTemporalFilter();
+    /**
+     * Deconvolution with the camera's line-spread function, if there is one.
+     */
+    private boolean deconvolution;
+    private final Observers<Boolean> deconvolutionObservers = new Observers<>();
+    @Getter(AccessLevel.NONE)
+    private final WienerDeconvolver deconvolver = new WienerDeconvolver();
     private double smoothIndexSteps = 0;
+    /**
+     * Envelope of the continuum to remove from the spectrum, <code>null</code> for none.
+     */
+    private BaselineEstimator.Envelope continuumEnvelope;
+    private final Observers<BaselineEstimator.Envelope> continuumEnvelopeObservers = new Observers<>();
+    @Getter(AccessLevel.NONE)
+    private final BaselineEstimator baselineEstimator = new BaselineEstimator();
+    /**
+     * Window of the Savitzky-Golay smoothing, 0 for none.
+     */
+    private int savitzkyGolayWindow = 0;
+    private int savitzkyGolayOrder = 2;
 
     private boolean normalizeSampleValues;
     private final Observers<Boolean> normalizeSampleValuesObservers = new Observers<>();
 
+    /**
+     * Bands to evaluate for every spectrum, <code>null</code> for none.
+     */
+    private SpectralBands spectralBands;
+    /**
+     * Metrics vector of the spectral bands for every new spectrum, <code>null</code> without bands or spectrum.
+     */
+    private final Observers<double[]> bandMetricsObservers = new Observers<>();
+
+    private Colorimetry colorimetry = new Colorimetry(Colorimetry.StandardObserver.CIE_1931_2_DEGREE);
+    /**
+     * Colour of every new spectrum, <code>null</code> unless measuring intensities.
+     */
+    private final Observers<Colorimetry.Color> colorObservers = new Observers<>();
+
     private Double hoverCursorWaveLength;
     private final Observers<Double> hoverCursorWaveLengthObservers = new Observers<>();
 
@@ -79,16 +219,167 @@ public final class Model {
 
     public Model() {
         getFrameGrabbedObservers().add(cam -> updateSampleLineFromGrabbedFrame());
+        getFrameGrabbedObservers().add(this.previewGenerator::offer);
     }
 
     private void updateSampleLineFromGrabbedFrame() {
-        if (this.currentFrame == null)
+        if (this.currentFrame == null || this.currentFrame.getPixelFormat() == PixelFormat.NONE)
+            return;
+
+        if (this.hotPixelDetector != null) {
+            detectHotPixels();
+        }
+        if (this.sampleStripTracking) {
+            trackSampleStrip();
+        }
+
+        final var mat = this.currentFrame.getMat();
+        final var strips = new ArrayList<SampleStrip>(2);
+        strips.add(new SampleStrip(SAMPLE_STRIP, (int) (mat.rows() * getSampleRowPosRatio()), getSampleRows()));
+        if (this.referenceRowPosRatio != null && (isReferenceUsed() || this.darkCapturePending)) {
+            strips.add(new SampleStrip(REFERENCE_STRIP, (int) (mat.rows() * this.referenceRowPosRatio),
+                    getSampleRows()));
+        }
+        final var hotPixelMap = getHotPixelMap();
+        final var samplingOptions = Sampling.Options.DEFAULT
+                .withYuyvLuma(this.currentFrame.getPixelFormat() == PixelFormat.YUYV)
+                .withHotPixelMap(hotPixelMap != null && hotPixelMap.isFor(mat.cols(), mat.rows()) ? hotPixelMap : null)
+                // the calibration needs the unlinearized values
+                .withLinearization(this.linearizationCalibrator == null ? getLinearization() : null);
+        final var sampleLines = Sampling.sampleLinesFromMat(mat, strips, samplingOptions);
+        if (this.darkCapturePending) {
+            this.darkCapturePending = false;
+            this.darkLines = sampleLines;
+            LOG.info("Dark lines captured for {}", sampleLines.keySet());
+            this.darkCorrectedObservers.fire(true);
+        }
+
+        final var rawSampleLine = sampleLines.get(SAMPLE_STRIP);
+        if (this.linearizationCalibrator != null) {
+            processGrabbedSampleLine(calcMeasuredSampleLine(sampleLines));
+            calibrateLinearization(rawSampleLine);
+        } else if (this.hdrBracketingEnabled) {
+            bracketExposure(rawSampleLine);
+        } else {
+            processGrabbedSampleLine(calcMeasuredSampleLine(sampleLines));
+            controlExposure(rawSampleLine);
+        }
+    }
+
+    private boolean isReferenceUsed() {
+        return this.measurementMode != MeasurementMode.INTENSITY && this.referenceRowPosRatio != null;
+    }
+
+    /**
+     * Calculate the sample line to show from the lines of all strips of the same frame according to the measurement
+     * mode.
+     */
+    private SampleLine calcMeasuredSampleLine(@NonNull Map<String, SampleLine> sampleLines) {
+        final var sample = sampleLines.get(SAMPLE_STRIP);
+        final var reference = sampleLines.get(REFERENCE_STRIP);
+        if (!isReferenceUsed() || reference == null)
+            return sample;
+
+        final var transmittance = Calculations.transmittance(sample, reference,
+                this.darkLines != null ? this.darkLines.get(SAMPLE_STRIP) : null,
+                this.darkLines != null ? this.darkLines.get(REFERENCE_STRIP) : null);
+
+        return this.measurementMode == MeasurementMode.ABSORBANCE
+                ? Calculations.absorbance(transmittance) : transmittance;
+    }
+
+    private void detectHotPixels() {
+        final var hotPixelMap = this.hotPixelDetector.offer(this.currentFrame);
+        if (hotPixelMap != null) {
+            this.hotPixelDetector = null;
+            LOG.info("Detected {} hot pixels", hotPixelMap.getDefectCount());
+            setHotPixelMap(hotPixelMap);
+        }
+    }
+
+    private void calibrateLinearization(@NonNull SampleLine rawSampleLine) {
+        final var calibrator = this.linearizationCalibrator;
+        try {
+            final var linearization = calibrator.offer(rawSampleLine,
+                    this.currentFrame.getExposure(), this.currentFrame.getFramesSinceExposureChange());
+            if (linearization != null) {
+                LOG.info("Calibrated linearization with gamma {}", linearization.getGamma());
+                setLinearization(linearization);
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Linearization calibration failed: {}", e.getMessage());
+        }
+
+        if (calibrator.isFinished()) {
+            this.linearizationCalibrator = null;
+            requestExposure(calibrator.getBaseExposure());
+        } else {
+            requestExposure(calibrator.getRequestedExposure());
+        }
+    }
+
+    private void requestExposure(double exposure) {
+        final var cameraProps = getCameraProps();
+        if (cameraProps != null) {
+            this.camera.requestCameraProps(cameraProps.withExposure(exposure));
+        }
+    }
+
+    private void trackSampleStrip() {
+        final var strip = this.sampleStripTracker.offer(this.currentFrame, this.sampleRowPosRatio, this.sampleRows);
+        if (strip != null) {
+            LOG.info("Sample strip moved to center row {} of {} with {} rows",
+                    strip.getCenterRow(), strip.getFrameRows(), strip.getRows());
+            setSampleRowPosRatio(strip.getCenterRowRatio());
+            setSampleRows(strip.getRows());
+        }
+    }
+
+    private void processGrabbedSampleLine(@NonNull SampleLine grabbedSampleLine) {
+        this.transientTrigger.offer(grabbedSampleLine, getWaveLengthCalibration());
+        this.rateGovernor.offer(grabbedSampleLine);
+        setRawSampleLine(this.stacking ? this.stacker.add(grabbedSampleLine) : grabbedSampleLine);
+    }
+
+    private void bracketExposure(@NonNull SampleLine rawSampleLine) {
+        final var fusedSampleLine = this.exposureBracketing.offer(rawSampleLine,
+                this.currentFrame.getExposure(), this.currentFrame.getFramesSinceExposureChange());
+        requestBracketingExposure();
+        if (fusedSampleLine != null) {
+            processGrabbedSampleLine(fusedSampleLine);
+        }
+    }
+
+    private void requestBracketingExposure() {
+        final var cameraProps = getCameraProps();
+        if (cameraProps == null)
             return;
 
-        setRawSampleLine(
-                Sampling.sampleLineFromMat(this.currentFrame.getMat(),
-                        (int) (this.currentFrame.getMat().rows() * getSampleRowPosRatio()),
-                        getSampleRows(), Sampling.PIXEL_CHANNEL_AVERAGE));
+        if (!this.exposureBracketing.isStarted()) {
+            this.exposureBracketing.start(cameraProps.getExposure());
+        }
+        this.camera.requestCameraProps(cameraProps.withExposure(this.exposureBracketing.getRequestedExposure()));
+    }
+
+    private void controlExposure(@NonNull SampleLine rawSampleLine) {
+        final var cameraProps = getCameraProps();
+        if (!this.autoExposureEnabled || cameraProps == null)
+            return;
+
+        final var newExposure = this.autoExposure.update(rawSampleLine, cameraProps.getExposure());
+        if (newExposure != null) {
+            applyAutoExposure(cameraProps.withExposure(newExposure));
+        }
+    }
+
+    /**
+     * Apply an exposure step of the auto exposure. Unlike {@link #setCameraProps(int, CameraProps)} for user changes,
+     * dark lines, averages and the rate governor are kept, otherwise they would never settle while converging.
+     */
+    private void applyAutoExposure(@NonNull CameraProps cameraProps) {
+        this.cameraPropsByCameraId.put(getCameraId(), cameraProps);
+        this.camera.requestCameraProps(cameraProps);
+        this.cameraPropsObservers.fire(cameraProps);
     }
 
     /**
@@ -103,10 +394,20 @@ public final class Model {
             final var cameraProps = getCameraProps();
             if (cameraProps != null) {
                 this.camera.setCameraProps(cameraProps);
+                if (this.hdrBracketingEnabled) {
+                    this.exposureBracketing.start(cameraProps.getExposure());
+                    requestBracketingExposure();
+                }
             }
             this.cameraObservers.fire(this.camera);
             this.waveLengthCalibrationObservers.fire(getWaveLengthCalibration());
+            this.lineSpreadFunctionObservers.fire(getLineSpreadFunction());
             this.cameraPropsObservers.fire(cameraProps);
+            this.rateGovernor.reset();
+            this.stacker.reset();
+            this.sampleStripTracker.reset();
+            this.linearizationCalibrator = null;
+            clearDark();
             triggerNextFrameIfNotPaused();
         }
     }
@@ -123,27 +424,76 @@ public final class Model {
         }
     }
 
+    /**
+     * Require grabbing at full rate regardless of the adaptive rate, e.g. while recording a scan that must not miss
+     * frames.
+     */
+    public void setFullRateRequired(boolean fullRateRequired) {
+        if (this.fullRateRequired != fullRateRequired) {
+            this.fullRateRequired = fullRateRequired;
+            triggerNextFrameIfNotPaused();
+        }
+    }
+
+    /**
+     * Mark the display as hidden, e.g. iconified, to grab frames at a low rate only.
+     */
+    public void setDisplayHidden(boolean hidden) {
+        if (this.rateGovernor.isHidden() != hidden) {
+            this.rateGovernor.setHidden(hidden);
+            triggerNextFrameIfNotPaused();
+        }
+    }
+
+    /**
+     * Trigger grabbing the next frame unless paused or already grabbing. If the rate governor asks for a reduced rate,
+     * the frame will be grabbed delayed. A pending delayed grab is started immediately when the full rate is restored.
+     */
     private void triggerNextFrameIfNotPaused() {
-        if (!this.cameraPaused) {
+        if (this.cameraPaused || this.grabbing)
+            return;
+
+        // an armed trigger must see every frame to catch transients
+        final var delayMillis = this.transientTrigger.isArmed() || this.fullRateRequired
+                ? 0L : this.rateGovernor.getFrameDelayMillis();
+        if (delayMillis <= 0L) {
+            cancelDelayedFrame();
             triggerNextFrame();
+        } else if (this.delayedFrameTimer == null) {
+            this.delayedFrameTimer = new Timer((int) Math.min(Integer.MAX_VALUE, delayMillis), e -> {
+                this.delayedFrameTimer = null;
+                if (!this.cameraPaused && !this.grabbing) {
+                    triggerNextFrame();
+                }
+            });
+            this.delayedFrameTimer.setRepeats(false);
+            this.delayedFrameTimer.start();
         }
     }
 
-    private void triggerNextFrame() {
-        if (this.camera != null) {
-            CompletableFuture.runAsync(() -> {
-                this.camera.grabNextFrame(this.grabbingFrame);
-                SwingUtilities.invokeLater(() -> {
-                    setCurrentFrame(this.grabbingFrame);
-                    triggerNextFrameIfNotPaused();
-                });
-            });
+    private void cancelDelayedFrame() {
+        if (this.delayedFrameTimer != null) {
+            this.delayedFrameTimer.stop();
+            this.delayedFrameTimer = null;
         }
     }
 
-    public void grabSingleFrame() {
-        this.camera.grabNextFrame(this.grabbingFrame);
-        setCurrentFrame(this.grabbingFrame);
+    private void triggerNextFrame() {
+        final var grabbingCamera = this.camera;
+        final var targetFrame = this.grabbingFrame;
+        if (grabbingCamera != null) {
+            this.grabbing = true;
+            CompletableFuture.runAsync(() -> grabbingCamera.grabNextFrame(targetFrame))
+                    .whenComplete((result, e) -> SwingUtilities.invokeLater(() -> {
+                        this.grabbing = false;
+                        if (e != null) {
+                            LOG.error("Grabbing frame from camera id={} failed", grabbingCamera.getId(), e);
+                        } else {
+                            setCurrentFrame(targetFrame);
+                        }
+                        triggerNextFrameIfNotPaused();
+                    }));
+        }
     }
 
     public void setCurrentFrame(@NonNull Frame newlyGrabbedFrame) {
@@ -174,8 +524,16 @@ public final class Model {
     public void setCameraProps(int cameraId, CameraProps cameraProps) {
         final var oldProps = this.cameraPropsByCameraId.put(cameraId, cameraProps);
         if (Objects.equals(cameraId, getCameraId()) && !Objects.equals(oldProps, cameraProps)) {
+            this.rateGovernor.reset();
+            this.stacker.reset();
+            clearDark();
+            triggerNextFrameIfNotPaused();
             if (cameraProps != null) {
-                this.camera.setCameraProps(cameraProps);
+                this.camera.requestCameraProps(cameraProps);
+                if (this.hdrBracketingEnabled) {
+                    this.exposureBracketing.start(cameraProps.getExposure());
+                    requestBracketingExposure();
+                }
             }
             this.cameraPropsObservers.fire(cameraProps);
         }
@@ -188,7 +546,7 @@ public final class Model {
     }
 
     public WaveLengthCalibration getWaveLengthCalibration(Integer cameraId) {
-        return this.waveLengthCalibrationByCameraId.get(cameraId);
+        return cameraId != null ? this.waveLengthCalibrationByCameraId.get(cameraId) : null;
     }
 
     public WaveLengthCalibration getWaveLengthCalibration() {
@@ -247,17 +605,240 @@ public final class Model {
         }
     }
 
+    public HotPixelMap getHotPixelMap(Integer cameraId) {
+        return this.hotPixelMapByCameraId.get(cameraId);
+    }
+
+    public HotPixelMap getHotPixelMap() {
+        return getCameraId() != null ? getHotPixelMap(getCameraId()) : null;
+    }
+
+    public void setHotPixelMap(int cameraId, HotPixelMap hotPixelMap) {
+        final HotPixelMap oldMap;
+        if (hotPixelMap != null) {
+            oldMap = this.hotPixelMapByCameraId.put(cameraId, hotPixelMap);
+        } else {
+            oldMap = this.hotPixelMapByCameraId.remove(cameraId);
+        }
+
+        if (Objects.equals(cameraId, getCameraId()) && !Objects.equals(oldMap, hotPixelMap)) {
+            this.hotPixelMapObservers.fire(hotPixelMap);
+        }
+    }
+
+    public void setHotPixelMap(HotPixelMap hotPixelMap) {
+        if (getCameraId() != null) {
+            setHotPixelMap(getCameraId(), hotPixelMap);
+        }
+    }
+
+    /**
+     * Detect hot pixels of the current camera from the next frames, which must be taken with all light blocked.
+     * The result replaces the camera's hot pixel map.
+     */
+    public void startHotPixelDetection() {
+        if (this.hotPixelDetector != null) {
+            this.hotPixelDetector.release();
+        }
+        this.hotPixelDetector = new HotPixelDetector();
+        triggerNextFrameIfNotPaused();
+    }
+
+    public boolean isDetectingHotPixels() {
+        return this.hotPixelDetector != null;
+    }
+
+    public LinearizationLut getLinearization(Integer cameraId) {
+        return this.linearizationByCameraId.get(cameraId);
+    }
+
+    /**
+     * Lookup table to linearize the current camera's pixel values, <code>null</code> if uncalibrated.
+     */
+    public LinearizationLut getLinearization() {
+        return getCameraId() != null ? getLinearization(getCameraId()) : null;
+    }
+
+    /**
+     * Set the camera's linearization. A changed linearization discards the camera's sensitivity calibration, which is
+     * only valid for the value scale it has been calibrated with.
+     */
+    public void setLinearization(int cameraId, LinearizationLut linearization) {
+        final LinearizationLut oldLinearization;
+        if (linearization != null) {
+            oldLinearization = this.linearizationByCameraId.put(cameraId, linearization);
+        } else {
+            oldLinearization = this.linearizationByCameraId.remove(cameraId);
+        }
+
+        if (!Objects.equals(oldLinearization, linearization) && getSensitivityCalibration(cameraId) != null) {
+            // correction factors were calculated from values in the old scale and would distort the spectrum
+            LOG.warn("Linearization of camera id={} changed, discarding its sensitivity calibration", cameraId);
+            setSensitivityCalibration(cameraId, null);
+        }
+        if (Objects.equals(cameraId, getCameraId()) && !Objects.equals(oldLinearization, linearization)) {
+            // dark lines and time averages are in the old value scale
+            clearDark();
+            this.purifiedSpectrum = null;
+            this.stacker.reset();
+            this.linearizationObservers.fire(linearization);
+        }
+    }
+
+    public void setLinearization(LinearizationLut linearization) {
+        if (getCameraId() != null) {
+            setLinearization(getCameraId(), linearization);
+        }
+    }
+
+    /**
+     * Calibrate the linearization of the current camera from an exposure series around the current exposure,
+     * taken from the next frames of a steady scene. Auto exposure and HDR bracketing are switched off.
+     * The result replaces the camera's linearization.
+     */
+    public void startLinearizationCalibration() {
+        final var cameraProps = getCameraProps();
+        if (cameraProps == null)
+            return;
+
+        setAutoExposureEnabled(false);
+        setHdrBracketingEnabled(false);
+        this.linearizationCalibrator = new LinearizationCalibrator(cameraProps.getExposure());
+        requestExposure(this.linearizationCalibrator.getRequestedExposure());
+        triggerNextFrameIfNotPaused();
+    }
+
+    public boolean isCalibratingLinearization() {
+        return this.linearizationCalibrator != null;
+    }
+
+    public LineSpreadFunction getLineSpreadFunction(Integer cameraId) {
+        return this.lineSpreadFunctionByCameraId.get(cameraId);
+    }
+
+    /**
+     * Line-spread function of the current camera's spectroscope, <code>null</code> if not measured.
+     */
+    public LineSpreadFunction getLineSpreadFunction() {
+        return getCameraId() != null ? getLineSpreadFunction(getCameraId()) : null;
+    }
+
+    public void setLineSpreadFunction(int cameraId, LineSpreadFunction lineSpreadFunction) {
+        final LineSpreadFunction oldLineSpreadFunction;
+        if (lineSpreadFunction != null) {
+            oldLineSpreadFunction = this.lineSpreadFunctionByCameraId.put(cameraId, lineSpreadFunction);
+        } else {
+            oldLineSpreadFunction = this.lineSpreadFunctionByCameraId.remove(cameraId);
+        }
+
+        if (Objects.equals(cameraId, getCameraId()) && !Objects.equals(oldLineSpreadFunction, lineSpreadFunction)) {
+            this.lineSpreadFunctionObservers.fire(lineSpreadFunction);
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    public void setLineSpreadFunction(LineSpreadFunction lineSpreadFunction) {
+        if (getCameraId() != null) {
+            setLineSpreadFunction(getCameraId(), lineSpreadFunction);
+        }
+    }
+
+    /**
+     * Measure the line-spread function of the current camera from the current time averaged spectrum of a line lamp,
+     * replacing the camera's line-spread function.
+     *
+     * @throws IllegalStateException    if there is no current spectrum
+     * @throws IllegalArgumentException if the spectrum has no isolated, not overexposed line
+     */
+    public LineSpreadFunction measureLineSpreadFunction() {
+        if (getCameraId() == null || this.purifiedSpectrum == null)
+            throw new IllegalStateException("no spectrum to measure");
+
+        final var lineSpreadFunction = LineSpreadFunction.measure(this.purifiedSpectrum.getSampleLine(),
+                LineSpreadFunction.DEFAULT_HALF_WIDTH);
+        LOG.info("Measured line-spread function with FWHM {}", lineSpreadFunction.getFullWidthAtHalfMaximum());
+        setLineSpreadFunction(lineSpreadFunction);
+
+        return lineSpreadFunction;
+    }
+
+    /**
+     * Deconvolve the spectrum with the camera's line-spread function to separate close lines, see
+     * {@link WienerDeconvolver}. Has no effect without a line-spread function.
+     */
+    public void setDeconvolution(boolean deconvolution) {
+        if (this.deconvolution != deconvolution) {
+            this.deconvolution = deconvolution;
+            this.deconvolutionObservers.fire(deconvolution);
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    /**
+     * Set the regularization of the deconvolution, see {@link WienerDeconvolver#setRegularization}.
+     */
+    public void setDeconvolutionRegularization(double regularization) {
+        if (this.deconvolver.getRegularization() != regularization) {
+            this.deconvolver.setRegularization(regularization);
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    /**
+     * Set the bands to evaluate for every spectrum, <code>null</code> for none.
+     */
+    public void setSpectralBands(SpectralBands spectralBands) {
+        if (!Objects.equals(this.spectralBands, spectralBands)) {
+            this.spectralBands = spectralBands;
+            if (spectralBands == null) {
+                this.bandMetricsObservers.fire(null);
+            }
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    /**
+     * Set the standard observer for the colour of every spectrum.
+     */
+    public void setStandardObserver(@NonNull Colorimetry.StandardObserver standardObserver) {
+        if (this.colorimetry.getStandardObserver() != standardObserver) {
+            this.colorimetry = new Colorimetry(standardObserver);
+            recalcSampleLineFromRaw();
+        }
+    }
+
     public void setRawSampleLine(SampleLine rawSampleLine) {
         if (rawSampleLine != null) {
+            if (this.purifiedSpectrum == null) {
+                this.baselineEstimator.reset(); // continuum of an unrelated spectrum
+            }
+            final var newFrame = this.rawSpectrum == null || this.rawSpectrum.getSampleLine() != rawSampleLine;
             this.rawSpectrum = Spectrum.create(rawSampleLine, getWaveLengthCalibration());
-            this.purifiedSpectrum = calcPurifiedSpectrum(this.rawSpectrum, this.purifiedSpectrum, this.timeAveragingFactor, this.peakHold);
-            this.spectrum = calcProcessedSpectrum(this.purifiedSpectrum, getSensitivityCalibration(), this.smoothIndexSteps, this.normalizeSampleValues);
+            this.purifiedSpectrum = this.adaptiveTimeAveraging && !this.peakHold
+                    ? calcAdaptivelyPurifiedSpectrum(this.rawSpectrum)
+                    : calcPurifiedSpectrum(this.rawSpectrum, this.purifiedSpectrum, this.timeAveragingFactor, this.peakHold);
+            // sensitivity cancels out in ratios of sample and reference
+            final var sensitivityCalibration = isReferenceUsed() ? null : getSensitivityCalibration();
+            this.spectrum = calcProcessedSpectrum(calcDeconvolvedSpectrum(this.purifiedSpectrum),
+                    sensitivityCalibration, this.smoothIndexSteps,
+                    this.savitzkyGolayWindow, this.savitzkyGolayOrder, this.normalizeSampleValues);
+            // colour needs the light spectrum, before removing its continuum
+            if (!this.colorObservers.isEmpty()) {
+                this.colorObservers.fire(this.measurementMode == MeasurementMode.INTENSITY
+                        ? this.colorimetry.evaluate(this.spectrum) : null);
+            }
+            this.spectrum = calcContinuumNormalizedSpectrum(this.spectrum, newFrame);
             this.spectrumObservers.fire(this.spectrum);
+            if (this.spectralBands != null) {
+                this.bandMetricsObservers.fire(this.spectralBands.evaluate(this.spectrum));
+            }
         } else if (this.spectrum != null) {
             this.rawSpectrum = null;
             this.purifiedSpectrum = null;
             this.spectrum = null;
             this.spectrumObservers.fire(null);
+            this.colorObservers.fire(null);
+            this.bandMetricsObservers.fire(null);
         }
     }
 
@@ -272,28 +853,201 @@ public final class Model {
                 timeAveragingFactor, peakHold), rawSpectrum.getCalibration());
     }
 
-    private static Spectrum calcProcessedSpectrum(Spectrum purifiedSpectrum, Spectrum sensitivityCalibration, double smoothIndexSteps, boolean normalizeSampleValues) {
+    private Spectrum calcAdaptivelyPurifiedSpectrum(@NonNull Spectrum rawSpectrum) {
+        if (this.purifiedSpectrum == null) {
+            this.adaptiveTemporalFilter.reset();
+        }
+        this.adaptiveTemporalFilter.setAveragingFactor(Math.min(AdaptiveTemporalFilter.MAX_AVERAGING_FACTOR,
+                this.timeAveragingFactor));
+
+        return Spectrum.create(this.adaptiveTemporalFilter.update(rawSpectrum.getSampleLine()),
+                rawSpectrum.getCalibration());
+    }
+
+    private Spectrum calcDeconvolvedSpectrum(@NonNull Spectrum purifiedSpectrum) {
+        final var lineSpreadFunction = getLineSpreadFunction();
+        if (!this.deconvolution || lineSpreadFunction == null)
+            return purifiedSpectrum;
+
+        this.deconvolver.setLineSpreadFunction(lineSpreadFunction);
+        return Spectrum.create(this.deconvolver.deconvolve(purifiedSpectrum.getSampleLine()),
+                purifiedSpectrum.getCalibration());
+    }
+
+    static Spectrum calcProcessedSpectrum(Spectrum purifiedSpectrum, Spectrum sensitivityCalibration, double smoothIndexSteps,
+                                          int savitzkyGolayWindow, int savitzkyGolayOrder, boolean normalizeSampleValues) {
         if (purifiedSpectrum == null)
             return null;
 
         final Spectrum calibrated = sensitivityCalibration != null
                 ? Calculations.applySensitivityCalibration(purifiedSpectrum, sensitivityCalibration) : purifiedSpectrum;
-        final SampleLine smoothed = Calculations.gaussianSmooth(calibrated.getSampleLine(), smoothIndexSteps);
+        final SampleLine gaussianSmoothed = Calculations.gaussianSmooth(calibrated.getSampleLine(), smoothIndexSteps);
+        final SampleLine smoothed = savitzkyGolayWindow > 0
+                ? SavitzkyGolay.smooth(gaussianSmoothed, savitzkyGolayWindow, savitzkyGolayOrder) : gaussianSmoothed;
         final SampleLine normalized = normalizeSampleValues ? Calculations.normalize(smoothed) : smoothed;
 
         return Spectrum.create(normalized, purifiedSpectrum.getCalibration());
     }
 
+    private Spectrum calcContinuumNormalizedSpectrum(@NonNull Spectrum processedSpectrum, boolean newFrame) {
+        if (this.continuumEnvelope == null)
+            return processedSpectrum;
+
+        // window has been determined for a 1280 resolution
+        final var lengthRatio = processedSpectrum.getLength() / 1280.;
+        this.baselineEstimator.setEnvelope(this.continuumEnvelope);
+        this.baselineEstimator.setWindow(2 * (int) Math.round(30. * lengthRatio) + 1);
+        final var result = this.baselineEstimator.update(processedSpectrum.getSampleLine(), newFrame);
+
+        return Spectrum.create(result.getNormalized(), processedSpectrum.getCalibration());
+    }
+
     public Extrema getExtrema() {
         if (this.spectrum == null)
             return null;
 
+        // zero crossings of the derivative only with Savitzky-Golay smoothing, its window fits the line widths then
+        if (this.savitzkyGolayWindow > 0)
+            return SavitzkyGolay.findLocalExtrema(this.spectrum.getSampleLine(), Math.max(5, this.savitzkyGolayWindow),
+                    2, 0.3, 16, 16);
+
         // values have been determined for a 1280 resolution
         final var lengthRatio = this.spectrum.getLength() / 1280.;
         return Calculations.findLocalExtrema(this.spectrum.getSampleLine(),
                 0.6 * lengthRatio, 2. * lengthRatio, 16, 16);
     }
 
+    /**
+     * Let the exposure be controlled automatically from the raw sample lines of the grabbed frames.
+     */
+    public void setAutoExposureEnabled(boolean autoExposureEnabled) {
+        if (this.autoExposureEnabled != autoExposureEnabled) {
+            if (autoExposureEnabled) {
+                setHdrBracketingEnabled(false);
+            }
+            this.autoExposureEnabled = autoExposureEnabled;
+            this.autoExposure.reset();
+            this.autoExposureEnabledObservers.fire(autoExposureEnabled);
+        }
+    }
+
+    /**
+     * Let the exposure cycle through a bracket around the current exposure and fuse the sample lines of all exposures
+     * into a high dynamic range one. Disables automatic exposure.
+     */
+    public void setHdrBracketingEnabled(boolean hdrBracketingEnabled) {
+        if (this.hdrBracketingEnabled != hdrBracketingEnabled) {
+            this.hdrBracketingEnabled = hdrBracketingEnabled;
+            if (hdrBracketingEnabled) {
+                setAutoExposureEnabled(false);
+                final var cameraProps = getCameraProps();
+                if (cameraProps != null) {
+                    this.exposureBracketing.start(cameraProps.getExposure());
+                    requestBracketingExposure();
+                }
+            } else if (getCameraProps() != null) {
+                // back to the base exposure
+                this.camera.requestCameraProps(getCameraProps());
+            }
+            this.hdrBracketingEnabledObservers.fire(hdrBracketingEnabled);
+        }
+    }
+
+    /**
+     * Stack the grabbed sample lines aligned for drift instead of showing single frames. Re-enabling starts a new
+     * stack.
+     */
+    public void setStacking(boolean stacking) {
+        if (this.stacking != stacking) {
+            this.stacking = stacking;
+            this.stacker.reset();
+            this.stackingObservers.fire(stacking);
+        }
+    }
+
+    /**
+     * Set the center row of the sample strip as ratio of the frame height.
+     */
+    public void setSampleRowPosRatio(double sampleRowPosRatio) {
+        final var clipped = Math.max(0., Math.min(1., sampleRowPosRatio));
+        if (this.sampleRowPosRatio != clipped) {
+            this.sampleRowPosRatio = clipped;
+            this.stacker.reset();
+            this.sampleRowPosRatioObservers.fire(clipped);
+        }
+    }
+
+    /**
+     * Set the number of frame rows to average for the sample strip.
+     */
+    public void setSampleRows(int sampleRows) {
+        final var clipped = Math.max(1, sampleRows);
+        if (this.sampleRows != clipped) {
+            this.sampleRows = clipped;
+            this.stacker.reset();
+            this.sampleRowsObservers.fire(clipped);
+        }
+    }
+
+    /**
+     * Set the center row of the reference strip as ratio of the frame height, <code>null</code> for none. The reference
+     * strip has the same height as the sample strip.
+     */
+    public void setReferenceRowPosRatio(Double referenceRowPosRatio) {
+        final var clipped = referenceRowPosRatio != null ? Math.max(0., Math.min(1., referenceRowPosRatio)) : null;
+        if (!Objects.equals(this.referenceRowPosRatio, clipped)) {
+            this.referenceRowPosRatio = clipped;
+            clearDark();
+            this.stacker.reset();
+            this.referenceRowPosRatioObservers.fire(clipped);
+        }
+    }
+
+    /**
+     * Set what the spectrum shows. Modes other than intensity need a reference strip. They take sample and reference
+     * line from the same frame, so there is no time skew between them.
+     */
+    public void setMeasurementMode(@NonNull MeasurementMode measurementMode) {
+        if (this.measurementMode != measurementMode) {
+            this.measurementMode = measurementMode;
+            this.stacker.reset();
+            this.purifiedSpectrum = null; // don't average intensities with ratios
+            this.measurementModeObservers.fire(measurementMode);
+        }
+    }
+
+    /**
+     * Capture the lines of all strips from the next frame as dark lines, to be taken with the light blocked.
+     * The dark lines are dropped when camera or camera properties change, so automatic exposure should be off.
+     */
+    public void captureDark() {
+        this.darkCapturePending = true;
+        triggerNextFrameIfNotPaused();
+    }
+
+    public void clearDark() {
+        this.darkCapturePending = false;
+        if (this.darkLines != null) {
+            this.darkLines = null;
+            this.darkCorrectedObservers.fire(false);
+        }
+    }
+
+    public boolean isDarkCorrected() {
+        return this.darkLines != null;
+    }
+
+    /**
+     * Let the sample strip be placed on the spectrum band automatically and follow its slow drifts.
+     */
+    public void setSampleStripTracking(boolean sampleStripTracking) {
+        if (this.sampleStripTracking != sampleStripTracking) {
+            this.sampleStripTracking = sampleStripTracking;
+            this.sampleStripTracker.reset();
+            this.sampleStripTrackingObservers.fire(sampleStripTracking);
+        }
+    }
+
     public void setNormalizeSampleValues(boolean normalize) {
         if (this.normalizeSampleValues != normalize) {
             this.normalizeSampleValues = normalize;
@@ -316,6 +1070,24 @@ public final class Model {
         }
     }
 
+    /**
+     * Set the Savitzky-Golay smoothing applied after the gaussian smoothing.
+     *
+     * @param window odd window size, 0 for no Savitzky-Golay smoothing
+     * @param order  polynomial order, reduced to less than the window
+     */
+    public void setSavitzkyGolay(int window, int order) {
+        if (window != 0 && (window < 3 || window > SavitzkyGolay.MAX_WINDOW || window % 2 == 0))
+            throw new IllegalArgumentException("window must be 0 or odd between 3 and " + SavitzkyGolay.MAX_WINDOW
+                    + " but is " + window);
+        final var effectiveOrder = window > 0 ? Math.max(0, Math.min(order, window - 1)) : Math.max(0, order);
+        if (this.savitzkyGolayWindow != window || this.savitzkyGolayOrder != effectiveOrder) {
+            this.savitzkyGolayWindow = window;
+            this.savitzkyGolayOrder = effectiveOrder;
+            recalcSampleLineFromRaw();
+        }
+    }
+
     public void setTimeAveragingFactor(double timeAveragingFactor) {
         if (this.timeAveragingFactor != timeAveragingFactor) {
             this.timeAveragingFactor = timeAveragingFactor;
@@ -323,6 +1095,43 @@ public final class Model {
         }
     }
 
+    /**
+     * Average adaptively per bin instead of exponentially, see {@link AdaptiveTemporalFilter}. The time averaging
+     * factor applies while the signal is steady. Peak hold takes precedence.
+     */
+    public void setAdaptiveTimeAveraging(boolean adaptiveTimeAveraging) {
+        if (this.adaptiveTimeAveraging != adaptiveTimeAveraging) {
+            this.adaptiveTimeAveraging = adaptiveTimeAveraging;
+            this.adaptiveTemporalFilter.reset();
+            this.adaptiveTimeAveragingObservers.fire(adaptiveTimeAveraging);
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    /**
+     * Remove the continuum estimated by a {@link BaselineEstimator}: the lower envelope is subtracted for emission
+     * lines, the spectrum is divided by the upper envelope for absorption lines.
+     *
+     * @param continuumEnvelope envelope to remove, <code>null</code> for none
+     */
+    public void setContinuumEnvelope(BaselineEstimator.Envelope continuumEnvelope) {
+        if (this.continuumEnvelope != continuumEnvelope) {
+            this.continuumEnvelope = continuumEnvelope;
+            this.baselineEstimator.reset();
+            this.continuumEnvelopeObservers.fire(continuumEnvelope);
+            recalcSampleLineFromRaw();
+        }
+    }
+
+    /**
+     * Restart everything accumulated over frames: time averaging, peak hold, adaptive averaging, stacking and the
+     * continuum all start anew with the next frame.
+     */
+    public void restartAveraging() {
+        this.purifiedSpectrum = null;
+        this.stacker.reset();
+    }
+
     public void setPeakHold(boolean peakHold) {
         if (this.peakHold != peakHold) {
             this.peakHold = peakHold;
@@ -352,6 +1161,24 @@ public final class Model {
         final var settings = new Settings();
         settings.setSelectedCameraId(getCameraId());
         settings.setNormalizeSampleValues(isNormalizeSampleValues());
+        settings.setPreviewMaxFps(this.previewGenerator.getMaxFps());
+        settings.setAutoExposure(this.autoExposureEnabled);
+        settings.setAutoExposureTargetPeakLevel(this.autoExposure.getTargetPeakLevel());
+        settings.setHdrBracketing(this.hdrBracketingEnabled);
+        settings.setHdrExposureOffsets(this.exposureBracketing.getExposureOffsets());
+        settings.setSampleRowPosRatio(this.sampleRowPosRatio);
+        settings.setSampleRows(this.sampleRows);
+        settings.setSampleStripTracking(this.sampleStripTracking);
+        settings.setReferenceRowPosRatio(this.referenceRowPosRatio);
+        settings.setMeasurementMode(this.measurementMode);
+        settings.setAdaptiveFrameRate(this.rateGovernor.isEnabled());
+        settings.setTriggerCriterion(this.transientTrigger.getCriterion());
+        settings.setTriggerThreshold(this.transientTrigger.getThreshold());
+        settings.setTriggerPreFrames(this.transientTrigger.getPreTriggerFrames());
+        settings.setTriggerPostFrames(this.transientTrigger.getPostTriggerFrames());
+        settings.setSpectralBands(this.spectralBands);
+        settings.setSavitzkyGolayWindow(this.savitzkyGolayWindow);
+        settings.setSavitzkyGolayOrder(this.savitzkyGolayOrder);
 
         for (Entry<Integer, CameraProps> entry : this.cameraPropsByCameraId.entrySet()) {
             settings.getOrCreateCamera(entry.getKey()).setCameraProps(entry.getValue());
@@ -359,6 +1186,15 @@ public final class Model {
         for (Entry<Integer, WaveLengthCalibration> entry : this.waveLengthCalibrationByCameraId.entrySet()) {
             settings.getOrCreateCamera(entry.getKey()).setWaveLengthCalibration(entry.getValue());
         }
+        for (Entry<Integer, HotPixelMap> entry : this.hotPixelMapByCameraId.entrySet()) {
+            settings.getOrCreateCamera(entry.getKey()).setHotPixelMap(entry.getValue());
+        }
+        for (Entry<Integer, LinearizationLut> entry : this.linearizationByCameraId.entrySet()) {
+            settings.getOrCreateCamera(entry.getKey()).setLinearization(entry.getValue());
+        }
+        for (Entry<Integer, LineSpreadFunction> entry : this.lineSpreadFunctionByCameraId.entrySet()) {
+            settings.getOrCreateCamera(entry.getKey()).setLineSpreadFunction(entry.getValue());
+        }
         for (Entry<Integer, Spectrum> entry : this.sensitivityCalibrationByCameraId.entrySet()) {
             final var correctionFactors = entry.getValue();
             settings.getOrCreateCamera(entry.getKey()).setSensitivityCalibration(
@@ -380,6 +1216,15 @@ public final class Model {
             if (cameraSettings.getWaveLengthCalibration() != null) {
                 setWaveLengthCalibration(cameraSettings.getId(), cameraSettings.getWaveLengthCalibration());
             }
+            if (cameraSettings.getHotPixelMap() != null) {
+                setHotPixelMap(cameraSettings.getId(), cameraSettings.getHotPixelMap());
+            }
+            if (cameraSettings.getLinearization() != null) {
+                setLinearization(cameraSettings.getId(), cameraSettings.getLinearization());
+            }
+            if (cameraSettings.getLineSpreadFunction() != null) {
+                setLineSpreadFunction(cameraSettings.getId(), cameraSettings.getLineSpreadFunction());
+            }
             if (cameraSettings.getSensitivityCalibration() != null) {
                 final var sensCal = cameraSettings.getSensitivityCalibration();
                 final var corrFactors = sensCal.getCorrectionFactors();
@@ -395,15 +1240,57 @@ public final class Model {
         if (settings.getNormalizeSampleValues() != null) {
             setNormalizeSampleValues(settings.getNormalizeSampleValues());
         }
-
-        if (settings.getSelectedCameraId() != null) {
-            final var newCam = new Camera(settings.getSelectedCameraId()); // NOSONAR: needs to stay open
-            if (newCam.isOpen()) {
-                final var oldCam = getCamera();
-                setCamera(newCam);
-                if (oldCam != null) {
-                    oldCam.close();
-                }
+        if (settings.getPreviewMaxFps() != null && settings.getPreviewMaxFps() > 0.) {
+            this.previewGenerator.setMaxFps(settings.getPreviewMaxFps());
+        }
+        if (settings.getAutoExposureTargetPeakLevel() != null && !settings.getAutoExposureTargetPeakLevel().isNaN()) {
+            // clamp edited or outdated settings instead of failing on start-up
+            this.autoExposure.setTargetPeakLevel(Math.max(AutoExposure.MIN_TARGET_PEAK_LEVEL,
+                    Math.min(AutoExposure.MAX_TARGET_PEAK_LEVEL, settings.getAutoExposureTargetPeakLevel())));
+        }
+        if (settings.getAutoExposure() != null) {
+            setAutoExposureEnabled(settings.getAutoExposure());
+        }
+        if (settings.getHdrExposureOffsets() != null && settings.getHdrExposureOffsets().length >= 2) {
+            this.exposureBracketing.setExposureOffsets(settings.getHdrExposureOffsets());
+        }
+        if (settings.getSampleRowPosRatio() != null) {
+            setSampleRowPosRatio(settings.getSampleRowPosRatio());
+        }
+        if (settings.getSampleRows() != null) {
+            setSampleRows(settings.getSampleRows());
+        }
+        if (settings.getSampleStripTracking() != null) {
+            setSampleStripTracking(settings.getSampleStripTracking());
+        }
+        if (settings.getReferenceRowPosRatio() != null) {
+            setReferenceRowPosRatio(settings.getReferenceRowPosRatio());
+        }
+        if (settings.getMeasurementMode() != null) {
+            setMeasurementMode(settings.getMeasurementMode());
+        }
+        if (settings.getAdaptiveFrameRate() != null) {
+            this.rateGovernor.setEnabled(settings.getAdaptiveFrameRate());
+        }
+        if (settings.getTriggerCriterion() != null) {
+            this.transientTrigger.setCriterion(settings.getTriggerCriterion(),
+                    settings.getTriggerThreshold() != null
+                            ? settings.getTriggerThreshold() : settings.getTriggerCriterion().getDefaultThreshold());
+        }
+        if (settings.getTriggerPreFrames() != null && settings.getTriggerPostFrames() != null) {
+            this.transientTrigger.setFrames(settings.getTriggerPreFrames(), settings.getTriggerPostFrames());
+        }
+        if (settings.getHdrBracketing() != null) {
+            setHdrBracketingEnabled(settings.getHdrBracketing());
+        }
+        if (settings.getSpectralBands() != null) {
+            setSpectralBands(settings.getSpectralBands());
+        }
+        if (settings.getSavitzkyGolayWindow() != null && settings.getSavitzkyGolayOrder() != null) {
+            // ignore edited or outdated windows instead of failing on start-up
+            final var window = settings.getSavitzkyGolayWindow();
+            if (window == 0 || (window >= 3 && window <= SavitzkyGolay.MAX_WINDOW && window % 2 == 1)) {
+                setSavitzkyGolay(window, settings.getSavitzkyGolayOrder());
             }
         }
 
@@ -20,6 +20,13 @@ public final class Observers<E> {
         this.observerList.remove(observer);
     }
 
+    /**
+     * Whether there are no observers, so an expensive event need not be created.
+     */
+    public synchronized boolean isEmpty() {
+        return this.observerList.isEmpty();
+    }
+
     public synchronized void fire(E event) {
         for (Observer<E> observer : this.observerList) {
             try {
@@ -0,0 +1,107 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.camera.Frame;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates downscaled camera preview images decoupled from sampling.
+ * Previews are created on a worker thread at a limited rate and only while a preview width has been requested,
+ * i.e. while anybody displays them. Sampling is not affected and keeps working on the full resolution frames.
+ * Must be fed and configured from the AWT EventDispatchThread, previews are published there, too.
+ */
+public final class PreviewGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(PreviewGenerator.class);
+
+    public static final double DEFAULT_MAX_FPS = 15.;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "preview-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean generating = new AtomicBoolean();
+
+    @Getter
+    private double maxFps = DEFAULT_MAX_FPS;
+    @Getter
+    private Integer previewWidth;
+    private long lastStartNanos;
+    private Frame lastOfferedFrame;
+
+    @Getter
+    private final Observers<BufferedImage> previewObservers = new Observers<>();
+
+    /**
+     * Limit the rate of preview generation.
+     */
+    public void setMaxFps(double maxFps) {
+        if (maxFps <= 0.)
+            throw new IllegalArgumentException("max fps must be positive but is " + maxFps);
+        this.maxFps = maxFps;
+    }
+
+    /**
+     * Set the width to scale the previews down to, or <code>null</code> to stop generating previews because nothing
+     * displays them.
+     */
+    public void setPreviewWidth(Integer previewWidth) {
+        final var oldPreviewWidth = this.previewWidth;
+        this.previewWidth = previewWidth != null && previewWidth > 0 ? previewWidth : null;
+        if (this.previewWidth != null && !this.previewWidth.equals(oldPreviewWidth) && this.lastOfferedFrame != null) {
+            // regenerate for the new size, important while the camera is paused
+            offer(this.lastOfferedFrame);
+        }
+    }
+
+    /**
+     * Whether the preview for the frame needs no downscaling and should better be displayed directly from the frame's
+     * own image, which shares its memory with the captured pixels and needs no copying.
+     */
+    public boolean isFullResolution(@NonNull Frame frame) {
+        return this.previewWidth != null && frame.getWidth() > 0 && this.previewWidth >= frame.getWidth();
+    }
+
+    /**
+     * Offer a newly grabbed frame for preview generation. Skipped if no preview is wanted, the frame is displayed
+     * in full resolution, the rate limit has not yet elapsed or the previous preview is still being generated.
+     */
+    public void offer(@NonNull Frame frame) {
+        this.lastOfferedFrame = frame;
+        final var width = this.previewWidth;
+        if (width == null)
+            return;
+
+        if (frame.getPixelFormat() == Frame.PixelFormat.NONE) {
+            this.previewObservers.fire(null);
+            return;
+        }
+
+        if (isFullResolution(frame))
+            return;
+
+        final var now = System.nanoTime();
+        if (now - this.lastStartNanos < 1e9 / this.maxFps || !this.generating.compareAndSet(false, true))
+            return;
+
+        this.lastStartNanos = now;
+        this.executor.execute(() -> {
+            try {
+                final var preview = frame.createPreviewImage(width);
+                SwingUtilities.invokeLater(() -> this.previewObservers.fire(preview));
+            } catch (Exception e) {
+                LOG.error("Preview generation failed", e);
+            } finally {
+                this.generating.set(false);
+            }
+        });
+    }
+}
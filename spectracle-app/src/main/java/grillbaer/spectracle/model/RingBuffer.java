@@ -0,0 +1,84 @@
+package grillbaer.spectracle.model;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer keeping the last elements put into it, for one writing and any number of reading threads.
+ * Every element gets a sequence number. Readers access elements by sequence number and get <code>null</code> for
+ * elements already overwritten, so they never block the writer and never see a wrong element.
+ */
+public final class RingBuffer<E> {
+    private final AtomicReferenceArray<Slot<E>> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    public RingBuffer(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive but is " + capacity);
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int getCapacity() {
+        return this.slots.length();
+    }
+
+    /**
+     * Put a new element, overwriting the oldest one if full. Must only be called from one thread at a time.
+     *
+     * @return sequence number of the element
+     */
+    public long put(@NonNull E element) {
+        final var sequence = this.nextSequence.get();
+        this.slots.set((int) (sequence % this.slots.length()), new Slot<>(sequence, element));
+        this.nextSequence.set(sequence + 1);
+
+        return sequence;
+    }
+
+    /**
+     * Sequence number the next element will get, i.e. the number of elements put so far.
+     */
+    public long getNextSequence() {
+        return this.nextSequence.get();
+    }
+
+    /**
+     * Element with the passed sequence number, <code>null</code> if not yet put or already overwritten.
+     */
+    public E get(long sequence) {
+        if (sequence < 0)
+            return null;
+
+        final var slot = this.slots.get((int) (sequence % this.slots.length()));
+        return slot != null && slot.sequence == sequence ? slot.element : null;
+    }
+
+    /**
+     * Elements of a sequence range that are still available, in sequence order.
+     *
+     * @param fromSequence first sequence number, inclusive
+     * @param toSequence   last sequence number, exclusive
+     */
+    public List<E> getRange(long fromSequence, long toSequence) {
+        final var elements = new ArrayList<E>((int) Math.max(0, Math.min(toSequence - fromSequence, getCapacity())));
+        for (long sequence = Math.max(0, fromSequence); sequence < toSequence; sequence++) {
+            final var element = get(sequence);
+            if (element != null) {
+                elements.add(element);
+            }
+        }
+
+        return elements;
+    }
+
+    @AllArgsConstructor
+    private static final class Slot<E> {
+        private final long sequence;
+        private final E element;
+    }
+}
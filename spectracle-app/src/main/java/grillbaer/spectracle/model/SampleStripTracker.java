@@ -0,0 +1,230 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+
+/**
+ * Finds the spectrum band within the camera frame and chooses the sample strip for the best signal-to-noise ratio.
+ * <p>
+ * A frame is analyzed by reducing a horizontally downscaled copy of it to its row intensity profile. Within the
+ * profile, the background level and noise are estimated robustly by median and median absolute deviation. Averaging
+ * <i>n</i> rows with a summed signal <i>S</i> above background gives an SNR proportional to <i>S / √n</i>, so the
+ * strip maximizing this is chosen. Wide strips thus include the band's flanks only as long as they add more signal
+ * than noise.
+ * <p>
+ * For tracking slow drifts, only one frame every few seconds is analyzed, the cost for all other frames is a time
+ * check. Changes of a few rows are ignored to keep the strip from jittering between noisy detections.
+ */
+public final class SampleStripTracker {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(3);
+
+    /**
+     * Width the frame is downscaled to before reducing it to the row profile.
+     */
+    private static final int PROFILE_WIDTH = 160;
+    /**
+     * Minimum peak signal above background as a multiple of the noise level to accept a band.
+     */
+    private static final double MIN_PEAK_SNR = 8.;
+    /**
+     * Noise floor for the profile, half a quantization step, because averaging rows can give zero deviation.
+     */
+    private static final double MIN_NOISE = 0.5 / 255.;
+    /**
+     * Relative change of the strip height to accept as a new height.
+     */
+    private static final double HEIGHT_HYSTERESIS = 0.2;
+    /**
+     * Minimum shift of the strip center in rows to accept as a new position.
+     */
+    private static final int MIN_CENTER_HYSTERESIS_ROWS = 3;
+    /**
+     * Shift of the strip center relative to the strip height to accept as a new position, if more than the minimum.
+     */
+    private static final double CENTER_HYSTERESIS = 0.25;
+
+    @Getter
+    private Duration interval = DEFAULT_INTERVAL;
+    @Getter
+    private int maxRows = 100;
+
+    private long nextDetectionNanos;
+    /**
+     * Created on first use, as the native libs may not yet be loaded on construction.
+     */
+    private Mat reducedMat;
+    private Mat profileMat;
+    @Getter
+    private Strip lastStrip;
+
+    public void setInterval(@NonNull Duration interval) {
+        if (interval.isNegative())
+            throw new IllegalArgumentException("interval must not be negative but is " + interval);
+        this.interval = interval;
+    }
+
+    public void setMaxRows(int maxRows) {
+        this.maxRows = max(1, maxRows);
+    }
+
+    /**
+     * Detect on the next offered frame.
+     */
+    public void reset() {
+        this.nextDetectionNanos = System.nanoTime();
+        this.lastStrip = null;
+    }
+
+    /**
+     * Offer the next grabbed frame.
+     *
+     * @param currentRowPosRatio the currently sampled strip's center row as ratio of the frame height
+     * @param currentRows        the currently sampled strip's rows
+     * @return the new strip to sample if due for detection and changed, <code>null</code> otherwise
+     */
+    public Strip offer(@NonNull Frame frame, double currentRowPosRatio, int currentRows) {
+        final var now = System.nanoTime();
+        if (now - this.nextDetectionNanos < 0L || frame.getPixelFormat() == PixelFormat.NONE)
+            return null;
+
+        this.nextDetectionNanos = now + this.interval.toNanos();
+        final var strip = detect(frame);
+        if (strip == null)
+            return null;
+
+        this.lastStrip = strip;
+        return applyHysteresis(strip, (int) (frame.getHeight() * currentRowPosRatio), currentRows);
+    }
+
+    /**
+     * Take over the center and height of a detected strip only if they differ clearly from the current ones.
+     *
+     * @return the new strip to sample, <code>null</code> to keep the current one
+     */
+    static Strip applyHysteresis(@NonNull Strip detected, int currentCenterRow, int currentRows) {
+        final var heightChanged = abs(detected.rows - currentRows) > max(1., HEIGHT_HYSTERESIS * currentRows);
+        final var centerChanged = abs(detected.centerRow - currentCenterRow)
+                > max(MIN_CENTER_HYSTERESIS_ROWS, CENTER_HYSTERESIS * currentRows);
+        if (!centerChanged && !heightChanged)
+            return null;
+
+        return new Strip(centerChanged ? detected.centerRow : currentCenterRow,
+                heightChanged ? detected.rows : currentRows, detected.frameRows);
+    }
+
+    /**
+     * Detect the spectrum band of a frame.
+     *
+     * @return the strip with the best SNR, <code>null</code> if no band stands out against the background
+     */
+    public Strip detect(@NonNull Frame frame) {
+        final var mat = frame.getMat();
+        if (mat == null || mat.empty())
+            return null;
+
+        if (this.reducedMat == null) {
+            this.reducedMat = new Mat();
+            this.profileMat = new Mat();
+        }
+        final var width = min(PROFILE_WIDTH, mat.cols());
+        // nearest neighbour touches only the sampled pixels, the horizontal average is done by reduce anyway
+        Imgproc.resize(mat, this.reducedMat, new Size(width, mat.rows()), 0., 0., Imgproc.INTER_NEAREST);
+        Core.reduce(this.reducedMat, this.profileMat, 1, Core.REDUCE_AVG, CvType.CV_32F);
+
+        final var channels = this.profileMat.channels();
+        final var rowValues = new float[this.profileMat.rows() * channels];
+        this.profileMat.get(0, 0, rowValues);
+
+        final var profile = new double[this.profileMat.rows()];
+        for (int row = 0; row < profile.length; row++) {
+            if (frame.getPixelFormat() == PixelFormat.YUYV) {
+                profile[row] = rowValues[row * channels] / 255.; // luma only
+            } else {
+                double sum = 0.;
+                for (int c = 0; c < channels; c++) {
+                    sum += rowValues[row * channels + c];
+                }
+                profile[row] = sum / channels / 255.;
+            }
+        }
+
+        return findStrip(profile, this.maxRows);
+    }
+
+    /**
+     * Find the contiguous range of rows with the maximum SNR within a row profile.
+     */
+    static Strip findStrip(@NonNull double[] profile, int maxRows) {
+        final var rows = profile.length;
+        if (rows == 0)
+            return null;
+
+        final var sorted = profile.clone();
+        Arrays.sort(sorted);
+        final var background = sorted[rows / 2];
+        final var deviations = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            deviations[i] = abs(profile[i] - background);
+        }
+        Arrays.sort(deviations);
+        final var noise = max(MIN_NOISE, 1.4826 * deviations[rows / 2]);
+
+        final var prefixSums = new double[rows + 1];
+        var peak = 0.;
+        for (int i = 0; i < rows; i++) {
+            final var signal = profile[i] - background;
+            prefixSums[i + 1] = prefixSums[i] + signal;
+            peak = max(peak, signal);
+        }
+        if (peak < MIN_PEAK_SNR * noise)
+            return null;
+
+        var bestFirst = 0;
+        var bestRows = 1;
+        var bestSnr = Double.NEGATIVE_INFINITY;
+        for (int first = 0; first < rows; first++) {
+            for (int n = 1; n <= maxRows && first + n <= rows; n++) {
+                final var snr = (prefixSums[first + n] - prefixSums[first]) / sqrt(n);
+                if (snr > bestSnr) {
+                    bestSnr = snr;
+                    bestFirst = first;
+                    bestRows = n;
+                }
+            }
+        }
+
+        return new Strip(bestFirst + bestRows / 2, bestRows, rows);
+    }
+
+    /**
+     * A horizontal strip of frame rows.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Strip {
+        private final int centerRow;
+        private final int rows;
+        /**
+         * Total rows of the analyzed frame.
+         */
+        private final int frameRows;
+
+        public double getCenterRowRatio() {
+            // center of the row, so that truncating back to rows yields the same row
+            return (this.centerRow + 0.5) / this.frameRows;
+        }
+    }
+}
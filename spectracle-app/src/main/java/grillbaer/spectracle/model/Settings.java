@@ -4,6 +4,10 @@ import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import grillbaer.spectracle.camera.CameraProps;
+import grillbaer.spectracle.spectrum.HotPixelMap;
+import grillbaer.spectracle.spectrum.LineSpreadFunction;
+import grillbaer.spectracle.spectrum.LinearizationLut;
+import grillbaer.spectracle.spectrum.SpectralBands;
 import grillbaer.spectracle.spectrum.WaveLengthCalibration;
 import lombok.*;
 
@@ -30,6 +34,48 @@ public class Settings {
     private Integer selectedCameraId;
     @JsonProperty("normalizeSampleValues")
     private Boolean normalizeSampleValues;
+    @JsonProperty("previewMaxFps")
+    private Double previewMaxFps;
+    @JsonProperty("autoExposure")
+    private Boolean autoExposure;
+    @JsonProperty("autoExposureTargetPeakLevel")
+    private Double autoExposureTargetPeakLevel;
+    @JsonProperty("hdrBracketing")
+    private Boolean hdrBracketing;
+    @JsonProperty("hdrExposureOffsets")
+    private double[] hdrExposureOffsets;
+    @JsonProperty("sampleRowPosRatio")
+    private Double sampleRowPosRatio;
+    @JsonProperty("sampleRows")
+    private Integer sampleRows;
+    @JsonProperty("sampleStripTracking")
+    private Boolean sampleStripTracking;
+    @JsonProperty("referenceRowPosRatio")
+    private Double referenceRowPosRatio;
+    @JsonProperty("measurementMode")
+    private Model.MeasurementMode measurementMode;
+    @JsonProperty("adaptiveFrameRate")
+    private Boolean adaptiveFrameRate;
+    @JsonProperty("timelapseIntervalSeconds")
+    private Double timelapseIntervalSeconds;
+    @JsonProperty("timelapseFramesPerRun")
+    private Integer timelapseFramesPerRun;
+    @JsonProperty("timelapseCatchUpPolicy")
+    private TimelapseScheduler.CatchUpPolicy timelapseCatchUpPolicy;
+    @JsonProperty("triggerCriterion")
+    private TransientTrigger.Criterion triggerCriterion;
+    @JsonProperty("triggerThreshold")
+    private Double triggerThreshold;
+    @JsonProperty("triggerPreFrames")
+    private Integer triggerPreFrames;
+    @JsonProperty("triggerPostFrames")
+    private Integer triggerPostFrames;
+    @JsonProperty("spectralBands")
+    private SpectralBands spectralBands;
+    @JsonProperty("savitzkyGolayWindow")
+    private Integer savitzkyGolayWindow;
+    @JsonProperty("savitzkyGolayOrder")
+    private Integer savitzkyGolayOrder;
 
     @JsonProperty("lastUsedDirectories")
     private final Map<String, String> lastUsedDirectories = new HashMap<>();
@@ -79,6 +125,12 @@ public class Settings {
         private CameraProps cameraProps;
         @JsonProperty("sensitivityCalibration")
         private SensitivityCalibration sensitivityCalibration;
+        @JsonProperty("hotPixels")
+        private HotPixelMap hotPixelMap;
+        @JsonProperty("linearization")
+        private LinearizationLut linearization;
+        @JsonProperty("lineSpread")
+        private LineSpreadFunction lineSpreadFunction;
 
         public Camera(@JsonProperty("id") int id) {
             this.id = id;
@@ -0,0 +1,131 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.Spectrum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Recording of spectra taken over time, appended as CSV rows to a file.
+ * Each row contains the timing information of the measurement followed by the values at the wavelengths of the
+ * first recorded spectrum. Every entry is flushed immediately, so an interrupted long-term recording keeps all
+ * measurements taken so far. Only the last entry is held in memory.
+ */
+public final class SpectrumRecording implements Closeable {
+    @Getter
+    private final Path file;
+    private final BufferedWriter writer;
+    private Spectrum firstSpectrum;
+    @Getter
+    private int entryCount;
+    @Getter
+    private Entry lastEntry;
+
+    @Getter
+    private final Observers<Entry> entryObservers = new Observers<>();
+
+    public SpectrumRecording(@NonNull Path file) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    public synchronized void append(@NonNull Entry entry) throws IOException {
+        final var spectrum = entry.getSpectrum();
+        if (this.firstSpectrum == null) {
+            this.firstSpectrum = spectrum;
+            writeHeader(spectrum);
+        } else if (spectrum.getLength() != this.firstSpectrum.getLength())
+            throw new IllegalArgumentException("recorded spectra must have equal length but have "
+                    + this.firstSpectrum.getLength() + " <> " + spectrum.getLength());
+
+        final var line = new StringBuilder(spectrum.getLength() * 10);
+        line.append(entry.getSlotTime()).append(',')
+                .append(entry.getStartTime()).append(',')
+                .append(entry.getFrameCount()).append(',')
+                .append(entry.getStartDelay().toMillis()).append(',')
+                .append(entry.getWakeLatency().toMillis()).append(',')
+                .append(entry.getCaptureDuration().toMillis()).append(',')
+                .append(entry.getTotalLatency().toMillis());
+        for (int i = 0; i < spectrum.getLength(); i++) {
+            line.append(',').append(String.format(Locale.ROOT, "%.6f", spectrum.getValueAtIndex(i)));
+        }
+        this.writer.write(line.toString());
+        this.writer.newLine();
+        this.writer.flush();
+
+        this.entryCount++;
+        this.lastEntry = entry;
+        this.entryObservers.fire(entry);
+    }
+
+    private void writeHeader(@NonNull Spectrum spectrum) throws IOException {
+        final var header = new StringBuilder("slotTime,startTime,frames,startDelayMs,wakeMs,captureMs,totalMs");
+        for (int i = 0; i < spectrum.getLength(); i++) {
+            header.append(',').append(String.format(Locale.ROOT, "%.2f", spectrum.getNanoMetersAtIndex(i)));
+        }
+        this.writer.write(header.toString());
+        this.writer.newLine();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * One measurement of the recording with its timing report.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString(exclude = "spectrum")
+    public static final class Entry {
+        /**
+         * Point in time the measurement was scheduled for.
+         */
+        private final @NonNull Instant slotTime;
+        /**
+         * Point in time the measurement actually started.
+         */
+        private final @NonNull Instant startTime;
+        /**
+         * Averaged spectrum.
+         */
+        private final @NonNull Spectrum spectrum;
+        /**
+         * Number of averaged frames.
+         */
+        private final int frameCount;
+        /**
+         * Delay between the scheduled slot and the start of the measurement.
+         */
+        private final @NonNull Duration startDelay;
+        /**
+         * Time needed to wake the camera until it was ready for grabbing.
+         */
+        private final @NonNull Duration wakeLatency;
+        /**
+         * Time needed for grabbing and averaging all frames.
+         */
+        private final @NonNull Duration captureDuration;
+
+        /**
+         * Time from the scheduled slot until the measurement was complete.
+         */
+        public Duration getTotalLatency() {
+            return this.startDelay.plus(this.wakeLatency).plus(this.captureDuration);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.camera.Camera;
+import grillbaer.spectracle.camera.CameraManager;
+import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.spectrum.SampleLine;
+import grillbaer.spectracle.spectrum.Spectrum;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Periodic unattended measurements. For each time slot the camera is woken up, a number of frames is grabbed through
+ * the model's normal pipeline and averaged, and the resulting spectrum is appended to a recording. Between the slots
+ * the camera is paused and released to the camera manager.
+ * <p>
+ * Slots are calculated from the start time, not from the end of the previous run, so timing does not drift.
+ * Slots missed because a run took too long or the system was suspended are handled by a {@link CatchUpPolicy}.
+ * <p>
+ * Must only be used from the AWT EventDispatchThread.
+ */
+public final class TimelapseScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(TimelapseScheduler.class);
+
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+    public static final int DEFAULT_FRAMES_PER_RUN = 10;
+    public static final int DEFAULT_DISCARD_FRAMES = 3;
+
+    /**
+     * How to deal with slots that have been missed.
+     */
+    public enum CatchUpPolicy {
+        /**
+         * Skip missed slots and continue with the next future one.
+         */
+        SKIP,
+        /**
+         * Run once immediately for all missed slots, then continue with the next future one.
+         */
+        RUN_ONCE,
+        /**
+         * Run immediately for each missed slot, one after the other, until caught up.
+         */
+        RUN_ALL
+    }
+
+    private final Model model;
+    private final CameraManager cameraManager;
+
+    @Getter
+    private Duration interval = DEFAULT_INTERVAL;
+    @Getter
+    private int framesPerRun = DEFAULT_FRAMES_PER_RUN;
+    @Getter
+    private int discardFrames = DEFAULT_DISCARD_FRAMES;
+    @Getter
+    private CatchUpPolicy catchUpPolicy = CatchUpPolicy.SKIP;
+
+    @Getter
+    private SpectrumRecording recording;
+    private int cameraId;
+    private Instant startTime;
+    private long startNanos;
+    private long slotIndex;
+    private Timer slotTimer;
+    private Run currentRun;
+
+    @Getter
+    private final Observers<Boolean> runningObservers = new Observers<>();
+
+    public TimelapseScheduler(@NonNull Model model, @NonNull CameraManager cameraManager) {
+        this.model = model;
+        this.cameraManager = cameraManager;
+    }
+
+    public void setInterval(@NonNull Duration interval) {
+        if (interval.isNegative() || interval.isZero())
+            throw new IllegalArgumentException("interval must be positive but is " + interval);
+        this.interval = interval;
+    }
+
+    public void setFramesPerRun(int framesPerRun) {
+        if (framesPerRun < 1)
+            throw new IllegalArgumentException("at least one frame per run required but got " + framesPerRun);
+        this.framesPerRun = framesPerRun;
+    }
+
+    /**
+     * Set the number of frames to discard after waking the camera, before frames are averaged.
+     */
+    public void setDiscardFrames(int discardFrames) {
+        this.discardFrames = Math.max(0, discardFrames);
+    }
+
+    public void setCatchUpPolicy(@NonNull CatchUpPolicy catchUpPolicy) {
+        this.catchUpPolicy = catchUpPolicy;
+    }
+
+    public boolean isRunning() {
+        return this.recording != null;
+    }
+
+    /**
+     * Start periodic measurements with the model's current camera, the first one immediately.
+     */
+    public void start(@NonNull SpectrumRecording recording) {
+        if (isRunning())
+            throw new IllegalStateException("timelapse already running");
+        if (this.model.getCameraId() == null)
+            throw new IllegalStateException("no camera for timelapse");
+
+        this.recording = recording;
+        this.cameraId = this.model.getCameraId();
+        this.startTime = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.slotIndex = 0;
+        LOG.info("Timelapse started with camera id={}, interval {}, {} frames per run, catch-up {}, recording to {}",
+                this.cameraId, this.interval, this.framesPerRun, this.catchUpPolicy, recording.getFile());
+        this.runningObservers.fire(true);
+        scheduleSlot();
+    }
+
+    /**
+     * Stop periodic measurements, aborting a currently running measurement. The camera is given back to the model
+     * paused.
+     */
+    public void stop() {
+        if (!isRunning())
+            return;
+
+        if (this.slotTimer != null) {
+            this.slotTimer.stop();
+            this.slotTimer = null;
+        }
+        if (this.currentRun != null) {
+            this.currentRun.abort();
+            this.currentRun = null;
+        }
+        try {
+            this.recording.close();
+        } catch (IOException e) {
+            LOG.error("Closing timelapse recording {} failed", this.recording.getFile(), e);
+        }
+        LOG.info("Timelapse stopped after {} measurements", this.recording.getEntryCount());
+        this.recording = null;
+        reacquireCamera();
+        this.runningObservers.fire(false);
+    }
+
+    /**
+     * Gives the camera released between the slots back to the model for interactive use.
+     */
+    private void reacquireCamera() {
+        if (this.model.getCamera() != null)
+            return;
+
+        this.cameraManager.acquire(this.cameraId).thenAccept(camera -> SwingUtilities.invokeLater(() -> {
+            if (camera == null)
+                return;
+            if (this.model.getCamera() == null && !isRunning()) {
+                this.model.setCamera(camera);
+            } else {
+                this.cameraManager.release(camera);
+            }
+        }));
+    }
+
+    private long slotNanos(long index) {
+        return this.startNanos + index * this.interval.toNanos();
+    }
+
+    private void scheduleSlot() {
+        final var delayMillis = Math.max(0L, (slotNanos(this.slotIndex) - System.nanoTime()) / 1_000_000L);
+        this.slotTimer = new Timer((int) Math.min(Integer.MAX_VALUE, delayMillis), e -> {
+            this.slotTimer = null;
+            if (isRunning()) {
+                this.currentRun = new Run(this.slotIndex);
+                this.currentRun.wake();
+            }
+        });
+        this.slotTimer.setRepeats(false);
+        this.slotTimer.start();
+    }
+
+    private void runFinished(@NonNull Run run) {
+        this.currentRun = null;
+        if (!isRunning())
+            return;
+
+        this.slotIndex = nextSlotIndex(run.slot);
+        scheduleSlot();
+    }
+
+    private long nextSlotIndex(long finishedSlot) {
+        final var intervalNanos = this.interval.toNanos();
+        final var currentSlot = (System.nanoTime() - this.startNanos) / intervalNanos;
+        final var missedSlots = currentSlot - finishedSlot;
+        if (missedSlots <= 0)
+            return finishedSlot + 1;
+
+        LOG.warn("Timelapse missed {} slot(s) after slot {}, catching up with policy {}",
+                missedSlots, finishedSlot, this.catchUpPolicy);
+        return switch (this.catchUpPolicy) {
+            case SKIP -> currentSlot + 1;
+            case RUN_ONCE -> currentSlot;
+            case RUN_ALL -> finishedSlot + 1;
+        };
+    }
+
+    /**
+     * A single measurement for one slot.
+     */
+    private final class Run implements Observer<Frame> {
+        private final long slot;
+        private final long slotStartNanos;
+        private long startNanos;
+        private long readyNanos;
+        private Camera camera;
+        private int grabbedFrames;
+        private int averagedFrames;
+        private double[] sums;
+        private Spectrum lastSpectrum;
+        private boolean aborted;
+
+        Run(long slot) {
+            this.slot = slot;
+            this.slotStartNanos = slotNanos(slot);
+        }
+
+        void wake() {
+            this.startNanos = System.nanoTime();
+            final var currentCamera = model.getCamera();
+            if (currentCamera != null && currentCamera.getId() == cameraId) {
+                cameraReady(currentCamera);
+                return;
+            }
+
+            cameraManager.acquire(cameraId).whenComplete((acquired, e) -> SwingUtilities.invokeLater(() -> {
+                if (this.aborted) {
+                    if (acquired != null) {
+                        cameraManager.release(acquired);
+                    }
+                } else if (acquired == null) {
+                    LOG.error("Timelapse slot {}: camera id={} not available", this.slot, cameraId, e);
+                    runFinished(this);
+                } else {
+                    final var previousCamera = model.getCamera();
+                    model.setCamera(acquired);
+                    if (previousCamera != null) {
+                        cameraManager.release(previousCamera);
+                    }
+                    cameraReady(acquired);
+                }
+            }));
+        }
+
+        private void cameraReady(@NonNull Camera readyCamera) {
+            this.camera = readyCamera;
+            this.readyNanos = System.nanoTime();
+            // averages from the previous slot are possibly hours old and must not leak into this one
+            model.restartAveraging();
+            model.getFrameGrabbedObservers().add(this);
+            model.setCameraPaused(false);
+        }
+
+        @Override
+        public void changed(Frame frame) {
+            if (this.aborted)
+                return;
+
+            this.grabbedFrames++;
+            final var spectrum = model.getSpectrum();
+            if (this.grabbedFrames <= discardFrames || spectrum == null)
+                return;
+
+            if (this.sums == null || this.sums.length != spectrum.getLength()) {
+                this.sums = new double[spectrum.getLength()];
+                this.averagedFrames = 0;
+            }
+            for (int i = 0; i < this.sums.length; i++) {
+                this.sums[i] += spectrum.getValueAtIndex(i);
+            }
+            this.averagedFrames++;
+            this.lastSpectrum = spectrum;
+
+            if (this.averagedFrames >= framesPerRun) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            final var doneNanos = System.nanoTime();
+            sleep();
+
+            for (int i = 0; i < this.sums.length; i++) {
+                this.sums[i] /= this.averagedFrames;
+            }
+            final var entry = new SpectrumRecording.Entry(
+                    startTime.plusNanos(this.slotStartNanos - TimelapseScheduler.this.startNanos),
+                    startTime.plusNanos(this.startNanos - TimelapseScheduler.this.startNanos),
+                    Spectrum.create(SampleLine.create(this.sums), this.lastSpectrum.getCalibration()),
+                    this.averagedFrames,
+                    Duration.ofNanos(Math.max(0L, this.startNanos - this.slotStartNanos)),
+                    Duration.ofNanos(this.readyNanos - this.startNanos),
+                    Duration.ofNanos(doneNanos - this.readyNanos));
+            LOG.info("Timelapse slot {}: start delay {} ms, wake {} ms, capture {} ms, total latency {} ms",
+                    this.slot, entry.getStartDelay().toMillis(), entry.getWakeLatency().toMillis(),
+                    entry.getCaptureDuration().toMillis(), entry.getTotalLatency().toMillis());
+            try {
+                recording.append(entry);
+            } catch (IOException e) {
+                LOG.error("Appending to timelapse recording {} failed", recording.getFile(), e);
+            }
+
+            runFinished(this);
+        }
+
+        void abort() {
+            this.aborted = true;
+            if (this.camera != null) {
+                model.getFrameGrabbedObservers().remove(this);
+                model.setCameraPaused(true);
+            }
+        }
+
+        /**
+         * Stops grabbing and releases the camera until the next slot.
+         */
+        private void sleep() {
+            model.getFrameGrabbedObservers().remove(this);
+            model.setCameraPaused(true);
+            if (model.getCamera() == this.camera) {
+                model.setCamera(null);
+                cameraManager.release(this.camera);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.CompactSampleLine;
+import grillbaer.spectracle.spectrum.CompactSampleLine.Storage;
+import grillbaer.spectracle.spectrum.SampleLine;
+import grillbaer.spectracle.spectrum.Spectrum;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+/**
+ * Catches transient events like flashes at full frame rate without recording everything. The last raw spectra are
+ * kept in a lock-free ring. Each new one is checked against a cheap trigger criterion, and when the trigger fires,
+ * the pre-trigger spectra and the following post-trigger spectra are persisted to a CSV file in the background.
+ * Level criteria fire on the rising edge only and re-arm after the level fell below {@link #REARM_FRACTION} of the
+ * threshold, so a lasting condition is saved once.
+ * <p>
+ * Must be fed and configured from the AWT EventDispatchThread.
+ */
+public final class TransientTrigger {
+    private static final Logger LOG = LoggerFactory.getLogger(TransientTrigger.class);
+
+    private static final DateTimeFormatter FILE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneId.systemDefault());
+
+    public static final int DEFAULT_PRE_TRIGGER_FRAMES = 30;
+    public static final int DEFAULT_POST_TRIGGER_FRAMES = 30;
+    private static final double BASELINE_ANNEALING = 0.05;
+
+    /**
+     * Fraction of the threshold a level must fall below to re-arm the trigger.
+     */
+    public static final double REARM_FRACTION = 0.8;
+
+    /**
+     * Per-frame criterion for firing the trigger.
+     */
+    public enum Criterion {
+        /**
+         * Total intensity rose by more than the threshold ratio relative to the previous frame.
+         */
+        INTENSITY_JUMP(0.5),
+        /**
+         * Ratio of the intensities within band A and band B rises above the threshold.
+         */
+        BAND_RATIO(2.),
+        /**
+         * Mean absolute deviation from a slowly adapting baseline spectrum rises above the threshold.
+         */
+        BASELINE_DEVIATION(0.05);
+
+        @Getter
+        private final double defaultThreshold;
+
+        Criterion(double defaultThreshold) {
+            this.defaultThreshold = defaultThreshold;
+        }
+    }
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "transient-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Getter
+    private Criterion criterion = Criterion.INTENSITY_JUMP;
+    @Getter
+    private double threshold = Criterion.INTENSITY_JUMP.getDefaultThreshold();
+    @Getter
+    private double bandANanoMeters1 = 380.;
+    @Getter
+    private double bandANanoMeters2 = 450.;
+    @Getter
+    private double bandBNanoMeters1 = 500.;
+    @Getter
+    private double bandBNanoMeters2 = 650.;
+    @Getter
+    private int preTriggerFrames = DEFAULT_PRE_TRIGGER_FRAMES;
+    @Getter
+    private int postTriggerFrames = DEFAULT_POST_TRIGGER_FRAMES;
+
+    /**
+     * Base file to derive the event files from, <code>null</code> while disarmed.
+     */
+    @Getter
+    private Path baseFile;
+    private RingBuffer<Sample> ring;
+    private double previousTotal = Double.NaN;
+    private double[] baseline;
+    private long triggerSequence = -1;
+    /**
+     * Whether the level of a level criterion is still high since it fired, blocking the trigger.
+     */
+    private boolean levelHigh;
+
+    @Getter
+    private final Observers<Path> eventSavedObservers = new Observers<>();
+
+    public void setCriterion(@NonNull Criterion criterion, double threshold) {
+        this.criterion = criterion;
+        this.threshold = threshold;
+        resetDetection();
+    }
+
+    /**
+     * Set the wavelength bands for the {@link Criterion#BAND_RATIO} criterion.
+     */
+    public void setBands(double bandANanoMeters1, double bandANanoMeters2,
+                         double bandBNanoMeters1, double bandBNanoMeters2) {
+        this.bandANanoMeters1 = bandANanoMeters1;
+        this.bandANanoMeters2 = bandANanoMeters2;
+        this.bandBNanoMeters1 = bandBNanoMeters1;
+        this.bandBNanoMeters2 = bandBNanoMeters2;
+    }
+
+    /**
+     * Set the number of frames to save before and after the triggering one, takes effect on next arming.
+     */
+    public void setFrames(int preTriggerFrames, int postTriggerFrames) {
+        this.preTriggerFrames = max(0, preTriggerFrames);
+        this.postTriggerFrames = max(0, postTriggerFrames);
+    }
+
+    /**
+     * Start watching for events. Each event will be saved to a file named like the base file with the event's time
+     * appended.
+     */
+    public void arm(@NonNull Path baseFile) {
+        this.baseFile = baseFile;
+        this.ring = new RingBuffer<>(this.preTriggerFrames + this.postTriggerFrames + 1);
+        resetDetection();
+        LOG.info("Transient trigger armed with {} > {}, {} pre and {} post frames, saving to {}",
+                this.criterion, this.threshold, this.preTriggerFrames, this.postTriggerFrames, baseFile);
+    }
+
+    public void disarm() {
+        this.baseFile = null;
+        this.ring = null;
+        resetDetection();
+    }
+
+    public boolean isArmed() {
+        return this.baseFile != null;
+    }
+
+    private void resetDetection() {
+        this.previousTotal = Double.NaN;
+        this.baseline = null;
+        this.triggerSequence = -1;
+        this.levelHigh = false;
+    }
+
+    /**
+     * Get ready for the next event, without re-arming a level criterion whose level is still high.
+     */
+    private void finishEvent() {
+        this.previousTotal = Double.NaN;
+        this.triggerSequence = -1;
+    }
+
+    /**
+     * Offer the raw sample line of a newly grabbed frame.
+     */
+    public void offer(@NonNull SampleLine rawSampleLine, @NonNull WaveLengthCalibration calibration) {
+        if (!isArmed())
+            return;
+
+        final var sequence = this.ring.put(new Sample(Instant.now(),
+                CompactSampleLine.of(rawSampleLine, Storage.FLOAT), calibration));
+        if (this.triggerSequence >= 0) {
+            if (sequence >= this.triggerSequence + this.postTriggerFrames) {
+                saveEvent(this.triggerSequence);
+                finishEvent();
+            }
+            return; // hold off while collecting post-trigger frames
+        }
+
+        if (isTriggered(rawSampleLine, calibration)) {
+            LOG.info("Transient trigger fired by {}", this.criterion);
+            this.triggerSequence = sequence;
+            if (this.postTriggerFrames == 0) {
+                saveEvent(sequence);
+                finishEvent();
+            }
+        }
+    }
+
+    private boolean isTriggered(@NonNull SampleLine sampleLine, @NonNull WaveLengthCalibration calibration) {
+        return switch (this.criterion) {
+            case INTENSITY_JUMP -> {
+                final var total = sampleLine.getStatistics().getSum();
+                final var previous = this.previousTotal;
+                this.previousTotal = total;
+                yield !Double.isNaN(previous) && (total - previous) / max(previous, 1e-9) > this.threshold;
+            }
+            case BAND_RATIO -> {
+                final var bandA = integrateBand(sampleLine, calibration, this.bandANanoMeters1, this.bandANanoMeters2);
+                final var bandB = integrateBand(sampleLine, calibration, this.bandBNanoMeters1, this.bandBNanoMeters2);
+                yield isRisingAboveThreshold(bandA / max(bandB, 1e-9));
+            }
+            case BASELINE_DEVIATION -> isRisingAboveThreshold(deviationFromBaseline(sampleLine));
+        };
+    }
+
+    /**
+     * Whether a level rose above the threshold, re-arming only after it fell below {@link #REARM_FRACTION} of it.
+     */
+    private boolean isRisingAboveThreshold(double level) {
+        if (this.levelHigh) {
+            this.levelHigh = !(level < REARM_FRACTION * this.threshold);
+            return false;
+        }
+
+        this.levelHigh = level > this.threshold;
+        return this.levelHigh;
+    }
+
+    /**
+     * Mean absolute deviation from the baseline, <code>NaN</code> while there is no baseline yet.
+     */
+    private double deviationFromBaseline(@NonNull SampleLine sampleLine) {
+        final var length = sampleLine.getLength();
+        if (this.baseline == null || this.baseline.length != length || length == 0) {
+            this.baseline = sampleLine.getCopyOfValues();
+            return Double.NaN;
+        }
+
+        double deviationSum = 0.;
+        for (int i = 0; i < length; i++) {
+            deviationSum += abs(sampleLine.getValue(i) - this.baseline[i]);
+        }
+        final var deviation = deviationSum / length;
+        if (deviation <= this.threshold) {
+            // adapt to slow changes, but keep the event out of the baseline
+            for (int i = 0; i < length; i++) {
+                this.baseline[i] += BASELINE_ANNEALING * (sampleLine.getValue(i) - this.baseline[i]);
+            }
+        }
+
+        return deviation;
+    }
+
+    private static double integrateBand(@NonNull SampleLine sampleLine, @NonNull WaveLengthCalibration calibration,
+                                  double nanoMeters1, double nanoMeters2) {
+        final var length = sampleLine.getLength();
+        final var index1 = calibration.nanoMetersToIndex(length, nanoMeters1);
+        final var index2 = calibration.nanoMetersToIndex(length, nanoMeters2);
+
+        return sampleLine.integrate(Math.min(index1, index2), Math.max(index1, index2));
+    }
+
+    /**
+     * Wait until the events triggered so far are written.
+     */
+    void awaitSavedEvents() throws InterruptedException, ExecutionException {
+        this.writer.submit(() -> {
+        }).get();
+    }
+
+    private void saveEvent(long triggerSequence) {
+        final var samples = this.ring.getRange(triggerSequence - this.preTriggerFrames,
+                triggerSequence + this.postTriggerFrames + 1);
+        final var trigger = this.ring.get(triggerSequence);
+        if (trigger == null || samples.isEmpty())
+            return;
+
+        final var file = eventFile(this.baseFile, trigger.time);
+        this.writer.execute(() -> {
+            try {
+                writeEvent(file, trigger, samples);
+                LOG.info("Transient event with {} frames saved to {}", samples.size(), file);
+                SwingUtilities.invokeLater(() -> this.eventSavedObservers.fire(file));
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Saving transient event to {} failed", file, e);
+            }
+        });
+    }
+
+    private static void writeEvent(@NonNull Path file, @NonNull Sample trigger, @NonNull List<Sample> samples)
+            throws IOException {
+        try (var recording = new SpectrumRecording(file)) {
+            for (var sample : samples) {
+                // the trigger time takes the slot time column, the frame time the start time column
+                recording.append(new SpectrumRecording.Entry(trigger.time, sample.time,
+                        Spectrum.create(sample.sampleLine, sample.calibration), 1,
+                        Duration.ZERO, Duration.ZERO, Duration.ZERO));
+            }
+        }
+    }
+
+    static Path eventFile(@NonNull Path baseFile, @NonNull Instant time) {
+        final var name = baseFile.getFileName().toString();
+        final var dot = name.lastIndexOf('.');
+        final var stem = dot > 0 ? name.substring(0, dot) : name;
+        final var extension = dot > 0 ? name.substring(dot) : ".csv";
+
+        return baseFile.resolveSibling(stem + "-" + FILE_TIME_FORMAT.format(time) + extension);
+    }
+
+    @AllArgsConstructor
+    private static final class Sample {
+        private final Instant time;
+        private final CompactSampleLine sampleLine;
+        private final WaveLengthCalibration calibration;
+    }
+}
@@ -0,0 +1,161 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Temporal noise filter running a scalar Kalman filter per bin, as an alternative to the fixed exponential
+ * {@link Calculations#timeAverage}. The measurement noise of each bin is estimated online from the innovations, so
+ * bright, shot-noise dominated bins and dark bins are both handled well.
+ * <p>
+ * While a bin is steady, the filter converges to an exponential average with the configured averaging factor. An
+ * innovation well beyond the expected noise is taken as a real change and the bin jumps to the new value immediately
+ * instead of lagging behind.
+ * <p>
+ * All state is kept in primitive arrays, each frame costs O(n).
+ * Not thread-safe.
+ */
+public final class AdaptiveTemporalFilter {
+    public static final double DEFAULT_CHANGE_SIGMAS = 4.;
+    public static final double MAX_AVERAGING_FACTOR = 0.995;
+
+    /**
+     * Lowest measurement noise variance, about a tenth of an 8 bit step as standard deviation.
+     */
+    private static final double MIN_NOISE_VARIANCE = 1.5e-7;
+    /**
+     * Weight of a new innovation in the running noise estimate.
+     */
+    private static final double NOISE_ADAPTION_RATE = 0.05;
+    /**
+     * Growth of the noise estimate on each detected change, so an underestimated noise cannot make every frame look
+     * like a change forever.
+     */
+    private static final double CHANGE_NOISE_GROWTH = 1.5;
+
+    @Getter
+    private double averagingFactor;
+    /**
+     * Process noise relative to the measurement noise, derived from the averaging factor.
+     */
+    private double processNoiseRatio = Double.POSITIVE_INFINITY;
+    @Getter
+    private double changeSigmas = DEFAULT_CHANGE_SIGMAS;
+
+    private double[] estimates;
+    private double[] estimateVariances;
+    private double[] noiseVariances;
+    private SampleLine lastInput;
+    private SampleLine lastOutput;
+
+    /**
+     * Set the share of the previous estimate while the signal is steady, like the factor of
+     * {@link Calculations#timeAverage}: 0.0 does no averaging, values towards 1.0 average harder.
+     */
+    public void setAveragingFactor(double averagingFactor) {
+        if (!(averagingFactor >= 0. && averagingFactor <= MAX_AVERAGING_FACTOR))
+            throw new IllegalArgumentException("averaging factor must be between 0.0 and " + MAX_AVERAGING_FACTOR
+                    + " but is " + averagingFactor);
+
+        this.averagingFactor = averagingFactor;
+        // steady-state Kalman gain k = 1 - factor is reached for process noise q = k^2 / (1 - k) relative to the
+        // measurement noise
+        final var gain = 1. - averagingFactor;
+        this.processNoiseRatio = averagingFactor > 0. ? gain * gain / averagingFactor : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Set the innovation in standard deviations of the expected noise that is taken as a real change.
+     */
+    public void setChangeSigmas(double changeSigmas) {
+        if (!(changeSigmas > 0.))
+            throw new IllegalArgumentException("change sigmas must be positive but is " + changeSigmas);
+        this.changeSigmas = changeSigmas;
+    }
+
+    /**
+     * Forget all state, the next line starts anew.
+     */
+    public void reset() {
+        this.estimates = null;
+        this.lastInput = null;
+        this.lastOutput = null;
+    }
+
+    /**
+     * Update the filter with a new sample line.
+     *
+     * @return the filtered sample line, with the overexposure of the new line
+     */
+    public SampleLine update(@NonNull SampleLine sampleLine) {
+        if (sampleLine == this.lastInput)
+            return this.lastOutput; // recalculation with the same frame, not a new measurement
+
+        final var values = sampleLine.getValues();
+        if (this.estimates == null || this.estimates.length != values.length || this.averagingFactor == 0.) {
+            start(values);
+        } else {
+            filter(values);
+        }
+
+        this.lastInput = sampleLine;
+        this.lastOutput = new SampleLine(Arrays.copyOf(this.estimates, this.estimates.length),
+                sampleLine.getOverExposed());
+
+        return this.lastOutput;
+    }
+
+    private void start(@NonNull double[] values) {
+        this.estimates = Arrays.copyOf(values, values.length);
+        this.noiseVariances = new double[values.length];
+        Arrays.fill(this.noiseVariances, estimateInitialNoiseVariance(values));
+        this.estimateVariances = Arrays.copyOf(this.noiseVariances, values.length);
+    }
+
+    private void filter(@NonNull double[] values) {
+        final var changeLimit = this.changeSigmas * this.changeSigmas;
+        for (int i = 0; i < values.length; i++) {
+            final var noiseVariance = this.noiseVariances[i];
+            final var predictedVariance = this.estimateVariances[i] + this.processNoiseRatio * noiseVariance;
+            final var innovation = values[i] - this.estimates[i];
+            final var innovationSquare = innovation * innovation;
+            final var innovationVariance = predictedVariance + noiseVariance;
+
+            if (innovationSquare > changeLimit * innovationVariance) {
+                // real change: follow immediately
+                this.estimates[i] = values[i];
+                this.estimateVariances[i] = noiseVariance;
+                this.noiseVariances[i] = noiseVariance * CHANGE_NOISE_GROWTH;
+            } else {
+                final var gain = predictedVariance / innovationVariance;
+                this.estimates[i] += gain * innovation;
+                this.estimateVariances[i] = (1. - gain) * predictedVariance;
+                this.noiseVariances[i] = max(MIN_NOISE_VARIANCE, noiseVariance
+                        + NOISE_ADAPTION_RATE * (innovationSquare - predictedVariance - noiseVariance));
+            }
+        }
+    }
+
+    /**
+     * Noise estimate from the differences of neighbour bins by median absolute deviation, robust against lines.
+     */
+    private static double estimateInitialNoiseVariance(@NonNull double[] values) {
+        if (values.length < 2)
+            return MIN_NOISE_VARIANCE;
+
+        final var differences = new double[values.length - 1];
+        for (int i = 0; i < differences.length; i++) {
+            differences[i] = Math.abs(values[i + 1] - values[i]);
+        }
+        Arrays.sort(differences);
+        // a difference of two samples has twice the variance of one
+        final var sigma = 1.4826 * differences[differences.length / 2] / sqrt(2.);
+
+        return max(MIN_NOISE_VARIANCE, sigma * sigma);
+    }
+}
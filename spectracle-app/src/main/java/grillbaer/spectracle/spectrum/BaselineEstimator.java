@@ -0,0 +1,203 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Estimates the continuum of a spectrum as a morphological envelope, like a ball rolling along below or above the
+ * values, to separate lines from broad backgrounds, e.g. emission peaks on an LED's phosphor or Fraunhofer lines in
+ * daylight.
+ * <p>
+ * The lower envelope is the morphological opening, i.e. the sliding minimum followed by the sliding maximum over the
+ * window, the upper envelope the closing. Features narrower than the window are removed, broader ones are kept. The
+ * stepped envelope is then smoothed by a moving average over the window. Sliding minimum and maximum run on monotone
+ * deques, so each step is O(n) independent of the window, with all arrays reused.
+ * <p>
+ * Across frames, the continuum is updated incrementally: each new envelope is blended into the previous continuum
+ * by the adaption rate, so noise does not make the continuum flicker. Recalculating the same frame, e.g. after
+ * changed settings, blends into the continuum before that frame again instead of advancing it.
+ * <p>
+ * Not thread-safe.
+ */
+public final class BaselineEstimator {
+    public static final double DEFAULT_ADAPTION_RATE = 0.3;
+
+    /**
+     * Lowest continuum for dividing by it, avoids exploding ratios in the dark.
+     */
+    private static final double MIN_CONTINUUM = 1e-4;
+
+    /**
+     * Side of the values the continuum is estimated from.
+     */
+    public enum Envelope {
+        /**
+         * Continuum below the values, for emission lines. The lines are published with the continuum subtracted.
+         */
+        LOWER,
+        /**
+         * Continuum above the values, for absorption lines. The lines are published as ratio to the continuum.
+         */
+        UPPER
+    }
+
+    /**
+     * Continuum and the continuum-normalized sample line.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Result {
+        private final @NonNull SampleLine continuum;
+        private final @NonNull SampleLine normalized;
+    }
+
+    @Getter
+    private Envelope envelope = Envelope.LOWER;
+    @Getter
+    private int window = 61;
+    @Getter
+    private double adaptionRate = DEFAULT_ADAPTION_RATE;
+
+    private double[] continuum;
+    /**
+     * Continuum before the last frame, <code>null</code> if the last frame started anew.
+     */
+    private double[] previousContinuum;
+    private double[] first;
+    private double[] second;
+    private int[] deque;
+
+    public void setEnvelope(@NonNull Envelope envelope) {
+        if (this.envelope != envelope) {
+            this.envelope = envelope;
+            reset();
+        }
+    }
+
+    /**
+     * Set the window in index steps, which should be clearly wider than the lines to separate.
+     */
+    public void setWindow(int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be positive but is " + window);
+        if (this.window != window) {
+            this.window = window;
+            reset();
+        }
+    }
+
+    /**
+     * Set the weight of a new frame's envelope in the continuum: 1.0 takes each frame on its own, values towards 0.0
+     * keep the continuum more stable.
+     */
+    public void setAdaptionRate(double adaptionRate) {
+        if (!(adaptionRate > 0. && adaptionRate <= 1.))
+            throw new IllegalArgumentException("adaption rate must be between 0.0 exclusive and 1.0 but is "
+                    + adaptionRate);
+        this.adaptionRate = adaptionRate;
+    }
+
+    /**
+     * Forget the continuum, the next line starts anew.
+     */
+    public void reset() {
+        this.continuum = null;
+        this.previousContinuum = null;
+    }
+
+    /**
+     * Update the continuum with a sample line, warm-started from the previous continuum.
+     *
+     * @param newFrame <code>false</code> if the line is a recalculation of the last frame, which replaces its
+     *                 contribution instead of adding another one
+     */
+    public Result update(@NonNull SampleLine sampleLine, boolean newFrame) {
+        final var values = sampleLine.getValues();
+        final var length = values.length;
+        if (this.first == null || this.first.length != length) {
+            this.first = new double[length];
+            this.second = new double[length];
+            this.deque = new int[length];
+            reset();
+        }
+
+        final var half = min(this.window / 2, max(0, length - 1));
+        final var lower = this.envelope == Envelope.LOWER;
+        slidingExtreme(values, this.first, half, !lower);
+        slidingExtreme(this.first, this.second, half, lower);
+        movingAverage(this.second, this.first, half);
+
+        if (newFrame || this.continuum == null) {
+            // the continuum so far becomes the base, its array is swapped to be reused
+            final var spare = this.previousContinuum;
+            this.previousContinuum = this.continuum;
+            this.continuum = spare != null ? spare : new double[length];
+        }
+        if (this.previousContinuum == null) {
+            System.arraycopy(this.first, 0, this.continuum, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                this.continuum[i] = this.previousContinuum[i]
+                        + this.adaptionRate * (this.first[i] - this.previousContinuum[i]);
+            }
+        }
+
+        final var normalized = new double[length];
+        for (int i = 0; i < length; i++) {
+            normalized[i] = lower ? values[i] - this.continuum[i] : values[i] / max(MIN_CONTINUUM, this.continuum[i]);
+        }
+
+        return new Result(new SampleLine(this.continuum.clone(), sampleLine.getOverExposed()),
+                new SampleLine(normalized, sampleLine.getOverExposed()));
+    }
+
+    /**
+     * Sliding minimum or maximum over <code>2 * half + 1</code> values, clipped at the ends, by a monotone deque of
+     * indices whose values are increasing for the minimum and decreasing for the maximum.
+     */
+    private void slidingExtreme(@NonNull double[] input, @NonNull double[] output, int half, boolean maximum) {
+        final var length = input.length;
+        final var indices = this.deque;
+        int head = 0;
+        int tail = 0; // exclusive, each index is added once, so no wrap-around is needed
+        for (int j = 0; j < length + half; j++) {
+            if (j < length) {
+                final var value = input[j];
+                while (tail > head && (maximum ? input[indices[tail - 1]] <= value : input[indices[tail - 1]] >= value)) {
+                    tail--;
+                }
+                indices[tail++] = j;
+            }
+            final var i = j - half;
+            if (i >= 0) {
+                while (indices[head] < i - half) {
+                    head++;
+                }
+                output[i] = input[indices[head]];
+            }
+        }
+    }
+
+    /**
+     * Moving average over <code>2 * half + 1</code> values, clipped at the ends, by a running sum.
+     */
+    private static void movingAverage(@NonNull double[] input, @NonNull double[] output, int half) {
+        final var length = input.length;
+        double sum = 0.;
+        int from = 0;
+        int to = 0; // exclusive
+        for (int i = 0; i < length; i++) {
+            while (to < min(length, i + half + 1)) {
+                sum += input[to++];
+            }
+            while (from < i - half) {
+                sum -= input[from++];
+            }
+            output[i] = sum / (to - from);
+        }
+    }
+}
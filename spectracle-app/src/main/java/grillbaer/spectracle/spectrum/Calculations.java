@@ -7,6 +7,7 @@ import org.apache.commons.math3.distribution.NormalDistribution;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 import static java.lang.Math.max;
@@ -17,6 +18,14 @@ import static java.util.Comparator.comparing;
  * Calculations on spectra and sample line vectors.
  */
 public final class Calculations {
+    /**
+     * Sample values at or above this level are treated as saturated when fusing exposures.
+     */
+    private static final double SATURATION_LEVEL = 0.98;
+    /**
+     * Lowest transmittance to take into account, limits the absorbance to 4.
+     */
+    private static final double MIN_TRANSMITTANCE = 1e-4;
 
     private Calculations() {
         // no instances
@@ -26,11 +35,12 @@ public final class Calculations {
      * Calibrate a spectrum by applying the wavelength dependent factors from a sensitivity calibration profile.
      */
     public static Spectrum applySensitivityCalibration(@NonNull Spectrum spectrum, @NonNull Spectrum sensitivityCalibration) {
-        var newValues = spectrum.getSampleLine().getCopyOfValues();
+        final var values = spectrum.getSampleLine().getValues();
+        final var newValues = new double[values.length];
         for (int i = 0; i < newValues.length; i++) {
             final var nanoMeters = spectrum.getNanoMetersAtIndex(i);
             final var calibrationFactor = sensitivityCalibration.getValueAtNanoMeters(nanoMeters);
-            newValues[i] *= calibrationFactor;
+            newValues[i] = values[i] * calibrationFactor;
         }
 
         return Spectrum.create(new SampleLine(newValues, spectrum.getSampleLine()
@@ -84,9 +94,10 @@ public final class Calculations {
         if (maxValue <= 0.0)
             return input;
 
-        final var newValues = input.getCopyOfValues();
+        final var values = input.getValues();
+        final var newValues = new double[values.length];
         for (int i = 0; i < newValues.length; i++) {
-            newValues[i] /= maxValue;
+            newValues[i] = values[i] / maxValue;
         }
 
         return new SampleLine(newValues, input.getOverExposed());
@@ -108,10 +119,12 @@ public final class Calculations {
             return newSample;
         }
 
-        final var newAveraged = lastAveragedSample.getCopyOfValues();
+        final var oldValues = lastAveragedSample.getValues();
+        final var newValues = newSample.getValues();
+        final var newAveraged = new double[oldValues.length];
         for (int i = 0; i < newAveraged.length; i++) {
-            final var oldValue = newAveraged[i];
-            final var newValue = newSample.getValue(i);
+            final var oldValue = oldValues[i];
+            final var newValue = newValues[i];
             if (peakHold && newValue > oldValue) {
                 newAveraged[i] = newValue;
             } else {
@@ -122,6 +135,109 @@ public final class Calculations {
         return new SampleLine(newAveraged, newSample.getOverExposed());
     }
 
+    /**
+     * Fuse sample values taken with different exposures into one high dynamic range sample line.
+     * <p>
+     * Exposures are log2 scaled, so a sample taken with exposure <i>e</i> has a gain of
+     * <i>2<sup>e - e<sub>min</sub></sup></i> relative to the shortest exposure. Per bin, all non-saturated samples are
+     * scaled back to the shortest exposure and averaged weighted by their gain, because longer exposures have the
+     * better signal-to-noise ratio. Bins saturated in all exposures take the value of the shortest exposure and are
+     * marked as overexposed.
+     *
+     * @param values      sample values per exposure, all of the same length
+     * @param overExposed overexposure flags per exposure, single entries may be <code>null</code>
+     * @param exposures   log2 scaled exposure per entry of the values
+     * @return fused sample line relative to the shortest exposure
+     */
+    public static SampleLine fuseExposures(@NonNull double[][] values, @NonNull boolean[][] overExposed,
+                                           @NonNull double[] exposures) {
+        if (values.length == 0 || values.length != overExposed.length || values.length != exposures.length)
+            throw new IllegalArgumentException("values, overExposed and exposures must have the same non-zero length");
+
+        final var length = values[0].length;
+        var shortest = 0;
+        for (int k = 0; k < exposures.length; k++) {
+            if (values[k].length != length)
+                throw new IllegalArgumentException("sample values have different lengths " + length
+                        + " and " + values[k].length);
+            if (exposures[k] < exposures[shortest]) {
+                shortest = k;
+            }
+        }
+
+        final var gains = new double[exposures.length];
+        for (int k = 0; k < exposures.length; k++) {
+            gains[k] = Math.pow(2., exposures[k] - exposures[shortest]);
+        }
+
+        final var fusedValues = new double[length];
+        final var fusedOverExposed = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            // weight gain * (value / gain) simply sums up the unscaled values
+            double valueSum = 0.;
+            double gainSum = 0.;
+            for (int k = 0; k < values.length; k++) {
+                final var value = values[k][i];
+                if (value < SATURATION_LEVEL && (overExposed[k] == null || !overExposed[k][i])) {
+                    valueSum += value;
+                    gainSum += gains[k];
+                }
+            }
+            if (gainSum > 0.) {
+                fusedValues[i] = valueSum / gainSum;
+            } else {
+                fusedValues[i] = values[shortest][i];
+                fusedOverExposed.set(i);
+            }
+        }
+
+        return new SampleLine(fusedValues, fusedOverExposed);
+    }
+
+
+    /**
+     * Calculate the transmittance of a sample from its sample line and the sample line of the reference beam, both
+     * corrected by their dark lines taken without any light. Bins with no reference signal get transmittance 0.0.
+     * Bins overexposed in sample or reference are marked as overexposed.
+     *
+     * @param dark          dark line of the sample, <code>null</code> for no dark correction
+     * @param referenceDark dark line of the reference, <code>null</code> for no dark correction
+     * @return transmittance values, usually between 0.0 and 1.0
+     */
+    public static SampleLine transmittance(@NonNull SampleLine sample, @NonNull SampleLine reference,
+                                           SampleLine dark, SampleLine referenceDark) {
+        final var length = sample.getLength();
+        if (reference.getLength() != length)
+            throw new IllegalArgumentException("sample and reference lines have different lengths "
+                    + length + " and " + reference.getLength());
+        final var darkValid = dark != null && dark.getLength() == length;
+        final var referenceDarkValid = referenceDark != null && referenceDark.getLength() == length;
+
+        final var values = new double[length];
+        final var overExposed = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            final var signal = sample.getValue(i) - (darkValid ? dark.getValue(i) : 0.);
+            final var referenceSignal = reference.getValue(i) - (referenceDarkValid ? referenceDark.getValue(i) : 0.);
+            values[i] = referenceSignal > 0. ? max(0., signal / referenceSignal) : 0.;
+            if (sample.isOverExposed(i) || reference.isOverExposed(i)) {
+                overExposed.set(i);
+            }
+        }
+
+        return new SampleLine(values, overExposed);
+    }
+
+    /**
+     * Calculate the absorbance <i>-log<sub>10</sub>(T)</i> from transmittance values.
+     */
+    public static SampleLine absorbance(@NonNull SampleLine transmittance) {
+        final var values = new double[transmittance.getLength()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -Math.log10(max(MIN_TRANSMITTANCE, transmittance.getValue(i)));
+        }
+
+        return new SampleLine(values, transmittance.getOverExposed());
+    }
 
     /**
      * Calculate a sample line vector with gaussian smoothing.
@@ -133,11 +249,13 @@ public final class Calculations {
         final double[] smoothArray = gaussianHalfArray(sigmaInIndexSteps, (int) sigmaInIndexSteps * 3 + 2);
         final var sum = smoothArray[0] + 2. * Arrays.stream(smoothArray).skip(1).sum();
 
-        final var result = new double[input.getLength()];
-        for (int i = 0; i < input.getLength(); i++) {
-            result[i] = smoothArray[0] * input.getValue(i);
+        final var values = input.getValues();
+        final var lastIndex = values.length - 1;
+        final var result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = smoothArray[0] * values[i];
             for (int j = 1; j < smoothArray.length; j++) {
-                result[i] += smoothArray[j] * (input.getValue(max(0, i - j)) + input.getValue(min(input.getLength() - 1, i + j)));
+                result[i] += smoothArray[j] * (values[max(0, i - j)] + values[min(lastIndex, i + j)]);
             }
             result[i] /= sum;
         }
@@ -155,10 +273,12 @@ public final class Calculations {
         final double[] smoothArray = gaussianHalfArray(sigmaInIndexSteps, (int) sigmaInIndexSteps * 3 + 2);
         final var sum = 2. * Arrays.stream(smoothArray).skip(1).sum();
 
-        final var result = new double[input.getLength()];
-        for (int i = 0; i < input.getLength(); i++) {
+        final var values = input.getValues();
+        final var lastIndex = values.length - 1;
+        final var result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
             for (int j = 1; j < smoothArray.length; j++) {
-                result[i] += smoothArray[j] * (input.getValue(max(0, i - j)) + input.getValue(min(input.getLength() - 1, i + j)));
+                result[i] += smoothArray[j] * (values[max(0, i - j)] + values[min(lastIndex, i + j)]);
             }
             result[i] /= sum;
         }
@@ -0,0 +1,598 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+/**
+ * Colorimetry of light spectra: CIE XYZ tristimulus values, xy and u'v' chromaticity, correlated colour temperature,
+ * its distance Duv from the Planckian locus and the colour rendering index.
+ * <p>
+ * The colour-matching functions, the reflectances of the test colour samples and the daylight components are the
+ * CIE tables in 5 nm steps from 360 nm to 830 nm, read from the class path. They are linearly interpolated and
+ * resampled once per wavelength calibration and line length onto the bins of the spectrum, including each bin's
+ * width, so evaluating a spectrum only costs a few dot products.
+ * <p>
+ * The colour rendering index follows CIE 13.3: the test colour samples are rendered by the light and by a reference
+ * illuminant of the same correlated colour temperature, a Planckian radiator below 5000 K and a CIE daylight
+ * illuminant above, with a von Kries adaptation in the CIE 1960 uv diagram and colour differences in CIE 1964 U*V*W*.
+ * The rendered reference is kept while the colour temperature rounds to the same step of
+ * {@link #REFERENCE_MIRED_STEP} mired.
+ * <p>
+ * The spectrum must be calibrated to be proportional to spectral radiance, XYZ are relative.
+ * Immutable and thread-safe.
+ */
+@ToString(of = "standardObserver")
+public final class Colorimetry {
+    /**
+     * Range of the tables, outside they are taken as zero.
+     */
+    public static final double MIN_NANO_METERS = 360.;
+    public static final double MAX_NANO_METERS = 830.;
+
+    /**
+     * Range of the correlated colour temperature search, covering the Planckian locus approximation.
+     */
+    public static final double MIN_KELVIN = 1000.;
+    public static final double MAX_KELVIN = 15000.;
+
+    /**
+     * Maximum distance from the Planckian locus for a meaningful correlated colour temperature.
+     */
+    public static final double MAX_DUV = 0.05;
+
+    /**
+     * Maximum distance from the Planckian locus for a meaningful colour rendering index according to CIE 13.3.
+     */
+    public static final double MAX_RENDERING_DUV = 5.4e-3;
+
+    private static final double GOLDEN_RATIO = (sqrt(5.) - 1.) / 2.;
+
+    /**
+     * Second radiation constant in m·K.
+     */
+    private static final double C2 = 1.4388e-2;
+
+    /**
+     * Resolution of the reference illuminant's colour temperature in reciprocal megakelvin, changing the rendering
+     * indices by far less than their displayed precision.
+     */
+    public static final double REFERENCE_MIRED_STEP = 0.5;
+
+    /**
+     * Number of test colour samples whose special indices make up the general colour rendering index.
+     */
+    public static final int GENERAL_SAMPLES = 8;
+
+    /**
+     * Spectral reflectances of the CIE 13.3 test colour samples TCS01 to TCS14.
+     */
+    private static final Table TEST_COLOR_SAMPLES = Table.load("colorimetry/cie13_3_tcs.csv");
+
+    /**
+     * Components S0, S1 and S2 of the CIE daylight illuminants, the 5 nm values interpolated as prescribed by CIE 15.
+     */
+    private static final Table DAYLIGHT_COMPONENTS = Table.load("colorimetry/cie_daylight.csv");
+
+    /**
+     * Temperature from which on the reference illuminant is daylight instead of a Planckian radiator.
+     */
+    private static final double DAYLIGHT_REFERENCE_KELVIN = 5000.;
+
+    /**
+     * CIE standard colorimetric observer.
+     */
+    public enum StandardObserver {
+        /**
+         * CIE 1931 2° observer.
+         */
+        CIE_1931_2_DEGREE("CIE 1931 2°", "colorimetry/cie1931_2deg.csv"),
+        /**
+         * CIE 1964 10° observer.
+         */
+        CIE_1964_10_DEGREE("CIE 1964 10°", "colorimetry/cie1964_10deg.csv");
+
+        private final String displayName;
+        private final Table colorMatchingFunctions;
+
+        StandardObserver(String displayName, String resource) {
+            this.displayName = displayName;
+            this.colorMatchingFunctions = Table.load(resource);
+        }
+
+        /**
+         * Colour-matching function x̄ at the wavelength.
+         */
+        public double x(double nm) {
+            return this.colorMatchingFunctions.interpolate(0, nm);
+        }
+
+        /**
+         * Colour-matching function ȳ at the wavelength.
+         */
+        public double y(double nm) {
+            return this.colorMatchingFunctions.interpolate(1, nm);
+        }
+
+        /**
+         * Colour-matching function z̄ at the wavelength.
+         */
+        public double z(double nm) {
+            return this.colorMatchingFunctions.interpolate(2, nm);
+        }
+
+        @Override
+        public String toString() {
+            return this.displayName;
+        }
+    }
+
+    /**
+     * Colorimetric values of a spectrum. Chromaticities are <code>NaN</code> without light, colour temperature and
+     * Duv are <code>NaN</code> if the colour is too far from the Planckian locus, the colour rendering indices if it
+     * is more than {@link #MAX_RENDERING_DUV} away.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static final class Color {
+        private final double capitalX;
+        private final double capitalY;
+        private final double capitalZ;
+        private final double x;
+        private final double y;
+        private final double uPrime;
+        private final double vPrime;
+        /**
+         * Correlated colour temperature in Kelvin, always for the CIE 1931 2° observer.
+         */
+        private final double correlatedColorTemperature;
+        /**
+         * Signed distance from the Planckian locus in the CIE 1960 uv diagram, positive above.
+         */
+        private final double duv;
+        /**
+         * General colour rendering index Ra, the mean of the special indices R1 to R8.
+         */
+        private final double colorRenderingIndex;
+        /**
+         * Special colour rendering indices R1 to R14 of the test colour samples.
+         */
+        @Getter(AccessLevel.NONE)
+        private final double[] specialColorRenderingIndices;
+
+        /**
+         * Special colour rendering index of a test colour sample.
+         *
+         * @param sample 1 to 14
+         */
+        public double getSpecialColorRenderingIndex(int sample) {
+            return this.specialColorRenderingIndices[sample - 1];
+        }
+    }
+
+    @Getter
+    private final StandardObserver standardObserver;
+
+    private volatile Weights cachedWeights;
+
+    public Colorimetry(@NonNull StandardObserver standardObserver) {
+        this.standardObserver = standardObserver;
+    }
+
+    /**
+     * Evaluate the colour of a light spectrum.
+     */
+    public Color evaluate(@NonNull Spectrum spectrum) {
+        final var weights = getWeights(spectrum.getCalibration(), spectrum.getLength());
+        final var values = spectrum.getSampleLine().getValues();
+        double capitalX = 0.;
+        double capitalY = 0.;
+        double capitalZ = 0.;
+        double capitalX2 = 0.;
+        double capitalY2 = 0.;
+        double capitalZ2 = 0.;
+        for (int i = 0; i < values.length; i++) {
+            final var value = values[i];
+            capitalX += weights.x[i] * value;
+            capitalY += weights.y[i] * value;
+            capitalZ += weights.z[i] * value;
+            capitalX2 += weights.x2[i] * value;
+            capitalY2 += weights.y2[i] * value;
+            capitalZ2 += weights.z2[i] * value;
+        }
+
+        final var sum = capitalX + capitalY + capitalZ;
+        final var denominator = capitalX + 15. * capitalY + 3. * capitalZ;
+        final var valid = sum > 0. && denominator > 0.;
+        final var x = valid ? capitalX / sum : Double.NaN;
+        final var y = valid ? capitalY / sum : Double.NaN;
+        final var uPrime = valid ? 4. * capitalX / denominator : Double.NaN;
+        final var vPrime = valid ? 9. * capitalY / denominator : Double.NaN;
+
+        // correlated colour temperature is defined for the 2° observer in the CIE 1960 uv diagram
+        final var denominator2 = capitalX2 + 15. * capitalY2 + 3. * capitalZ2;
+        final var temperature = capitalX2 + capitalY2 + capitalZ2 > 0. && denominator2 > 0.
+                ? calcCorrelatedColorTemperature(4. * capitalX2 / denominator2, 6. * capitalY2 / denominator2)
+                : new double[]{Double.NaN, Double.NaN};
+
+        final var specialIndices = new double[TEST_COLOR_SAMPLES.getColumns()];
+        var generalIndex = Double.NaN;
+        if (abs(temperature[1]) <= MAX_RENDERING_DUV) {
+            generalIndex = calcRenderingIndices(renderSamples(weights, values),
+                    weights.getRenderedReference(temperature[0]), specialIndices);
+        } else {
+            Arrays.fill(specialIndices, Double.NaN);
+        }
+
+        return new Color(capitalX, capitalY, capitalZ, x, y, uPrime, vPrime, temperature[0], temperature[1],
+                generalIndex, specialIndices);
+    }
+
+    /**
+     * Spectral radiance of the reference illuminant of a colour temperature at the wavelengths of the weights.
+     */
+    private static double[] referenceIlluminant(@NonNull Weights weights, double kelvin) {
+        final var radiance = new double[weights.length];
+        final var daylightFactors = kelvin < DAYLIGHT_REFERENCE_KELVIN ? null : daylightFactors(kelvin);
+        for (int i = 0; i < weights.length; i++) {
+            final var nm = weights.nanoMeters[i];
+            if (!Double.isNaN(nm)) {
+                radiance[i] = daylightFactors == null
+                        ? planckianRadiance(nm, kelvin)
+                        : weights.daylight[0][i] + daylightFactors[0] * weights.daylight[1][i]
+                        + daylightFactors[1] * weights.daylight[2][i];
+            }
+        }
+
+        return radiance;
+    }
+
+    /**
+     * XYZ for the 2° observer of the light itself, followed by the light reflected by each test colour sample.
+     */
+    private static double[][] renderSamples(@NonNull Weights weights, @NonNull double[] radiance) {
+        final var samples = weights.reflectances.length;
+        final var xyz = new double[samples + 1][3];
+        for (int i = 0; i < weights.length; i++) {
+            final var value = radiance[i];
+            if (value == 0.)
+                continue;
+
+            xyz[0][0] += weights.x2[i] * value;
+            xyz[0][1] += weights.y2[i] * value;
+            xyz[0][2] += weights.z2[i] * value;
+            for (int sample = 0; sample < samples; sample++) {
+                final var reflected = weights.reflectances[sample][i] * value;
+                xyz[sample + 1][0] += weights.x2[i] * reflected;
+                xyz[sample + 1][1] += weights.y2[i] * reflected;
+                xyz[sample + 1][2] += weights.z2[i] * reflected;
+            }
+        }
+
+        return xyz;
+    }
+
+    /**
+     * Special colour rendering indices by CIE 13.3 from the XYZ of the light and the samples under test and reference
+     * illuminant.
+     *
+     * @param specialIndices receives the special indices, from R1 on
+     * @return general colour rendering index Ra, the mean of R1 to R8
+     */
+    static double calcRenderingIndices(@NonNull double[][] test, @NonNull double[][] reference,
+                                       @NonNull double[] specialIndices) {
+        final var testWhite = uvY(test[0], test[0][1]);
+        final var referenceWhite = uvY(reference[0], reference[0][1]);
+        final var cTest = adaptionC(testWhite);
+        final var dTest = adaptionD(testWhite);
+        final var cRatio = adaptionC(referenceWhite) / cTest;
+        final var dRatio = adaptionD(referenceWhite) / dTest;
+
+        double sum = 0.;
+        for (int sample = 0; sample < specialIndices.length; sample++) {
+            final var testSample = uvY(test[sample + 1], test[0][1]);
+            final var referenceSample = uvY(reference[sample + 1], reference[0][1]);
+
+            // von Kries adaptation of the sample under test light to the reference white
+            final var c = cRatio * adaptionC(testSample);
+            final var d = dRatio * adaptionD(testSample);
+            final var denominator = 16.518 + 1.481 * c - d;
+            final var adapted = new double[]{(10.872 + 0.404 * c - 4. * d) / denominator, 5.520 / denominator,
+                    testSample[2]};
+
+            final var testUvw = uvw(adapted, referenceWhite);
+            final var referenceUvw = uvw(referenceSample, referenceWhite);
+            final var difference = sqrt(square(testUvw[0] - referenceUvw[0]) + square(testUvw[1] - referenceUvw[1])
+                    + square(testUvw[2] - referenceUvw[2]));
+            specialIndices[sample] = 100. - 4.6 * difference;
+            if (sample < GENERAL_SAMPLES) {
+                sum += specialIndices[sample];
+            }
+        }
+
+        return sum / Math.min(GENERAL_SAMPLES, specialIndices.length);
+    }
+
+    /**
+     * CIE 1960 u, v and Y scaled to 100 for the white.
+     */
+    private static double[] uvY(@NonNull double[] xyz, double whiteY) {
+        final var denominator = xyz[0] + 15. * xyz[1] + 3. * xyz[2];
+        return new double[]{4. * xyz[0] / denominator, 6. * xyz[1] / denominator, 100. * xyz[1] / whiteY};
+    }
+
+    private static double adaptionC(@NonNull double[] uvY) {
+        return (4. - uvY[0] - 10. * uvY[1]) / uvY[1];
+    }
+
+    private static double adaptionD(@NonNull double[] uvY) {
+        return (1.708 * uvY[1] + 0.404 - 1.481 * uvY[0]) / uvY[1];
+    }
+
+    /**
+     * CIE 1964 U*V*W* relative to the white.
+     */
+    private static double[] uvw(@NonNull double[] uvY, @NonNull double[] white) {
+        final var w = 25. * Math.cbrt(uvY[2]) - 17.;
+        return new double[]{13. * w * (uvY[0] - white[0]), 13. * w * (uvY[1] - white[1]), w};
+    }
+
+    /**
+     * Relative spectral radiance of a Planckian radiator.
+     */
+    static double planckianRadiance(double nm, double kelvin) {
+        final var meters = nm * 1e-9;
+        return 1e-30 / (Math.pow(meters, 5) * Math.expm1(C2 / (meters * kelvin)));
+    }
+
+    /**
+     * Relative spectral radiance of the CIE daylight illuminant of a colour temperature from 4000 K to 25000 K.
+     */
+    static double daylight(double nm, double kelvin) {
+        final var factors = daylightFactors(kelvin);
+        return DAYLIGHT_COMPONENTS.interpolate(0, nm) + factors[0] * DAYLIGHT_COMPONENTS.interpolate(1, nm)
+                + factors[1] * DAYLIGHT_COMPONENTS.interpolate(2, nm);
+    }
+
+    /**
+     * Factors M1 and M2 of the daylight components S1 and S2 for a colour temperature.
+     */
+    private static double[] daylightFactors(double kelvin) {
+        final var t = kelvin;
+        final var x = t <= 7000.
+                ? -4.6070e9 / (t * t * t) + 2.9678e6 / (t * t) + 0.09911e3 / t + 0.244063
+                : -2.0064e9 / (t * t * t) + 1.9018e6 / (t * t) + 0.24748e3 / t + 0.237040;
+        final var y = -3.000 * x * x + 2.870 * x - 0.275;
+        final var m = 0.0241 + 0.2562 * x - 0.7341 * y;
+        return new double[]{(-1.3515 - 1.7703 * x + 5.9114 * y) / m, (0.0300 - 31.4424 * x + 30.0717 * y) / m};
+    }
+
+    /**
+     * Correlated colour temperature and Duv of a CIE 1960 uv chromaticity by searching the nearest point on the
+     * Planckian locus, equidistant in reciprocal temperature.
+     *
+     * @return colour temperature in Kelvin and Duv, both <code>NaN</code> if too far from the locus or out of range
+     */
+    static double[] calcCorrelatedColorTemperature(double u, double v) {
+        // coarse scan, then golden section search around the best mired step
+        final var steps = 100;
+        final var minMired = 1e6 / MAX_KELVIN;
+        final var maxMired = 1e6 / MIN_KELVIN;
+        final var stepMired = (maxMired - minMired) / steps;
+        var bestStep = 0;
+        var bestDistance = Double.POSITIVE_INFINITY;
+        for (int step = 0; step <= steps; step++) {
+            final var distance = squaredDistanceToLocus(u, v, minMired + step * stepMired);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestStep = step;
+            }
+        }
+
+        var low = minMired + Math.max(0, bestStep - 1) * stepMired;
+        var high = minMired + Math.min(steps, bestStep + 1) * stepMired;
+        while (high - low > 1e-4) {
+            final var mid1 = high - GOLDEN_RATIO * (high - low);
+            final var mid2 = low + GOLDEN_RATIO * (high - low);
+            if (squaredDistanceToLocus(u, v, mid1) < squaredDistanceToLocus(u, v, mid2)) {
+                high = mid2;
+            } else {
+                low = mid1;
+            }
+        }
+        final var mired = (low + high) / 2.;
+        final var kelvin = 1e6 / mired;
+        final var locusV = planckianV(kelvin);
+        final var duv = Math.copySign(sqrt(squaredDistanceToLocus(u, v, mired)), v - locusV);
+        if (abs(duv) > MAX_DUV || kelvin <= MIN_KELVIN + 1. || kelvin >= MAX_KELVIN - 1.)
+            return new double[]{Double.NaN, Double.NaN};
+
+        return new double[]{kelvin, duv};
+    }
+
+    private static double squaredDistanceToLocus(double u, double v, double mired) {
+        final var kelvin = 1e6 / mired;
+        return square(u - planckianU(kelvin)) + square(v - planckianV(kelvin));
+    }
+
+    /**
+     * CIE 1960 u of the Planckian locus by the approximation of Krystek (1985), valid from 1000 K to 15000 K.
+     */
+    private static double planckianU(double kelvin) {
+        return (0.860117757 + 1.54118254e-4 * kelvin + 1.28641212e-7 * kelvin * kelvin)
+                / (1. + 8.42420235e-4 * kelvin + 7.08145163e-7 * kelvin * kelvin);
+    }
+
+    /**
+     * CIE 1960 v of the Planckian locus by the approximation of Krystek (1985), valid from 1000 K to 15000 K.
+     */
+    private static double planckianV(double kelvin) {
+        return (0.317398726 + 4.22806245e-5 * kelvin + 4.20481691e-8 * kelvin * kelvin)
+                / (1. - 2.89741816e-5 * kelvin + 1.61456053e-7 * kelvin * kelvin);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private Weights getWeights(@NonNull WaveLengthCalibration calibration, int length) {
+        var weights = this.cachedWeights;
+        if (weights == null || weights.calibration != calibration || weights.length != length) {
+            weights = new Weights(calibration, length);
+            this.cachedWeights = weights;
+        }
+
+        return weights;
+    }
+
+    /**
+     * Colour-matching functions times bin width for each index, for the observer and the 2° observer, and the
+     * reflectances of the test colour samples and the daylight components at each index. Also keeps the test colour
+     * samples rendered by the last reference illuminant.
+     */
+    private final class Weights {
+        private final WaveLengthCalibration calibration;
+        private final int length;
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+        private final double[] x2;
+        private final double[] y2;
+        private final double[] z2;
+        /**
+         * Wavelength of each index within the range of the colour-matching functions, otherwise <code>NaN</code>.
+         */
+        private final double[] nanoMeters;
+        private final double[][] reflectances;
+        private final double[][] daylight;
+        private volatile RenderedReference renderedReference;
+
+        private Weights(@NonNull WaveLengthCalibration calibration, int length) {
+            this.calibration = calibration;
+            this.length = length;
+            this.x = new double[length];
+            this.y = new double[length];
+            this.z = new double[length];
+            this.x2 = new double[length];
+            this.y2 = new double[length];
+            this.z2 = new double[length];
+            this.nanoMeters = new double[length];
+            this.reflectances = new double[TEST_COLOR_SAMPLES.getColumns()][length];
+            this.daylight = new double[DAYLIGHT_COMPONENTS.getColumns()][length];
+            final var observer2 = StandardObserver.CIE_1931_2_DEGREE;
+            for (int i = 0; i < length; i++) {
+                final var nm = calibration.indexToNanoMeters(length, i);
+                if (nm >= MIN_NANO_METERS && nm <= MAX_NANO_METERS) {
+                    // bin width from the centers of the neighbour bins
+                    final var width = abs(calibration.indexToNanoMeters(length, i + 0.5)
+                            - calibration.indexToNanoMeters(length, i - 0.5));
+                    this.x[i] = standardObserver.x(nm) * width;
+                    this.y[i] = standardObserver.y(nm) * width;
+                    this.z[i] = standardObserver.z(nm) * width;
+                    this.x2[i] = observer2.x(nm) * width;
+                    this.y2[i] = observer2.y(nm) * width;
+                    this.z2[i] = observer2.z(nm) * width;
+                    this.nanoMeters[i] = nm;
+                    for (int sample = 0; sample < this.reflectances.length; sample++) {
+                        this.reflectances[sample][i] = TEST_COLOR_SAMPLES.interpolate(sample, nm);
+                    }
+                    for (int component = 0; component < this.daylight.length; component++) {
+                        this.daylight[component][i] = DAYLIGHT_COMPONENTS.interpolate(component, nm);
+                    }
+                } else {
+                    this.nanoMeters[i] = Double.NaN;
+                }
+            }
+        }
+
+        /**
+         * XYZ of the reference illuminant for a colour temperature and of the test colour samples it renders,
+         * recalculated only if the temperature rounds to another step of {@link #REFERENCE_MIRED_STEP}.
+         */
+        private double[][] getRenderedReference(double kelvin) {
+            final var step = Math.round(1e6 / kelvin / REFERENCE_MIRED_STEP);
+            var reference = this.renderedReference;
+            if (reference == null || reference.miredStep != step) {
+                final var referenceKelvin = 1e6 / (step * REFERENCE_MIRED_STEP);
+                reference = new RenderedReference(step,
+                        renderSamples(this, referenceIlluminant(this, referenceKelvin)));
+                this.renderedReference = reference;
+            }
+
+            return reference.xyz;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RenderedReference {
+        private final long miredStep;
+        private final double[][] xyz;
+    }
+
+    /**
+     * Columns of a CSV table with a header line, the wavelengths in the first column in equal steps.
+     */
+    private static final class Table {
+        private final double beginNanoMeters;
+        private final double stepNanoMeters;
+        private final double[][] columns;
+
+        private Table(double beginNanoMeters, double stepNanoMeters, double[][] columns) {
+            this.beginNanoMeters = beginNanoMeters;
+            this.stepNanoMeters = stepNanoMeters;
+            this.columns = columns;
+        }
+
+        private static Table load(@NonNull String resource) {
+            final var stream = Colorimetry.class.getClassLoader().getResourceAsStream(resource);
+            if (stream == null)
+                throw new IllegalStateException("missing colorimetry table " + resource);
+
+            try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII))) {
+                final var rows = reader.lines().skip(1).filter(line -> !line.isBlank())
+                        .map(line -> Arrays.stream(line.split(",")).mapToDouble(Double::parseDouble).toArray())
+                        .toList();
+                final var columns = new double[rows.get(0).length - 1][rows.size()];
+                for (int row = 0; row < rows.size(); row++) {
+                    for (int column = 0; column < columns.length; column++) {
+                        columns[column][row] = rows.get(row)[column + 1];
+                    }
+                }
+                return new Table(rows.get(0)[0], rows.get(1)[0] - rows.get(0)[0], columns);
+            } catch (IOException e) {
+                throw new UncheckedIOException("reading colorimetry table " + resource + " failed", e);
+            }
+        }
+
+        private int getColumns() {
+            return this.columns.length;
+        }
+
+        /**
+         * Linear interpolation in a column, zero outside the table.
+         */
+        private double interpolate(int column, double nm) {
+            final var values = this.columns[column];
+            final var position = (nm - this.beginNanoMeters) / this.stepNanoMeters;
+            if (position < 0. || position > values.length - 1)
+                return 0.;
+
+            final var index = Math.min((int) position, values.length - 2);
+            final var fraction = position - index;
+            return values[index] * (1. - fraction) + values[index + 1] * fraction;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.lang.ref.SoftReference;
+import java.util.BitSet;
+
+/**
+ * Line of sample values in a compact storage, for holding many lines in histories, rings and recording buffers.
+ * It is a {@link SampleLine} with the precision of its storage and can be passed to every calculation. Single values
+ * are read from the compact storage. Calculations on the whole line work on an expanded copy, which is made on first
+ * use and kept only as long as memory allows.
+ * <p>
+ * The conversions are plain loops over primitive arrays, which the JIT compiles to vector instructions.
+ * Immutable and thread-safe.
+ */
+public final class CompactSampleLine extends SampleLine {
+    public enum Storage {
+        /**
+         * 32 bit floats with about 7 significant digits, half the size of a {@link SampleLine}.
+         */
+        FLOAT,
+        /**
+         * 16 bit fixed point between the line's minimum and maximum, a quarter of the size of a {@link SampleLine}.
+         * The resolution is 1/65535 of the value range, still far below the noise of an 8 bit camera.
+         */
+        FIXED_16
+    }
+
+    private static final int FIXED_16_MAX = 0xffff;
+
+    @Getter
+    private final Storage storage;
+    private final int length;
+    private final float[] floats;
+    private final short[] fixed;
+    private final double offset;
+    private final double scale;
+
+    /**
+     * Expanded values, racing threads expand to equal arrays.
+     */
+    private volatile SoftReference<double[]> expanded;
+
+    private CompactSampleLine(@NonNull Storage storage, int length, float[] floats, short[] fixed,
+                              double offset, double scale, BitSet overExposed) {
+        super(length, overExposed);
+        this.storage = storage;
+        this.length = length;
+        this.floats = floats;
+        this.fixed = fixed;
+        this.offset = offset;
+        this.scale = scale;
+    }
+
+    /**
+     * Store a sample line compactly.
+     */
+    public static CompactSampleLine of(@NonNull SampleLine sampleLine, @NonNull Storage storage) {
+        final var values = sampleLine.getValues();
+        final var overExposed = sampleLine.getOverExposed(); // immutable, can be shared
+
+        return switch (storage) {
+            case FLOAT -> {
+                final var floats = new float[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    floats[i] = (float) values[i];
+                }
+                yield new CompactSampleLine(storage, values.length, floats, null, 0., 1., overExposed);
+            }
+            case FIXED_16 -> {
+                final var statistics = sampleLine.getStatistics();
+                final var offset = statistics.getMinValue();
+                final var range = statistics.getMaxValue() - offset;
+                final var scale = range > 0. && Double.isFinite(range) ? range / FIXED_16_MAX : 1.;
+                final var inverseScale = 1. / scale;
+                final var fixed = new short[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    fixed[i] = (short) (int) ((values[i] - offset) * inverseScale + 0.5);
+                }
+                yield new CompactSampleLine(storage, values.length, null, fixed, offset, scale, overExposed);
+            }
+        };
+    }
+
+    @Override
+    public int getLength() {
+        return this.length;
+    }
+
+    @Override
+    public double getValue(int index) {
+        if (this.floats != null)
+            return this.floats[index];
+
+        return this.offset + (this.fixed[index] & FIXED_16_MAX) * this.scale;
+    }
+
+    /**
+     * Expanded values, shared until memory runs short.
+     * <p>
+     * NOTE: No defensive copying here! The caller is responsible not to alter the array!
+     */
+    @Override
+    double[] getValues() {
+        final var reference = this.expanded;
+        var result = reference != null ? reference.get() : null;
+        if (result == null) {
+            result = getCopyOfValues();
+            this.expanded = new SoftReference<>(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Expanded copy of the values.
+     */
+    @Override
+    public double[] getCopyOfValues() {
+        final var values = new double[this.length];
+        if (this.floats != null) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.floats[i];
+            }
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.offset + (this.fixed[i] & FIXED_16_MAX) * this.scale;
+            }
+        }
+
+        return values;
+    }
+}
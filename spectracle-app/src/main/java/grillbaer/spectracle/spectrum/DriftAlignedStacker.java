@@ -0,0 +1,188 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Stacks sample lines after aligning them to a reference to compensate slow sub-pixel drifts, e.g. while the
+ * spectroscope warms up. Other than exponential time averaging this keeps lines sharp.
+ * <p>
+ * The shift of each line is estimated by FFT cross-correlation with the first stacked line, refined to sub-pixel
+ * precision by fitting a parabola through the correlation peak. The line is then shifted back with linear
+ * interpolation and accumulated. All complex buffers are allocated once per line length and reused; the FFT
+ * itself works in place on precomputed roots of unity.
+ * <p>
+ * Not thread-safe.
+ */
+public final class DriftAlignedStacker {
+    public static final int DEFAULT_MAX_SHIFT = 32;
+
+    @Getter
+    private int maxShift = DEFAULT_MAX_SHIFT;
+
+    private int length;
+    /**
+     * Whether the reference has been taken, buffers are kept across resets.
+     */
+    private boolean started;
+    private double[][] referenceSpectrum;
+    private double[][] frameBuffer;
+    private double[] sums;
+    private boolean[] overExposed;
+    @Getter
+    private int count;
+    /**
+     * Shift of the last added line relative to the reference in index steps.
+     */
+    @Getter
+    private double lastShift;
+
+    /**
+     * Set the maximum shift in index steps to search for.
+     */
+    public void setMaxShift(int maxShift) {
+        this.maxShift = max(1, maxShift);
+    }
+
+    /**
+     * Start a new stack, the next added line becomes the reference.
+     */
+    public void reset() {
+        this.started = false;
+        this.count = 0;
+        this.lastShift = 0.;
+    }
+
+    /**
+     * Align the sample line to the reference and add it to the stack.
+     *
+     * @return the stacked sample line so far
+     */
+    public SampleLine add(@NonNull SampleLine sampleLine) {
+        if (sampleLine.getLength() != this.length || !this.started) {
+            start(sampleLine);
+            return stacked();
+        }
+
+        this.lastShift = estimateShift(sampleLine);
+        accumulate(sampleLine, this.lastShift);
+
+        return stacked();
+    }
+
+    private void start(@NonNull SampleLine sampleLine) {
+        if (sampleLine.getLength() != this.length || this.frameBuffer == null) {
+            this.length = sampleLine.getLength();
+            // zero padding to at least twice the length avoids circular wrap-around of the correlation
+            final var fftLength = Integer.highestOneBit(max(1, 2 * this.length - 1)) << 1;
+            this.referenceSpectrum = new double[2][fftLength];
+            this.frameBuffer = new double[2][fftLength];
+            this.sums = new double[this.length];
+            this.overExposed = new boolean[this.length];
+        }
+
+        loadCentered(sampleLine, this.referenceSpectrum);
+        FastFourierTransformer.transformInPlace(this.referenceSpectrum, DftNormalization.STANDARD, TransformType.FORWARD);
+        this.started = true;
+
+        Arrays.fill(this.sums, 0.);
+        Arrays.fill(this.overExposed, false);
+        this.count = 0;
+        this.lastShift = 0.;
+        accumulate(sampleLine, 0.);
+    }
+
+    /**
+     * Loads the mean-free values into the real part and clears the rest of the buffer.
+     */
+    private void loadCentered(@NonNull SampleLine sampleLine, @NonNull double[][] buffer) {
+        double mean = 0.;
+        for (int i = 0; i < this.length; i++) {
+            mean += sampleLine.getValue(i);
+        }
+        mean /= max(1, this.length);
+
+        final var re = buffer[0];
+        for (int i = 0; i < this.length; i++) {
+            re[i] = sampleLine.getValue(i) - mean;
+        }
+        Arrays.fill(re, this.length, re.length, 0.);
+        Arrays.fill(buffer[1], 0.);
+    }
+
+    private double estimateShift(@NonNull SampleLine sampleLine) {
+        loadCentered(sampleLine, this.frameBuffer);
+        FastFourierTransformer.transformInPlace(this.frameBuffer, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        // cross power spectrum frame * conj(reference)
+        final var re = this.frameBuffer[0];
+        final var im = this.frameBuffer[1];
+        final var refRe = this.referenceSpectrum[0];
+        final var refIm = this.referenceSpectrum[1];
+        for (int k = 0; k < re.length; k++) {
+            final var a = re[k];
+            final var b = im[k];
+            re[k] = a * refRe[k] + b * refIm[k];
+            im[k] = b * refRe[k] - a * refIm[k];
+        }
+        FastFourierTransformer.transformInPlace(this.frameBuffer, DftNormalization.STANDARD, TransformType.INVERSE);
+
+        // correlation at lag d is at index d for d >= 0 and at n + d for d < 0
+        final var n = re.length;
+        final var searchShift = min(this.maxShift, this.length - 1);
+        var bestLag = 0;
+        var bestValue = Double.NEGATIVE_INFINITY;
+        for (int lag = -searchShift; lag <= searchShift; lag++) {
+            final var value = re[Math.floorMod(lag, n)];
+            if (value > bestValue) {
+                bestValue = value;
+                bestLag = lag;
+            }
+        }
+        if (bestValue <= 0.)
+            return 0.; // no correlation, e.g. dark frame
+
+        final var left = re[Math.floorMod(bestLag - 1, n)];
+        final var right = re[Math.floorMod(bestLag + 1, n)];
+        final var curvature = left - 2. * bestValue + right;
+        final var subPixel = curvature < 0. ? 0.5 * (left - right) / curvature : 0.;
+
+        return bestLag + max(-0.5, min(0.5, subPixel));
+    }
+
+    /**
+     * Adds the line shifted back by the passed shift, i.e. stacked[i] += line[i + shift].
+     */
+    private void accumulate(@NonNull SampleLine sampleLine, double shift) {
+        final var lastIndex = this.length - 1;
+        for (int i = 0; i < this.length; i++) {
+            final var source = max(0., min(lastIndex, i + shift));
+            final var lower = (int) floor(source);
+            final var upper = min(lastIndex, lower + 1);
+            final var fraction = source - lower;
+            this.sums[i] += sampleLine.getValue(lower) * (1. - fraction) + sampleLine.getValue(upper) * fraction;
+            if ((fraction < 1. && sampleLine.isOverExposed(lower)) || (fraction > 0. && sampleLine.isOverExposed(upper))) {
+                this.overExposed[i] = true;
+            }
+        }
+        this.count++;
+    }
+
+    private SampleLine stacked() {
+        final var values = new double[this.length];
+        for (int i = 0; i < this.length; i++) {
+            values[i] = this.sums[i] / this.count;
+        }
+
+        return new SampleLine(values, this.overExposed);
+    }
+}
@@ -0,0 +1,237 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+
+/**
+ * Map of defective, i.e. hot or stuck, pixels of a camera sensor for one frame size. Stored compactly as a bit set of
+ * pixel indices <i>row * width + col</i>, which is deflated for serialization because it is usually very sparse.
+ * <p>
+ * For sampling strips, the per-column replacement rules are precomputed once per strip, so correcting a frame only
+ * costs skipping the few defective pixels.
+ * Immutable and thread-safe.
+ */
+@JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+@EqualsAndHashCode(of = {"width", "height", "defects"})
+public final class HotPixelMap {
+    @Getter
+    @JsonProperty("width")
+    private final int width;
+    @Getter
+    @JsonProperty("height")
+    private final int height;
+    private final BitSet defects;
+
+    /**
+     * Strips move rarely, so only a few corrections need to be cached.
+     */
+    private static final int MAX_CACHED_STRIP_CORRECTIONS = 16;
+
+    private final Map<Long, StripCorrection> stripCorrections = new ConcurrentHashMap<>();
+
+    public HotPixelMap(int width, int height, @NonNull BitSet defects) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("invalid size " + width + " x " + height);
+        if (defects.length() > width * height)
+            throw new IllegalArgumentException("defect index " + (defects.length() - 1) + " outside of "
+                    + width + " x " + height);
+        this.width = width;
+        this.height = height;
+        this.defects = (BitSet) defects.clone();
+    }
+
+    @JsonCreator
+    static HotPixelMap fromJson(@JsonProperty("width") int width, @JsonProperty("height") int height,
+                                @JsonProperty("defects") byte[] deflatedDefects) throws DataFormatException {
+        if (deflatedDefects == null)
+            return new HotPixelMap(width, height, new BitSet());
+
+        final var inflater = new Inflater();
+        try {
+            inflater.setInput(deflatedDefects);
+            final var bytes = new byte[(width * height + 7) / 8];
+            final var length = inflater.inflate(bytes);
+            return new HotPixelMap(width, height, BitSet.valueOf(Arrays.copyOf(bytes, length)));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Deflated defect bits, serialized as base64 string by Jackson.
+     */
+    @JsonProperty("defects")
+    byte[] getDeflatedDefects() {
+        final var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(this.defects.toByteArray());
+            deflater.finish();
+            final var out = new ByteArrayOutputStream();
+            final var buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public int getDefectCount() {
+        return this.defects.cardinality();
+    }
+
+    public boolean isDefective(int row, int col) {
+        return row >= 0 && row < this.height && col >= 0 && col < this.width
+                && this.defects.get(row * this.width + col);
+    }
+
+    /**
+     * Whether this map has been detected for frames of the passed size.
+     */
+    public boolean isFor(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * Replacement rules for a strip of rows, computed once and cached.
+     *
+     * @param firstRow first row of the strip, may be outside of the frame
+     * @param rows     number of rows of the strip
+     */
+    public StripCorrection getStripCorrection(int firstRow, int rows) {
+        if (this.stripCorrections.size() > MAX_CACHED_STRIP_CORRECTIONS) {
+            this.stripCorrections.clear();
+        }
+        return this.stripCorrections.computeIfAbsent(((long) firstRow << 32) | (rows & 0xffffffffL),
+                key -> new StripCorrection(firstRow, rows));
+    }
+
+    /**
+     * Precomputed per-column replacement rules for a strip: defective pixels are excluded from the column's average,
+     * columns without any valid pixel are interpolated from their nearest valid neighbour columns.
+     */
+    public final class StripCorrection {
+        private final int firstRow;
+        /**
+         * Defective columns per row of the strip, <code>null</code> for rows without defects.
+         */
+        private final int[][] defectiveColsByRowOffset;
+        /**
+         * Number of valid rows per column.
+         */
+        private final int[] validRows;
+        /**
+         * Columns without any valid pixel with their left and right valid neighbour column, -1 if none.
+         */
+        private final int[] interpolatedCols;
+        private final int[] leftCols;
+        private final int[] rightCols;
+        private final boolean empty;
+
+        private StripCorrection(int firstRow, int rows) {
+            this.firstRow = firstRow;
+            this.defectiveColsByRowOffset = new int[rows][];
+            this.validRows = new int[width];
+            Arrays.fill(this.validRows, rows);
+            for (int offset = 0; offset < rows; offset++) {
+                final var row = firstRow + offset;
+                if (row < 0 || row >= height)
+                    continue;
+
+                final var rowDefects = defects.get(row * width, (row + 1) * width);
+                if (!rowDefects.isEmpty()) {
+                    this.defectiveColsByRowOffset[offset] = rowDefects.stream().toArray();
+                    for (int col : this.defectiveColsByRowOffset[offset]) {
+                        this.validRows[col]--;
+                    }
+                }
+            }
+
+            this.empty = Arrays.stream(this.defectiveColsByRowOffset).allMatch(cols -> cols == null);
+
+            final var interpolated = new int[width];
+            var count = 0;
+            for (int col = 0; col < width; col++) {
+                if (this.validRows[col] <= 0) {
+                    interpolated[count++] = col;
+                }
+            }
+            this.interpolatedCols = Arrays.copyOf(interpolated, count);
+            this.leftCols = new int[count];
+            this.rightCols = new int[count];
+            for (int i = 0; i < count; i++) {
+                this.leftCols[i] = findValidCol(this.interpolatedCols[i], -1);
+                this.rightCols[i] = findValidCol(this.interpolatedCols[i], 1);
+            }
+        }
+
+        private int findValidCol(int col, int step) {
+            for (int c = col + step; c >= 0 && c < width; c += step) {
+                if (this.validRows[c] > 0)
+                    return c;
+            }
+            return -1;
+        }
+
+        /**
+         * Whether the strip contains no defective pixel, so nothing needs to be corrected.
+         */
+        public boolean isEmpty() {
+            return this.empty;
+        }
+
+        /**
+         * Defective columns within a frame row, <code>null</code> if none.
+         */
+        public int[] getDefectiveCols(int row) {
+            final var offset = row - this.firstRow;
+            return offset >= 0 && offset < this.defectiveColsByRowOffset.length
+                    ? this.defectiveColsByRowOffset[offset] : null;
+        }
+
+        /**
+         * Number of valid pixels of a column within the strip to divide its sum by.
+         */
+        public int getValidRows(int col) {
+            return this.validRows[col];
+        }
+
+        /**
+         * Replace the values of columns without any valid pixel by linear interpolation of their neighbours, the
+         * overexposure flags are taken from the neighbours, too.
+         */
+        public void interpolate(@NonNull double[] values, @NonNull boolean[] overExposed) {
+            for (int i = 0; i < this.interpolatedCols.length; i++) {
+                final var col = this.interpolatedCols[i];
+                final var left = this.leftCols[i];
+                final var right = this.rightCols[i];
+                if (left >= 0 && right >= 0) {
+                    values[col] = values[left] + (values[right] - values[left]) * (col - left) / (right - left);
+                    overExposed[col] = overExposed[left] || overExposed[right];
+                } else if (left >= 0) {
+                    values[col] = values[left];
+                    overExposed[col] = overExposed[left];
+                } else if (right >= 0) {
+                    values[col] = values[right];
+                    overExposed[col] = overExposed[right];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Line-spread function of the instrument, i.e. the profile an infinitely narrow spectral line is imaged to, in index
+ * steps of the sample line. Centered with an odd number of values, normalized to a sum of 1.0.
+ * Immutable.
+ */
+@JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+@EqualsAndHashCode
+@ToString
+public final class LineSpreadFunction {
+    public static final int DEFAULT_HALF_WIDTH = 12;
+
+    /**
+     * Maximum number of lamp lines to average.
+     */
+    private static final int MAX_LINES = 5;
+    /**
+     * Minimum level of a line relative to the strongest one, weaker ones are too noisy.
+     */
+    private static final double MIN_RELATIVE_LEVEL = 0.2;
+    /**
+     * Minimum level of any neighbouring maximum relative to a line for spoiling its isolation, weaker ones are noise.
+     */
+    private static final double NEIGHBOUR_RELATIVE_LEVEL = 0.03;
+
+    @JsonProperty("values")
+    private final double[] values;
+
+    @JsonCreator
+    public LineSpreadFunction(@JsonProperty("values") @NonNull double[] values) {
+        if (values.length % 2 == 0)
+            throw new IllegalArgumentException("line-spread function needs an odd number of values but has "
+                    + values.length);
+        final var sum = Arrays.stream(values).sum();
+        if (!(sum > 0.))
+            throw new IllegalArgumentException("line-spread function must have a positive sum but has " + sum);
+
+        this.values = Arrays.stream(values).map(value -> value / sum).toArray();
+    }
+
+    public int getLength() {
+        return this.values.length;
+    }
+
+    public int getHalfWidth() {
+        return this.values.length / 2;
+    }
+
+    /**
+     * Value at an offset from the center, between <code>-halfWidth</code> and <code>halfWidth</code>.
+     */
+    public double getValue(int offset) {
+        return this.values[getHalfWidth() + offset];
+    }
+
+    /**
+     * Full width at half maximum in index steps, linearly interpolated.
+     */
+    public double getFullWidthAtHalfMaximum() {
+        var peak = 0;
+        for (int i = 1; i < this.values.length; i++) {
+            if (this.values[i] > this.values[peak]) {
+                peak = i;
+            }
+        }
+        final var half = this.values[peak] / 2.;
+        var left = (double) peak;
+        for (int i = peak; i > 0; i--) {
+            if (this.values[i - 1] < half) {
+                left = i - (this.values[i] - half) / (this.values[i] - this.values[i - 1]);
+                break;
+            }
+        }
+        var right = (double) peak;
+        for (int i = peak; i < this.values.length - 1; i++) {
+            if (this.values[i + 1] < half) {
+                right = i + (this.values[i] - half) / (this.values[i] - this.values[i + 1]);
+                break;
+            }
+        }
+
+        return right - left;
+    }
+
+    /**
+     * Measure the line-spread function from the sample line of a line lamp, e.g. a fluorescent lamp. The strongest
+     * isolated, not overexposed lines are cut out, freed from their local linear background, aligned at their sub-pixel
+     * centers and averaged. A line is isolated if there is no other maximum above the noise nearby, even a weak one.
+     *
+     * @param halfWidth number of index steps to take on each side of a line's center
+     * @throws IllegalArgumentException if there is no usable line
+     */
+    public static LineSpreadFunction measure(@NonNull SampleLine lampLine, int halfWidth) {
+        if (halfWidth < 1)
+            throw new IllegalArgumentException("half width must be positive but is " + halfWidth);
+
+        final var length = lampLine.getLength();
+        final var maxima = SavitzkyGolay.findLocalExtrema(lampLine, 5, 2, 0.3, 0, Integer.MAX_VALUE).getMaxima();
+        final var accepted = new ArrayList<Integer>();
+        final var sum = new double[2 * halfWidth + 1];
+        for (var maximum : maxima) {
+            if (maximum.getLevel() < MIN_RELATIVE_LEVEL * maxima.get(0).getLevel())
+                break;
+
+            final var index = maximum.getIndex();
+            if (isIsolated(maxima, maximum, 2 * halfWidth + 1) && index - halfWidth - 2 >= 0
+                    && index + halfWidth + 2 < length
+                    && !isOverExposed(lampLine, index - halfWidth - 1, index + halfWidth + 1)) {
+                if (addLine(lampLine, index, halfWidth, sum)) {
+                    accepted.add(index);
+                }
+                if (accepted.size() >= MAX_LINES)
+                    break;
+            }
+        }
+        if (accepted.isEmpty())
+            throw new IllegalArgumentException("no isolated, not overexposed line found");
+
+        return new LineSpreadFunction(sum);
+    }
+
+    /**
+     * Whether no other maximum above the noise, whether used or not, lies within the distance of the line.
+     */
+    private static boolean isIsolated(@NonNull List<Calculations.Extremum> maxima,
+                                      @NonNull Calculations.Extremum line, int distance) {
+        final var noiseLevel = NEIGHBOUR_RELATIVE_LEVEL * line.getLevel();
+        return maxima.stream().allMatch(other -> other == line || other.getLevel() < noiseLevel
+                || abs(other.getIndex() - line.getIndex()) > distance);
+    }
+
+    private static boolean isOverExposed(@NonNull SampleLine line, int fromIndex, int toIndex) {
+        for (int i = fromIndex; i <= toIndex; i++) {
+            if (line.isOverExposed(i))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the normalized profile of the line at the index to the sum.
+     *
+     * @return whether the line had a usable profile
+     */
+    private static boolean addLine(@NonNull SampleLine line, int index, int halfWidth, @NonNull double[] sum) {
+        // sub-pixel center by a parabola through the maximum and its neighbours
+        final var left = line.getValue(index - 1);
+        final var center = line.getValue(index);
+        final var right = line.getValue(index + 1);
+        final var curvature = left - 2. * center + right;
+        final var centerIndex = index + (curvature < 0. ? max(-0.5, min(0.5, 0.5 * (left - right) / curvature)) : 0.);
+
+        final var backgroundLeft = interpolate(line, centerIndex - halfWidth - 1);
+        final var backgroundRight = interpolate(line, centerIndex + halfWidth + 1);
+        final var profile = new double[sum.length];
+        double profileSum = 0.;
+        for (int offset = -halfWidth; offset <= halfWidth; offset++) {
+            final var position = (offset + halfWidth + 1.) / (2. * halfWidth + 2.);
+            final var background = backgroundLeft + (backgroundRight - backgroundLeft) * position;
+            profile[offset + halfWidth] = max(0., interpolate(line, centerIndex + offset) - background);
+            profileSum += profile[offset + halfWidth];
+        }
+        if (!(profileSum > 0.))
+            return false;
+
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += profile[i] / profileSum;
+        }
+        return true;
+    }
+
+    private static double interpolate(@NonNull SampleLine line, double index) {
+        final var lower = (int) Math.floor(index);
+        final var fraction = index - lower;
+        return line.getValue(lower) * (1. - fraction) + line.getValue(lower + 1) * fraction;
+    }
+}
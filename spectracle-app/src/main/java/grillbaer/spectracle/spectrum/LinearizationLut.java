@@ -0,0 +1,126 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+import static java.lang.Math.*;
+
+/**
+ * Lookup table mapping the 8 bit pixel values of a camera to values proportional to the light, undoing the gamma
+ * encoding applied by webcams. Linear values are between 0.0 and 1.0.
+ * <p>
+ * The table is derived from a gamma exponent that can be fitted from an exposure series: with exposures scaled
+ * log2, the linear value of a bin doubles with each exposure step, so for gamma encoded values <i>v</i> the slope of
+ * <i>ln v</i> over the exposure is <i>ln 2 / γ</i>.
+ * Immutable.
+ */
+@JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+@EqualsAndHashCode(of = "gamma")
+@ToString(of = "gamma")
+public final class LinearizationLut {
+    public static final LinearizationLut IDENTITY = new LinearizationLut(1.);
+
+    public static final double MIN_GAMMA = 0.5;
+    public static final double MAX_GAMMA = 4.;
+
+    /**
+     * Values below are dominated by noise and black level, values above may be clipped, both are not used for fitting.
+     */
+    private static final double MIN_FIT_VALUE = 8. / 255.;
+    private static final double MAX_FIT_VALUE = 245. / 255.;
+
+    @Getter
+    @JsonProperty("gamma")
+    private final double gamma;
+    private final double[] table = new double[256];
+
+    @JsonCreator
+    public LinearizationLut(@JsonProperty("gamma") double gamma) {
+        if (!(gamma >= MIN_GAMMA && gamma <= MAX_GAMMA))
+            throw new IllegalArgumentException("gamma must be between " + MIN_GAMMA + " and " + MAX_GAMMA
+                    + " but is " + gamma);
+        this.gamma = gamma;
+        for (int code = 0; code < this.table.length; code++) {
+            this.table[code] = pow(code / 255., gamma);
+        }
+    }
+
+    /**
+     * Linear value of an 8 bit pixel value.
+     */
+    public double linearize(int code) {
+        return this.table[code];
+    }
+
+    /**
+     * Table of linear values indexed by the 8 bit pixel value.
+     * <p>
+     * NOTE: No defensive copying here! The caller is responsible not to alter the array!
+     */
+    double[] getTable() {
+        return this.table;
+    }
+
+    public boolean isIdentity() {
+        return this.gamma == 1.;
+    }
+
+    /**
+     * Fit the gamma from sample lines of the same scene taken with different exposures.
+     *
+     * @param values    gamma encoded sample values per exposure, all of the same length
+     * @param exposures log2 scaled exposure per entry of the values
+     * @throws IllegalArgumentException if the values do not allow a fit, e.g. because they are all too dark
+     */
+    public static LinearizationLut fitExposureSeries(@NonNull double[][] values, @NonNull double[] exposures) {
+        if (values.length < 2 || values.length != exposures.length)
+            throw new IllegalArgumentException("at least two exposures with values needed");
+
+        // common slope over all bins, each bin with its own intercept
+        double covariance = 0.;
+        double variance = 0.;
+        var usedBins = 0;
+        final var length = values[0].length;
+        final var logValues = new double[values.length];
+        final var usable = new boolean[values.length];
+        for (int i = 0; i < length; i++) {
+            double exposureSum = 0.;
+            double logSum = 0.;
+            var count = 0;
+            for (int k = 0; k < values.length; k++) {
+                final var value = values[k][i];
+                usable[k] = value >= MIN_FIT_VALUE && value <= MAX_FIT_VALUE;
+                if (usable[k]) {
+                    logValues[k] = log(value);
+                    exposureSum += exposures[k];
+                    logSum += logValues[k];
+                    count++;
+                }
+            }
+            if (count < 2)
+                continue;
+
+            final var exposureMean = exposureSum / count;
+            final var logMean = logSum / count;
+            for (int k = 0; k < values.length; k++) {
+                if (usable[k]) {
+                    covariance += (exposures[k] - exposureMean) * (logValues[k] - logMean);
+                    variance += (exposures[k] - exposureMean) * (exposures[k] - exposureMean);
+                }
+            }
+            usedBins++;
+        }
+
+        if (usedBins == 0 || variance <= 0. || covariance <= 0.)
+            throw new IllegalArgumentException("no bins with usable values in at least two exposures");
+
+        final var slope = covariance / variance;
+        return new LinearizationLut(max(MIN_GAMMA, min(MAX_GAMMA, log(2.) / slope)));
+    }
+}
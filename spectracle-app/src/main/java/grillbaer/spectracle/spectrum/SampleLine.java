@@ -2,25 +2,41 @@ package grillbaer.spectracle.spectrum;
 
 import lombok.NonNull;
 
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Line of sample values, used for the measurement points of a spectrum.
- * Immutable.
+ * Subclasses may keep the values in another storage, overriding {@link #getLength()}, {@link #getValue(int)} and
+ * {@link #getValues()}, through which all other methods read them.
+ * Immutable and thread-safe.
  */
-public class SampleLine {
+public class SampleLine implements SampleValues {
+    /**
+     * Values, <code>null</code> for subclasses with their own storage.
+     */
     private final double[] values;
-    private final boolean[] overExposed;
+    /**
+     * Indices of overexposed values, <code>null</code> if overexposure is unknown.
+     */
+    private final BitSet overExposed;
 
-    private Double cachedMinValue;
-    private Double cachedMaxValue;
+    /**
+     * Calculated on first use, racing threads calculate the same immutable result.
+     */
+    private volatile SampleStatistics statistics;
+    /**
+     * Integrals from index 0 to each index, built on first use like the statistics.
+     */
+    private volatile double[] cumulativeSums;
 
     /**
      * Creates new sample line without overexposure information.
      * Values array will be copied.
      */
     public static SampleLine create(@NonNull double[] values) {
-        return new SampleLine(Arrays.copyOf(values, values.length), null);
+        return new SampleLine(Arrays.copyOf(values, values.length), (BitSet) null);
     }
 
     /**
@@ -28,28 +44,67 @@ public class SampleLine {
      * Arrays will be copied.
      */
     public static SampleLine create(@NonNull double[] values, boolean[] overExposed) {
-        return new SampleLine(
-                Arrays.copyOf(values, values.length),
-                overExposed != null ? Arrays.copyOf(overExposed, overExposed.length) : null);
+        return new SampleLine(Arrays.copyOf(values, values.length), overExposed);
     }
 
     /**
      * Creates new sample line with overexposure information.
      * <p>
-     * NOTE: No defensive copying here! The caller is responsible not to alter the arrays any more!
+     * NOTE: No defensive copying of the values here! The caller is responsible not to alter the array any more!
      */
     SampleLine(@NonNull double[] values, boolean[] overExposed) {
-        if (overExposed != null && values.length != overExposed.length)
-            throw new IllegalArgumentException("values and overExposed arrays have different lengths "
-                    + values.length + " and " + overExposed.length);
+        this(values, toBitSet(values.length, overExposed));
+    }
+
+    /**
+     * Creates new sample line with overexposure information.
+     * <p>
+     * NOTE: No defensive copying here! The caller is responsible not to alter the array and bit set any more!
+     */
+    SampleLine(@NonNull double[] values, BitSet overExposed) {
+        if (overExposed != null && overExposed.length() > values.length)
+            throw new IllegalArgumentException("overexposed index " + (overExposed.length() - 1)
+                    + " outside of values with length " + values.length);
         this.values = values;
         this.overExposed = overExposed;
     }
 
+    /**
+     * Creates a sample line whose subclass provides the values.
+     * <p>
+     * NOTE: No defensive copying here! The caller is responsible not to alter the bit set any more!
+     */
+    SampleLine(int length, BitSet overExposed) {
+        if (overExposed != null && overExposed.length() > length)
+            throw new IllegalArgumentException("overexposed index " + (overExposed.length() - 1)
+                    + " outside of values with length " + length);
+        this.values = null;
+        this.overExposed = overExposed;
+    }
+
+    private static BitSet toBitSet(int length, boolean[] flags) {
+        if (flags == null)
+            return null;
+        if (flags.length != length)
+            throw new IllegalArgumentException("values and overExposed arrays have different lengths "
+                    + length + " and " + flags.length);
+
+        final var bitSet = new BitSet(length);
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i]) {
+                bitSet.set(i);
+            }
+        }
+
+        return bitSet;
+    }
+
+    @Override
     public int getLength() {
         return this.values.length;
     }
 
+    @Override
     public double getValue(int index) {
         return this.values[index];
     }
@@ -60,47 +115,95 @@ public class SampleLine {
      * NOTE: No defensive copying here! The caller is responsible not to alter the array!
      */
     double[] getValues() {
-        return Arrays.copyOf(this.values, this.values.length);
+        return this.values;
     }
 
     public double[] getCopyOfValues() {
-        return Arrays.copyOf(this.values, this.values.length);
+        final var result = getValues();
+        return Arrays.copyOf(result, result.length);
     }
 
-    public double getMinValue() {
-        if (this.cachedMinValue == null) {
-            this.cachedMinValue = Arrays.stream(this.values).min().orElse(0.);
+    @Override
+    public DoubleBuffer asReadOnlyBuffer() {
+        return DoubleBuffer.wrap(getValues()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public SampleStatistics getStatistics() {
+        var result = this.statistics;
+        if (result == null) {
+            result = SampleStatistics.calc(getValues(), this.overExposed);
+            this.statistics = result;
         }
 
-        return this.cachedMinValue;
+        return result;
     }
 
-    public double getMaxValue() {
-        if (this.cachedMaxValue == null) {
-            this.cachedMaxValue = Arrays.stream(this.values).max().orElse(0.);
+    /**
+     * Integral of the linearly interpolated values over a fractional index range in O(1), using cumulative sums
+     * built once on first use. The bounds are clipped to the line, the integral is negative for reversed bounds.
+     */
+    public double integrate(double fromIndex, double toIndex) {
+        if (getLength() < 2)
+            return 0.;
+
+        final var sums = getCumulativeSums();
+        return integralTo(sums, toIndex) - integralTo(sums, fromIndex);
+    }
+
+    private double[] getCumulativeSums() {
+        var result = this.cumulativeSums;
+        if (result == null) {
+            final var valueArray = getValues();
+            result = new double[valueArray.length];
+            for (int i = 1; i < result.length; i++) {
+                result[i] = result[i - 1] + 0.5 * (valueArray[i - 1] + valueArray[i]);
+            }
+            this.cumulativeSums = result;
         }
 
-        return this.cachedMaxValue;
+        return result;
+    }
+
+    private double integralTo(@NonNull double[] sums, double index) {
+        final var lastIndex = getLength() - 1;
+        final var clipped = Math.max(0., Math.min(lastIndex, index));
+        final var i = Math.min(lastIndex - 1, (int) clipped);
+        final var t = clipped - i;
+        final var value = getValue(i);
+
+        return sums[i] + t * value + 0.5 * t * t * (getValue(i + 1) - value);
+    }
+
+    public double getMinValue() {
+        return getStatistics().getMinValue();
+    }
+
+    public double getMaxValue() {
+        return getStatistics().getMaxValue();
     }
 
     /**
-     * Returns the overexposure vector.
+     * Returns the overexposure bits.
      * <p>
-     * NOTE: No defensive copying here! The caller is responsible not to alter the array!
+     * NOTE: No defensive copying here! The caller is responsible not to alter the bit set!
      */
-    boolean[] getOverExposed() {
+    BitSet getOverExposed() {
         return this.overExposed;
     }
 
     public boolean[] getCopyOfOverExposed() {
         if (this.overExposed != null) {
-            return Arrays.copyOf(this.overExposed, this.overExposed.length);
+            final var flags = new boolean[getLength()];
+            this.overExposed.stream().forEach(i -> flags[i] = true);
+            return flags;
         } else {
             return null; // NOSONAR: missing overexposure information is marked as null
         }
     }
 
+    @Override
     public boolean isOverExposed(int index) {
-        return this.overExposed != null && this.overExposed[index];
+        return this.overExposed != null && this.overExposed.get(index);
     }
 }
@@ -0,0 +1,74 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.BitSet;
+
+/**
+ * Summary statistics of a vector of sample values, all calculated in one pass.
+ * Immutable and therefore safe to share between threads.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@ToString
+public final class SampleStatistics {
+    private static final SampleStatistics EMPTY = new SampleStatistics(0, 0., 0., 0., -1, Double.NaN, 0);
+
+    private final int length;
+    private final double minValue;
+    private final double maxValue;
+    private final double sum;
+    /**
+     * Index of the first maximum value, -1 for no values.
+     */
+    private final int maxIndex;
+    /**
+     * Fractional index of the center of mass of all positive values, <code>NaN</code> if there are none.
+     */
+    private final double centroidIndex;
+    private final int overExposedCount;
+
+    /**
+     * Calculate the statistics of the values.
+     *
+     * @param overExposed overexposure flags, <code>null</code> if unknown
+     */
+    static SampleStatistics calc(@NonNull double[] values, BitSet overExposed) {
+        if (values.length == 0)
+            return EMPTY;
+
+        var minValue = values[0];
+        var maxValue = values[0];
+        var maxIndex = 0;
+        double sum = 0.;
+        double positiveSum = 0.;
+        double positiveMoment = 0.;
+        for (int i = 0; i < values.length; i++) {
+            final var value = values[i];
+            if (value < minValue) {
+                minValue = value;
+            }
+            if (value > maxValue) {
+                maxValue = value;
+                maxIndex = i;
+            }
+            sum += value;
+            if (value > 0.) {
+                positiveSum += value;
+                positiveMoment += value * i;
+            }
+        }
+
+        return new SampleStatistics(values.length, minValue, maxValue, sum, maxIndex,
+                positiveSum > 0. ? positiveMoment / positiveSum : Double.NaN,
+                overExposed != null ? overExposed.cardinality() : 0);
+    }
+
+    public double getMean() {
+        return this.length > 0 ? this.sum / this.length : 0.;
+    }
+}
@@ -0,0 +1,39 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Named horizontal strip of pixel rows to take a sample line from, e.g. a sample and a reference channel of a
+ * split-beam setup imaged at different heights of the same frame.
+ * Immutable.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class SampleStrip {
+    private final @NonNull String name;
+    /**
+     * The center pixel row of the strip.
+     */
+    private final int centerRow;
+    /**
+     * The number of pixel rows to include in the strip.
+     */
+    private final int rows;
+
+    public int getFirstRow() {
+        return this.centerRow - this.rows / 2;
+    }
+
+    /**
+     * Last row, exclusive.
+     */
+    public int getEndRow() {
+        return getFirstRow() + this.rows;
+    }
+}
@@ -0,0 +1,25 @@
+package grillbaer.spectracle.spectrum;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Read-only view on a vector of sample values with its overexposure flags.
+ */
+public interface SampleValues {
+    int getLength();
+
+    double getValue(int index);
+
+    boolean isOverExposed(int index);
+
+    /**
+     * Read-only buffer on the values, for bulk access. The buffer's position and limit are independent of other
+     * buffers on the same values.
+     */
+    DoubleBuffer asReadOnlyBuffer();
+
+    /**
+     * Summary statistics of all values, calculated at most once.
+     */
+    SampleStatistics getStatistics();
+}
@@ -1,11 +1,21 @@
 package grillbaer.spectracle.spectrum;
 
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.With;
 import org.opencv.core.Mat;
 
-import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 import java.util.function.ToDoubleFunction;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
 /**
  * Taking samples from images.
  */
@@ -38,40 +48,209 @@ public final class Sampling {
     };
 
     /**
-     * Take a sample line from a horizontal strip of an image pixel matrix.
+     * How to take sample lines. Immutable, variants are derived from {@link #DEFAULT} by the <code>with...</code>
+     * methods.
+     */
+    @Getter
+    @With
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Options {
+        public static final Options DEFAULT = new Options(PIXEL_CHANNEL_AVERAGE, false, null, 0, null);
+
+        /**
+         * Function to aggregate the pixel's channels into one intensity value, not used for luma only sampling.
+         */
+        private final @NonNull ToDoubleFunction<double[]> pixelToValueFunction;
+        /**
+         * Whether the matrix is raw YUYV with two byte channels per pixel and only the first one, the luma value, is
+         * used as the pixel's intensity. This avoids any color conversion.
+         */
+        private final boolean yuyvLuma;
+        /**
+         * Defective pixels to exclude, <code>null</code> for none. Ignored if the matrix does not fit into the map
+         * at {@link #hotPixelFirstRow}.
+         */
+        private final HotPixelMap hotPixelMap;
+        /**
+         * Row of the hot pixel map corresponding to the matrix' first row, not 0 for matrices cropped from a frame.
+         */
+        private final int hotPixelFirstRow;
+        /**
+         * Lookup table for linear channel values, <code>null</code> for no linearization.
+         */
+        private final LinearizationLut linearization;
+
+        private double[] getLinearizationTable() {
+            return (this.linearization != null ? this.linearization : LinearizationLut.IDENTITY).getTable();
+        }
+    }
+
+    /**
+     * Take sample lines from several horizontal strips of an image pixel matrix in one pass over the pixel rows.
+     * Each row is read once, even if it is part of more than one strip, so all lines are taken from exactly the same
+     * exposure.
      *
-     * @param centerRow            the center pixel row of the sample strip within the matrix
-     * @param rows                 the number of pixel rows to include in the sample strip
-     * @param pixelToValueFunction function to aggregate the pixel's channels into one intensity value
+     * @param strips strips with unique names, may overlap
+     * @return sample lines by strip name in the order of the strips
      */
-    public static SampleLine sampleLineFromMat(@NonNull Mat mat, int centerRow, int rows, @NonNull ToDoubleFunction<double[]> pixelToValueFunction) {
-        final var values = new double[mat.cols()];
-        final var overExposed = new boolean[mat.cols()];
-        final var rawPixel = new byte[mat.channels()];
-        final var normPixel = new double[mat.channels()];
-
-        for (var col = 0; col < mat.cols(); col++) {
-            Arrays.fill(normPixel, 0f);
-            for (var rowOffset = 0; rowOffset < rows; rowOffset++) {
-                final var row = centerRow - rows / 2 + rowOffset;
-                if (row < 0 || row >= mat.rows())
-                    continue;
-
-                mat.get(row, col, rawPixel);
-                for (int i = 0; i < rawPixel.length; i++) {
-                    final var channelValue = ((int) rawPixel[i]) & 0xff;
-                    normPixel[i] += channelValue / 255. / rows;
-                    if (channelValue >= 255) {
-                        overExposed[col] = true;
+    public static Map<String, SampleLine> sampleLinesFromMat(@NonNull Mat mat, @NonNull List<SampleStrip> strips,
+                                                             @NonNull Options options) {
+        return options.yuyvLuma ? sampleLumaLines(mat, strips, options) : sampleChannelLines(mat, strips, options);
+    }
+
+    private static Map<String, SampleLine> sampleChannelLines(@NonNull Mat mat, @NonNull List<SampleStrip> strips,
+                                                              @NonNull Options options) {
+        final var cols = mat.cols();
+        final var channels = mat.channels();
+        final var lut = options.getLinearizationTable();
+        final var channelSums = new double[strips.size()][cols * channels];
+        final var overExposed = new boolean[strips.size()][cols];
+        final var rowBytes = new byte[cols * channels];
+        final var corrections = getStripCorrections(mat, strips, options);
+        final var hotPixelMap = options.hotPixelMap;
+        final var mapFirstRow = options.hotPixelFirstRow;
+
+        forEachStripRow(mat, strips, row -> mat.get(row, 0, rowBytes), (stripIndex, row) -> {
+            final var sums = channelSums[stripIndex];
+            final var stripOverExposed = overExposed[stripIndex];
+            final var correction = corrections[stripIndex];
+            for (int i = 0; i < rowBytes.length; i++) {
+                final var channelValue = ((int) rowBytes[i]) & 0xff;
+                sums[i] += lut[channelValue];
+                if (channelValue >= 255
+                        && (correction == null || !hotPixelMap.isDefective(row + mapFirstRow, i / channels))) {
+                    stripOverExposed[i / channels] = true;
+                }
+            }
+            final var defectiveCols = correction != null ? correction.getDefectiveCols(row + mapFirstRow) : null;
+            if (defectiveCols != null) {
+                for (int col : defectiveCols) {
+                    for (int i = col * channels; i < (col + 1) * channels; i++) {
+                        sums[i] -= lut[((int) rowBytes[i]) & 0xff];
                     }
                 }
             }
+        });
 
-            values[col] = pixelToValueFunction.applyAsDouble(normPixel);
-            if (values[col] < 0f) values[col] = 0f;
-            if (values[col] > 1f) values[col] = 1f;
+        final var lines = new LinkedHashMap<String, SampleLine>();
+        final var normPixel = new double[channels];
+        for (int s = 0; s < strips.size(); s++) {
+            final var rows = strips.get(s).getRows();
+            final var correction = corrections[s];
+            final var values = new double[cols];
+            for (var col = 0; col < cols; col++) {
+                final var validRows = correction != null ? correction.getValidRows(col) : rows;
+                for (int i = 0; i < channels; i++) {
+                    normPixel[i] = validRows > 0 ? channelSums[s][col * channels + i] / validRows : 0.;
+                }
+                values[col] = max(0., min(1., options.pixelToValueFunction.applyAsDouble(normPixel)));
+            }
+            if (correction != null) {
+                correction.interpolate(values, overExposed[s]);
+            }
+            lines.put(strips.get(s).getName(), new SampleLine(values, overExposed[s]));
         }
 
-        return new SampleLine(values, overExposed);
+        return lines;
+    }
+
+    private static Map<String, SampleLine> sampleLumaLines(@NonNull Mat yuyvMat, @NonNull List<SampleStrip> strips,
+                                                           @NonNull Options options) {
+        final var cols = yuyvMat.cols();
+        final var lut = options.getLinearizationTable();
+        final var lumaSums = new double[strips.size()][cols];
+        final var overExposed = new boolean[strips.size()][cols];
+        final var rowBytes = new byte[cols * 2];
+        final var corrections = getStripCorrections(yuyvMat, strips, options);
+        final var hotPixelMap = options.hotPixelMap;
+        final var mapFirstRow = options.hotPixelFirstRow;
+
+        forEachStripRow(yuyvMat, strips, row -> yuyvMat.get(row, 0, rowBytes), (stripIndex, row) -> {
+            final var sums = lumaSums[stripIndex];
+            final var stripOverExposed = overExposed[stripIndex];
+            final var correction = corrections[stripIndex];
+            for (var col = 0; col < cols; col++) {
+                final var luma = ((int) rowBytes[2 * col]) & 0xff;
+                sums[col] += lut[luma];
+                if (luma >= 255 && (correction == null || !hotPixelMap.isDefective(row + mapFirstRow, col))) {
+                    stripOverExposed[col] = true;
+                }
+            }
+            final var defectiveCols = correction != null ? correction.getDefectiveCols(row + mapFirstRow) : null;
+            if (defectiveCols != null) {
+                for (int col : defectiveCols) {
+                    sums[col] -= lut[((int) rowBytes[2 * col]) & 0xff];
+                }
+            }
+        });
+
+        final var lines = new LinkedHashMap<String, SampleLine>();
+        for (int s = 0; s < strips.size(); s++) {
+            final var rows = strips.get(s).getRows();
+            final var correction = corrections[s];
+            final var values = new double[cols];
+            for (var col = 0; col < cols; col++) {
+                final var validRows = correction != null ? correction.getValidRows(col) : rows;
+                values[col] = validRows > 0 ? max(0., min(1., lumaSums[s][col] / validRows)) : 0.;
+            }
+            if (correction != null) {
+                correction.interpolate(values, overExposed[s]);
+            }
+            lines.put(strips.get(s).getName(), new SampleLine(values, overExposed[s]));
+        }
+
+        return lines;
+    }
+
+    /**
+     * Precomputed corrections per strip, <code>null</code> entries for strips without defective pixels.
+     */
+    private static HotPixelMap.StripCorrection[] getStripCorrections(@NonNull Mat mat, @NonNull List<SampleStrip> strips,
+                                                                     @NonNull Options options) {
+        final var corrections = new HotPixelMap.StripCorrection[strips.size()];
+        final var hotPixelMap = options.hotPixelMap;
+        if (hotPixelMap != null && hotPixelMap.getWidth() == mat.cols() && options.hotPixelFirstRow >= 0
+                && options.hotPixelFirstRow + mat.rows() <= hotPixelMap.getHeight()) {
+            for (int s = 0; s < strips.size(); s++) {
+                final var correction = hotPixelMap.getStripCorrection(
+                        strips.get(s).getFirstRow() + options.hotPixelFirstRow, strips.get(s).getRows());
+                corrections[s] = correction.isEmpty() ? null : correction;
+            }
+        }
+
+        return corrections;
+    }
+
+    /**
+     * Visit all matrix rows covered by any strip in ascending order, reading each row once and passing it on to all
+     * strips covering it.
+     */
+    private static void forEachStripRow(@NonNull Mat mat, @NonNull List<SampleStrip> strips,
+                                        @NonNull IntConsumer rowReader, @NonNull RowAccumulator accumulator) {
+        int firstRow = Integer.MAX_VALUE;
+        int endRow = Integer.MIN_VALUE;
+        for (SampleStrip strip : strips) {
+            firstRow = min(firstRow, strip.getFirstRow());
+            endRow = max(endRow, strip.getEndRow());
+        }
+
+        for (var row = max(0, firstRow); row < min(mat.rows(), endRow); row++) {
+            var read = false;
+            for (int s = 0; s < strips.size(); s++) {
+                final var strip = strips.get(s);
+                if (row >= strip.getFirstRow() && row < strip.getEndRow()) {
+                    if (!read) {
+                        rowReader.accept(row);
+                        read = true;
+                    }
+                    accumulator.accumulate(s, row);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowAccumulator {
+        void accumulate(int stripIndex, int row);
     }
 }
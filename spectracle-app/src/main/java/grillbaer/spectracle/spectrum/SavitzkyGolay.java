@@ -0,0 +1,239 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.QRDecomposition;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Comparator.comparing;
+
+/**
+ * Savitzky-Golay filter: fits a polynomial to a sliding window of values by least squares and takes its value or
+ * derivative at the window's position. Unlike gaussian smoothing, it preserves the height and width of narrow lines
+ * up to the polynomial's order.
+ * <p>
+ * The filter coefficients only depend on window, order, derivative and the position within the window, so they are
+ * computed once and cached. Near the line's ends, the window is not centered but fitted at the off-center position,
+ * so the ends are neither clamped nor mirrored.
+ */
+public final class SavitzkyGolay {
+    public static final int MAX_WINDOW = 255;
+    public static final int MAX_DERIVATIVE = 2;
+
+    private static final Map<Integer, double[][]> COEFFICIENTS = new ConcurrentHashMap<>();
+
+    private SavitzkyGolay() {
+        // no instances
+    }
+
+    /**
+     * Smoothed values and their first and second derivative per index step.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Derivatives {
+        private final @NonNull SampleLine smoothed;
+        private final @NonNull SampleLine firstDerivative;
+        private final @NonNull SampleLine secondDerivative;
+    }
+
+    /**
+     * Smooth a sample line.
+     *
+     * @param window odd number of values to fit the polynomial to, at least 3
+     * @param order  order of the polynomial, less than the window
+     */
+    public static SampleLine smooth(@NonNull SampleLine input, int window, int order) {
+        return new SampleLine(apply(input.getValues(), window, order), input.getOverExposed());
+    }
+
+    /**
+     * Smooth a sample line and calculate its first and second derivative in the same pass over the values.
+     *
+     * @param window odd number of values to fit the polynomial to, at least 3
+     * @param order  order of the polynomial, less than the window
+     */
+    public static Derivatives filter(@NonNull SampleLine input, int window, int order) {
+        final var values = input.getValues();
+        final var length = values.length;
+        final var smoothed = new double[length];
+        final var first = new double[length];
+        final var second = new double[length];
+        final var effectiveWindow = effectiveWindow(length, window);
+        if (effectiveWindow > 0) {
+            final var effectiveOrder = min(order, effectiveWindow - 1);
+            final var smoothing = getCoefficients(effectiveWindow, effectiveOrder, 0);
+            final var firstDerivative = getCoefficients(effectiveWindow, effectiveOrder, 1);
+            final var secondDerivative = getCoefficients(effectiveWindow, effectiveOrder, 2);
+            final var half = effectiveWindow / 2;
+            for (int i = 0; i < length; i++) {
+                final var start = max(0, min(length - effectiveWindow, i - half));
+                final var position = i - start;
+                final var s = smoothing[position];
+                final var f = firstDerivative[position];
+                final var d = secondDerivative[position];
+                double smoothedSum = 0.;
+                double firstSum = 0.;
+                double secondSum = 0.;
+                for (int k = 0; k < effectiveWindow; k++) {
+                    final var value = values[start + k];
+                    smoothedSum += s[k] * value;
+                    firstSum += f[k] * value;
+                    secondSum += d[k] * value;
+                }
+                smoothed[i] = smoothedSum;
+                first[i] = firstSum;
+                second[i] = secondSum;
+            }
+        } else {
+            System.arraycopy(values, 0, smoothed, 0, length);
+        }
+
+        return new Derivatives(new SampleLine(smoothed, input.getOverExposed()),
+                new SampleLine(first, input.getOverExposed()),
+                new SampleLine(second, input.getOverExposed()));
+    }
+
+    private static double[] apply(@NonNull double[] values, int window, int order) {
+        final var length = values.length;
+        final var effectiveWindow = effectiveWindow(length, window);
+        if (effectiveWindow == 0)
+            return values.clone();
+
+        final var result = new double[length];
+        final var coefficients = getCoefficients(effectiveWindow, min(order, effectiveWindow - 1), 0);
+        final var half = effectiveWindow / 2;
+        for (int i = 0; i < length; i++) {
+            final var start = max(0, min(length - effectiveWindow, i - half));
+            final var row = coefficients[i - start];
+            double sum = 0.;
+            for (int k = 0; k < effectiveWindow; k++) {
+                sum += row[k] * values[start + k];
+            }
+            result[i] = sum;
+        }
+
+        return result;
+    }
+
+    /**
+     * Window reduced to the largest odd size fitting into the length, 0 if the filter cannot be applied.
+     */
+    private static int effectiveWindow(int length, int window) {
+        final var fitting = min(window, length % 2 == 0 ? length - 1 : length);
+        return fitting >= 3 ? fitting : 0;
+    }
+
+    /**
+     * Filter coefficients for each position within the window, cached.
+     * <p>
+     * NOTE: No defensive copying here! The caller is responsible not to alter the arrays!
+     *
+     * @return coefficients indexed by the position within the window and the window's value index
+     */
+    static double[][] getCoefficients(int window, int order, int derivative) {
+        if (window < 3 || window > MAX_WINDOW || window % 2 == 0)
+            throw new IllegalArgumentException("window must be odd and between 3 and " + MAX_WINDOW
+                    + " but is " + window);
+        if (order < 0 || order >= window)
+            throw new IllegalArgumentException("order must be between 0 and " + (window - 1) + " but is " + order);
+        if (derivative < 0 || derivative > MAX_DERIVATIVE)
+            throw new IllegalArgumentException("derivative must be between 0 and " + MAX_DERIVATIVE
+                    + " but is " + derivative);
+
+        return COEFFICIENTS.computeIfAbsent((window << 16) | (order << 8) | derivative,
+                key -> calcCoefficients(window, order, derivative));
+    }
+
+    private static double[][] calcCoefficients(int window, int order, int derivative) {
+        final var coefficients = new double[window][window];
+        if (derivative > order)
+            return coefficients; // derivative of the polynomial vanishes
+
+        // positions scaled to -1..1 keep the least squares problem well conditioned for larger windows and orders
+        final var half = window / 2;
+        var derivativeFactor = 1.;
+        for (int d = 2; d <= derivative; d++) {
+            derivativeFactor *= d;
+        }
+        derivativeFactor /= Math.pow(half, derivative);
+
+        for (int position = 0; position < window; position++) {
+            final var design = MatrixUtils.createRealMatrix(window, order + 1);
+            for (int k = 0; k < window; k++) {
+                final var x = (double) (k - position) / half;
+                var power = 1.;
+                for (int j = 0; j <= order; j++) {
+                    design.setEntry(k, j, power);
+                    power *= x;
+                }
+            }
+            final var pseudoInverse = new QRDecomposition(design).getSolver().getInverse();
+            for (int k = 0; k < window; k++) {
+                coefficients[position][k] = derivativeFactor * pseudoInverse.getEntry(derivative, k);
+            }
+        }
+
+        return coefficients;
+    }
+
+    /**
+     * Find local minimums and maximums as zero crossings of the first derivative. The level of an extremum is
+     * calibrated like in {@link Calculations#findLocalExtrema}: 100 times the smoothed value's height above the mean
+     * of the smoothed values one window and five windows away, whichever is more prominent. So it is proportional to
+     * the height regardless of the width, positive for maximums and negative for minimums.
+     * The extrema are returned in descending level order.
+     *
+     * @param minLevel minimum absolute level of an extremum to be reported
+     */
+    public static Calculations.Extrema findLocalExtrema(@NonNull SampleLine input, int window, int order,
+                                                        double minLevel, int maxMinima, int maxMaxima) {
+        final var derivatives = filter(input, window, order);
+        final var smoothed = derivatives.getSmoothed();
+        final var first = derivatives.getFirstDerivative();
+        final var nearDistance = max(1, effectiveWindow(input.getLength(), window));
+        final var farDistance = 5 * nearDistance;
+        final var levelFactor = 100.;
+
+        final var minima = new ArrayList<Calculations.Extremum>();
+        final var maxima = new ArrayList<Calculations.Extremum>();
+        for (int i = 0; i < input.getLength() - 1; i++) {
+            final var slope0 = first.getValue(i);
+            final var slope1 = first.getValue(i + 1);
+            if ((slope0 > 0. && slope1 <= 0.) || (slope0 < 0. && slope1 >= 0.)) {
+                // take the index closer to the zero crossing
+                final var index = Math.abs(slope0) <= Math.abs(slope1) ? i : i + 1;
+                final var value = smoothed.getValue(index);
+                final var nearHeight = value - neighbourMean(smoothed, index, nearDistance);
+                final var farHeight = value - neighbourMean(smoothed, index, farDistance);
+                if (slope0 > 0.) {
+                    final var level = levelFactor * max(nearHeight, farHeight);
+                    if (level >= minLevel) {
+                        maxima.add(new Calculations.Extremum(index, level));
+                    }
+                } else {
+                    final var level = levelFactor * min(nearHeight, farHeight);
+                    if (level <= -minLevel) {
+                        minima.add(new Calculations.Extremum(index, level));
+                    }
+                }
+            }
+        }
+
+        return new Calculations.Extrema(
+                minima.stream().sorted(comparing(Calculations.Extremum::getLevel)).limit(maxMinima).toList(),
+                maxima.stream().sorted(comparing(Calculations.Extremum::getLevel).reversed()).limit(maxMaxima).toList());
+    }
+
+    private static double neighbourMean(@NonNull SampleLine line, int index, int distance) {
+        final var lastIndex = line.getLength() - 1;
+        return 0.5 * (line.getValue(max(0, index - distance)) + line.getValue(min(lastIndex, index + distance)));
+    }
+}
@@ -0,0 +1,271 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+
+/**
+ * Registry of spectral bands of interest, e.g. LED primaries, chlorophyll absorption bands or mercury lines, to be
+ * evaluated for every spectrum into a compact vector of metrics: integral and mean of each band, followed by the
+ * configured band ratios.
+ * <p>
+ * The fractional index bounds of all bands are computed once per wavelength calibration, each metric then costs O(1)
+ * by the cumulative sums of the spectrum's sample line, independent of the band widths.
+ * <p>
+ * As text, each line <i>name begin end</i> defines a band in nanometers, each line
+ * <i>name = numerator / denominator</i> a ratio of two bands, <i>#</i> starts a comment.
+ * Immutable and thread-safe.
+ */
+@JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+@EqualsAndHashCode(of = {"bands", "ratios"})
+@ToString(of = {"bands", "ratios"})
+public final class SpectralBands {
+    /**
+     * Band between two wavelengths.
+     */
+    @JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static final class Band {
+        @JsonProperty("name")
+        private final @NonNull String name;
+        @JsonProperty("beginNanoMeters")
+        private final double beginNanoMeters;
+        @JsonProperty("endNanoMeters")
+        private final double endNanoMeters;
+
+        @JsonCreator
+        public Band(@JsonProperty("name") @NonNull String name,
+                    @JsonProperty("beginNanoMeters") double beginNanoMeters,
+                    @JsonProperty("endNanoMeters") double endNanoMeters) {
+            this.name = name;
+            this.beginNanoMeters = beginNanoMeters;
+            this.endNanoMeters = endNanoMeters;
+        }
+    }
+
+    /**
+     * Ratio of the integrals of two bands.
+     */
+    @JsonAutoDetect(fieldVisibility = NONE, getterVisibility = NONE, isGetterVisibility = NONE)
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static final class Ratio {
+        @JsonProperty("name")
+        private final @NonNull String name;
+        @JsonProperty("numeratorBand")
+        private final @NonNull String numeratorBand;
+        @JsonProperty("denominatorBand")
+        private final @NonNull String denominatorBand;
+
+        @JsonCreator
+        public Ratio(@JsonProperty("name") @NonNull String name,
+                     @JsonProperty("numeratorBand") @NonNull String numeratorBand,
+                     @JsonProperty("denominatorBand") @NonNull String denominatorBand) {
+            this.name = name;
+            this.numeratorBand = numeratorBand;
+            this.denominatorBand = denominatorBand;
+        }
+    }
+
+    @Getter
+    @JsonProperty("bands")
+    private final List<Band> bands;
+    @Getter
+    @JsonProperty("ratios")
+    private final List<Ratio> ratios;
+    private final int[] ratioNumerators;
+    private final int[] ratioDenominators;
+
+    private volatile Bounds cachedBounds;
+
+    @JsonCreator
+    public SpectralBands(@JsonProperty("bands") @NonNull List<Band> bands,
+                         @JsonProperty("ratios") @NonNull List<Ratio> ratios) {
+        this.bands = List.copyOf(bands);
+        this.ratios = List.copyOf(ratios);
+
+        final var bandIndexByName = new HashMap<String, Integer>();
+        for (int b = 0; b < this.bands.size(); b++) {
+            if (bandIndexByName.put(this.bands.get(b).getName(), b) != null)
+                throw new IllegalArgumentException("duplicate band name " + this.bands.get(b).getName());
+        }
+        this.ratioNumerators = new int[this.ratios.size()];
+        this.ratioDenominators = new int[this.ratios.size()];
+        for (int r = 0; r < this.ratios.size(); r++) {
+            this.ratioNumerators[r] = bandIndex(bandIndexByName, this.ratios.get(r).getNumeratorBand());
+            this.ratioDenominators[r] = bandIndex(bandIndexByName, this.ratios.get(r).getDenominatorBand());
+        }
+    }
+
+    /**
+     * Parse bands and ratios from their text form.
+     *
+     * @throws IllegalArgumentException for a malformed line, a duplicate band or a ratio of an unknown band
+     */
+    public static SpectralBands parse(@NonNull String text) {
+        final var bands = new ArrayList<Band>();
+        final var ratios = new ArrayList<Ratio>();
+        final var lines = text.split("\\R");
+        for (int l = 0; l < lines.length; l++) {
+            final var comment = lines[l].indexOf('#');
+            final var line = (comment >= 0 ? lines[l].substring(0, comment) : lines[l]).strip();
+            if (line.isEmpty())
+                continue;
+
+            final var equals = line.indexOf('=');
+            final var quotient = equals >= 0 ? line.substring(equals + 1).split("/") : null;
+            final var band = line.split("\\s+");
+            if (quotient != null && quotient.length == 2 && equals > 0
+                    && !quotient[0].isBlank() && !quotient[1].isBlank()) {
+                ratios.add(new Ratio(line.substring(0, equals).strip(), quotient[0].strip(), quotient[1].strip()));
+            } else if (quotient == null && band.length == 3 && isNumber(band[1]) && isNumber(band[2])) {
+                bands.add(new Band(band[0], Double.parseDouble(band[1]), Double.parseDouble(band[2])));
+            } else {
+                throw new IllegalArgumentException("line " + (l + 1) + " is neither 'name begin end' nor "
+                        + "'name = numerator / denominator': " + line);
+            }
+        }
+
+        return new SpectralBands(bands, ratios);
+    }
+
+    private static boolean isNumber(@NonNull String text) {
+        try {
+            Double.parseDouble(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Text form of the bands and ratios, see {@link #parse(String)}.
+     */
+    public String format() {
+        final var text = new StringBuilder();
+        for (Band band : this.bands) {
+            text.append(band.getName()).append(' ').append(band.getBeginNanoMeters()).append(' ')
+                    .append(band.getEndNanoMeters()).append('\n');
+        }
+        for (Ratio ratio : this.ratios) {
+            text.append(ratio.getName()).append(" = ").append(ratio.getNumeratorBand()).append(" / ")
+                    .append(ratio.getDenominatorBand()).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    private static int bandIndex(@NonNull Map<String, Integer> bandIndexByName, @NonNull String name) {
+        final var index = bandIndexByName.get(name);
+        if (index == null)
+            throw new IllegalArgumentException("unknown band " + name + " in ratio");
+        return index;
+    }
+
+    /**
+     * Number of entries of the metrics vector.
+     */
+    public int getMetricCount() {
+        return 2 * this.bands.size() + this.ratios.size();
+    }
+
+    /**
+     * Names of the entries of the metrics vector, like <i>band.integral</i>, <i>band.mean</i> and <i>ratio</i>.
+     */
+    public List<String> getMetricNames() {
+        final var names = new ArrayList<String>(getMetricCount());
+        for (Band band : this.bands) {
+            names.add(band.getName() + ".integral");
+            names.add(band.getName() + ".mean");
+        }
+        for (Ratio ratio : this.ratios) {
+            names.add(ratio.getName());
+        }
+
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Evaluate all metrics of a spectrum into a new vector.
+     */
+    public double[] evaluate(@NonNull Spectrum spectrum) {
+        return evaluate(spectrum, new double[getMetricCount()]);
+    }
+
+    /**
+     * Evaluate all metrics of a spectrum into the passed vector, allowing to reuse it for every frame.
+     * Integrals are in value * nanometers, ratios are <code>NaN</code> for a zero denominator.
+     *
+     * @param metrics vector with at least {@link #getMetricCount()} entries
+     * @return the passed vector
+     */
+    public double[] evaluate(@NonNull Spectrum spectrum, @NonNull double[] metrics) {
+        if (metrics.length < getMetricCount())
+            throw new IllegalArgumentException("metrics vector needs " + getMetricCount() + " entries but has "
+                    + metrics.length);
+
+        final var bounds = getBounds(spectrum.getCalibration(), spectrum.getLength());
+        final var bandCount = this.bands.size();
+        for (int b = 0; b < bandCount; b++) {
+            final var band = this.bands.get(b);
+            final var integral = spectrum.integrateIndices(bounds.beginIndices[b], bounds.endIndices[b],
+                    band.getBeginNanoMeters(), band.getEndNanoMeters());
+            final var width = Math.abs(band.getEndNanoMeters() - band.getBeginNanoMeters());
+            metrics[2 * b] = integral;
+            metrics[2 * b + 1] = width > 0. ? integral / width : spectrum.getValueAtNanoMeters(band.getBeginNanoMeters());
+        }
+        for (int r = 0; r < this.ratios.size(); r++) {
+            final var denominator = metrics[2 * this.ratioDenominators[r]];
+            metrics[2 * bandCount + r] = denominator != 0. ? metrics[2 * this.ratioNumerators[r]] / denominator
+                    : Double.NaN;
+        }
+
+        return metrics;
+    }
+
+    private Bounds getBounds(@NonNull WaveLengthCalibration calibration, int length) {
+        var bounds = this.cachedBounds;
+        if (bounds == null || bounds.calibration != calibration || bounds.length != length) {
+            bounds = new Bounds(calibration, length);
+            this.cachedBounds = bounds;
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Fractional index bounds of all bands for one calibration and line length.
+     */
+    private final class Bounds {
+        private final WaveLengthCalibration calibration;
+        private final int length;
+        private final double[] beginIndices;
+        private final double[] endIndices;
+
+        private Bounds(@NonNull WaveLengthCalibration calibration, int length) {
+            this.calibration = calibration;
+            this.length = length;
+            this.beginIndices = new double[bands.size()];
+            this.endIndices = new double[bands.size()];
+            for (int b = 0; b < bands.size(); b++) {
+                this.beginIndices[b] = calibration.nanoMetersToIndex(length, bands.get(b).getBeginNanoMeters());
+                this.endIndices[b] = calibration.nanoMetersToIndex(length, bands.get(b).getEndNanoMeters());
+            }
+        }
+    }
+}
@@ -29,6 +29,44 @@ public final class Spectrum {
         return this.sampleLine.getValue(index);
     }
 
+    /**
+     * Summary statistics of the values, see {@link SampleLine#getStatistics()}.
+     */
+    public SampleStatistics getStatistics() {
+        return this.sampleLine.getStatistics();
+    }
+
+    /**
+     * Integral of the values over a wavelength range in value * nanometers, in O(1) apart from mapping the bounds,
+     * see {@link SampleLine#integrate(double, double)}. Exact as long as the range does not span a calibration point,
+     * otherwise the mean dispersion over the range is used.
+     */
+    public double integrateNanoMeters(double nanoMeters1, double nanoMeters2) {
+        final var index1 = this.calibration.nanoMetersToIndex(getLength(), nanoMeters1);
+        final var index2 = this.calibration.nanoMetersToIndex(getLength(), nanoMeters2);
+        return integrateIndices(index1, index2, nanoMeters1, nanoMeters2);
+    }
+
+    /**
+     * Integral of the values between fractional indices with their known wavelengths, in value * nanometers.
+     */
+    double integrateIndices(double index1, double index2, double nanoMeters1, double nanoMeters2) {
+        if (index1 == index2)
+            return 0.;
+
+        final var nanoMetersPerIndex = abs((nanoMeters2 - nanoMeters1) / (index2 - index1));
+        return this.sampleLine.integrate(min(index1, index2), max(index1, index2)) * nanoMetersPerIndex;
+    }
+
+    /**
+     * Wavelength of the values' center of mass, <code>NaN</code> if there are no positive values.
+     */
+    public double getCentroidNanoMeters() {
+        final var centroidIndex = getStatistics().getCentroidIndex();
+        return Double.isNaN(centroidIndex) ? Double.NaN
+                : this.calibration.indexToNanoMeters(getLength(), centroidIndex);
+    }
+
     public double getNanoMetersAtIndex(int index) {
         return this.calibration.indexToNanoMeters(this.sampleLine.getLength(), index);
     }
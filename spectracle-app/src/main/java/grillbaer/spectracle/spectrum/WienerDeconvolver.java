@@ -0,0 +1,136 @@
+package grillbaer.spectracle.spectrum;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Sharpens sample lines by Wiener deconvolution with the instrument's {@link LineSpreadFunction}, so close lines
+ * merged by the slit width, e.g. the sodium D lines, separate again.
+ * <p>
+ * Each line is multiplied in the frequency domain with the filter <code>(1 + λ) conj(H) / (|H|² + λ)</code>, where
+ * <code>H</code> is the transform of the line-spread function and <code>λ</code> the regularization, i.e. the assumed
+ * noise-to-signal power ratio. The filter is computed once per line-spread function, regularization and line length,
+ * the complex buffer is allocated once and reused, so a frame costs two in-place FFTs and O(n).
+ * The line is extended by a linear ramp from its last back to its first value to avoid ringing at the ends.
+ * <p>
+ * Not thread-safe.
+ */
+public final class WienerDeconvolver {
+    public static final double DEFAULT_REGULARIZATION = 0.01;
+
+    @Getter
+    private LineSpreadFunction lineSpreadFunction;
+    @Getter
+    private double regularization = DEFAULT_REGULARIZATION;
+
+    private int length;
+    private double[][] filter;
+    private double[][] buffer;
+
+    /**
+     * Set the line-spread function to deconvolve with.
+     */
+    public void setLineSpreadFunction(@NonNull LineSpreadFunction lineSpreadFunction) {
+        if (!lineSpreadFunction.equals(this.lineSpreadFunction)) {
+            this.lineSpreadFunction = lineSpreadFunction;
+            this.filter = null;
+        }
+    }
+
+    /**
+     * Set the regularization: larger values suppress noise amplification, smaller values sharpen more.
+     */
+    public void setRegularization(double regularization) {
+        if (!(regularization > 0.))
+            throw new IllegalArgumentException("regularization must be positive but is " + regularization);
+        if (regularization != this.regularization) {
+            this.regularization = regularization;
+            this.filter = null;
+        }
+    }
+
+    /**
+     * Deconvolve the sample line.
+     *
+     * @return the sharpened sample line, with the overexposure of the input line
+     * @throws IllegalStateException if no line-spread function has been set
+     */
+    public SampleLine deconvolve(@NonNull SampleLine sampleLine) {
+        if (this.lineSpreadFunction == null)
+            throw new IllegalStateException("no line-spread function set");
+
+        final var values = sampleLine.getValues();
+        if (values.length != this.length || this.filter == null) {
+            prepare(values.length);
+        }
+
+        load(values);
+        FastFourierTransformer.transformInPlace(this.buffer, DftNormalization.STANDARD, TransformType.FORWARD);
+        final var re = this.buffer[0];
+        final var im = this.buffer[1];
+        final var filterRe = this.filter[0];
+        final var filterIm = this.filter[1];
+        for (int k = 0; k < re.length; k++) {
+            final var a = re[k];
+            final var b = im[k];
+            re[k] = a * filterRe[k] - b * filterIm[k];
+            im[k] = a * filterIm[k] + b * filterRe[k];
+        }
+        FastFourierTransformer.transformInPlace(this.buffer, DftNormalization.STANDARD, TransformType.INVERSE);
+
+        return new SampleLine(Arrays.copyOf(re, values.length), sampleLine.getOverExposed());
+    }
+
+    private void prepare(int length) {
+        this.length = length;
+        // padding by the kernel width on both sides keeps the circular convolution from wrapping lines around
+        final var fftLength = Integer.highestOneBit(max(1, length + 2 * this.lineSpreadFunction.getLength() - 1)) << 1;
+        if (this.buffer == null || this.buffer[0].length != fftLength) {
+            this.buffer = new double[2][fftLength];
+        }
+
+        // kernel centered at index 0, negative offsets wrapped to the end
+        final var kernel = new double[2][fftLength];
+        final var halfWidth = this.lineSpreadFunction.getHalfWidth();
+        for (int offset = -halfWidth; offset <= halfWidth; offset++) {
+            kernel[0][Math.floorMod(offset, fftLength)] = this.lineSpreadFunction.getValue(offset);
+        }
+        FastFourierTransformer.transformInPlace(kernel, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        // the line-spread function has a sum of 1, scaling by 1 + λ keeps the total intensity
+        final var re = kernel[0];
+        final var im = kernel[1];
+        final var gain = 1. + this.regularization;
+        for (int k = 0; k < fftLength; k++) {
+            final var denominator = re[k] * re[k] + im[k] * im[k] + this.regularization;
+            re[k] = gain * re[k] / denominator;
+            im[k] = -gain * im[k] / denominator;
+        }
+        this.filter = kernel;
+    }
+
+    /**
+     * Loads the values into the real part, followed by a linear ramp back to the first value, and clears the
+     * imaginary part.
+     */
+    private void load(@NonNull double[] values) {
+        final var re = this.buffer[0];
+        System.arraycopy(values, 0, re, 0, values.length);
+        if (values.length > 0) {
+            final var first = values[0];
+            final var last = values[values.length - 1];
+            final var padding = re.length - values.length;
+            for (int i = 0; i < padding; i++) {
+                re[values.length + i] = last + (first - last) * (i + 1.) / (padding + 1.);
+            }
+        }
+        Arrays.fill(this.buffer[1], 0.);
+    }
+}
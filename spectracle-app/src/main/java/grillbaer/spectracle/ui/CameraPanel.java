@@ -3,13 +3,27 @@ package grillbaer.spectracle.ui;
 import grillbaer.spectracle.Context;
 import grillbaer.spectracle.camera.Camera;
 import grillbaer.spectracle.camera.CameraProps;
+import grillbaer.spectracle.model.BurstCapture;
+import grillbaer.spectracle.model.HotPixelDetector;
+import grillbaer.spectracle.model.LineScanRecorder;
+import grillbaer.spectracle.model.LinearizationCalibrator;
+import grillbaer.spectracle.model.Model.MeasurementMode;
 import grillbaer.spectracle.model.SpectrumDataFiles;
+import grillbaer.spectracle.model.SpectrumRecording;
+import grillbaer.spectracle.model.TimelapseScheduler.CatchUpPolicy;
+import grillbaer.spectracle.model.TransientTrigger;
+import grillbaer.spectracle.spectrum.HotPixelMap;
+import grillbaer.spectracle.spectrum.LinearizationLut;
+import grillbaer.spectracle.ui.components.Dialogs;
 import grillbaer.spectracle.ui.components.CameraView;
 import grillbaer.spectracle.ui.components.SpectrumReproductionView;
 import lombok.NonNull;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 
 public class CameraPanel {
     private final Context context;
@@ -22,11 +36,25 @@ public class CameraPanel {
     private final JButton exposureMinusButton;
     private final JSlider exposureSlider;
     private final JButton exposurePlusButton;
+    private final JToggleButton autoExposureButton;
+    private final JToggleButton hdrBracketingButton;
+    private final JToggleButton lumaOnlyButton;
+    private final JToggleButton stripTrackingButton;
+    private final JComboBox<MeasurementMode> measurementModeComboBox;
+    private final JSpinner referenceRowSpinner;
+    private final JToggleButton darkButton;
+    private final JButton hotPixelsButton;
+    private final JButton linearizationButton;
 
     private final JButton cycleCameraButton;
     private final JButton playPauseButton;
     private final JButton saveButton;
     private final JButton loadButton;
+    private final JToggleButton timelapseButton;
+    private final JButton burstButton;
+    private final JToggleButton triggerButton;
+    private final JToggleButton lineScanButton;
+    private final BurstCapture burstCapture;
 
     private final JToggleButton normalizeSampleValuesButton;
 
@@ -36,6 +64,11 @@ public class CameraPanel {
         this.cameraView = new CameraView();
         this.cameraView.setSampleRowPosRatio(this.context.getModel().getSampleRowPosRatio());
         this.cameraView.setSampleRows(this.context.getModel().getSampleRows());
+        this.cameraView.setSampleStripTracking(this.context.getModel().isSampleStripTracking());
+        this.context.getModel().getSampleRowPosRatioObservers().add(this.cameraView::setSampleRowPosRatio);
+        this.context.getModel().getSampleRowsObservers().add(this.cameraView::setSampleRows);
+        this.context.getModel().getReferenceRowPosRatioObservers().add(ratio -> referenceToPanel());
+        this.context.getModel().getMeasurementModeObservers().add(mode -> referenceToPanel());
 
         this.cameraView.setCalibration(this.context.getModel().getWaveLengthCalibration());
         this.context.getModel().getWaveLengthCalibrationObservers().add(this.cameraView::setCalibration);
@@ -43,6 +76,13 @@ public class CameraPanel {
         this.cameraView.setFrame(this.context.getModel().getCurrentFrame());
         this.context.getModel().getFrameGrabbedObservers().add(this.cameraView::setFrame);
         this.context.getModel().getSpectrumObservers().add(this.cameraView::setSpectrum);
+        this.context.getModel().getPreviewGenerator().getPreviewObservers().add(this.cameraView::setPreviewImage);
+        this.context.getModel().getFrameGrabbedObservers().add(frame -> {
+            if (this.context.getModel().getPreviewGenerator().isFullResolution(frame)) {
+                this.cameraView.setFullResolutionPreview();
+            }
+        });
+        this.cameraView.getPreviewWidthObservers().add(this.context.getModel().getPreviewGenerator()::setPreviewWidth);
 
         this.spectrumReproductionView = new SpectrumReproductionView();
         this.spectrumReproductionView.setBorder(BorderFactory.createEmptyBorder(0, 0, 4, 0));
@@ -51,6 +91,10 @@ public class CameraPanel {
 
         this.cycleCameraButton = new JButton();
         this.cycleCameraButton.addActionListener(a -> cycleToNextCamera());
+        // cameras can only be opened after the native libs have been loaded in the background
+        this.cycleCameraButton.setEnabled(false);
+        this.context.getCameraManager().whenInitialized().thenRun(() -> SwingUtilities.invokeLater(() ->
+                this.cycleCameraButton.setEnabled(!this.context.getTimelapseScheduler().isRunning())));
 
         this.exposureSlider = new JSlider(SwingConstants.HORIZONTAL, -15 * EXPOSURE_RESOLUTION, 10 * EXPOSURE_RESOLUTION, 0);
         this.exposureSlider.addChangeListener(e -> panelToCameraProps());
@@ -59,6 +103,46 @@ public class CameraPanel {
         this.exposurePlusButton = new JButton("\uD83D\uDD06");
         this.exposurePlusButton.addActionListener(e -> this.exposureSlider.setValue(this.exposureSlider.getValue() + 1));
 
+        this.autoExposureButton = new JToggleButton("Auto");
+        this.autoExposureButton.setToolTipText("Control exposure automatically for a high peak level without overexposure");
+        this.autoExposureButton.addActionListener(e -> this.context.getModel()
+                .setAutoExposureEnabled(this.autoExposureButton.isSelected()));
+
+        this.hdrBracketingButton = new JToggleButton("HDR");
+        this.hdrBracketingButton.setToolTipText("Cycle through a bracket of exposures and fuse them into a high dynamic range spectrum");
+        this.hdrBracketingButton.addActionListener(e -> this.context.getModel()
+                .setHdrBracketingEnabled(this.hdrBracketingButton.isSelected()));
+
+        this.lumaOnlyButton = new JToggleButton("Y Luma");
+        this.lumaOnlyButton.setToolTipText("Sample raw YUYV luma only, skip color conversion");
+        this.lumaOnlyButton.addActionListener(e -> panelToCameraProps());
+
+        this.stripTrackingButton = new JToggleButton("⇕ Track");
+        this.stripTrackingButton.setToolTipText("Place the sample strip on the spectrum band automatically and follow its drift");
+        this.stripTrackingButton.addActionListener(e -> this.context.getModel()
+                .setSampleStripTracking(this.stripTrackingButton.isSelected()));
+
+        this.measurementModeComboBox = new JComboBox<>(MeasurementMode.values());
+        this.measurementModeComboBox.setToolTipText("Show intensity, or transmittance or absorbance of the sample strip relative to the reference strip");
+        this.measurementModeComboBox.addActionListener(e -> this.context.getModel()
+                .setMeasurementMode((MeasurementMode) this.measurementModeComboBox.getSelectedItem()));
+        this.referenceRowSpinner = new JSpinner(new SpinnerNumberModel(25., 0., 100., 1.));
+        this.referenceRowSpinner.setToolTipText("Center of the reference strip in % of the frame height");
+        this.referenceRowSpinner.addChangeListener(e -> this.context.getModel()
+                .setReferenceRowPosRatio(((Number) this.referenceRowSpinner.getValue()).doubleValue() / 100.));
+        this.darkButton = new JToggleButton("◐ Dark");
+        this.darkButton.setToolTipText("Capture dark lines of sample and reference strip with the light blocked");
+        this.darkButton.addActionListener(e -> toggleDark());
+        this.context.getModel().getDarkCorrectedObservers().add(this.darkButton::setSelected);
+
+        this.hotPixelsButton = new JButton("✦ Hot Pixels");
+        this.hotPixelsButton.addActionListener(e -> detectHotPixels());
+        this.context.getModel().getHotPixelMapObservers().add(this::hotPixelsToPanel);
+
+        this.linearizationButton = new JButton("γ Linearize");
+        this.linearizationButton.addActionListener(e -> calibrateLinearization());
+        this.context.getModel().getLinearizationObservers().add(this::linearizationToPanel);
+
         this.normalizeSampleValuesButton = new JToggleButton("⭱ Normalize");
         this.normalizeSampleValuesButton.addActionListener(e -> this.context.getModel()
                 .setNormalizeSampleValues(this.normalizeSampleValuesButton.isSelected()));
@@ -72,15 +156,50 @@ public class CameraPanel {
         this.loadButton = new JButton("\uD83D\uDDCE\uD83E\uDC46 Load");
         this.loadButton.addActionListener(e -> loadData());
 
+        this.timelapseButton = new JToggleButton("⏱ Timelapse");
+        this.timelapseButton.setToolTipText("Record averaged spectra periodically to a file");
+        this.timelapseButton.addActionListener(e -> toggleTimelapse());
+        this.context.getTimelapseScheduler().getRunningObservers().add(this::timelapseToPanel);
+
+        this.burstCapture = new BurstCapture(this.context.getModel());
+        this.burstButton = new JButton("⚡ Burst");
+        this.burstButton.setToolTipText("Capture the sample strip at maximum frame rate for "
+                + this.burstCapture.getMaxDuration().toSeconds() + " s and save the spectra to a file");
+        this.burstButton.addActionListener(e -> startBurst());
+
+        this.triggerButton = new JToggleButton("◎ Trigger");
+        this.triggerButton.setToolTipText("Save spectra around transient events like flashes");
+        this.triggerButton.addActionListener(e -> toggleTrigger());
+        this.context.getModel().getTransientTrigger().getEventSavedObservers().add(file ->
+                this.triggerButton.setToolTipText("Last event saved to " + file));
+
+        this.lineScanButton = new JToggleButton("▤ Line Scan");
+        this.lineScanButton.setToolTipText("Record every row of each frame as a spectrum into a hyperspectral cube file");
+        this.lineScanButton.addActionListener(e -> toggleLineScan());
+        this.context.getLineScanRecorder().getRunningObservers().add(this.lineScanButton::setSelected);
+
         final var controlPanel = new JPanel(new FlowLayout());
         controlPanel.add(this.cycleCameraButton);
         controlPanel.add(this.exposureMinusButton);
         controlPanel.add(this.exposureSlider);
         controlPanel.add(this.exposurePlusButton);
+        controlPanel.add(this.autoExposureButton);
+        controlPanel.add(this.hdrBracketingButton);
+        controlPanel.add(this.lumaOnlyButton);
+        controlPanel.add(this.stripTrackingButton);
+        controlPanel.add(this.measurementModeComboBox);
+        controlPanel.add(this.referenceRowSpinner);
+        controlPanel.add(this.darkButton);
+        controlPanel.add(this.hotPixelsButton);
+        controlPanel.add(this.linearizationButton);
         controlPanel.add(this.normalizeSampleValuesButton);
         controlPanel.add(this.playPauseButton);
         controlPanel.add(this.saveButton);
         controlPanel.add(this.loadButton);
+        controlPanel.add(this.timelapseButton);
+        controlPanel.add(this.burstButton);
+        controlPanel.add(this.triggerButton);
+        controlPanel.add(this.lineScanButton);
 
         this.panel = new JPanel(new BorderLayout());
         this.panel.add(this.spectrumReproductionView, BorderLayout.NORTH);
@@ -90,10 +209,19 @@ public class CameraPanel {
         cameraToPanel(this.context.getModel().getCamera());
         playPausedToPanel(this.context.getModel().isCameraPaused());
         normalizeToPanel(this.context.getModel().isNormalizeSampleValues());
+        autoExposureToPanel(this.context.getModel().isAutoExposureEnabled());
+        hdrBracketingToPanel(this.context.getModel().isHdrBracketingEnabled());
+        stripTrackingToPanel(this.context.getModel().isSampleStripTracking());
+        referenceToPanel();
+        hotPixelsToPanel(this.context.getModel().getHotPixelMap());
+        linearizationToPanel(this.context.getModel().getLinearization());
 
         this.context.getModel().getCameraObservers().add(this::cameraToPanel);
         this.context.getModel().getCameraPropsObservers().add(this::cameraPropsToPanel);
         this.context.getModel().getCameraPausedObservers().add(this::playPausedToPanel);
+        this.context.getModel().getAutoExposureEnabledObservers().add(this::autoExposureToPanel);
+        this.context.getModel().getHdrBracketingEnabledObservers().add(this::hdrBracketingToPanel);
+        this.context.getModel().getSampleStripTrackingObservers().add(this::stripTrackingToPanel);
 
         new HoverCursorCoupler(this.context.getModel(), this.spectrumReproductionView).start();
         new HoverCursorCoupler(this.context.getModel(), this.cameraView).start();
@@ -115,6 +243,161 @@ public class CameraPanel {
         new SpectrumDataFiles().promptAndLoadFile(this.context, getComponent());
     }
 
+    private void toggleTimelapse() {
+        final var scheduler = this.context.getTimelapseScheduler();
+        if (scheduler.isRunning()) {
+            scheduler.stop();
+            return;
+        }
+
+        timelapseToPanel(false);
+        if (this.context.getModel().getCamera() == null)
+            return;
+
+        final var intervalSpinner = new JSpinner(new SpinnerNumberModel(
+                scheduler.getInterval().toMillis() / 1000., 0.1, 7. * 24. * 3600., 1.));
+        final var framesSpinner = new JSpinner(new SpinnerNumberModel(scheduler.getFramesPerRun(), 1, 10000, 1));
+        final var catchUpComboBox = new JComboBox<>(CatchUpPolicy.values());
+        catchUpComboBox.setSelectedItem(scheduler.getCatchUpPolicy());
+        final var optionsPanel = new JPanel(new GridLayout(0, 2, 8, 4));
+        optionsPanel.add(new JLabel("Interval (seconds)"));
+        optionsPanel.add(intervalSpinner);
+        optionsPanel.add(new JLabel("Averaged frames per run"));
+        optionsPanel.add(framesSpinner);
+        optionsPanel.add(new JLabel("Missed slots"));
+        optionsPanel.add(catchUpComboBox);
+        if (JOptionPane.showConfirmDialog(getComponent(), optionsPanel, "Timelapse",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        final var file = Dialogs.showSaveFileDialog(this.context, getComponent(), "Timelapse Recording",
+                List.of(SpectrumDataFiles.EXTENSION_FILTER_CSV), null);
+        if (file == null || this.context.getModel().getCamera() == null)
+            return;
+
+        scheduler.setInterval(Duration.ofMillis((long) (((Number) intervalSpinner.getValue()).doubleValue() * 1000.)));
+        scheduler.setFramesPerRun(((Number) framesSpinner.getValue()).intValue());
+        scheduler.setCatchUpPolicy((CatchUpPolicy) catchUpComboBox.getSelectedItem());
+        try {
+            scheduler.start(new SpectrumRecording(file));
+        } catch (IOException e) {
+            Dialogs.showErrorDialog(getComponent(), "Creating timelapse recording " + file + " failed.", e.getMessage());
+        }
+    }
+
+    private void startBurst() {
+        if (this.context.getModel().getCamera() == null || this.burstCapture.isRunning())
+            return;
+
+        // ask for the file first, so the burst can capture the event right after confirming
+        final var file = Dialogs.showSaveFileDialog(this.context, getComponent(), "Burst Recording",
+                List.of(SpectrumDataFiles.EXTENSION_FILTER_CSV), null);
+        if (file == null || this.context.getModel().getCamera() == null)
+            return;
+
+        this.burstButton.setEnabled(false);
+        this.burstCapture.start().whenComplete((result, e) -> {
+            this.burstButton.setEnabled(true);
+            if (e != null) {
+                Dialogs.showErrorDialog(getComponent(), "Burst capture failed.", e.getMessage());
+                return;
+            }
+            try (var recording = new SpectrumRecording(file)) {
+                for (int i = 0; i < result.getFrameCount(); i++) {
+                    final var frameTime = result.getFrameTime(i);
+                    recording.append(new SpectrumRecording.Entry(frameTime, frameTime, result.getSpectrum(i),
+                            1, Duration.ZERO, Duration.ZERO, Duration.ZERO));
+                }
+            } catch (IOException ioe) {
+                Dialogs.showErrorDialog(getComponent(), "Saving burst to " + file + " failed.", ioe.getMessage());
+            }
+        });
+    }
+
+    private void toggleLineScan() {
+        final var recorder = this.context.getLineScanRecorder();
+        if (recorder.isRunning()) {
+            recorder.stop();
+            return;
+        }
+
+        this.lineScanButton.setSelected(false);
+        if (this.context.getModel().getCamera() == null)
+            return;
+
+        final var binningSpinner = new JSpinner(new SpinnerNumberModel(recorder.getRowBinning(), 1, 1000, 1));
+        final var maxLinesSpinner = new JSpinner(new SpinnerNumberModel(recorder.getMaxLines(), 1, 1_000_000, 100));
+        final var optionsPanel = new JPanel(new GridLayout(0, 2, 8, 4));
+        optionsPanel.add(new JLabel("Rows per spectrum"));
+        optionsPanel.add(binningSpinner);
+        optionsPanel.add(new JLabel("Maximum lines"));
+        optionsPanel.add(maxLinesSpinner);
+        if (JOptionPane.showConfirmDialog(getComponent(), optionsPanel, "Line Scan",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        final var file = Dialogs.showSaveFileDialog(this.context, getComponent(), "Spectral Cube",
+                List.of(LineScanRecorder.EXTENSION_FILTER_CUBE), "scan.f32");
+        if (file == null || this.context.getModel().getCamera() == null)
+            return;
+
+        recorder.setRowBinning(((Number) binningSpinner.getValue()).intValue());
+        recorder.setMaxLines(((Number) maxLinesSpinner.getValue()).intValue());
+        try {
+            recorder.start(file);
+        } catch (IOException e) {
+            Dialogs.showErrorDialog(getComponent(), "Creating spectral cube " + file + " failed.", e.getMessage());
+        }
+    }
+
+    private void toggleTrigger() {
+        final var trigger = this.context.getModel().getTransientTrigger();
+        if (trigger.isArmed()) {
+            trigger.disarm();
+            this.triggerButton.setSelected(false);
+            return;
+        }
+
+        this.triggerButton.setSelected(false);
+        final var criterionComboBox = new JComboBox<>(TransientTrigger.Criterion.values());
+        criterionComboBox.setSelectedItem(trigger.getCriterion());
+        final var thresholdSpinner = new JSpinner(new SpinnerNumberModel(trigger.getThreshold(), 0., 1000., 0.01));
+        criterionComboBox.addActionListener(e -> thresholdSpinner.setValue(
+                ((TransientTrigger.Criterion) criterionComboBox.getSelectedItem()).getDefaultThreshold()));
+        final var preSpinner = new JSpinner(new SpinnerNumberModel(trigger.getPreTriggerFrames(), 0, 10000, 1));
+        final var postSpinner = new JSpinner(new SpinnerNumberModel(trigger.getPostTriggerFrames(), 0, 10000, 1));
+        final var optionsPanel = new JPanel(new GridLayout(0, 2, 8, 4));
+        optionsPanel.add(new JLabel("Criterion"));
+        optionsPanel.add(criterionComboBox);
+        optionsPanel.add(new JLabel("Threshold"));
+        optionsPanel.add(thresholdSpinner);
+        optionsPanel.add(new JLabel("Frames before trigger"));
+        optionsPanel.add(preSpinner);
+        optionsPanel.add(new JLabel("Frames after trigger"));
+        optionsPanel.add(postSpinner);
+        if (JOptionPane.showConfirmDialog(getComponent(), optionsPanel, "Transient Trigger",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        final var file = Dialogs.showSaveFileDialog(this.context, getComponent(), "Transient Events",
+                List.of(SpectrumDataFiles.EXTENSION_FILTER_CSV), "transient.csv");
+        if (file == null)
+            return;
+
+        trigger.setCriterion((TransientTrigger.Criterion) criterionComboBox.getSelectedItem(),
+                ((Number) thresholdSpinner.getValue()).doubleValue());
+        trigger.setFrames(((Number) preSpinner.getValue()).intValue(), ((Number) postSpinner.getValue()).intValue());
+        trigger.arm(file);
+        this.triggerButton.setSelected(true);
+    }
+
+    private void timelapseToPanel(boolean running) {
+        this.timelapseButton.setSelected(running);
+        this.cycleCameraButton.setEnabled(!running);
+        this.playPauseButton.setEnabled(!running);
+        this.burstButton.setEnabled(!running);
+    }
+
     private void playPausedToPanel(boolean paused) {
         this.playPauseButton.setText(paused ? "▶ Play" : "⏹ Stop");
         this.saveButton.setEnabled(paused);
@@ -125,6 +408,106 @@ public class CameraPanel {
         this.normalizeSampleValuesButton.setSelected(normalize);
     }
 
+    private void autoExposureToPanel(boolean autoExposure) {
+        this.autoExposureButton.setSelected(autoExposure);
+        cameraPropsToPanel(this.context.getModel().getCameraProps());
+    }
+
+    private void hdrBracketingToPanel(boolean hdrBracketing) {
+        this.hdrBracketingButton.setSelected(hdrBracketing);
+        cameraPropsToPanel(this.context.getModel().getCameraProps());
+    }
+
+    private void stripTrackingToPanel(boolean tracking) {
+        this.stripTrackingButton.setSelected(tracking);
+        this.cameraView.setSampleStripTracking(tracking);
+    }
+
+    private void toggleDark() {
+        if (this.context.getModel().isDarkCorrected()) {
+            this.context.getModel().clearDark();
+        } else {
+            this.context.getModel().captureDark();
+        }
+        this.darkButton.setSelected(this.context.getModel().isDarkCorrected());
+    }
+
+    private void referenceToPanel() {
+        final var model = this.context.getModel();
+        final var usingReference = model.getMeasurementMode() != MeasurementMode.INTENSITY;
+        this.measurementModeComboBox.setSelectedItem(model.getMeasurementMode());
+        if (usingReference && model.getReferenceRowPosRatio() == null) {
+            model.setReferenceRowPosRatio(((Number) this.referenceRowSpinner.getValue()).doubleValue() / 100.);
+        } else if (model.getReferenceRowPosRatio() != null) {
+            final var percent = model.getReferenceRowPosRatio() * 100.;
+            if (Math.abs(((Number) this.referenceRowSpinner.getValue()).doubleValue() - percent) > 1e-6) {
+                this.referenceRowSpinner.setValue(percent);
+            }
+        }
+        this.referenceRowSpinner.setEnabled(usingReference);
+        this.darkButton.setEnabled(usingReference);
+        this.cameraView.setReferenceRowPosRatio(usingReference ? model.getReferenceRowPosRatio() : null);
+    }
+
+    private void detectHotPixels() {
+        final var model = this.context.getModel();
+        if (model.getCamera() == null || model.isDetectingHotPixels())
+            return;
+
+        final var options = model.getHotPixelMap() != null
+                ? new Object[]{"Detect", "Clear", "Cancel"} : new Object[]{"Detect", "Cancel"};
+        final var choice = JOptionPane.showOptionDialog(getComponent(),
+                "Block all light from the camera, then detect hot pixels from "
+                        + HotPixelDetector.DEFAULT_FRAMES + " dark frames.",
+                "Hot Pixels", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice < 0 || "Cancel".equals(options[choice]))
+            return;
+
+        if ("Clear".equals(options[choice])) {
+            model.setHotPixelMap(null);
+        } else {
+            model.setCameraPaused(false);
+            model.startHotPixelDetection();
+        }
+    }
+
+    private void hotPixelsToPanel(HotPixelMap hotPixelMap) {
+        this.hotPixelsButton.setToolTipText(hotPixelMap != null
+                ? hotPixelMap.getDefectCount() + " hot pixels excluded from sampling"
+                : "Detect hot pixels to exclude them from sampling");
+    }
+
+    private void calibrateLinearization() {
+        final var model = this.context.getModel();
+        if (model.getCamera() == null || model.isCalibratingLinearization())
+            return;
+
+        final var options = model.getLinearization() != null
+                ? new Object[]{"Calibrate", "Clear", "Cancel"} : new Object[]{"Calibrate", "Cancel"};
+        final var choice = JOptionPane.showOptionDialog(getComponent(),
+                "Point the camera at a steady continuous spectrum, then calibrate the linearization from an exposure "
+                        + "series of " + LinearizationCalibrator.DEFAULT_EXPOSURE_OFFSETS.length + " exposures."
+                        + (model.getSensitivityCalibration() != null
+                        ? "\nChanging the linearization discards the sensitivity calibration, repeat it afterwards."
+                        : ""),
+                "Linearization", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice < 0 || "Cancel".equals(options[choice]))
+            return;
+
+        if ("Clear".equals(options[choice])) {
+            model.setLinearization(null);
+        } else {
+            model.setCameraPaused(false);
+            model.startLinearizationCalibration();
+        }
+    }
+
+    private void linearizationToPanel(LinearizationLut linearization) {
+        this.linearizationButton.setToolTipText(linearization != null
+                ? String.format("Pixel values linearized with gamma %.2f", linearization.getGamma())
+                : "Calibrate the camera's gamma to get pixel values proportional to the light");
+    }
+
     private void cameraToPanel(Camera camera) {
         final var camText = camera != null ? "⭮ Cam " + camera.getId() : "⭮ No Cam";
         this.cycleCameraButton.setText(camText);
@@ -132,28 +515,45 @@ public class CameraPanel {
     }
 
     private void cameraPropsToPanel(CameraProps props) {
-        this.exposureSlider.setEnabled(props != null);
+        final var manualExposure = props != null && !this.context.getModel().isAutoExposureEnabled();
+        this.hdrBracketingButton.setEnabled(props != null);
+        this.exposureSlider.setEnabled(manualExposure);
+        this.exposureMinusButton.setEnabled(manualExposure);
+        this.exposurePlusButton.setEnabled(manualExposure);
+        this.lumaOnlyButton.setEnabled(props != null);
         if (props != null) {
+            this.lumaOnlyButton.setSelected(props.isLumaOnly());
             this.exposureSlider.setValue((int) Math.round(props.getExposure() * EXPOSURE_RESOLUTION));
         }
     }
 
     private void panelToCameraProps() {
-        final var oldProps = this.context.getModel().getCameraProps();
+        final var model = this.context.getModel();
+        final var oldProps = model.getCameraProps();
         if (oldProps != null) {
-            this.context.getModel().setCameraProps(
-                    oldProps.withExposure((double) this.exposureSlider.getValue() / EXPOSURE_RESOLUTION));
+            // the slider only follows the auto exposure, its rounded value must not be fed back
+            final var exposure = model.isAutoExposureEnabled()
+                    ? oldProps.getExposure() : (double) this.exposureSlider.getValue() / EXPOSURE_RESOLUTION;
+            model.setCameraProps(oldProps.withExposure(exposure).withLumaOnly(this.lumaOnlyButton.isSelected()));
         }
     }
 
     private void cycleToNextCamera() {
-        final var lastCam = this.context.getModel().getCamera();
-        var nextCam = new Camera(lastCam.isOpen() ? lastCam.getId() + 1 : 0);
-        if (!nextCam.isOpen()) {
-            nextCam.close();
-            nextCam = new Camera(0);
-        }
-        this.context.getModel().setCamera(nextCam);
-        lastCam.close();
+        final var model = this.context.getModel();
+        final var cameraManager = this.context.getCameraManager();
+        final var lastCam = model.getCamera();
+        this.cycleCameraButton.setEnabled(false);
+        cameraManager.acquireNext(lastCam != null ? lastCam.getId() : null)
+                .whenComplete((nextCam, e) -> SwingUtilities.invokeLater(() -> {
+                    this.cycleCameraButton.setEnabled(true);
+                    if (nextCam != null && model.getCamera() == lastCam) {
+                        model.setCamera(nextCam);
+                        if (lastCam != null) {
+                            cameraManager.release(lastCam);
+                        }
+                    } else if (nextCam != null) {
+                        cameraManager.release(nextCam);
+                    }
+                }));
     }
 }
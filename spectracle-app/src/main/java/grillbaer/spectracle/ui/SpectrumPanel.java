@@ -1,16 +1,22 @@
 package grillbaer.spectracle.ui;
 
 import grillbaer.spectracle.Context;
+import grillbaer.spectracle.spectrum.BaselineEstimator;
+import grillbaer.spectracle.spectrum.Colorimetry;
 import grillbaer.spectracle.spectrum.Formatting;
 import grillbaer.spectracle.spectrum.KnownSpectrums;
+import grillbaer.spectracle.spectrum.LineSpreadFunction;
 import grillbaer.spectracle.spectrum.NamedWaveLength;
 import grillbaer.spectracle.spectrum.NamedWaveLengthGroup;
+import grillbaer.spectracle.spectrum.SavitzkyGolay;
+import grillbaer.spectracle.spectrum.SpectralBands;
 import grillbaer.spectracle.ui.components.Cursor;
 import grillbaer.spectracle.ui.components.RenderUtils;
 import grillbaer.spectracle.ui.components.SpectrumGraphView;
 import lombok.NonNull;
 
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +35,10 @@ public class SpectrumPanel {
     private final SensitivityCalibrationPanel sensitivityCalibrationPanel;
     private final JLabel smoothLabel;
     private final JLabel timeAverageLabel;
+    private final JButton lineSpreadButton;
+    private final JToggleButton deconvolveButton;
+    private final JLabel colorLabel;
+    private final JLabel bandMetricsLabel;
 
     private final List<Cursor> commonWaveLengthCursors = new ArrayList<>();
 
@@ -71,6 +81,17 @@ public class SpectrumPanel {
             timeAverageSlider.setValue(peakHold ? timeAverageSlider.getMaximum() : timeAverageSlider.getMinimum());
         });
 
+        final JToggleButton adaptiveButton = new JToggleButton("≈ Adaptive");
+        adaptiveButton.setToolTipText("Average steady bins, but follow real changes immediately");
+        adaptiveButton.addActionListener(e -> this.context.getModel()
+                .setAdaptiveTimeAveraging(adaptiveButton.isSelected()));
+        this.context.getModel().getAdaptiveTimeAveragingObservers().add(adaptiveButton::setSelected);
+
+        final JToggleButton stackButton = new JToggleButton("⧉ Stack");
+        stackButton.setToolTipText("Stack frames aligned for sub-pixel drift, toggle to restart");
+        stackButton.addActionListener(e -> this.context.getModel().setStacking(stackButton.isSelected()));
+        this.context.getModel().getStackingObservers().add(stackButton::setSelected);
+
         final JSlider smoothSlider = new JSlider(HORIZONTAL, 0, 100, 0);
         this.smoothLabel = new JLabel();
         smoothSlider.addChangeListener(e -> {
@@ -78,6 +99,59 @@ public class SpectrumPanel {
             updateProcessingLabels();
         });
 
+        final var model = this.context.getModel();
+        final JSpinner savitzkyGolayWindowSpinner = new JSpinner(new SpinnerNumberModel(
+                Math.max(1, model.getSavitzkyGolayWindow()), 1, SavitzkyGolay.MAX_WINDOW, 2));
+        savitzkyGolayWindowSpinner.setToolTipText("Savitzky-Golay smoothing window, 1 for none");
+        final JSpinner savitzkyGolayOrderSpinner = new JSpinner(new SpinnerNumberModel(
+                Math.min(6, model.getSavitzkyGolayOrder()), 0, 6, 1));
+        savitzkyGolayOrderSpinner.setToolTipText("Savitzky-Golay polynomial order");
+        final ChangeListener savitzkyGolayListener = e -> {
+            final var window = (Integer) savitzkyGolayWindowSpinner.getValue();
+            if (window % 2 == 0) {
+                // typed values bypass the spinner's step, snap to the next odd window, which fires again
+                savitzkyGolayWindowSpinner.setValue(Math.min(window + 1, SavitzkyGolay.MAX_WINDOW));
+                return;
+            }
+            this.context.getModel().setSavitzkyGolay(window > 1 ? window : 0,
+                    (Integer) savitzkyGolayOrderSpinner.getValue());
+        };
+        savitzkyGolayWindowSpinner.addChangeListener(savitzkyGolayListener);
+        savitzkyGolayOrderSpinner.addChangeListener(savitzkyGolayListener);
+
+        this.lineSpreadButton = new JButton("⊥ LSF");
+        this.lineSpreadButton.addActionListener(e -> measureLineSpreadFunction());
+        this.deconvolveButton = new JToggleButton("⇥⇤ Deconvolve");
+        this.deconvolveButton.setToolTipText("Sharpen close lines by deconvolution with the line-spread function");
+        this.deconvolveButton.addActionListener(e -> this.context.getModel()
+                .setDeconvolution(this.deconvolveButton.isSelected()));
+        this.context.getModel().getDeconvolutionObservers().add(this.deconvolveButton::setSelected);
+        this.context.getModel().getLineSpreadFunctionObservers().add(this::lineSpreadFunctionToPanel);
+
+        final var continuumEnvelopes = new BaselineEstimator.Envelope[]{
+                null, BaselineEstimator.Envelope.LOWER, BaselineEstimator.Envelope.UPPER};
+        final var continuumComboBox = new JComboBox<>(new String[]{
+                "No Continuum Removal", "− Emission Continuum", "÷ Absorption Continuum"});
+        continuumComboBox.setToolTipText("Subtract the continuum below emission lines or divide by the continuum above "
+                + "absorption lines");
+        continuumComboBox.addActionListener(e -> this.context.getModel()
+                .setContinuumEnvelope(continuumEnvelopes[continuumComboBox.getSelectedIndex()]));
+
+        final var standardObserverComboBox = new JComboBox<>(Colorimetry.StandardObserver.values());
+        standardObserverComboBox.setToolTipText("Standard observer for the colour of the light");
+        standardObserverComboBox.addActionListener(e -> this.context.getModel().setStandardObserver(
+                (Colorimetry.StandardObserver) standardObserverComboBox.getSelectedItem()));
+        this.colorLabel = new JLabel();
+        this.colorLabel.setToolTipText("Chromaticity xy, correlated colour temperature, distance Duv from the "
+                + "Planckian locus and colour rendering index Ra, needs a sensitivity calibration");
+        this.context.getModel().getColorObservers().add(this::colorToPanel);
+
+        final var bandsButton = new JButton("▤ Bands");
+        bandsButton.setToolTipText("Edit the spectral bands to integrate and their ratios");
+        bandsButton.addActionListener(e -> editSpectralBands());
+        this.bandMetricsLabel = new JLabel();
+        this.context.getModel().getBandMetricsObservers().add(this::bandMetricsToPanel);
+
         final var controlPanel = new JPanel(new FlowLayout());
         controlPanel.add(this.waveLengthCalibrationPanel.getComponent());
         controlPanel.add(this.sensitivityCalibrationPanel.getComponent());
@@ -87,8 +161,19 @@ public class SpectrumPanel {
         controlPanel.add(timeAverageSlider);
         controlPanel.add(this.timeAverageLabel);
         controlPanel.add(peakHoldButton);
+        controlPanel.add(adaptiveButton);
+        controlPanel.add(stackButton);
         controlPanel.add(smoothSlider);
         controlPanel.add(this.smoothLabel);
+        controlPanel.add(savitzkyGolayWindowSpinner);
+        controlPanel.add(savitzkyGolayOrderSpinner);
+        controlPanel.add(this.lineSpreadButton);
+        controlPanel.add(this.deconvolveButton);
+        controlPanel.add(continuumComboBox);
+        controlPanel.add(standardObserverComboBox);
+        controlPanel.add(this.colorLabel);
+        controlPanel.add(bandsButton);
+        controlPanel.add(this.bandMetricsLabel);
 
         this.panel.add(this.spectrumGraphView, BorderLayout.CENTER);
         this.panel.add(controlPanel, BorderLayout.SOUTH);
@@ -103,6 +188,8 @@ public class SpectrumPanel {
         this.spectrumGraphView.setShowHoverCursorLabel(true);
 
         updateProcessingLabels();
+        lineSpreadFunctionToPanel(this.context.getModel().getLineSpreadFunction());
+        colorToPanel(null);
     }
 
     private double getExpSliderValue(@NonNull JSlider slider, double begin, double end, boolean inverse) {
@@ -120,6 +207,104 @@ public class SpectrumPanel {
         this.smoothLabel.setText(String.format("%.1f", this.context.getModel().getSmoothIndexSteps()));
     }
 
+    private void measureLineSpreadFunction() {
+        final var model = this.context.getModel();
+        if (model.getCamera() == null)
+            return;
+
+        final var options = model.getLineSpreadFunction() != null
+                ? new Object[]{"Measure", "Clear", "Cancel"} : new Object[]{"Measure", "Cancel"};
+        final var choice = JOptionPane.showOptionDialog(getComponent(),
+                "Point the spectroscope at a line lamp, e.g. a fluorescent lamp, and average some frames,\n"
+                        + "then measure the line-spread function from its strongest isolated lines.",
+                "Line-Spread Function", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options,
+                options[0]);
+        if (choice < 0 || "Cancel".equals(options[choice]))
+            return;
+
+        if ("Clear".equals(options[choice])) {
+            model.setLineSpreadFunction(null);
+        } else {
+            try {
+                model.measureLineSpreadFunction();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                JOptionPane.showMessageDialog(getComponent(), "Measuring failed: " + e.getMessage(),
+                        "Line-Spread Function", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void lineSpreadFunctionToPanel(LineSpreadFunction lineSpreadFunction) {
+        this.lineSpreadButton.setToolTipText(lineSpreadFunction != null
+                ? String.format("Line-spread function with %.1f px FWHM", lineSpreadFunction.getFullWidthAtHalfMaximum())
+                : "Measure the line-spread function from a line lamp");
+        this.deconvolveButton.setEnabled(lineSpreadFunction != null);
+    }
+
+    private void colorToPanel(Colorimetry.Color color) {
+        if (color == null || Double.isNaN(color.getX())) {
+            this.colorLabel.setText("x – y –");
+        } else if (Double.isNaN(color.getCorrelatedColorTemperature())) {
+            this.colorLabel.setText(String.format("x %.4f y %.4f", color.getX(), color.getY()));
+        } else if (Double.isNaN(color.getColorRenderingIndex())) {
+            this.colorLabel.setText(String.format("x %.4f y %.4f  %.0f K  Duv %+.4f", color.getX(), color.getY(),
+                    color.getCorrelatedColorTemperature(), color.getDuv()));
+        } else {
+            this.colorLabel.setText(String.format("x %.4f y %.4f  %.0f K  Duv %+.4f  Ra %.0f  R9 %.0f",
+                    color.getX(), color.getY(), color.getCorrelatedColorTemperature(), color.getDuv(),
+                    color.getColorRenderingIndex(), color.getSpecialColorRenderingIndex(9)));
+        }
+    }
+
+    private void editSpectralBands() {
+        final var model = this.context.getModel();
+        final var textArea = new JTextArea(model.getSpectralBands() != null
+                ? model.getSpectralBands().format()
+                : "# name begin end, in nm\n# ratio = numerator / denominator\n", 16, 40);
+        while (true) {
+            final var choice = JOptionPane.showConfirmDialog(getComponent(), new JScrollPane(textArea),
+                    "Spectral Bands", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (choice != JOptionPane.OK_OPTION)
+                return;
+
+            try {
+                final var spectralBands = SpectralBands.parse(textArea.getText());
+                model.setSpectralBands(spectralBands.getBands().isEmpty() ? null : spectralBands);
+                return;
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(getComponent(), e.getMessage(), "Spectral Bands",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Shows the ratios, or the band means if there are no ratios, and all metrics in the tool tip.
+     */
+    private void bandMetricsToPanel(double[] metrics) {
+        final var spectralBands = this.context.getModel().getSpectralBands();
+        if (metrics == null || spectralBands == null) {
+            this.bandMetricsLabel.setText(null);
+            this.bandMetricsLabel.setToolTipText(null);
+            return;
+        }
+
+        final var names = spectralBands.getMetricNames();
+        final var ratioBegin = 2 * spectralBands.getBands().size();
+        final var label = new StringBuilder();
+        final var toolTip = new StringBuilder("<html>");
+        for (int i = 0; i < names.size(); i++) {
+            final var formatted = String.format("%s %.4g", names.get(i), metrics[i]);
+            toolTip.append(formatted).append("<br>");
+            final var shown = ratioBegin < names.size() ? i >= ratioBegin : i % 2 == 1;
+            if (shown && label.length() < 80) {
+                label.append(label.length() > 0 ? "  " : "").append(formatted);
+            }
+        }
+        this.bandMetricsLabel.setText(label.toString());
+        this.bandMetricsLabel.setToolTipText(toolTip.append("</html>").toString());
+    }
+
     public JComponent getComponent() {
         return this.panel;
     }
@@ -1,23 +1,108 @@
 package grillbaer.spectracle.ui.components;
 
 import grillbaer.spectracle.camera.Frame;
+import grillbaer.spectracle.model.Observers;
 import grillbaer.spectracle.spectrum.Spectrum;
+import lombok.Getter;
 
+import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.WindowStateListener;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
 
 public class CameraView extends SpectralXView {
     private Frame frame;
+    private BufferedImage previewImage;
+    private boolean fullResolutionPreview;
     private Spectrum spectrum;
 
+    /**
+     * Fires the preview width in device pixels that this view needs for display,
+     * or <code>null</code> if it does not display anything at the moment.
+     */
+    @Getter
+    private final Observers<Integer> previewWidthObservers = new Observers<>();
+    private Integer previewWidth;
+    private Window observedWindow;
+    private final WindowStateListener windowStateListener = e -> updatePreviewWidth();
+
     private Double sampleRowRatio;
+    private Double referenceRowRatio;
     private int sampleRows = 3;
+    private boolean sampleStripTracking;
     private Color sampleRowColor = new Color(255, 255, 255, 128);
+    private Color trackedSampleRowColor = new Color(64, 255, 64, 160);
+    private Color referenceRowColor = new Color(64, 192, 255, 160);
     private Stroke sampleRowStroke = new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0f,
             new float[]{4f, 8f}, 0f);
 
     public CameraView() {
         super(0);
         setLinearXAxis(false); // we don't stretch the image, so wavelengths on x axis have to align
+
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updatePreviewWidth();
+            }
+        });
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                updatePreviewWidth();
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        this.observedWindow = SwingUtilities.getWindowAncestor(this);
+        if (this.observedWindow != null) {
+            this.observedWindow.addWindowStateListener(this.windowStateListener);
+        }
+        updatePreviewWidth();
+    }
+
+    @Override
+    public void removeNotify() {
+        if (this.observedWindow != null) {
+            this.observedWindow.removeWindowStateListener(this.windowStateListener);
+            this.observedWindow = null;
+        }
+        super.removeNotify();
+        updatePreviewWidth();
+    }
+
+    private void updatePreviewWidth() {
+        final var newPreviewWidth = isDisplayed() ? calcPreviewWidth() : null;
+        if (!Objects.equals(this.previewWidth, newPreviewWidth)) {
+            this.previewWidth = newPreviewWidth;
+            this.previewWidthObservers.fire(newPreviewWidth);
+        }
+    }
+
+    private boolean isDisplayed() {
+        if (!isShowing())
+            return false;
+
+        return !(this.observedWindow instanceof java.awt.Frame window)
+                || (window.getExtendedState() & java.awt.Frame.ICONIFIED) == 0;
+    }
+
+    private Integer calcPreviewWidth() {
+        final var insets = getInsets();
+        final int availableWidth = getWidth() - insets.left - insets.right;
+        if (availableWidth <= 0)
+            return null;
+
+        final var graphicsConfig = getGraphicsConfiguration();
+        final double deviceScale = graphicsConfig != null ? graphicsConfig.getDefaultTransform().getScaleX() : 1.;
+
+        return (int) Math.ceil(availableWidth * deviceScale);
     }
 
     public void setFrame(Frame frame) {
@@ -34,6 +119,27 @@ public class CameraView extends SpectralXView {
         }
     }
 
+    /**
+     * Display the current frame's own image instead of a preview image. Used when no downscaling is needed.
+     * The frame's image shares its memory with the frame and must only be painted while the frame is current.
+     */
+    public void setFullResolutionPreview() {
+        this.previewImage = null;
+        this.fullResolutionPreview = true;
+        repaint();
+    }
+
+    /**
+     * Set the preview image to display for the current frame, usually downscaled to the requested preview width.
+     */
+    public void setPreviewImage(BufferedImage previewImage) {
+        this.fullResolutionPreview = false;
+        if (this.previewImage != previewImage) {
+            this.previewImage = previewImage;
+            repaint();
+        }
+    }
+
     public void setSpectrum(Spectrum spectrum) {
         if (this.spectrum != spectrum) {
             this.spectrum = spectrum;
@@ -46,11 +152,27 @@ public class CameraView extends SpectralXView {
         repaint();
     }
 
+    /**
+     * Set the center row of the reference strip as ratio of the frame height, <code>null</code> to show none.
+     */
+    public void setReferenceRowPosRatio(Double referenceRowRatio) {
+        this.referenceRowRatio = referenceRowRatio;
+        repaint();
+    }
+
     public void setSampleRows(int sampleRowThickness) {
         this.sampleRows = sampleRowThickness;
         repaint();
     }
 
+    /**
+     * Mark the sample strip as automatically detected and tracked.
+     */
+    public void setSampleStripTracking(boolean sampleStripTracking) {
+        this.sampleStripTracking = sampleStripTracking;
+        repaint();
+    }
+
     @Override
     protected void drawView(Graphics2D g2) {
         drawFrame(g2);
@@ -58,14 +180,14 @@ public class CameraView extends SpectralXView {
     }
 
     private void drawFrame(Graphics2D g2) {
-        if (this.frame != null) {
+        if (this.frame != null && this.frame.getWidth() > 0) {
             final var insets = getInsets();
-            final var image = this.frame.getImage();
+            final var image = this.fullResolutionPreview ? this.frame.getImage() : this.previewImage;
             if (image != null) {
                 final int availableWidth = getWidth() - insets.left - insets.right;
                 final int availableHeight = getHeight() - insets.top - insets.bottom;
                 final Dimension renderDim = Geometry.scaleToFitWidth(
-                        image.getWidth(), image.getHeight(), availableWidth);
+                        this.frame.getWidth(), this.frame.getHeight(), availableWidth);
                 final var imageY0 = insets.top + (availableHeight - renderDim.height) / 2;
                 final var imageX0 = insets.left + (availableWidth - renderDim.width) / 2;
 
@@ -73,37 +195,58 @@ public class CameraView extends SpectralXView {
                         renderDim.width, renderDim.height, null);
 
                 drawXGridOverlay(g2);
-                Rectangle bounds = calcSampleRowBounds(imageX0, imageY0, renderDim.width, renderDim.height);
+                final var referenceBounds = calcSampleRowBounds(this.referenceRowRatio,
+                        imageX0, imageY0, renderDim.width, renderDim.height);
+                if (referenceBounds != null) {
+                    drawStripImage(g2, image, imageX0, imageY0, renderDim, referenceBounds);
+                    drawSampleRowBounds(g2, referenceBounds, this.referenceRowColor);
+                }
+                final var bounds = calcSampleRowBounds(this.sampleRowRatio,
+                        imageX0, imageY0, renderDim.width, renderDim.height);
                 if (bounds != null) {
-                    final var origClip = g2.getClip();
-                    g2.clipRect(bounds.x, bounds.y - 3, bounds.width, bounds.height + 6);
-                    g2.drawImage(image, imageX0, imageY0,
-                            renderDim.width, renderDim.height, null);
-                    g2.setClip(origClip);
-                    drawSampleRowBounds(g2, bounds);
+                    drawStripImage(g2, image, imageX0, imageY0, renderDim, bounds);
+                    drawSampleRowBounds(g2, bounds,
+                            this.sampleStripTracking ? this.trackedSampleRowColor : this.sampleRowColor);
                     drawOverExposure(g2, bounds);
                 }
             }
         }
     }
 
-    private Rectangle calcSampleRowBounds(int imageX0, int imageY0, int imageWidth, int imageHeight) {
-        if (this.sampleRowRatio == null)
+    /**
+     * Draw the strip's image part again over the grid overlay.
+     */
+    private static void drawStripImage(Graphics2D g2, Image image, int imageX0, int imageY0, Dimension renderDim,
+                                       Rectangle bounds) {
+        final var origClip = g2.getClip();
+        g2.clipRect(bounds.x, bounds.y - 3, bounds.width, bounds.height + 6);
+        g2.drawImage(image, imageX0, imageY0,
+                renderDim.width, renderDim.height, null);
+        g2.setClip(origClip);
+    }
+
+    private Rectangle calcSampleRowBounds(Double rowRatio, int imageX0, int imageY0, int imageWidth, int imageHeight) {
+        if (rowRatio == null)
             return null;
 
-        final int y = imageY0 + (int) (imageHeight * this.sampleRowRatio);
-        final int y0 = y - this.sampleRows / 2;
+        // sample rows are frame rows, scale them like the image
+        final var frameHeight = this.frame.getHeight();
+        final int rows = frameHeight > 0
+                ? Math.max(1, (int) Math.round((double) this.sampleRows * imageHeight / frameHeight))
+                : this.sampleRows;
+        final int y = imageY0 + (int) (imageHeight * rowRatio);
+        final int y0 = y - rows / 2;
 
-        return new Rectangle(imageX0, y0, imageWidth, this.sampleRows);
+        return new Rectangle(imageX0, y0, imageWidth, rows);
     }
 
-    private void drawSampleRowBounds(Graphics2D g2, Rectangle bounds) {
+    private void drawSampleRowBounds(Graphics2D g2, Rectangle bounds, Color color) {
         if (bounds == null)
             return;
 
         final var origColor = g2.getColor();
         final var origStroke = g2.getStroke();
-        g2.setColor(this.sampleRowColor);
+        g2.setColor(color);
         g2.setStroke(this.sampleRowStroke);
 
         final var x0 = bounds.x;
@@ -141,7 +284,7 @@ public class CameraView extends SpectralXView {
     @Override
     public Dimension getPreferredSize() {
         final var insets = getInsets();
-        if (this.frame != null) {
+        if (this.frame != null && this.frame.getWidth() > 0) {
             return new Dimension(insets.left + this.frame.getWidth() + insets.right,
                     insets.top + this.frame.getHeight() + insets.bottom);
         } else {
@@ -6,6 +6,8 @@ import javafx.embed.swing.JFXPanel;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,6 +19,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 public final class Dialogs {
+    private static final Logger LOG = LoggerFactory.getLogger(Dialogs.class);
+
+    private static boolean fxInitialized;
 
     private Dialogs() {
         // no instances
@@ -79,8 +84,16 @@ public final class Dialogs {
         return selectedFile.toPath();
     }
 
-    private static void initFx() {
-        new JFXPanel();
+    /**
+     * Initializes the JavaFX toolkit on first use of a file dialog, it is not needed before.
+     */
+    private static synchronized void initFx() {
+        if (!fxInitialized) {
+            final var startNanos = System.nanoTime();
+            new JFXPanel();
+            fxInitialized = true;
+            LOG.info("JavaFX toolkit initialized in {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+        }
     }
 
     private static <T> T showFxDialog(Component parent, @NonNull Supplier<T> fxDialogShowingCode) {
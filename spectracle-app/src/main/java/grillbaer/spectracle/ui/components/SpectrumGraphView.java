@@ -45,7 +45,9 @@ public class SpectrumGraphView extends SpectralXView {
 
     public void setSpectrum(Spectrum spectrum) {
         this.spectrum = spectrum;
-        setCalibration(spectrum.getCalibration());
+        if (spectrum != null) {
+            setCalibration(spectrum.getCalibration());
+        }
         repaint();
     }
 
@@ -119,6 +121,9 @@ public class SpectrumGraphView extends SpectralXView {
     }
 
     private void drawSpectrumAreaGraph(Graphics2D g2) {
+        if (this.spectrum == null)
+            return;
+
         final int len = this.spectrum.getLength();
         int lastX = (int) waveLengthToX(this.spectrum.getNanoMetersAtIndex(0));
         for (int i = 0; i < len; i++) {
@@ -137,7 +142,7 @@ public class SpectrumGraphView extends SpectralXView {
     private void drawExtrema(Graphics2D g2) {
         if (!this.drawMaxima && !this.drawMinima)
             return;
-        if (this.extrema == null)
+        if (this.extrema == null || this.spectrum == null)
             return;
 
         final var textRegions = new ArrayList<Rectangle>();
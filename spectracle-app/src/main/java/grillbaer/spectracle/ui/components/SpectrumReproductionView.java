@@ -19,7 +19,9 @@ public class SpectrumReproductionView extends SpectralXView {
 
     public void setSpectrum(Spectrum spectrum) {
         this.spectrum = spectrum;
-        setCalibration(spectrum.getCalibration());
+        if (spectrum != null) {
+            setCalibration(spectrum.getCalibration());
+        }
         repaint();
     }
 
@@ -47,6 +49,9 @@ public class SpectrumReproductionView extends SpectralXView {
     }
 
     private void drawSpectralLines(Graphics2D g2) {
+        if (this.spectrum == null)
+            return;
+
         final int len = this.spectrum.getLength();
         int lastX = (int) waveLengthToX(this.spectrum.getNanoMetersAtIndex(0));
         for (int i = 0; i < len; i++) {
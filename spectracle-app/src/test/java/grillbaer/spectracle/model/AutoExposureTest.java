@@ -0,0 +1,92 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.spectrum.SampleLine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutoExposureTest {
+
+    /**
+     * Line with a broad peak of the level, optionally with some clipped bins at the top.
+     */
+    private static SampleLine line(double peakLevel, int overExposedCount) {
+        final var values = new double[1000];
+        final var overExposed = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = peakLevel * Math.exp(-0.5 * Math.pow((i - 500.) / 100., 2));
+        }
+        for (int i = 0; i < overExposedCount; i++) {
+            values[500 + i] = 1.;
+            overExposed[500 + i] = true;
+        }
+        return SampleLine.create(values, overExposed);
+    }
+
+    private static AutoExposure autoExposure() {
+        final var autoExposure = new AutoExposure();
+        autoExposure.setSettleFrames(0);
+        autoExposure.reset();
+        return autoExposure;
+    }
+
+    @Test
+    void jumpsUpByWholeStepsWithoutOvershoot() {
+        // target 0.85 is 2.09 stops above 0.2, rounded down to 2
+        assertEquals(-3., autoExposure().update(line(0.2, 0), -5.), 1e-9);
+    }
+
+    @Test
+    void keepsExposureNearTarget() {
+        assertNull(autoExposure().update(line(0.8, 0), -5.));
+    }
+
+    @Test
+    void reducesOnClipping() {
+        final var autoExposure = autoExposure();
+        assertEquals(-6., autoExposure.update(line(0.9, 5), -5.), 1e-9);
+        assertEquals(-7., autoExposure.update(line(0.9, 50), -5.), 1e-9);
+        assertEquals(-8., autoExposure.update(line(0.9, 200), -5.), 1e-9);
+    }
+
+    @Test
+    void reducesNearSaturation() {
+        assertEquals(-6., autoExposure().update(line(0.99, 0), -5.), 1e-9);
+    }
+
+    @Test
+    void skipsSettleFramesAfterChange() {
+        final var autoExposure = new AutoExposure();
+        autoExposure.setSettleFrames(2);
+        assertEquals(-3., autoExposure.update(line(0.2, 0), -5.), 1e-9);
+        assertNull(autoExposure.update(line(0.2, 0), -3.));
+        assertNull(autoExposure.update(line(0.2, 0), -3.));
+        assertNotNull(autoExposure.update(line(0.2, 0), -3.));
+    }
+
+    @Test
+    void limitedToExposureRange() {
+        final var autoExposure = autoExposure();
+        autoExposure.setExposureRange(-10., -4., 1.);
+        assertEquals(-4., autoExposure.update(line(0.05, 0), -5.), 1e-9);
+        assertNull(autoExposure.update(line(0.05, 0), -4.));
+    }
+
+    @Test
+    void darkLineOpensUp() {
+        // the peak is taken as the lowest histogram bin's upper bound, 1/256, 7.8 stops below the target
+        final var dark = SampleLine.create(new double[100]);
+        assertEquals(2., autoExposure().update(dark, -5.), 1e-9);
+    }
+
+    @Test
+    void targetPeakLevelRange() {
+        final var autoExposure = new AutoExposure();
+        autoExposure.setTargetPeakLevel(AutoExposure.MAX_TARGET_PEAK_LEVEL);
+        assertEquals(AutoExposure.MAX_TARGET_PEAK_LEVEL, autoExposure.getTargetPeakLevel());
+        Arrays.asList(0., 0.99, Double.NaN).forEach(level ->
+                assertThrows(IllegalArgumentException.class, () -> autoExposure.setTargetPeakLevel(level)));
+    }
+}
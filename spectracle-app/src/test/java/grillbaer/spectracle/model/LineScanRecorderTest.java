@@ -0,0 +1,145 @@
+package grillbaer.spectracle.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import grillbaer.spectracle.camera.Frame.PixelFormat;
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineScanRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    /**
+     * 4 rows x 3 columns, BGR, the value of each pixel channel derived from line, row, column and channel.
+     */
+    private static Mat bgrFrame(int line) {
+        final var mat = new Mat(4, 3, CvType.CV_8UC3);
+        for (int row = 0; row < mat.rows(); row++) {
+            for (int col = 0; col < mat.cols(); col++) {
+                mat.put(row, col, line * 60 + row * 10 + col, line * 60 + row * 10 + col + 1,
+                        line * 60 + row * 10 + col + 2);
+            }
+        }
+        return mat;
+    }
+
+    private static void onEdt(Runnable runnable) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+
+    private LineScanRecorder recorder() {
+        return new LineScanRecorder(new Model(), new ForkJoinPool(2));
+    }
+
+    private static float[] readCube(Path cubeFile) throws Exception {
+        final var buffer = ByteBuffer.wrap(Files.readAllBytes(cubeFile)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        final var values = new float[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    @Test
+    void cubeRowLayoutIsLineGroupColumn() throws Exception {
+        final var cubeFile = this.tempDir.resolve("scan.f32");
+        final var recorder = recorder();
+        onEdt(() -> {
+            recorder.setRowBinning(2);
+            recorder.setMaxLines(2);
+            try {
+                recorder.start(cubeFile);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            recorder.offer(bgrFrame(0), PixelFormat.BGR);
+            // a changed setting must not affect the running scan
+            recorder.setRowBinning(1);
+            recorder.offer(bgrFrame(1), PixelFormat.BGR);
+            assertFalse(recorder.isRunning(), "stops after max lines");
+        });
+
+        final var cube = readCube(cubeFile);
+        assertEquals(2 * 2 * 3, cube.length);
+        for (int line = 0; line < 2; line++) {
+            for (int group = 0; group < 2; group++) {
+                for (int col = 0; col < 3; col++) {
+                    // mean over 2 rows and 3 channels: the rows' mean plus the channels' mean offset 1
+                    final var expected = (line * 60 + (group * 20 + 5) + col + 1) / 255f;
+                    assertEquals(expected, cube[(line * 2 + group) * 3 + col], 1e-6,
+                            "line " + line + ", group " + group + ", column " + col);
+                }
+            }
+        }
+    }
+
+    @Test
+    void yuyvRecordsLumaOnly() throws Exception {
+        final var cubeFile = this.tempDir.resolve("yuyv.f32");
+        final var recorder = recorder();
+        onEdt(() -> {
+            recorder.setRowBinning(1);
+            recorder.setMaxLines(1);
+            try {
+                recorder.start(cubeFile);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            final var mat = new Mat(1, 2, CvType.CV_8UC2);
+            mat.put(0, 0, 51, 255, 102, 0);
+            recorder.offer(mat, PixelFormat.YUYV);
+        });
+
+        assertArrayEquals(new float[]{0.2f, 0.4f}, readCube(cubeFile), 1e-6f);
+    }
+
+    @Test
+    void sidecarDescribesCube() throws Exception {
+        final var cubeFile = this.tempDir.resolve("scan.f32");
+        final var recorder = recorder();
+        onEdt(() -> {
+            recorder.setRowBinning(2);
+            recorder.setMaxLines(10);
+            try {
+                recorder.start(cubeFile);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            recorder.offer(bgrFrame(0), PixelFormat.BGR);
+            recorder.offer(bgrFrame(1), PixelFormat.BGR);
+            recorder.offer(bgrFrame(2), PixelFormat.BGR);
+            recorder.stop();
+        });
+
+        assertEquals(3L * 2 * 3 * Float.BYTES, Files.size(cubeFile), "trimmed to the recorded lines");
+        final var sidecar = new ObjectMapper().readTree(LineScanRecorder.sidecarFile(cubeFile).toFile());
+        assertEquals("scan.f32", sidecar.get("dataFile").asText());
+        assertEquals(3, sidecar.get("lines").asInt());
+        assertEquals(2, sidecar.get("rows").asInt());
+        assertEquals(3, sidecar.get("bands").asInt());
+        assertEquals(2, sidecar.get("rowBinning").asInt());
+        assertEquals("BGR", sidecar.get("pixelFormat").asText());
+        assertEquals(3, sidecar.get("nanoMeters").size());
+        assertTrue(sidecar.get("nanoMeters").get(0).asDouble() < sidecar.get("nanoMeters").get(2).asDouble());
+        assertEquals(3, sidecar.get("lineTimesMillis").size());
+        assertNotNull(sidecar.get("startTime"));
+    }
+}
@@ -0,0 +1,71 @@
+package grillbaer.spectracle.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    @Test
+    void putAndGet() {
+        final var buffer = new RingBuffer<String>(3);
+        assertEquals(0, buffer.getNextSequence());
+        assertNull(buffer.get(0));
+        assertEquals(0, buffer.put("a"));
+        assertEquals(1, buffer.put("b"));
+        assertEquals("a", buffer.get(0));
+        assertEquals("b", buffer.get(1));
+        assertNull(buffer.get(2));
+        assertNull(buffer.get(-1));
+        assertEquals(2, buffer.getNextSequence());
+    }
+
+    @Test
+    void overwritesOldest() {
+        final var buffer = new RingBuffer<String>(3);
+        for (var element : List.of("a", "b", "c", "d", "e")) {
+            buffer.put(element);
+        }
+        assertNull(buffer.get(0));
+        assertNull(buffer.get(1));
+        assertEquals("c", buffer.get(2));
+        assertEquals("e", buffer.get(4));
+        assertEquals(List.of("c", "d", "e"), buffer.getRange(0, 5));
+        assertEquals(List.of("d"), buffer.getRange(3, 4));
+        assertEquals(List.of(), buffer.getRange(4, 4));
+    }
+
+    @Test
+    void invalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<String>(0));
+    }
+
+    @Test
+    void readersNeverSeeWrongElement() throws InterruptedException {
+        final var buffer = new RingBuffer<Long>(16);
+        final var done = new AtomicBoolean();
+        final var failure = new AtomicReference<String>();
+        final var reader = new Thread(() -> {
+            while (!done.get()) {
+                final var next = buffer.getNextSequence();
+                for (long sequence = Math.max(0, next - 20); sequence < next; sequence++) {
+                    final var element = buffer.get(sequence);
+                    if (element != null && element != sequence) {
+                        failure.set("sequence " + sequence + " returned " + element);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (long i = 0; i < 200_000; i++) {
+            buffer.put(i);
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+    }
+}
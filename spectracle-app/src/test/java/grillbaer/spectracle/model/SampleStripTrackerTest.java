@@ -0,0 +1,76 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.model.SampleStripTracker.Strip;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleStripTrackerTest {
+
+    /**
+     * Row profile of a gaussian band on a noisy background.
+     */
+    private static double[] profile(double center, double sigma, double height) {
+        final var random = new Random(11);
+        final var profile = new double[480];
+        for (int row = 0; row < profile.length; row++) {
+            profile[row] = 0.1 + 0.005 * random.nextGaussian()
+                    + height * Math.exp(-0.5 * Math.pow((row - center) / sigma, 2));
+        }
+        return profile;
+    }
+
+    @Test
+    void findBand() {
+        final var strip = SampleStripTracker.findStrip(profile(240., 5., 0.5), 100);
+        assertNotNull(strip);
+        assertEquals(240, strip.getCenterRow(), 1);
+        // the SNR optimum of a gaussian band covers about ±1.4 sigma
+        assertTrue(strip.getRows() >= 10 && strip.getRows() <= 18, "rows " + strip.getRows());
+        assertEquals(480, strip.getFrameRows());
+    }
+
+    @Test
+    void maxRowsLimitsStrip() {
+        final var strip = SampleStripTracker.findStrip(profile(240., 30., 0.5), 20);
+        assertNotNull(strip);
+        assertEquals(20, strip.getRows());
+        assertEquals(240, strip.getCenterRow(), 2);
+    }
+
+    @Test
+    void noBandInNoise() {
+        assertNull(SampleStripTracker.findStrip(profile(240., 5., 0.), 100));
+        assertNull(SampleStripTracker.findStrip(new double[0], 100));
+    }
+
+    @Test
+    void smallShiftsIgnored() {
+        final var detected = new Strip(243, 40, 480);
+        // 3 rows is within the minimum, 10 rows within a quarter of the 40 rows
+        assertNull(SampleStripTracker.applyHysteresis(detected, 240, 40));
+        assertNull(SampleStripTracker.applyHysteresis(new Strip(250, 40, 480), 240, 40));
+        assertNull(SampleStripTracker.applyHysteresis(new Strip(237, 2, 480), 240, 2));
+    }
+
+    @Test
+    void largeShiftAccepted() {
+        final var strip = SampleStripTracker.applyHysteresis(new Strip(260, 42, 480), 240, 40);
+        assertNotNull(strip);
+        assertEquals(260, strip.getCenterRow());
+        assertEquals(40, strip.getRows()); // height change within hysteresis
+        final var narrow = SampleStripTracker.applyHysteresis(new Strip(244, 2, 480), 240, 2);
+        assertNotNull(narrow);
+        assertEquals(244, narrow.getCenterRow());
+    }
+
+    @Test
+    void heightChangeAccepted() {
+        final var strip = SampleStripTracker.applyHysteresis(new Strip(241, 60, 480), 240, 40);
+        assertNotNull(strip);
+        assertEquals(240, strip.getCenterRow());
+        assertEquals(60, strip.getRows());
+    }
+}
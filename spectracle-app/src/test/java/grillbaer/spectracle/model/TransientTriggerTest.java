@@ -0,0 +1,164 @@
+package grillbaer.spectracle.model;
+
+import grillbaer.spectracle.model.TransientTrigger.Criterion;
+import grillbaer.spectracle.spectrum.SampleLine;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransientTriggerTest {
+    private static final int LENGTH = 100;
+    private static final WaveLengthCalibration CALIBRATION = WaveLengthCalibration.create(List.of(
+            new Point(0., 300.), new Point(1., 800.)));
+
+    @TempDir
+    Path tempDir;
+
+    private TransientTrigger trigger;
+    private int frame;
+
+    @BeforeEach
+    void setUp() {
+        this.trigger = new TransientTrigger();
+        this.trigger.setFrames(2, 2);
+        this.frame = 0;
+    }
+
+    /**
+     * Offers a frame with a level everywhere plus an extra level within band A, its number encoded at 300 nm.
+     */
+    private void offer(double level, double bandALevel) {
+        final var values = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            final var nm = CALIBRATION.indexToNanoMeters(LENGTH, i);
+            values[i] = level + (nm >= 380. && nm <= 450. ? bandALevel : 0.);
+        }
+        values[0] = this.frame++ * 1e-4;
+        this.trigger.offer(SampleLine.create(values), CALIBRATION);
+    }
+
+    private void offer(double level, int frames) {
+        for (int i = 0; i < frames; i++) {
+            offer(level, 0.);
+        }
+    }
+
+    private List<Path> savedEvents() throws Exception {
+        this.trigger.awaitSavedEvents();
+        try (Stream<Path> files = Files.list(this.tempDir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Numbers of the frames saved in an event file.
+     */
+    private static List<Integer> savedFrames(Path eventFile) throws IOException {
+        return Files.readAllLines(eventFile).stream().skip(1)
+                .map(line -> (int) Math.round(Double.parseDouble(line.split(",")[7]) * 1e4))
+                .collect(Collectors.toList());
+    }
+
+    private void arm(Criterion criterion, double threshold) {
+        this.trigger.setCriterion(criterion, threshold);
+        this.trigger.arm(this.tempDir.resolve("event.csv"));
+    }
+
+    @Test
+    void intensityJumpFiresOnceOnJump() throws Exception {
+        arm(Criterion.INTENSITY_JUMP, 0.5);
+        offer(0.1, 5);
+        assertTrue(savedEvents().isEmpty());
+
+        offer(0.3, 10);
+        assertEquals(1, savedEvents().size(), "a lasting high level is no further jump");
+    }
+
+    @Test
+    void bandRatioFiresOnRisingEdgeOnly() throws Exception {
+        arm(Criterion.BAND_RATIO, 2.);
+        offer(0.1, 0.);
+        offer(0.1, 0.);
+        assertTrue(savedEvents().isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            offer(0.1, 0.5); // ratio 2.8 held far beyond the post-trigger frames
+        }
+        assertEquals(1, savedEvents().size());
+
+        // dropping below the threshold, but not below the re-arm level, does not re-arm
+        offer(0.1, 0.3); // ratio 1.9
+        offer(0.1, 0.5);
+        offer(0.1, 0.5);
+        offer(0.1, 0.5);
+        assertEquals(1, savedEvents().size());
+
+        offer(0.1, 0.);
+        Thread.sleep(5); // distinct event file time
+        offer(0.1, 0.5);
+        offer(0.1, 0.5);
+        offer(0.1, 0.5);
+        assertEquals(2, savedEvents().size());
+    }
+
+    @Test
+    void baselineDeviationFiresOnceWhileDeviating() throws Exception {
+        arm(Criterion.BASELINE_DEVIATION, 0.05);
+        offer(0.1, 10);
+        assertTrue(savedEvents().isEmpty());
+
+        offer(0.3, 10);
+        assertEquals(1, savedEvents().size());
+
+        offer(0.1, 3);
+        Thread.sleep(5); // distinct event file time
+        offer(0.3, 3);
+        assertEquals(2, savedEvents().size());
+    }
+
+    @Test
+    void savedEventHoldsPreAndPostTriggerFrames() throws Exception {
+        this.trigger.setFrames(3, 2);
+        arm(Criterion.INTENSITY_JUMP, 0.5);
+        offer(0.1, 10);
+        offer(0.3, 1); // frame 10 fires
+        offer(0.3, 1);
+        assertTrue(savedEvents().isEmpty(), "still collecting post-trigger frames");
+
+        offer(0.3, 5);
+        final var events = savedEvents();
+        assertEquals(1, events.size());
+        assertEquals(List.of(7, 8, 9, 10, 11, 12), savedFrames(events.get(0)));
+    }
+
+    @Test
+    void savedEventWithoutPostTriggerFrames() throws Exception {
+        this.trigger.setFrames(5, 0);
+        arm(Criterion.INTENSITY_JUMP, 0.5);
+        offer(0.1, 2);
+        offer(0.3, 1); // frame 2 fires, only 2 earlier frames exist
+
+        final var events = savedEvents();
+        assertEquals(1, events.size());
+        assertEquals(List.of(0, 1, 2), savedFrames(events.get(0)));
+    }
+
+    @Test
+    void disarmedIgnoresFrames() throws Exception {
+        offer(0.1, 3);
+        offer(1., 3);
+        assertTrue(savedEvents().isEmpty());
+        assertFalse(this.trigger.isArmed());
+    }
+}
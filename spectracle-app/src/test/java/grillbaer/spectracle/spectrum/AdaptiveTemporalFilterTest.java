@@ -0,0 +1,99 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTemporalFilterTest {
+    private static final int LENGTH = 200;
+    private static final double NOISE = 0.01;
+
+    private static SampleLine noisyLine(Random random, double level) {
+        final var values = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            values[i] = level + NOISE * random.nextGaussian();
+        }
+        return SampleLine.create(values);
+    }
+
+    private static SampleLine constantLine(double level) {
+        final var values = new double[LENGTH];
+        Arrays.fill(values, level);
+        return SampleLine.create(values);
+    }
+
+    private static double standardDeviation(SampleLine line, double mean) {
+        double sum = 0.;
+        for (int i = 0; i < line.getLength(); i++) {
+            sum += Math.pow(line.getValue(i) - mean, 2);
+        }
+        return Math.sqrt(sum / line.getLength());
+    }
+
+    @Test
+    void steadyStateGain() {
+        // process noise q = k² / (1 - k) makes the Kalman gain converge to k = 1 - factor
+        final var filter = new AdaptiveTemporalFilter();
+        filter.setAveragingFactor(0.9);
+        for (int frame = 0; frame < 200; frame++) {
+            filter.update(constantLine(0.5));
+        }
+        final var step = 1e-4;
+        final var filtered = filter.update(constantLine(0.5 + step));
+        assertEquals(0.1, (filtered.getValue(100) - 0.5) / step, 1e-3);
+    }
+
+    @Test
+    void steadyStateNoiseReduction() {
+        final var random = new Random(42);
+        final var filter = new AdaptiveTemporalFilter();
+        filter.setAveragingFactor(0.9);
+        SampleLine filtered = null;
+        for (int frame = 0; frame < 300; frame++) {
+            filtered = filter.update(noisyLine(random, 0.5));
+        }
+        // an exponential average with gain k keeps sqrt(k / (2 - k)) of the noise, 0.23 for k = 0.1
+        final var remaining = standardDeviation(filtered, 0.5) / NOISE;
+        assertTrue(remaining < 0.35, "remaining noise " + remaining);
+        assertEquals(0.5, filtered.getStatistics().getMean(), 0.002);
+    }
+
+    @Test
+    void stepResetsOnInnovation() {
+        final var random = new Random(7);
+        final var filter = new AdaptiveTemporalFilter();
+        filter.setAveragingFactor(0.9);
+        for (int frame = 0; frame < 100; frame++) {
+            filter.update(noisyLine(random, 0.5));
+        }
+        // a step of 20 noise sigmas is followed at once instead of by 10 % per frame
+        final var stepped = filter.update(noisyLine(random, 0.7));
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(0.7, stepped.getValue(i), 5. * NOISE);
+        }
+    }
+
+    @Test
+    void recalculationReturnsSameOutput() {
+        final var random = new Random(3);
+        final var filter = new AdaptiveTemporalFilter();
+        filter.setAveragingFactor(0.9);
+        filter.update(noisyLine(random, 0.5));
+        final var line = noisyLine(random, 0.5);
+        final var first = filter.update(line);
+        assertSame(first, filter.update(line));
+    }
+
+    @Test
+    void noAveragingPassesThrough() {
+        final var random = new Random(5);
+        final var filter = new AdaptiveTemporalFilter();
+        filter.update(noisyLine(random, 0.5));
+        final var line = noisyLine(random, 0.5);
+        assertEquals(line.getValue(10), filter.update(line).getValue(10), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> filter.setAveragingFactor(1.));
+    }
+}
@@ -0,0 +1,92 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaselineEstimatorTest {
+
+    /**
+     * Broad curved background with a narrow line of the height at index 200, negative for an absorption line.
+     */
+    private static SampleLine line(double background, double height) {
+        final var values = new double[400];
+        for (int i = 0; i < values.length; i++) {
+            final var continuum = background * (1. + 0.5 * Math.sin(i / 120.));
+            values[i] = continuum + height * Math.exp(-0.5 * Math.pow((i - 200.) / 3., 2))
+                    * (height < 0. ? continuum : 1.);
+        }
+        return SampleLine.create(values);
+    }
+
+    @Test
+    void emissionLineAboveLowerEnvelope() {
+        final var estimator = new BaselineEstimator();
+        final var line = line(0.2, 0.5);
+        final var result = estimator.update(line, true);
+        assertEquals(0.5, result.getNormalized().getValue(200), 0.02);
+        assertEquals(0., result.getNormalized().getValue(100), 0.01);
+        assertEquals(0., result.getNormalized().getValue(300), 0.01);
+        assertEquals(line.getValue(200) - 0.5, result.getContinuum().getValue(200), 0.02);
+    }
+
+    @Test
+    void absorptionLineBelowUpperEnvelope() {
+        final var estimator = new BaselineEstimator();
+        estimator.setEnvelope(BaselineEstimator.Envelope.UPPER);
+        final var result = estimator.update(line(0.6, -0.4), true);
+        assertEquals(0.6, result.getNormalized().getValue(200), 0.02);
+        assertEquals(1., result.getNormalized().getValue(100), 0.01);
+        assertEquals(1., result.getNormalized().getValue(300), 0.01);
+    }
+
+    @Test
+    void continuumAdaptsIncrementally() {
+        final var estimator = new BaselineEstimator();
+        estimator.setAdaptionRate(0.25);
+        final var first = estimator.update(line(0.2, 0.5), true).getContinuum().getValue(100);
+        final var target = new BaselineEstimator().update(line(0.4, 0.5), true).getContinuum().getValue(100);
+
+        final var second = estimator.update(line(0.4, 0.5), true).getContinuum().getValue(100);
+        assertEquals(first + 0.25 * (target - first), second, 1e-9);
+        final var third = estimator.update(line(0.4, 0.5), true).getContinuum().getValue(100);
+        assertEquals(second + 0.25 * (target - second), third, 1e-9);
+    }
+
+    @Test
+    void recalculationDoesNotAdvance() {
+        final var estimator = new BaselineEstimator();
+        estimator.update(line(0.2, 0.5), true);
+        final var once = estimator.update(line(0.4, 0.5), true).getContinuum().getValue(100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(once, estimator.update(line(0.4, 0.5), false).getContinuum().getValue(100), 1e-12);
+        }
+    }
+
+    @Test
+    void resetStartsAnew() {
+        final var estimator = new BaselineEstimator();
+        estimator.update(line(0.2, 0.5), true);
+        estimator.reset();
+        final var restarted = estimator.update(line(0.4, 0.5), true).getContinuum().getValue(100);
+        assertEquals(new BaselineEstimator().update(line(0.4, 0.5), true).getContinuum().getValue(100), restarted,
+                1e-12);
+    }
+
+    @Test
+    void lengthChangeStartsAnew() {
+        final var estimator = new BaselineEstimator();
+        estimator.update(line(0.2, 0.5), true);
+        final var result = estimator.update(SampleLine.create(new double[]{1., 2., 3.}), true);
+        assertEquals(3, result.getContinuum().getLength());
+        assertEquals(1., result.getContinuum().getValue(0), 1e-12);
+    }
+
+    @Test
+    void invalidParameters() {
+        final var estimator = new BaselineEstimator();
+        assertThrows(IllegalArgumentException.class, () -> estimator.setWindow(0));
+        assertThrows(IllegalArgumentException.class, () -> estimator.setAdaptionRate(0.));
+        assertThrows(IllegalArgumentException.class, () -> estimator.setAdaptionRate(1.5));
+    }
+}
@@ -0,0 +1,119 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculationsTest {
+
+    @Test
+    void fuseExposuresWeightedByGain() {
+        // the same light taken with exposures -6, -5 and -4, i.e. gains 1, 2 and 4
+        final var fused = Calculations.fuseExposures(
+                new double[][]{{0.1, 0.2}, {0.2, 0.4}, {0.4, 0.8}},
+                new boolean[][]{null, null, null},
+                new double[]{-6., -5., -4.});
+        assertEquals(0.1, fused.getValue(0), 1e-12);
+        assertEquals(0.2, fused.getValue(1), 1e-12);
+        assertFalse(fused.isOverExposed(0));
+    }
+
+    @Test
+    void fuseExposuresPrefersLongExposures() {
+        // noise of the short exposure is weighted less: (0.12 + 0.4) / (1 + 4)
+        final var fused = Calculations.fuseExposures(
+                new double[][]{{0.12}, {0.4}},
+                new boolean[][]{null, null},
+                new double[]{-6., -4.});
+        assertEquals(0.104, fused.getValue(0), 1e-12);
+    }
+
+    @Test
+    void fuseExposuresSkipsSaturated() {
+        final var fused = Calculations.fuseExposures(
+                new double[][]{{0.3, 0.3}, {0.6, 0.6}, {1., 0.99}},
+                new boolean[][]{null, null, {true, false}},
+                new double[]{-3., -2., -1.});
+        // the longest exposure is flagged resp. above the saturation level in both bins
+        assertEquals(0.3, fused.getValue(0), 1e-12);
+        assertEquals(0.3, fused.getValue(1), 1e-12);
+        assertFalse(fused.isOverExposed(0));
+    }
+
+    @Test
+    void fuseExposuresAllSaturated() {
+        final var fused = Calculations.fuseExposures(
+                new double[][]{{0.99, 0.2}, {1., 0.4}},
+                new boolean[][]{{true, false}, {true, false}},
+                new double[]{-4., -3.});
+        assertEquals(0.99, fused.getValue(0), 1e-12);
+        assertTrue(fused.isOverExposed(0));
+        assertFalse(fused.isOverExposed(1));
+    }
+
+    @Test
+    void fuseExposuresShortestNotFirst() {
+        final var fused = Calculations.fuseExposures(
+                new double[][]{{0.4}, {0.1}},
+                new boolean[][]{null, null},
+                new double[]{-4., -6.});
+        assertEquals(0.1, fused.getValue(0), 1e-12);
+    }
+
+    @Test
+    void fuseExposuresInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Calculations.fuseExposures(
+                new double[0][], new boolean[0][], new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> Calculations.fuseExposures(
+                new double[][]{{0.1}, {0.1, 0.2}}, new boolean[][]{null, null}, new double[]{0., 1.}));
+    }
+
+    @Test
+    void transmittanceWithDarkCorrection() {
+        final var sample = SampleLine.create(new double[]{0.3, 0.6, 0.1, 0.05});
+        final var reference = SampleLine.create(new double[]{0.5, 0.9, 0.1, 0.05});
+        final var dark = SampleLine.create(new double[]{0.1, 0.1, 0.1, 0.1});
+        final var referenceDark = SampleLine.create(new double[]{0.1, 0.1, 0.1, 0.1});
+        final var transmittance = Calculations.transmittance(sample, reference, dark, referenceDark);
+        assertEquals(0.5, transmittance.getValue(0), 1e-12);
+        assertEquals(0.625, transmittance.getValue(1), 1e-12);
+        // no reference signal
+        assertEquals(0., transmittance.getValue(2), 1e-12);
+        assertEquals(0., transmittance.getValue(3), 1e-12);
+    }
+
+    @Test
+    void transmittanceWithoutDark() {
+        final var sample = SampleLine.create(new double[]{0.2, 0.05});
+        final var reference = SampleLine.create(new double[]{0.4, 0.5});
+        final var transmittance = Calculations.transmittance(sample, reference, null,
+                SampleLine.create(new double[]{0.1})); // wrong length is ignored
+        assertEquals(0.5, transmittance.getValue(0), 1e-12);
+        assertEquals(0.1, transmittance.getValue(1), 1e-12);
+    }
+
+    @Test
+    void transmittanceOverExposure() {
+        final var sample = SampleLine.create(new double[]{1., 0.2, 0.2}, new boolean[]{true, false, false});
+        final var reference = SampleLine.create(new double[]{0.5, 1., 0.5}, new boolean[]{false, true, false});
+        final var transmittance = Calculations.transmittance(sample, reference, null, null);
+        assertTrue(transmittance.isOverExposed(0));
+        assertTrue(transmittance.isOverExposed(1));
+        assertFalse(transmittance.isOverExposed(2));
+        assertThrows(IllegalArgumentException.class, () -> Calculations.transmittance(sample,
+                SampleLine.create(new double[]{0.5}), null, null));
+    }
+
+    @Test
+    void absorbance() {
+        final var transmittance = SampleLine.create(new double[]{1., 0.1, 0.01, 0.}, new boolean[]{false, true,
+                false, false});
+        final var absorbance = Calculations.absorbance(transmittance);
+        assertEquals(0., absorbance.getValue(0), 1e-12);
+        assertEquals(1., absorbance.getValue(1), 1e-12);
+        assertEquals(2., absorbance.getValue(2), 1e-12);
+        // limited for no transmission
+        assertEquals(4., absorbance.getValue(3), 1e-12);
+        assertTrue(absorbance.isOverExposed(1));
+    }
+}
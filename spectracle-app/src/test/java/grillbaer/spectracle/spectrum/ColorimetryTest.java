@@ -0,0 +1,165 @@
+package grillbaer.spectracle.spectrum;
+
+import grillbaer.spectracle.spectrum.Colorimetry.StandardObserver;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColorimetryTest {
+    private static final int LENGTH = 1000;
+    private static final WaveLengthCalibration CALIBRATION = WaveLengthCalibration.create(List.of(
+            new Point(0., 350.), new Point(1., 850.)));
+
+    private static Spectrum spectrum(DoubleUnaryOperator radiance) {
+        final var values = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            values[i] = radiance.applyAsDouble(CALIBRATION.indexToNanoMeters(LENGTH, i));
+        }
+        return Spectrum.create(SampleLine.create(values), CALIBRATION);
+    }
+
+    private static Spectrum blackBody(double kelvin) {
+        return spectrum(nm -> {
+            final var meters = nm * 1e-9;
+            return 1e-30 / (Math.pow(meters, 5) * (Math.exp(0.014387769 / (meters * kelvin)) - 1.));
+        });
+    }
+
+    private static double gaussian(double nm, double center, double sigma) {
+        return Math.exp(-0.5 * Math.pow((nm - center) / sigma, 2));
+    }
+
+    @Test
+    void illuminantA() {
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(blackBody(2856.));
+        assertEquals(0.4476, color.getX(), 0.0005);
+        assertEquals(0.4074, color.getY(), 0.0005);
+        assertEquals(2856., color.getCorrelatedColorTemperature(), 30.);
+        assertEquals(0., color.getDuv(), 0.002);
+    }
+
+    @Test
+    void illuminantA10Degree() {
+        final var color = new Colorimetry(StandardObserver.CIE_1964_10_DEGREE).evaluate(blackBody(2856.));
+        assertEquals(0.4511, color.getX(), 0.0005);
+        assertEquals(0.4059, color.getY(), 0.0005);
+    }
+
+    @Test
+    void illuminantD65TenDegree() {
+        final var color = new Colorimetry(StandardObserver.CIE_1964_10_DEGREE).evaluate(spectrum(nm ->
+                Colorimetry.daylight(nm, 6504.)));
+        assertEquals(0.3138, color.getX(), 0.0005);
+        assertEquals(0.3310, color.getY(), 0.0005);
+    }
+
+    @Test
+    void equalEnergy() {
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(spectrum(nm -> 1.));
+        assertEquals(1. / 3., color.getX(), 0.0005);
+        assertEquals(1. / 3., color.getY(), 0.0005);
+        assertEquals(5455., color.getCorrelatedColorTemperature(), 60.);
+    }
+
+    @Test
+    void hotBlackBodies() {
+        final var colorimetry = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE);
+        for (double kelvin : new double[]{4000., 6500., 10000.}) {
+            assertEquals(kelvin, colorimetry.evaluate(blackBody(kelvin)).getCorrelatedColorTemperature(),
+                    0.01 * kelvin);
+        }
+    }
+
+    @Test
+    void greenishLightAboveLocus() {
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(spectrum(nm ->
+                Math.exp(-0.5 * Math.pow((nm - 560.) / 60., 2))));
+        assertTrue(color.getDuv() > 0.);
+    }
+
+    @Test
+    void darkAndMonochromatic() {
+        final var colorimetry = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE);
+        final var dark = colorimetry.evaluate(spectrum(nm -> 0.));
+        assertTrue(Double.isNaN(dark.getX()));
+        assertTrue(Double.isNaN(dark.getCorrelatedColorTemperature()));
+
+        final var green = colorimetry.evaluate(spectrum(nm -> Math.abs(nm - 520.) < 1. ? 1. : 0.));
+        assertTrue(green.getY() > 0.8);
+        assertTrue(Double.isNaN(green.getCorrelatedColorTemperature()));
+    }
+
+    @Test
+    void illuminantD65() {
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(spectrum(nm ->
+                Colorimetry.daylight(nm, 6504.)));
+        assertEquals(0.3127, color.getX(), 0.0005);
+        assertEquals(0.3290, color.getY(), 0.0005);
+        assertEquals(6504., color.getCorrelatedColorTemperature(), 65.);
+        assertEquals(100., color.getColorRenderingIndex(), 0.5);
+    }
+
+    @Test
+    void illuminantARendersLikeItsReference() {
+        // the reference is a Planckian radiator, only the colour temperature approximation differs
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(blackBody(2856.));
+        assertEquals(100., color.getColorRenderingIndex(), 1.);
+        for (int sample = 1; sample <= 14; sample++) {
+            assertEquals(100., color.getSpecialColorRenderingIndex(sample), 1.5);
+        }
+    }
+
+    @Test
+    void renderingIndexOfBroadAndNarrowSpectra() {
+        final var colorimetry = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE);
+        final var equalEnergy = colorimetry.evaluate(spectrum(nm -> 1.));
+        assertTrue(equalEnergy.getColorRenderingIndex() > 90. && equalEnergy.getColorRenderingIndex() < 99.);
+
+        // tri-band lamp with a deficient yellow green
+        final var triBand = colorimetry.evaluate(spectrum(nm -> 0.02 + 0.6 * gaussian(nm, 450., 10.)
+                + gaussian(nm, 545., 8.) + 0.9 * gaussian(nm, 611., 6.)));
+        assertTrue(triBand.getColorRenderingIndex() < 80.);
+        assertTrue(triBand.getSpecialColorRenderingIndex(3) < triBand.getSpecialColorRenderingIndex(1));
+    }
+
+    @Test
+    void renderingIndicesIndependentOfPreviousSpectra() {
+        final var colorimetry = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE);
+        final var triBand = spectrum(nm -> 0.02 + 0.6 * gaussian(nm, 450., 10.) + gaussian(nm, 545., 8.)
+                + 0.9 * gaussian(nm, 611., 6.));
+        final var first = colorimetry.evaluate(triBand);
+        colorimetry.evaluate(blackBody(2856.));
+        colorimetry.evaluate(spectrum(nm -> Colorimetry.daylight(nm, 6504.)));
+        final var again = colorimetry.evaluate(triBand);
+        assertEquals(first.getColorRenderingIndex(), again.getColorRenderingIndex(), 1e-9);
+        assertEquals(first.getSpecialColorRenderingIndex(9), again.getSpecialColorRenderingIndex(9), 1e-9);
+        assertEquals(first.getColorRenderingIndex(), new Colorimetry(StandardObserver.CIE_1931_2_DEGREE)
+                .evaluate(triBand).getColorRenderingIndex(), 1e-9);
+    }
+
+    @Test
+    void generalIndexIsMeanOfFirstEightSamples() {
+        final var color = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE).evaluate(spectrum(nm ->
+                0.02 + 0.6 * gaussian(nm, 450., 10.) + gaussian(nm, 545., 8.) + 0.9 * gaussian(nm, 611., 6.)));
+        var sum = 0.;
+        for (int sample = 1; sample <= 8; sample++) {
+            sum += color.getSpecialColorRenderingIndex(sample);
+        }
+        assertEquals(sum / 8., color.getColorRenderingIndex(), 1e-9);
+        // saturated red is rendered poorly without deep red light
+        assertTrue(color.getSpecialColorRenderingIndex(9) < color.getColorRenderingIndex());
+    }
+
+    @Test
+    void renderingIndexUndefinedOffLocus() {
+        final var colorimetry = new Colorimetry(StandardObserver.CIE_1931_2_DEGREE);
+        final var greenish = colorimetry.evaluate(spectrum(nm -> gaussian(nm, 560., 60.)));
+        assertTrue(Double.isNaN(greenish.getColorRenderingIndex()));
+        assertTrue(Double.isNaN(greenish.getSpecialColorRenderingIndex(1)));
+        assertTrue(Double.isNaN(colorimetry.evaluate(spectrum(nm -> 0.)).getColorRenderingIndex()));
+    }
+}
@@ -0,0 +1,110 @@
+package grillbaer.spectracle.spectrum;
+
+import grillbaer.spectracle.spectrum.CompactSampleLine.Storage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactSampleLineTest {
+
+    private static SampleLine line() {
+        final var values = new double[500];
+        final var overExposed = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -0.01 + Math.exp(-0.5 * Math.pow((i - 250.) / 30., 2));
+            overExposed[i] = i >= 248 && i <= 252;
+        }
+        return SampleLine.create(values, overExposed);
+    }
+
+    @Test
+    void floatStorage() {
+        final var line = line();
+        final var compact = CompactSampleLine.of(line, Storage.FLOAT);
+        assertEquals(Storage.FLOAT, compact.getStorage());
+        assertEquals(line.getLength(), compact.getLength());
+        for (int i = 0; i < line.getLength(); i++) {
+            assertEquals(line.getValue(i), compact.getValue(i), 1e-7);
+            assertEquals(line.isOverExposed(i), compact.isOverExposed(i));
+        }
+    }
+
+    @Test
+    void fixed16Storage() {
+        final var line = line();
+        final var compact = CompactSampleLine.of(line, Storage.FIXED_16);
+        final var resolution = (line.getMaxValue() - line.getMinValue()) / 65535.;
+        for (int i = 0; i < line.getLength(); i++) {
+            assertEquals(line.getValue(i), compact.getValue(i), resolution / 2. + 1e-15);
+            assertEquals(line.isOverExposed(i), compact.isOverExposed(i));
+        }
+        // the extremes are exactly representable
+        assertEquals(line.getMinValue(), compact.getStatistics().getMinValue(), 1e-15);
+        assertEquals(line.getMaxValue(), compact.getStatistics().getMaxValue(), 1e-15);
+    }
+
+    @Test
+    void fixed16ConstantLine() {
+        final var compact = CompactSampleLine.of(SampleLine.create(new double[]{0.3, 0.3, 0.3}), Storage.FIXED_16);
+        assertArrayEquals(new double[]{0.3, 0.3, 0.3}, compact.getCopyOfValues());
+    }
+
+    @Test
+    void statisticsMatchExpandedLine() {
+        for (Storage storage : Storage.values()) {
+            final var compact = CompactSampleLine.of(line(), storage);
+            final var expanded = SampleLine.create(compact.getCopyOfValues(), compact.getCopyOfOverExposed())
+                    .getStatistics();
+            final var statistics = compact.getStatistics();
+            assertEquals(expanded.getSum(), statistics.getSum(), 1e-12);
+            assertEquals(expanded.getMaxIndex(), statistics.getMaxIndex());
+            assertEquals(250., statistics.getCentroidIndex(), 0.5);
+            assertEquals(5, statistics.getOverExposedCount());
+            assertSame(statistics, compact.getStatistics());
+        }
+    }
+
+    @Test
+    void expandedViews() {
+        final var compact = CompactSampleLine.of(line(), Storage.FIXED_16);
+        final var values = compact.getCopyOfValues();
+        final var buffer = compact.asReadOnlyBuffer();
+        final var overExposed = compact.getCopyOfOverExposed();
+        assertTrue(buffer.isReadOnly());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(compact.getValue(i), values[i]);
+            assertEquals(compact.getValue(i), buffer.get(i));
+            assertEquals(compact.getValue(i), compact.getValues()[i]);
+            assertEquals(compact.isOverExposed(i), overExposed[i]);
+        }
+
+        values[0] = 9.;
+        assertNotEquals(9., compact.getValue(0));
+        assertSame(compact.getValues(), compact.getValues());
+    }
+
+    @Test
+    void calculatesLikeExpandedLine() {
+        final var calibration = WaveLengthCalibration.createDefault();
+        for (Storage storage : Storage.values()) {
+            final var compact = CompactSampleLine.of(line(), storage);
+            final var expanded = SampleLine.create(compact.getCopyOfValues(), compact.getCopyOfOverExposed());
+            assertArrayEquals(Calculations.gaussianSmooth(expanded, 3.).getCopyOfValues(),
+                    Calculations.gaussianSmooth(compact, 3.).getCopyOfValues());
+            assertArrayEquals(Calculations.normalize(expanded).getCopyOfValues(),
+                    Calculations.normalize(compact).getCopyOfValues());
+            assertEquals(expanded.integrate(10.5, 400.25), compact.integrate(10.5, 400.25));
+
+            final var spectrum = Spectrum.create(compact, calibration);
+            assertSame(compact, spectrum.getSampleLine());
+            assertEquals(expanded.getValue(250), spectrum.getValueAtIndex(250));
+        }
+    }
+
+    @Test
+    void withoutOverExposure() {
+        final var compact = CompactSampleLine.of(SampleLine.create(new double[]{1., 2.}), Storage.FLOAT);
+        assertFalse(compact.isOverExposed(0));
+        assertEquals(0, compact.getStatistics().getOverExposedCount());
+    }
+}
@@ -0,0 +1,72 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriftAlignedStackerTest {
+
+    private static SampleLine lines(double shift) {
+        final var values = new double[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.1 + 0.8 * Math.exp(-0.5 * Math.pow((i - 100. - shift) / 3., 2))
+                    + 0.5 * Math.exp(-0.5 * Math.pow((i - 200. - shift) / 4., 2));
+        }
+        return SampleLine.create(values);
+    }
+
+    @Test
+    void firstLineIsReference() {
+        final var stacker = new DriftAlignedStacker();
+        final var stacked = stacker.add(lines(0.));
+        assertEquals(1, stacker.getCount());
+        assertEquals(0., stacker.getLastShift());
+        assertEquals(lines(0.).getValue(100), stacked.getValue(100), 1e-12);
+    }
+
+    @Test
+    void shiftedLineRecovered() {
+        final var stacker = new DriftAlignedStacker();
+        stacker.add(lines(0.));
+        final var stacked = stacker.add(lines(2.4));
+        assertEquals(2, stacker.getCount());
+        assertEquals(2.4, stacker.getLastShift(), 0.15);
+        // the stacked line peaks at the reference's position
+        assertTrue(stacked.getValue(100) > stacked.getValue(102));
+        assertEquals(lines(0.).getValue(100), stacked.getValue(100), 0.02);
+    }
+
+    @Test
+    void shiftLimitedToMaxShift() {
+        final var stacker = new DriftAlignedStacker();
+        stacker.setMaxShift(2);
+        stacker.add(lines(0.));
+        stacker.add(lines(5.));
+        assertTrue(Math.abs(stacker.getLastShift()) <= 2.5);
+    }
+
+    @Test
+    void addAfterReset() {
+        final var stacker = new DriftAlignedStacker();
+        stacker.add(lines(0.));
+        stacker.add(lines(1.));
+        stacker.reset();
+        assertEquals(0, stacker.getCount());
+
+        final var restarted = stacker.add(lines(3.));
+        assertEquals(1, stacker.getCount());
+        assertEquals(lines(3.).getValue(103), restarted.getValue(103), 1e-12);
+
+        stacker.add(lines(4.));
+        assertEquals(2, stacker.getCount());
+        assertEquals(1., stacker.getLastShift(), 0.15);
+    }
+
+    @Test
+    void lengthChangeRestarts() {
+        final var stacker = new DriftAlignedStacker();
+        stacker.add(lines(0.));
+        stacker.add(SampleLine.create(new double[]{1., 2., 3.}));
+        assertEquals(1, stacker.getCount());
+    }
+}
@@ -0,0 +1,103 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotPixelMapTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 8;
+
+    /**
+     * Defects at (2, 3) and (3, 3), so column 3 is fully defective in rows 2..3, and at (5, 7).
+     */
+    private static HotPixelMap map() {
+        final var defects = new BitSet();
+        defects.set(2 * WIDTH + 3);
+        defects.set(3 * WIDTH + 3);
+        defects.set(5 * WIDTH + 7);
+        return new HotPixelMap(WIDTH, HEIGHT, defects);
+    }
+
+    @Test
+    void defects() {
+        final var map = map();
+        assertEquals(3, map.getDefectCount());
+        assertTrue(map.isDefective(2, 3));
+        assertTrue(map.isDefective(5, 7));
+        assertFalse(map.isDefective(2, 4));
+        assertFalse(map.isDefective(-1, 3));
+        assertFalse(map.isDefective(2, WIDTH));
+        assertTrue(map.isFor(WIDTH, HEIGHT));
+        assertFalse(map.isFor(WIDTH, HEIGHT + 1));
+    }
+
+    @Test
+    void invalidMaps() {
+        assertThrows(IllegalArgumentException.class, () -> new HotPixelMap(0, HEIGHT, new BitSet()));
+        final var outside = new BitSet();
+        outside.set(WIDTH * HEIGHT);
+        assertThrows(IllegalArgumentException.class, () -> new HotPixelMap(WIDTH, HEIGHT, outside));
+    }
+
+    @Test
+    void stripWithoutDefects() {
+        final var correction = map().getStripCorrection(0, 2);
+        assertTrue(correction.isEmpty());
+        assertNull(correction.getDefectiveCols(0));
+        assertEquals(2, correction.getValidRows(3));
+    }
+
+    @Test
+    void stripExcludesDefects() {
+        final var correction = map().getStripCorrection(1, 5);
+        assertFalse(correction.isEmpty());
+        assertArrayEquals(new int[]{3}, correction.getDefectiveCols(2));
+        assertArrayEquals(new int[]{7}, correction.getDefectiveCols(5));
+        assertNull(correction.getDefectiveCols(4));
+        assertNull(correction.getDefectiveCols(7)); // outside of the strip
+        assertEquals(3, correction.getValidRows(3));
+        assertEquals(4, correction.getValidRows(7));
+        assertEquals(5, correction.getValidRows(0));
+    }
+
+    @Test
+    void stripCorrectionCached() {
+        final var map = map();
+        assertSame(map.getStripCorrection(1, 5), map.getStripCorrection(1, 5));
+    }
+
+    @Test
+    void stripInterpolatesFullyDefectiveColumns() {
+        final var correction = map().getStripCorrection(2, 2);
+        assertEquals(0, correction.getValidRows(3));
+        final var values = new double[]{0., 0.1, 0.2, 9., 0.6, 0., 0., 0., 0., 0.};
+        final var overExposed = new boolean[WIDTH];
+        overExposed[4] = true;
+        correction.interpolate(values, overExposed);
+        assertEquals(0.4, values[3], 1e-12);
+        assertTrue(overExposed[3]);
+        assertEquals(0.1, values[1], 1e-12); // untouched
+    }
+
+    @Test
+    void stripOutsideFrame() {
+        final var correction = map().getStripCorrection(-3, 4);
+        assertTrue(correction.isEmpty());
+        assertEquals(4, correction.getValidRows(3));
+    }
+
+    @Test
+    void json() throws Exception {
+        final var mapper = new ObjectMapper();
+        final var map = map();
+        final var json = mapper.writeValueAsString(map);
+        assertEquals(map, mapper.readValue(json, HotPixelMap.class));
+        assertEquals(new HotPixelMap(WIDTH, HEIGHT, new BitSet()),
+                mapper.readValue(mapper.writeValueAsString(new HotPixelMap(WIDTH, HEIGHT, new BitSet())),
+                        HotPixelMap.class));
+    }
+}
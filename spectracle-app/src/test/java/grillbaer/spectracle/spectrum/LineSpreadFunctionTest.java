@@ -0,0 +1,86 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineSpreadFunctionTest {
+    private static final double SIGMA = 2.;
+    private static final double FWHM = 2. * Math.sqrt(2. * Math.log(2.)) * SIGMA;
+
+    /**
+     * Lines with a Gaussian line-spread function on a sloped background, each line given as index and height.
+     */
+    private static SampleLine lines(double sigma, double... indexAndHeight) {
+        final var values = new double[800];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.05 + 0.0001 * i;
+            for (int line = 0; line < indexAndHeight.length; line += 2) {
+                values[i] += indexAndHeight[line + 1]
+                        * Math.exp(-0.5 * Math.pow((i - indexAndHeight[line]) / sigma, 2));
+            }
+        }
+        return SampleLine.create(values);
+    }
+
+    @Test
+    void measureIsolatedLines() {
+        final var lsf = LineSpreadFunction.measure(lines(SIGMA, 150.3, 0.8, 400., 0.6, 620.7, 0.5), 12);
+        assertEquals(25, lsf.getLength());
+        assertEquals(FWHM, lsf.getFullWidthAtHalfMaximum(), 0.15);
+        assertEquals(lsf.getValue(-3), lsf.getValue(3), 0.005);
+        double sum = 0.;
+        for (int offset = -12; offset <= 12; offset++) {
+            sum += lsf.getValue(offset);
+        }
+        assertEquals(1., sum, 1e-9);
+    }
+
+    @Test
+    void closeDoubletIgnored() {
+        // the strong doublet would broaden the profile, only the weaker isolated line must be used
+        final var lsf = LineSpreadFunction.measure(lines(SIGMA, 300., 0.9, 308., 0.9, 600., 0.4), 12);
+        assertEquals(FWHM, lsf.getFullWidthAtHalfMaximum(), 0.15);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> LineSpreadFunction.measure(lines(SIGMA, 300., 0.9, 308., 0.9), 12));
+    }
+
+    @Test
+    void weakNeighbourSpoilsIsolation() {
+        // the neighbour is too weak to be measured itself, but still distorts the strong line's wings
+        assertThrows(IllegalArgumentException.class,
+                () -> LineSpreadFunction.measure(lines(SIGMA, 300., 0.9, 315., 0.1), 12));
+    }
+
+    @Test
+    void deconvolveDoublet() {
+        final var lsf = LineSpreadFunction.measure(lines(SIGMA, 150.3, 0.8, 400., 0.6, 620.7, 0.5), 12);
+        final var deconvolver = new WienerDeconvolver();
+        deconvolver.setLineSpreadFunction(lsf);
+        deconvolver.setRegularization(0.001);
+
+        // a doublet closer than the line width, barely resolved
+        final var blurred = lines(SIGMA, 300., 0.9, 305., 0.9);
+        final var blurredDip = blurred.getValue(302) / blurred.getValue(300);
+        final var sharpened = deconvolver.deconvolve(blurred);
+        final var sharpenedDip = sharpened.getValue(302) / sharpened.getValue(300);
+        assertTrue(blurredDip > 0.8, "blurred dip " + blurredDip);
+        assertTrue(sharpenedDip < 0.5 * blurredDip, "sharpened dip " + sharpenedDip);
+        assertTrue(sharpened.getValue(300) > blurred.getValue(300));
+
+        // intensity is kept
+        double blurredSum = 0.;
+        double sharpenedSum = 0.;
+        for (int i = 280; i < 325; i++) {
+            blurredSum += blurred.getValue(i);
+            sharpenedSum += sharpened.getValue(i);
+        }
+        assertEquals(blurredSum, sharpenedSum, 0.02 * blurredSum);
+    }
+
+    @Test
+    void noLineSpreadFunction() {
+        assertThrows(IllegalStateException.class, () -> new WienerDeconvolver().deconvolve(lines(SIGMA, 300., 1.)));
+    }
+}
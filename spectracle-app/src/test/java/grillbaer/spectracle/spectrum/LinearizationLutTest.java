@@ -0,0 +1,76 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinearizationLutTest {
+
+    /**
+     * Gamma encoded values of a smooth spectrum for each log2 scaled exposure, clipped like an 8 bit camera.
+     */
+    private static double[][] exposureSeries(double gamma, double[] exposures) {
+        final var values = new double[exposures.length][200];
+        for (int k = 0; k < exposures.length; k++) {
+            for (int i = 0; i < values[k].length; i++) {
+                final var linear = 0.02 + 0.2 * Math.exp(-0.5 * Math.pow((i - 100.) / 40., 2));
+                values[k][i] = Math.min(1., Math.pow(linear * Math.pow(2., exposures[k]), 1. / gamma));
+            }
+        }
+        return values;
+    }
+
+    @Test
+    void table() {
+        final var lut = new LinearizationLut(2.2);
+        assertEquals(0., lut.linearize(0));
+        assertEquals(1., lut.linearize(255));
+        assertEquals(Math.pow(128. / 255., 2.2), lut.linearize(128), 1e-12);
+        assertFalse(lut.isIdentity());
+        assertTrue(LinearizationLut.IDENTITY.isIdentity());
+        assertEquals(128. / 255., LinearizationLut.IDENTITY.linearize(128), 1e-12);
+    }
+
+    @Test
+    void invalidGamma() {
+        assertThrows(IllegalArgumentException.class, () -> new LinearizationLut(LinearizationLut.MIN_GAMMA - 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new LinearizationLut(LinearizationLut.MAX_GAMMA + 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new LinearizationLut(Double.NaN));
+    }
+
+    @Test
+    void fitGamma() {
+        final var exposures = new double[]{-2., -1., 0., 1., 2.};
+        assertEquals(2.2, LinearizationLut.fitExposureSeries(exposureSeries(2.2, exposures), exposures).getGamma(),
+                1e-6);
+        assertEquals(1., LinearizationLut.fitExposureSeries(exposureSeries(1., exposures), exposures).getGamma(),
+                1e-6);
+    }
+
+    @Test
+    void fitIgnoresClippedValues() {
+        // the brightest exposure clips the center bins, which would flatten the slope if used
+        final var exposures = new double[]{0., 1., 2., 3.};
+        final var values = exposureSeries(1.8, exposures);
+        assertEquals(1., values[3][100]);
+        assertEquals(1.8, LinearizationLut.fitExposureSeries(values, exposures).getGamma(), 1e-6);
+    }
+
+    @Test
+    void fitClampedToValidGamma() {
+        final var exposures = new double[]{0., 1.};
+        final var values = new double[][]{{0.2, 0.3}, {0.201, 0.301}};
+        assertEquals(LinearizationLut.MAX_GAMMA, LinearizationLut.fitExposureSeries(values, exposures).getGamma());
+    }
+
+    @Test
+    void fitFailsWithoutUsableValues() {
+        final var exposures = new double[]{0., 1.};
+        assertThrows(IllegalArgumentException.class,
+                () -> LinearizationLut.fitExposureSeries(new double[][]{{0.01, 0.01}, {0.02, 0.02}}, exposures));
+        assertThrows(IllegalArgumentException.class,
+                () -> LinearizationLut.fitExposureSeries(new double[][]{{0.5, 0.5}}, new double[]{0.}));
+        assertThrows(IllegalArgumentException.class,
+                () -> LinearizationLut.fitExposureSeries(new double[][]{{0.5}, {0.6}}, new double[]{0., 1., 2.}));
+    }
+}
@@ -0,0 +1,115 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleLineTest {
+
+    private static SampleLine ramp() {
+        final var values = new double[11];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        return SampleLine.create(values);
+    }
+
+    @Test
+    void integrateWholeLine() {
+        assertEquals(50., ramp().integrate(0., 10.), 1e-12);
+    }
+
+    @Test
+    void integrateFractionalBounds() {
+        assertEquals((4.5 * 4.5 - 2.5 * 2.5) / 2., ramp().integrate(2.5, 4.5), 1e-12);
+        assertEquals((3.75 * 3.75 - 3.25 * 3.25) / 2., ramp().integrate(3.25, 3.75), 1e-12);
+    }
+
+    @Test
+    void integrateReversedAndClipped() {
+        final var line = ramp();
+        assertEquals(-line.integrate(2.5, 4.5), line.integrate(4.5, 2.5), 1e-12);
+        assertEquals(50., line.integrate(-5., 20.), 1e-12);
+        assertEquals(0., line.integrate(3., 3.), 1e-12);
+    }
+
+    @Test
+    void integrateMatchesTrapezoids() {
+        final var values = new double[]{3., 1., 4., 1., 5., 9., 2., 6.};
+        final var line = SampleLine.create(values);
+        double sum = 0.;
+        for (int i = 1; i < 6; i++) {
+            sum += 0.5 * (values[i] + values[i + 1]);
+        }
+        assertEquals(sum, line.integrate(1., 6.), 1e-12);
+    }
+
+    @Test
+    void integrateShortLine() {
+        assertEquals(0., SampleLine.create(new double[]{7.}).integrate(0., 1.));
+    }
+
+    @Test
+    void statistics() {
+        final var line = SampleLine.create(new double[]{-1., 2., 5., 5., 1.},
+                new boolean[]{false, false, true, true, false});
+        final var statistics = line.getStatistics();
+        assertEquals(5, statistics.getLength());
+        assertEquals(-1., statistics.getMinValue());
+        assertEquals(5., statistics.getMaxValue());
+        assertEquals(12., statistics.getSum(), 1e-12);
+        assertEquals(2.4, statistics.getMean(), 1e-12);
+        assertEquals(2, statistics.getMaxIndex()); // first of equal maxima
+        assertEquals((2. + 10. + 15. + 4.) / 13., statistics.getCentroidIndex(), 1e-12); // positive values only
+        assertEquals(2, statistics.getOverExposedCount());
+        assertSame(statistics, line.getStatistics());
+        assertEquals(-1., line.getMinValue());
+        assertEquals(5., line.getMaxValue());
+    }
+
+    @Test
+    void statisticsWithoutPositiveValues() {
+        final var statistics = SampleLine.create(new double[]{-2., 0., -1.}).getStatistics();
+        assertTrue(Double.isNaN(statistics.getCentroidIndex()));
+        assertEquals(1, statistics.getMaxIndex());
+        assertEquals(0, statistics.getOverExposedCount());
+    }
+
+    @Test
+    void statisticsOfEmptyLine() {
+        final var statistics = SampleLine.create(new double[0]).getStatistics();
+        assertEquals(0, statistics.getLength());
+        assertEquals(-1, statistics.getMaxIndex());
+        assertEquals(0., statistics.getMean());
+    }
+
+    @Test
+    void readOnlyBuffer() {
+        final var line = ramp();
+        final var buffer = line.asReadOnlyBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(line.getLength(), buffer.remaining());
+        assertEquals(7., buffer.get(7));
+
+        buffer.position(5);
+        assertEquals(0, line.asReadOnlyBuffer().position()); // independent buffers
+        assertThrows(ReadOnlyBufferException.class, () -> buffer.put(0, 1.));
+    }
+
+    @Test
+    void valuesNotSharedWithCaller() {
+        final var values = new double[]{1., 2., 3.};
+        final var overExposed = new boolean[]{false, true, false};
+        final var line = SampleLine.create(values, overExposed);
+        values[0] = 9.;
+        overExposed[0] = true;
+        assertEquals(1., line.getValue(0));
+        assertFalse(line.isOverExposed(0));
+        assertTrue(line.isOverExposed(1));
+
+        line.getCopyOfValues()[1] = 9.;
+        assertEquals(2., line.getValue(1));
+    }
+}
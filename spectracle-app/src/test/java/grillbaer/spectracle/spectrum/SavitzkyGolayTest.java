@@ -0,0 +1,131 @@
+package grillbaer.spectracle.spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SavitzkyGolayTest {
+
+    @Test
+    void classicCoefficients() {
+        final var smoothing = SavitzkyGolay.getCoefficients(5, 2, 0)[2];
+        final var expected = new double[]{-3., 12., 17., 12., -3.};
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k] / 35., smoothing[k], 1e-12);
+        }
+
+        final var firstDerivative = SavitzkyGolay.getCoefficients(5, 2, 1)[2];
+        final var expectedFirst = new double[]{-2., -1., 0., 1., 2.};
+        for (int k = 0; k < expectedFirst.length; k++) {
+            assertEquals(expectedFirst[k] / 10., firstDerivative[k], 1e-12);
+        }
+    }
+
+    @Test
+    void coefficientsCached() {
+        assertSame(SavitzkyGolay.getCoefficients(11, 4, 2), SavitzkyGolay.getCoefficients(11, 4, 2));
+    }
+
+    @Test
+    void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> SavitzkyGolay.getCoefficients(4, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> SavitzkyGolay.getCoefficients(5, 5, 0));
+        assertThrows(IllegalArgumentException.class, () -> SavitzkyGolay.getCoefficients(5, 2, 3));
+    }
+
+    @Test
+    void polynomialPreservedWithDerivativesIncludingEnds() {
+        final var values = new double[50];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.5 + 0.02 * i - 0.001 * i * i;
+        }
+
+        final var derivatives = SavitzkyGolay.filter(SampleLine.create(values), 9, 2);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], derivatives.getSmoothed().getValue(i), 1e-12);
+            assertEquals(0.02 - 0.002 * i, derivatives.getFirstDerivative().getValue(i), 1e-12);
+            assertEquals(-0.002, derivatives.getSecondDerivative().getValue(i), 1e-12);
+        }
+    }
+
+    @Test
+    void narrowLineKeepsItsHeightBetterThanGaussian() {
+        final var values = new double[101];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(-0.5 * (i - 50) * (i - 50) / 4.);
+        }
+        final var line = SampleLine.create(values);
+
+        final var savitzkyGolay = SavitzkyGolay.smooth(line, 7, 4).getValue(50);
+        final var gaussian = Calculations.gaussianSmooth(line, 1.5).getValue(50);
+        assertTrue(Math.abs(1. - savitzkyGolay) < Math.abs(1. - gaussian));
+    }
+
+    @Test
+    void shortLineLeftUnchanged() {
+        final var line = SampleLine.create(new double[]{1., 2.});
+        assertEquals(2., SavitzkyGolay.smooth(line, 5, 2).getValue(1));
+    }
+
+    @Test
+    void extremaFromZeroCrossings() {
+        final var values = new double[200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.5 + 0.4 * Math.exp(-0.5 * (i - 60) * (i - 60) / 9.)
+                    - 0.3 * Math.exp(-0.5 * (i - 140) * (i - 140) / 9.);
+        }
+
+        final var extrema = SavitzkyGolay.findLocalExtrema(SampleLine.create(values), 9, 2, 0.3, 16, 16);
+        assertEquals(1, extrema.getMaxima().size());
+        assertEquals(60, extrema.getMaxima().get(0).getIndex());
+        assertTrue(extrema.getMaxima().get(0).isMaximum());
+        assertEquals(1, extrema.getMinima().size());
+        assertEquals(140, extrema.getMinima().get(0).getIndex());
+        assertTrue(extrema.getMinima().get(0).isMinimum());
+    }
+
+    /**
+     * Fluorescent lamp like spectrum of 1280 bins: a broad phosphor hump, narrow mercury lines of different heights
+     * and camera noise.
+     */
+    private static SampleLine lampSpectrum() {
+        final var random = new Random(42);
+        final var values = new double[1280];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.05 + 0.35 * Math.exp(-0.5 * Math.pow((i - 800.) / 60., 2))
+                    + 0.9 * Math.exp(-0.5 * Math.pow((i - 300.) / 2., 2))
+                    + 0.6 * Math.exp(-0.5 * Math.pow((i - 520.) / 2.5, 2))
+                    + 0.25 * Math.exp(-0.5 * Math.pow((i - 1000.) / 2., 2))
+                    + 0.01 * random.nextGaussian();
+        }
+        return SampleLine.create(values);
+    }
+
+    @Test
+    void extremaLevelsCalibratedLikeGaussianDetector() {
+        final var line = lampSpectrum();
+        final var gaussian = Calculations.findLocalExtrema(line, 0.6, 2., 16, 16).getMaxima();
+        final var savitzkyGolay = SavitzkyGolay.findLocalExtrema(line, 9, 2, 0.3, 16, 16).getMaxima();
+
+        for (int peak : new int[]{300, 520, 1000}) {
+            final var expected = levelNear(gaussian, peak, 3);
+            assertEquals(expected, levelNear(savitzkyGolay, peak, 3), 0.35 * expected, "level at " + peak);
+        }
+        // the broad hump reaches beyond the gaussian detector's wide base, but is never rated lower
+        assertTrue(levelNear(savitzkyGolay, 800, 30) >= levelNear(gaussian, 800, 30));
+
+        // same ranking of the real lines, noise never outranks them
+        assertEquals(300, savitzkyGolay.get(0).getIndex(), 1);
+        assertEquals(520, savitzkyGolay.get(1).getIndex(), 1);
+        assertEquals(1000, savitzkyGolay.get(2).getIndex(), 1);
+    }
+
+    private static double levelNear(List<Calculations.Extremum> extrema, int index, int tolerance) {
+        return extrema.stream().filter(e -> Math.abs(e.getIndex() - index) <= tolerance)
+                .mapToDouble(Calculations.Extremum::getLevel).max()
+                .orElseThrow(() -> new AssertionError("no maximum near " + index));
+    }
+}
@@ -0,0 +1,92 @@
+package grillbaer.spectracle.spectrum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import grillbaer.spectracle.spectrum.SpectralBands.Band;
+import grillbaer.spectracle.spectrum.SpectralBands.Ratio;
+import grillbaer.spectracle.spectrum.WaveLengthCalibration.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectralBandsTest {
+    private static final int LENGTH = 401;
+    private static final WaveLengthCalibration CALIBRATION = WaveLengthCalibration.create(List.of(
+            new Point(0., 400.), new Point(1., 800.)));
+
+    private static final SpectralBands BANDS = new SpectralBands(
+            List.of(new Band("blue", 450., 500.), new Band("red", 600., 700.)),
+            List.of(new Ratio("red/blue", "red", "blue")));
+
+    /**
+     * 1.0 below 550 nm, 3.0 above.
+     */
+    private static Spectrum spectrum() {
+        final var values = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            values[i] = CALIBRATION.indexToNanoMeters(LENGTH, i) < 550. ? 1. : 3.;
+        }
+        return Spectrum.create(SampleLine.create(values), CALIBRATION);
+    }
+
+    @Test
+    void metricNames() {
+        assertEquals(5, BANDS.getMetricCount());
+        assertEquals(List.of("blue.integral", "blue.mean", "red.integral", "red.mean", "red/blue"),
+                BANDS.getMetricNames());
+    }
+
+    @Test
+    void evaluate() {
+        final var metrics = BANDS.evaluate(spectrum());
+        assertEquals(50., metrics[0], 1e-9);
+        assertEquals(1., metrics[1], 1e-9);
+        assertEquals(300., metrics[2], 1e-9);
+        assertEquals(3., metrics[3], 1e-9);
+        assertEquals(6., metrics[4], 1e-9);
+    }
+
+    @Test
+    void evaluateIntoReusedVector() {
+        final var metrics = new double[BANDS.getMetricCount()];
+        assertSame(metrics, BANDS.evaluate(spectrum(), metrics));
+        assertEquals(6., metrics[4], 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> BANDS.evaluate(spectrum(), new double[2]));
+    }
+
+    @Test
+    void zeroDenominatorRatio() {
+        final var dark = Spectrum.create(SampleLine.create(new double[LENGTH]), CALIBRATION);
+        assertTrue(Double.isNaN(BANDS.evaluate(dark)[4]));
+    }
+
+    @Test
+    void invalidBands() {
+        final var band = new Band("blue", 450., 500.);
+        assertThrows(IllegalArgumentException.class, () -> new SpectralBands(List.of(band, band), List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new SpectralBands(List.of(band),
+                List.of(new Ratio("ratio", "blue", "green"))));
+    }
+
+    @Test
+    void parseAndFormat() {
+        final var parsed = SpectralBands.parse("""
+                # LED primaries
+                blue 450 500
+                red  600 700  # deep red
+                
+                red/blue = red / blue
+                """);
+        assertEquals(BANDS, parsed);
+        assertEquals(BANDS, SpectralBands.parse(BANDS.format()));
+        assertThrows(IllegalArgumentException.class, () -> SpectralBands.parse("blue 450"));
+        assertThrows(IllegalArgumentException.class, () -> SpectralBands.parse("blue 450 nm"));
+    }
+
+    @Test
+    void json() throws Exception {
+        final var mapper = new ObjectMapper();
+        assertEquals(BANDS, mapper.readValue(mapper.writeValueAsString(BANDS), SpectralBands.class));
+    }
+}